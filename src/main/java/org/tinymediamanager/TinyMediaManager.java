@@ -353,6 +353,10 @@ public class TinyMediaManager {
             }
 
             TmmTaskManager.getInstance().addUnnamedTask(new PreloadTask());
+
+            // watch the data sources for changes (if enabled)
+            MovieModuleManager.getInstance().startDatasourceWatcher();
+            TvShowModuleManager.getInstance().startDatasourceWatcher();
             // show changelog
             if (newVersion && !ReleaseInfo.getVersion().equals(oldVersion)) {
               // special case nightly/git: if same snapshot version, do not display changelog
@@ -72,6 +72,7 @@ public class TinyMediaManagerCMD {
   private static boolean          dryRun          = false;
   private static boolean          checkFiles      = false;
   private static boolean          export          = false;
+  private static boolean          fullRescan      = false;
 
   // datasource IDs
   private static HashSet<Integer> updateMovieDs   = new HashSet<>();
@@ -108,6 +109,9 @@ public class TinyMediaManagerCMD {
         updateMovies = true;
         updateTv = true;
       }
+      else if (cmd.equalsIgnoreCase("-fullRescan")) {
+        fullRescan = true;
+      }
       else if (cmd.equalsIgnoreCase("-scrapeNew")) {
         scrapeNew = true;
       }
@@ -208,6 +212,7 @@ public class TinyMediaManagerCMD {
         "    -updateTv             update all TvShow\n" +
         "    -updateTvX            replace X with 1-9 - just updates a single TvShow datasource; ordering like GUI\n" +
         "    -update               update all (short for '-updateMovies -updateTv')\n" +
+        "    -fullRescan           parse all folders on update; otherwise unchanged folders (since the last update) are skipped\n" +
         "\n" +
         "    SCRAPE: auto-scrapes  (force best match) your specified items:\n" +
         "    -scrapeNew            only NEW FOUND movies/TvShows/episodes from former update\n" +
@@ -272,14 +277,18 @@ public class TinyMediaManagerCMD {
       if (updateMovies) {
         LOGGER.info("Commandline - updating movies...");
         if (updateMovieDs.isEmpty()) {
-          task = new MovieUpdateDatasourceTask2();
+          MovieUpdateDatasourceTask2 movieTask = new MovieUpdateDatasourceTask2();
+          movieTask.setFullRescan(fullRescan);
+          task = movieTask;
           task.run(); // blocking
         }
         else {
           List<String> dataSources = new ArrayList<>(MovieModuleManager.MOVIE_SETTINGS.getMovieDataSource());
           for (Integer i : updateMovieDs) {
             if (dataSources != null && dataSources.size() >= i - 1) {
-              task = new MovieUpdateDatasourceTask2(dataSources.get(i - 1));
+              MovieUpdateDatasourceTask2 movieTask = new MovieUpdateDatasourceTask2(dataSources.get(i - 1));
+              movieTask.setFullRescan(fullRescan);
+              task = movieTask;
               task.run(); // blocking
             }
           }
@@ -387,14 +396,18 @@ public class TinyMediaManagerCMD {
       if (updateTv) {
         LOGGER.info("Commandline - updating TvShows and episodes...");
         if (updateTvDs.isEmpty()) {
-          task = new TvShowUpdateDatasourceTask2();
+          TvShowUpdateDatasourceTask2 tvShowTask = new TvShowUpdateDatasourceTask2();
+          tvShowTask.setFullRescan(fullRescan);
+          task = tvShowTask;
           task.run(); // blocking
         }
         else {
           List<String> dataSources = new ArrayList<>(TvShowModuleManager.SETTINGS.getTvShowDataSource());
           for (Integer i : updateTvDs) {
             if (dataSources != null && dataSources.size() >= i - 1) {
-              task = new TvShowUpdateDatasourceTask2(dataSources.get(i - 1));
+              TvShowUpdateDatasourceTask2 tvShowTask = new TvShowUpdateDatasourceTask2(dataSources.get(i - 1));
+              tvShowTask.setFullRescan(fullRescan);
+              task = tvShowTask;
               task.run(); // blocking
             }
           }
@@ -214,6 +214,7 @@ public class UpgradeTasks {
           }
         }
         if (dirty) {
+          movie.markModified(); // nested objects have been changed directly
           movie.saveToDb();
         }
       }
@@ -376,6 +377,7 @@ public class UpgradeTasks {
         }
 
         if (changed) {
+          movie.markModified();
           movie.saveToDb();
         }
       }
@@ -402,6 +404,7 @@ public class UpgradeTasks {
           }
         }
         if (changed) {
+          tvShow.markModified();
           tvShow.saveToDb();
         }
       }
@@ -428,6 +431,7 @@ public class UpgradeTasks {
           }
         }
         if (changed) {
+          movie.markModified();
           movie.saveToDb();
         }
       }
@@ -443,6 +447,7 @@ public class UpgradeTasks {
             }
           }
           if (changed) {
+            episode.markModified();
             episode.saveToDb();
           }
         }
@@ -466,17 +471,20 @@ public class UpgradeTasks {
         }
 
         if (changed) {
+          movie.markModified();
           movie.saveToDb();
         }
       }
       for (TvShow show : tvShowList.getTvShows()) {
         boolean changed = removeEmptyIds(show);
         if (changed) {
+          show.markModified();
           show.saveToDb();
         }
         for (TvShowEpisode episode : show.getEpisodes()) {
           changed = removeEmptyIds(episode);
           if (changed) {
+            episode.markModified();
             episode.saveToDb();
           }
         }
@@ -528,6 +536,7 @@ public class UpgradeTasks {
         for (Person person : movie.getProducers()) {
           person.setEntityRoot(movie.getPathNIO());
         }
+        movie.markModified();
         movie.saveToDb();
       }
       for (MovieSet movieSet : movieList.getMovieSetList()) {
@@ -538,11 +547,13 @@ public class UpgradeTasks {
         for (Person person : show.getActors()) {
           person.setEntityRoot(show.getPathNIO());
         }
+        show.markModified();
         show.saveToDb();
         for (TvShowEpisode episode : show.getEpisodes()) {
           for (Person person : episode.getGuests()) {
             person.setEntityRoot(episode.getPathNIO());
           }
+          episode.markModified();
           episode.saveToDb();
         }
       }
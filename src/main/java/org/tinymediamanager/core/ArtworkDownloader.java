@@ -0,0 +1,303 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.scraper.http.Url;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * The class ArtworkDownloader. Downloads artwork over the shared (keep-alive, connection pooled) http client with a limited amount of
+ * parallel connections per host; the responses are cached in the {@link HttpCache}.<br>
+ * The downloaded files are not synced one by one: the download tasks of an entity register at the downloader ({@link #start(Object)} /
+ * {@link #finish(Object)}) and all files written for the entity are synced at once when its last download has finished: the data of every
+ * file and then every folder once (for the renamed temp files).
+ *
+ * @author Manuel Laggner
+ */
+public class ArtworkDownloader {
+  private static final Logger                           LOGGER                   = LoggerFactory.getLogger(ArtworkDownloader.class);
+
+  /** the max. amount of parallel downloads from one host */
+  public static final int                               MAX_CONNECTIONS_PER_HOST = 4;
+
+  private static final ConcurrentMap<String, Semaphore> HOST_PERMITS             = new ConcurrentHashMap<>();
+  private static final Map<Object, PendingWrites>       PENDING_WRITES           = new IdentityHashMap<>();
+
+  private ArtworkDownloader() {
+    // hide the public constructor for utility classes
+  }
+
+  /**
+   * download the given url into the given file (an existing file will be overwritten)
+   *
+   * @param url
+   *          the url to download
+   * @param file
+   *          the destination file
+   * @return the amount of downloaded bytes
+   * @throws IOException
+   *           if the download failed
+   * @throws InterruptedException
+   *           if the thread has been interrupted while waiting for a free connection
+   */
+  public static long download(String url, Path file) throws IOException, InterruptedException {
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    if (httpUrl == null) {
+      // no http(s) url (e.g. a local file)
+      InputStream is = new Url(url).getInputStream();
+      if (is == null) {
+        throw new IOException("could not open " + url);
+      }
+      try {
+        return Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      finally {
+        IOUtils.closeQuietly(is);
+      }
+    }
+
+    Semaphore permits = getPermits(httpUrl.host());
+    permits.acquire();
+    try {
+      Response response = HttpCache.getHttpClient().newCall(new Request.Builder().url(httpUrl).build()).execute();
+      ResponseBody body = response.body();
+      try {
+        if (!response.isSuccessful()) {
+          throw new IOException("HTTP " + response.code() + " for " + url);
+        }
+        return Files.copy(body.byteStream(), file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      finally {
+        // a completely read and closed body gives the connection back to the pool
+        body.close();
+      }
+    }
+    finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * download the given url into memory
+   *
+   * @param url
+   *          the url to download
+   * @return the downloaded bytes
+   * @throws IOException
+   *           if the download failed
+   * @throws InterruptedException
+   *           if the thread has been interrupted while waiting for a free connection
+   */
+  public static byte[] download(String url) throws IOException, InterruptedException {
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    if (httpUrl == null) {
+      InputStream is = new Url(url).getInputStream();
+      if (is == null) {
+        throw new IOException("could not open " + url);
+      }
+      try {
+        return IOUtils.toByteArray(is);
+      }
+      finally {
+        IOUtils.closeQuietly(is);
+      }
+    }
+
+    Semaphore permits = getPermits(httpUrl.host());
+    permits.acquire();
+    try {
+      Response response = HttpCache.getHttpClient().newCall(new Request.Builder().url(httpUrl).build()).execute();
+      ResponseBody body = response.body();
+      try {
+        if (!response.isSuccessful()) {
+          throw new IOException("HTTP " + response.code() + " for " + url);
+        }
+        return body.bytes();
+      }
+      finally {
+        body.close();
+      }
+    }
+    finally {
+      permits.release();
+    }
+  }
+
+  private static Semaphore getPermits(String host) {
+    String key = host.toLowerCase(Locale.ROOT);
+    Semaphore permits = HOST_PERMITS.get(key);
+    if (permits == null) {
+      permits = new Semaphore(MAX_CONNECTIONS_PER_HOST, true);
+      Semaphore existing = HOST_PERMITS.putIfAbsent(key, permits);
+      if (existing != null) {
+        permits = existing;
+      }
+    }
+    return permits;
+  }
+
+  /**
+   * register a download for the given entity (should be called when the download task is queued)
+   *
+   * @param entity
+   *          the entity to download the artwork for
+   */
+  public static void start(Object entity) {
+    synchronized (PENDING_WRITES) {
+      PendingWrites pendingWrites = PENDING_WRITES.get(entity);
+      if (pendingWrites == null) {
+        pendingWrites = new PendingWrites();
+        PENDING_WRITES.put(entity, pendingWrites);
+      }
+      pendingWrites.downloads++;
+    }
+  }
+
+  /**
+   * remember a written file of the entity; it will be synced when the last download of the entity has finished
+   *
+   * @param entity
+   *          the entity the file belongs to
+   * @param file
+   *          the written file
+   */
+  public static void addWrittenFile(Object entity, Path file) {
+    synchronized (PENDING_WRITES) {
+      PendingWrites pendingWrites = PENDING_WRITES.get(entity);
+      if (pendingWrites != null) {
+        pendingWrites.files.add(file);
+        return;
+      }
+    }
+    // no registered download - sync it right now
+    List<Path> files = new ArrayList<>();
+    files.add(file);
+    sync(files);
+  }
+
+  /**
+   * unregister a download of the given entity (must be called once for every call of {@link #start(Object)}, whether the download was
+   * successful or not); the last one syncs all written files of the entity
+   *
+   * @param entity
+   *          the entity to download the artwork for
+   */
+  public static void finish(Object entity) {
+    List<Path> files;
+    synchronized (PENDING_WRITES) {
+      PendingWrites pendingWrites = PENDING_WRITES.get(entity);
+      if (pendingWrites == null) {
+        return;
+      }
+      pendingWrites.downloads--;
+      if (pendingWrites.downloads > 0) {
+        return;
+      }
+      PENDING_WRITES.remove(entity);
+      files = pendingWrites.files;
+    }
+    sync(files);
+  }
+
+  /**
+   * forget all registered downloads (the queued download tasks have been cancelled) and sync the already written files
+   */
+  public static void cancelAll() {
+    List<Path> files = new ArrayList<>();
+    synchronized (PENDING_WRITES) {
+      for (PendingWrites pendingWrites : PENDING_WRITES.values()) {
+        files.addAll(pendingWrites.files);
+      }
+      PENDING_WRITES.clear();
+    }
+    sync(files);
+  }
+
+  /**
+   * the amount of registered but not finished downloads for the given entity
+   *
+   * @param entity
+   *          the entity
+   * @return the amount of open downloads
+   */
+  public static int getOpenDownloads(Object entity) {
+    synchronized (PENDING_WRITES) {
+      PendingWrites pendingWrites = PENDING_WRITES.get(entity);
+      return pendingWrites == null ? 0 : pendingWrites.downloads;
+    }
+  }
+
+  private static void sync(List<Path> files) {
+    // there is no portable way to sync several files at once - but only the data of the files is needed here
+    Set<Path> folders = new LinkedHashSet<>();
+    for (Path file : files) {
+      if (!Files.exists(file)) {
+        continue;
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.force(false);
+        folders.add(file.toAbsolutePath().getParent());
+      }
+      catch (Exception e) {
+        LOGGER.debug("could not sync " + file + ": " + e.getMessage());
+      }
+    }
+
+    // the new directory entries (the temp files have been moved) - once per folder
+    for (Path folder : folders) {
+      try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+        channel.force(true);
+      }
+      catch (Exception e) {
+        // folders cannot be opened on every platform (e.g. windows)
+        LOGGER.trace("could not sync " + folder + ": " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * the open downloads and written files of an entity
+   */
+  private static class PendingWrites {
+    private int              downloads = 0;
+    private final List<Path> files     = new ArrayList<>();
+  }
+}
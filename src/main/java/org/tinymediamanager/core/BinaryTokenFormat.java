@@ -0,0 +1,332 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The class BinaryTokenFormat. A compact binary encoding of a Jackson token stream (used by {@link DatabaseValueCodec#BINARY}):<br>
+ * every token is one type byte; field names are written once per value and referenced by their index afterwards, integers are written as
+ * zigzag varints, floating point numbers as their IEEE 754 bits and strings as length prefixed UTF-8
+ *
+ * @author Manuel Laggner
+ */
+class BinaryTokenFormat {
+  private static final int TOKEN_START_OBJECT = 1;
+  private static final int TOKEN_END_OBJECT   = 2;
+  private static final int TOKEN_START_ARRAY  = 3;
+  private static final int TOKEN_END_ARRAY    = 4;
+  private static final int TOKEN_NAME         = 5;
+  private static final int TOKEN_NAME_REF     = 6;
+  private static final int TOKEN_STRING       = 7;
+  private static final int TOKEN_INT          = 8;
+  private static final int TOKEN_FLOAT        = 9;
+  private static final int TOKEN_DOUBLE       = 10;
+  private static final int TOKEN_TRUE         = 11;
+  private static final int TOKEN_FALSE        = 12;
+  private static final int TOKEN_NULL         = 13;
+  private static final int TOKEN_BIG_INTEGER  = 14;
+  private static final int TOKEN_BIG_DECIMAL  = 15;
+
+  private BinaryTokenFormat() {
+    // hide the public constructor for utility classes
+  }
+
+  /**
+   * write all tokens of the given parser
+   *
+   * @param parser
+   *          the parser (e.g. of a TokenBuffer or a JSON string)
+   * @param os
+   *          the stream to write to
+   * @throws IOException
+   *           if the parser contains an unsupported token
+   */
+  static void write(JsonParser parser, ByteArrayOutputStream os) throws IOException {
+    Map<String, Integer> names = new HashMap<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      switch (token) {
+        case START_OBJECT:
+          os.write(TOKEN_START_OBJECT);
+          break;
+
+        case END_OBJECT:
+          os.write(TOKEN_END_OBJECT);
+          break;
+
+        case START_ARRAY:
+          os.write(TOKEN_START_ARRAY);
+          break;
+
+        case END_ARRAY:
+          os.write(TOKEN_END_ARRAY);
+          break;
+
+        case FIELD_NAME:
+          String name = parser.getCurrentName();
+          Integer index = names.get(name);
+          if (index == null) {
+            names.put(name, names.size());
+            os.write(TOKEN_NAME);
+            writeString(os, name);
+          }
+          else {
+            os.write(TOKEN_NAME_REF);
+            writeVarint(os, index);
+          }
+          break;
+
+        case VALUE_STRING:
+          os.write(TOKEN_STRING);
+          writeString(os, parser.getText());
+          break;
+
+        case VALUE_NUMBER_INT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+            os.write(TOKEN_BIG_INTEGER);
+            writeString(os, parser.getBigIntegerValue().toString());
+          }
+          else {
+            os.write(TOKEN_INT);
+            long value = parser.getLongValue();
+            writeVarint(os, (value << 1) ^ (value >> 63));
+          }
+          break;
+
+        case VALUE_NUMBER_FLOAT:
+          if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+            os.write(TOKEN_BIG_DECIMAL);
+            writeString(os, parser.getDecimalValue().toString());
+          }
+          else if (parser.getNumberType() == JsonParser.NumberType.FLOAT) {
+            os.write(TOKEN_FLOAT);
+            writeFixed(os, Float.floatToIntBits(parser.getFloatValue()), 4);
+          }
+          else {
+            os.write(TOKEN_DOUBLE);
+            writeFixed(os, Double.doubleToLongBits(parser.getDoubleValue()), 8);
+          }
+          break;
+
+        case VALUE_TRUE:
+          os.write(TOKEN_TRUE);
+          break;
+
+        case VALUE_FALSE:
+          os.write(TOKEN_FALSE);
+          break;
+
+        case VALUE_NULL:
+          os.write(TOKEN_NULL);
+          break;
+
+        default:
+          throw new IOException("unsupported token " + token);
+      }
+    }
+  }
+
+  /**
+   * read the tokens from the given bytes and pass them to the generator
+   *
+   * @param bytes
+   *          the encoded tokens
+   * @param offset
+   *          the offset of the first token
+   * @param generator
+   *          the generator (e.g. a TokenBuffer or a JSON generator)
+   * @throws IOException
+   *           if the data is corrupt
+   */
+  static void read(byte[] bytes, int offset, JsonGenerator generator) throws IOException {
+    Reader reader = new Reader(bytes, offset);
+    List<String> names = new ArrayList<>();
+    int depth = 0;
+    while (reader.position < bytes.length) {
+      int type = bytes[reader.position++];
+      switch (type) {
+        case TOKEN_START_OBJECT:
+          generator.writeStartObject();
+          depth++;
+          break;
+
+        case TOKEN_END_OBJECT:
+          generator.writeEndObject();
+          depth--;
+          break;
+
+        case TOKEN_START_ARRAY:
+          generator.writeStartArray();
+          depth++;
+          break;
+
+        case TOKEN_END_ARRAY:
+          generator.writeEndArray();
+          depth--;
+          break;
+
+        case TOKEN_NAME:
+          String name = reader.readString();
+          names.add(name);
+          generator.writeFieldName(name);
+          break;
+
+        case TOKEN_NAME_REF:
+          long index = reader.readVarint();
+          if (index < 0 || index >= names.size()) {
+            throw new IOException("invalid field name reference " + index);
+          }
+          generator.writeFieldName(names.get((int) index));
+          break;
+
+        case TOKEN_STRING:
+          generator.writeString(reader.readString());
+          break;
+
+        case TOKEN_INT:
+          long zigzag = reader.readVarint();
+          long value = (zigzag >>> 1) ^ -(zigzag & 1);
+          // like a JSON parser: ints if the value fits
+          if (value == (int) value) {
+            generator.writeNumber((int) value);
+          }
+          else {
+            generator.writeNumber(value);
+          }
+          break;
+
+        case TOKEN_FLOAT:
+          generator.writeNumber(Float.intBitsToFloat((int) reader.readFixed(4)));
+          break;
+
+        case TOKEN_DOUBLE:
+          generator.writeNumber(Double.longBitsToDouble(reader.readFixed(8)));
+          break;
+
+        case TOKEN_TRUE:
+          generator.writeBoolean(true);
+          break;
+
+        case TOKEN_FALSE:
+          generator.writeBoolean(false);
+          break;
+
+        case TOKEN_NULL:
+          generator.writeNull();
+          break;
+
+        case TOKEN_BIG_INTEGER:
+          generator.writeNumber(new BigInteger(reader.readString()));
+          break;
+
+        case TOKEN_BIG_DECIMAL:
+          generator.writeNumber(new BigDecimal(reader.readString()));
+          break;
+
+        default:
+          throw new IOException("invalid token type " + type + " at " + (reader.position - 1));
+      }
+    }
+    if (depth != 0) {
+      throw new IOException("unexpected end of data");
+    }
+    generator.flush();
+  }
+
+  private static void writeString(ByteArrayOutputStream os, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(os, bytes.length);
+    os.write(bytes, 0, bytes.length);
+  }
+
+  private static void writeVarint(ByteArrayOutputStream os, long value) {
+    while ((value & ~0x7fL) != 0) {
+      os.write((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    os.write((int) value);
+  }
+
+  private static void writeFixed(ByteArrayOutputStream os, long value, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      os.write((int) (value >>> (i * 8)));
+    }
+  }
+
+  /**
+   * the read position in the encoded tokens
+   */
+  private static class Reader {
+    private final byte[] bytes;
+    private int          position;
+
+    Reader(byte[] bytes, int position) {
+      this.bytes = bytes;
+      this.position = position;
+    }
+
+    long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        checkAvailable(1);
+        int b = bytes[position++];
+        value |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("invalid varint at " + position);
+    }
+
+    long readFixed(int length) throws IOException {
+      checkAvailable(length);
+      long value = 0;
+      for (int i = 0; i < length; i++) {
+        value = (value << 8) | (bytes[position++] & 0xff);
+      }
+      return value;
+    }
+
+    String readString() throws IOException {
+      long length = readVarint();
+      if (length < 0 || length > bytes.length - position) {
+        throw new IOException("invalid string length " + length + " at " + position);
+      }
+      String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+      position += (int) length;
+      return value;
+    }
+
+    private void checkAvailable(int length) throws IOException {
+      if (position + length > bytes.length) {
+        throw new IOException("unexpected end of data at " + position);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.h2.mvstore.MVMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.entities.MediaEntity;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * The class DatabaseLoader. Used to decode all entities of a MVStore map at startup on all available cores.<br>
+ * The key range is split into chunks which are decoded in a fork/join pool; the results are merged in key order, so the outcome is the same as
+ * with a sequential load. Corrupt entries are dropped from the map afterwards.
+ *
+ * @author Manuel Laggner
+ */
+public class DatabaseLoader<T extends MediaEntity> {
+  private static final Logger       LOGGER    = LoggerFactory.getLogger(DatabaseLoader.class);
+  private static final int          MIN_CHUNK = 64;
+
+  private final MVMap<UUID, Object> map;
+  private final ObjectReader        reader;
+  private final String              entityName;
+  private final List<UUID>          corruptEntries;
+
+  /**
+   * create a new loader for the given map
+   *
+   * @param map
+   *          the map to load all values from
+   * @param reader
+   *          the Jackson reader for the entity type (readers are immutable and thus shared by all worker threads)
+   * @param entityName
+   *          the entity name for logging
+   */
+  public DatabaseLoader(MVMap<UUID, Object> map, ObjectReader reader, String entityName) {
+    this.map = map;
+    this.reader = reader;
+    this.entityName = entityName;
+    this.corruptEntries = new ArrayList<>();
+  }
+
+  /**
+   * decode all entities of the map
+   *
+   * @return a list of all successfully decoded entities (in key order)
+   */
+  public List<T> load() {
+    long start = System.currentTimeMillis();
+    List<UUID> keys = new ArrayList<>(map.keyList());
+    long keysLoaded = System.currentTimeMillis();
+
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    int chunkSize = Math.max(MIN_CHUNK, keys.size() / (parallelism * 4) + 1);
+
+    List<T> entities;
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      entities = pool.invoke(new DecodeTask(keys, 0, keys.size(), chunkSize));
+    }
+    finally {
+      pool.shutdown();
+    }
+    long decoded = System.currentTimeMillis();
+
+    // drop corrupt entries (on the calling thread)
+    for (UUID uuid : corruptEntries) {
+      LOGGER.info("dropping corrupt " + entityName);
+      map.remove(uuid);
+    }
+
+    LOGGER.info("decoded " + entities.size() + " " + entityName + "s with " + parallelism + " threads - keys: " + (keysLoaded - start)
+        + "ms, decoding: " + (decoded - keysLoaded) + "ms");
+    return entities;
+  }
+
+  private synchronized void addCorruptEntry(UUID uuid) {
+    corruptEntries.add(uuid);
+  }
+
+  /**
+   * decode a range of keys; splits the range until it is small enough
+   */
+  private class DecodeTask extends RecursiveTask<List<T>> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<UUID>  keys;
+    private final int         from;
+    private final int         to;
+    private final int         chunkSize;
+
+    DecodeTask(List<UUID> keys, int from, int to, int chunkSize) {
+      this.keys = keys;
+      this.from = from;
+      this.to = to;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected List<T> compute() {
+      if (to - from > chunkSize) {
+        int middle = (from + to) >>> 1;
+        DecodeTask left = new DecodeTask(keys, from, middle, chunkSize);
+        DecodeTask right = new DecodeTask(keys, middle, to, chunkSize);
+        left.fork();
+        List<T> result = right.compute();
+        List<T> merged = left.join();
+        merged.addAll(result);
+        return merged;
+      }
+
+      List<T> result = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) {
+        UUID uuid = keys.get(i);
+        try {
+          Object value = map.get(uuid);
+          T entity = DatabaseValueCodec.decode(reader, value);
+          entity.setDbId(uuid);
+          // remember the stored state for the dirty tracking
+          entity.setPersisted(entity.getModificationStamp(), DatabaseValueCodec.hash(value));
+          result.add(entity);
+        }
+        catch (Exception e) {
+          LOGGER.warn("problem decoding " + entityName + " json string: " + e.getMessage());
+          addCorruptEntry(uuid);
+        }
+      }
+      return result;
+    }
+  }
+}
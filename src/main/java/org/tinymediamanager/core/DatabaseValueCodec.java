@@ -0,0 +1,333 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * The enum DatabaseValueCodec. Used to encode/decode our entities into the values of the MVStore maps.<br>
+ * <br>
+ * JSON stores every entity as JSON string (the legacy format) inside a deflate compressed store.<br>
+ * UTF8_JSON stores every entity as a byte array: a 4 byte header (magic, format version, payload type) followed by the same JSON, encoded
+ * as UTF-8 - only the String/char conversions on every read/write are saved and the (much cheaper) LZF page compression of the MVStore is
+ * used.<br>
+ * BINARY stores every entity as a byte array with the same header followed by the binary encoded tokens of the entity (see
+ * {@link BinaryTokenFormat}): field names are only written once per entity and numbers are not written as text.<br>
+ * <br>
+ * Decoding is always done by inspecting the stored value, so all formats can be read regardless of the chosen codec
+ *
+ * @author Manuel Laggner
+ */
+public enum DatabaseValueCodec {
+  JSON {
+    @Override
+    public Object encode(ObjectWriter writer, Object entity) throws IOException {
+      return writer.writeValueAsString(entity);
+    }
+
+    @Override
+    public boolean isNativeFormat(Object value) {
+      return value instanceof String;
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value instanceof byte[]) {
+        return toJson((byte[]) value);
+      }
+      return value;
+    }
+
+    @Override
+    public MVStore.Builder configureCompression(MVStore.Builder builder) {
+      return builder.compressHigh();
+    }
+  },
+  UTF8_JSON {
+    @Override
+    public Object encode(ObjectWriter writer, Object entity) throws IOException {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+      os.write(HEADER_JSON);
+      writer.writeValue(os, entity);
+      return os.toByteArray();
+    }
+
+    @Override
+    public boolean isNativeFormat(Object value) {
+      return hasPayload(value, PAYLOAD_JSON);
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value instanceof String || hasPayload(value, PAYLOAD_BINARY)) {
+        String json = value instanceof String ? (String) value : toJson((byte[]) value);
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = Arrays.copyOf(HEADER_JSON, HEADER_LENGTH + payload.length);
+        System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+        return bytes;
+      }
+      return value;
+    }
+
+    @Override
+    public MVStore.Builder configureCompression(MVStore.Builder builder) {
+      return builder.compress();
+    }
+  },
+  BINARY {
+    @Override
+    public Object encode(ObjectWriter writer, Object entity) throws IOException {
+      TokenBuffer buffer = new TokenBuffer((ObjectCodec) null, false);
+      writer.writeValue(buffer, entity);
+      return toBinary(buffer.asParser());
+    }
+
+    @Override
+    public boolean isNativeFormat(Object value) {
+      return hasPayload(value, PAYLOAD_BINARY);
+    }
+
+    @Override
+    public Object convert(Object value) throws IOException {
+      if (value instanceof String) {
+        return toBinary(JSON_FACTORY.createParser((String) value));
+      }
+      if (hasPayload(value, PAYLOAD_JSON)) {
+        byte[] bytes = (byte[]) value;
+        return toBinary(JSON_FACTORY.createParser(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+      }
+      return value;
+    }
+
+    @Override
+    public MVStore.Builder configureCompression(MVStore.Builder builder) {
+      return builder.compress();
+    }
+  };
+
+  private static final Logger      LOGGER         = LoggerFactory.getLogger(DatabaseValueCodec.class);
+
+  // header: magic "TM", format version, payload type
+  private static final byte        FORMAT_VERSION = 1;
+  private static final byte        PAYLOAD_JSON   = 1;
+  private static final byte        PAYLOAD_BINARY = 2;
+  private static final byte[]      HEADER_JSON    = new byte[] { 'T', 'M', FORMAT_VERSION, PAYLOAD_JSON };
+  private static final byte[]      HEADER_BINARY  = new byte[] { 'T', 'M', FORMAT_VERSION, PAYLOAD_BINARY };
+  private static final int         HEADER_LENGTH  = HEADER_JSON.length;
+
+  private static final JsonFactory JSON_FACTORY   = new JsonFactory();
+
+  private static final long        FNV_OFFSET     = 0xcbf29ce484222325L;
+  private static final long        FNV_PRIME      = 0x100000001b3L;
+
+  /**
+   * encode the given entity into the value to be stored in the MVMap
+   *
+   * @param writer
+   *          the Jackson writer for the entity type
+   * @param entity
+   *          the entity to encode
+   * @return the value to store
+   * @throws IOException
+   *           any exception occurred while encoding
+   */
+  public abstract Object encode(ObjectWriter writer, Object entity) throws IOException;
+
+  /**
+   * check whether the stored value is already in the format of this codec
+   *
+   * @param value
+   *          the stored value
+   * @return true if no migration is needed
+   */
+  public abstract boolean isNativeFormat(Object value);
+
+  /**
+   * convert a stored value (of any known format) into the format of this codec without parsing the payload
+   *
+   * @param value
+   *          the stored value
+   * @return the converted value
+   * @throws IOException
+   *           if the value is in an unknown format
+   */
+  public abstract Object convert(Object value) throws IOException;
+
+  /**
+   * set the page compression which fits this codec best
+   *
+   * @param builder
+   *          the MVStore builder
+   * @return the builder
+   */
+  public abstract MVStore.Builder configureCompression(MVStore.Builder builder);
+
+  /**
+   * decode a stored value (no matter which codec has written it)
+   *
+   * @param reader
+   *          the Jackson reader for the entity type
+   * @param value
+   *          the stored value
+   * @return the decoded entity
+   * @throws IOException
+   *           any exception occurred while decoding
+   */
+  public static <T> T decode(ObjectReader reader, Object value) throws IOException {
+    if (value instanceof String) {
+      return reader.readValue((String) value);
+    }
+    if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      if (getPayloadType(bytes) == PAYLOAD_BINARY) {
+        TokenBuffer buffer = new TokenBuffer((ObjectCodec) null, false);
+        BinaryTokenFormat.read(bytes, HEADER_LENGTH, buffer);
+        return reader.readValue(buffer.asParser());
+      }
+      return reader.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+    }
+    throw new IOException("unknown database value: " + (value == null ? "null" : value.getClass().getName()));
+  }
+
+  /**
+   * compare two stored values
+   *
+   * @param newValue
+   *          the new value
+   * @param oldValue
+   *          the old value
+   * @return true if both values are equal
+   */
+  public static boolean isEqual(Object newValue, Object oldValue) {
+    return Objects.deepEquals(newValue, oldValue);
+  }
+
+  /**
+   * calculate a 64 bit content hash (FNV-1a) of a stored value; used to detect unchanged entities without reading the old value back
+   *
+   * @param value
+   *          the stored value
+   * @return the hash of the value
+   */
+  public static long hash(Object value) {
+    long hash = FNV_OFFSET;
+    if (value instanceof byte[]) {
+      for (byte b : (byte[]) value) {
+        hash ^= b & 0xff;
+        hash *= FNV_PRIME;
+      }
+    }
+    else if (value instanceof String) {
+      String string = (String) value;
+      for (int i = 0; i < string.length(); i++) {
+        hash ^= string.charAt(i);
+        hash *= FNV_PRIME;
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * migrate all values of the given map in place into the format of this codec
+   *
+   * @param map
+   *          the map to migrate
+   * @return the amount of migrated values
+   */
+  public int migrate(MVMap<UUID, Object> map) {
+    int count = 0;
+    for (UUID uuid : new ArrayList<>(map.keyList())) {
+      Object value = map.get(uuid);
+      if (value == null || isNativeFormat(value)) {
+        continue;
+      }
+      try {
+        map.put(uuid, convert(value));
+        count++;
+      }
+      catch (Exception e) {
+        // leave it - the loader will drop it as corrupt
+        LOGGER.warn("could not migrate value of " + uuid + ": " + e.getMessage());
+      }
+    }
+    if (count > 0) {
+      LOGGER.info("migrated " + count + " values of map '" + map.getName() + "' to " + name());
+    }
+    return count;
+  }
+
+  private static byte[] toBinary(JsonParser parser) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(2048);
+    os.write(HEADER_BINARY);
+    try {
+      BinaryTokenFormat.write(parser, os);
+    }
+    finally {
+      parser.close();
+    }
+    return os.toByteArray();
+  }
+
+  private static String toJson(byte[] bytes) throws IOException {
+    if (getPayloadType(bytes) == PAYLOAD_JSON) {
+      return new String(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, StandardCharsets.UTF_8);
+    }
+    StringWriter json = new StringWriter(bytes.length * 2);
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+      BinaryTokenFormat.read(bytes, HEADER_LENGTH, generator);
+    }
+    return json.toString();
+  }
+
+  private static boolean hasPayload(Object value, byte payloadType) {
+    try {
+      return value instanceof byte[] && getPayloadType((byte[]) value) == payloadType;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static byte getPayloadType(byte[] bytes) throws IOException {
+    if (bytes.length < HEADER_LENGTH || bytes[0] != HEADER_JSON[0] || bytes[1] != HEADER_JSON[1]) {
+      throw new IOException("invalid database value header");
+    }
+    if (bytes[2] != FORMAT_VERSION || (bytes[3] != PAYLOAD_JSON && bytes[3] != PAYLOAD_BINARY)) {
+      throw new IOException("unsupported database value format " + bytes[2] + "/" + bytes[3]);
+    }
+    return bytes[3];
+  }
+}
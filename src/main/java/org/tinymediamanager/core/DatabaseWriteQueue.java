@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class DatabaseWriteQueue. A write-behind queue for the MVStore databases.<br>
+ * Write operations are queued per entity (database id); repeated operations for the same entity within the write delay are coalesced, so
+ * only the latest one is executed. All pending operations are executed in one batch on a background thread followed by a single commit.<br>
+ * Failed operations are queued again (unless a newer operation for the entity is pending) and given up after {@link #MAX_RETRIES} tries.
+ * The operations serialize the entity on the writer thread; an entity which is modified meanwhile should be reported with a
+ * {@link ConcurrentModificationException} - the operation is queued again like a failed one.<br>
+ * A write delay of 0 executes all operations synchronously (the legacy behavior).
+ *
+ * @author Manuel Laggner
+ */
+public class DatabaseWriteQueue {
+  private static final Logger                     LOGGER           = LoggerFactory.getLogger(DatabaseWriteQueue.class);
+  private static final int                        MAX_RETRIES      = 3;
+  private static final int                        SHUTDOWN_TIMEOUT = 10;
+
+  private final String                            name;
+  private final MVStore                           mvStore;
+  private final int                               writeDelay;
+  private final Map<UUID, IDatabaseWriteOperation> pending          = new LinkedHashMap<>();
+  private final Map<UUID, Integer>                failures         = new HashMap<>();
+  private final Object                            flushLock        = new Object();
+  private final ScheduledThreadPoolExecutor       executor;
+  private final Runnable                          flushTask;
+
+  private boolean                                 scheduled        = false;
+  private boolean                                 shutdown         = false;
+  private long                                    requested        = 0;
+  private long                                    executed         = 0;
+
+  /**
+   * a single write operation (persist or remove) for one entity
+   */
+  public interface IDatabaseWriteOperation {
+    void execute() throws Exception;
+  }
+
+  /**
+   * create a new write queue for the given store
+   *
+   * @param name
+   *          the name of the database (for logging and the thread name)
+   * @param mvStore
+   *          the store to commit after each batch
+   * @param writeDelay
+   *          the time in ms to collect write operations before they are executed; 0 for synchronous writes
+   */
+  public DatabaseWriteQueue(final String name, MVStore mvStore, int writeDelay) {
+    this.name = name;
+    this.mvStore = mvStore;
+    this.writeDelay = writeDelay;
+
+    if (writeDelay > 0) {
+      executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "db-writer-" + name);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      // a scheduled flush is done by shutdown() itself
+      executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    else {
+      executor = null;
+    }
+
+    flushTask = new Runnable() {
+      @Override
+      public void run() {
+        flush();
+      }
+    };
+  }
+
+  /**
+   * queue a write operation for the entity with the given id. A pending operation for the same entity is replaced
+   *
+   * @param dbId
+   *          the database id of the entity
+   * @param operation
+   *          the write operation
+   */
+  public void enqueue(UUID dbId, IDatabaseWriteOperation operation) {
+    synchronized (pending) {
+      requested++;
+      if (executor != null && !shutdown) {
+        // re-insert to keep the order of the last modification
+        pending.remove(dbId);
+        pending.put(dbId, operation);
+        failures.remove(dbId);
+        schedule();
+        return;
+      }
+    }
+
+    // synchronous mode
+    synchronized (flushLock) {
+      if (!execute(dbId, operation)) {
+        LOGGER.error(name + ": gave up writing entity " + dbId + " - it will be written with its next change");
+      }
+    }
+  }
+
+  private void schedule() {
+    if (!scheduled && !shutdown) {
+      scheduled = true;
+      executor.schedule(flushTask, writeDelay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * queue a failed operation again; newer operations for the same entity win
+   */
+  private void retry(UUID dbId, IDatabaseWriteOperation operation) {
+    synchronized (pending) {
+      if (pending.containsKey(dbId)) {
+        return;
+      }
+      Integer count = failures.get(dbId);
+      count = count == null ? 1 : count + 1;
+      if (count > MAX_RETRIES) {
+        failures.remove(dbId);
+        LOGGER.error(name + ": gave up writing entity " + dbId + " - it will be written with its next change");
+        return;
+      }
+      failures.put(dbId, count);
+      pending.put(dbId, operation);
+      if (executor != null) {
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * execute all pending write operations now and commit the store
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      Map<UUID, IDatabaseWriteOperation> batch;
+      long coalesced;
+      synchronized (pending) {
+        scheduled = false;
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = new LinkedHashMap<>(pending);
+        pending.clear();
+        executed += batch.size();
+        coalesced = requested - executed;
+      }
+
+      long start = System.currentTimeMillis();
+      int failed = 0;
+      for (Entry<UUID, IDatabaseWriteOperation> entry : batch.entrySet()) {
+        if (!execute(entry.getKey(), entry.getValue())) {
+          failed++;
+          retry(entry.getKey(), entry.getValue());
+        }
+        else {
+          synchronized (pending) {
+            failures.remove(entry.getKey());
+          }
+        }
+      }
+      if (!mvStore.isClosed()) {
+        mvStore.commit();
+      }
+      if (failed > 0) {
+        LOGGER.warn(name + ": " + failed + " writes failed and have been queued again");
+      }
+
+      LOGGER.debug(name + ": wrote " + batch.size() + " entities in " + (System.currentTimeMillis() - start) + "ms (" + coalesced
+          + " writes coalesced so far)");
+    }
+  }
+
+  /**
+   * flush all pending write operations and stop the background thread; all further operations are executed synchronously.<br>
+   * The background thread is never interrupted: an interrupted write would close the channel of the store.
+   */
+  public void shutdown() {
+    synchronized (pending) {
+      shutdown = true;
+    }
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        // let a running batch finish
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+          LOGGER.warn(name + ": background writer did not finish within " + SHUTDOWN_TIMEOUT + "s");
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // the final flush (waits for a still running batch); failed writes get their retries here
+    for (int i = 0; i <= MAX_RETRIES; i++) {
+      flush();
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          break;
+        }
+      }
+    }
+  }
+
+  private boolean execute(UUID dbId, IDatabaseWriteOperation operation) {
+    try {
+      operation.execute();
+      return true;
+    }
+    catch (ConcurrentModificationException e) {
+      LOGGER.debug(name + ": entity " + dbId + " has been modified while writing - queued again");
+      return false;
+    }
+    catch (Exception e) {
+      LOGGER.error(name + ": failed to write entity " + dbId + " - " + e.getMessage());
+      return false;
+    }
+  }
+}
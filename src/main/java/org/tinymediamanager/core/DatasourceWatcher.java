@@ -0,0 +1,414 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.threading.TmmIoLane;
+
+/**
+ * The class DatasourceWatcher. Watches the data sources of a module for changes and reports the changed folders (the folders in the root of
+ * the data source) to a listener.<br>
+ * Local data sources are watched with a {@link WatchService}; network shares (which do not deliver change events reliably) and data sources
+ * which cannot be registered are polled with the help of the {@link DirectoryStateIndex} of the module.<br>
+ * Events are debounced per folder: a folder is reported after no further change has been seen for the configured delay.
+ *
+ * @author Manuel Laggner
+ */
+public class DatasourceWatcher {
+  private static final Logger             LOGGER            = LoggerFactory.getLogger(DatasourceWatcher.class);
+
+  private final String                    name;
+  private final DirectoryStateIndex       directoryStateIndex;
+  private final IDatasourceChangeListener listener;
+  private final int                       delay;
+  private final int                       pollInterval;
+
+  private final Map<Path, String>         datasources       = new ConcurrentHashMap<>();
+  private final Map<WatchKey, Path>       watchKeys         = new ConcurrentHashMap<>();
+  private final Map<Path, Set<Path>>      polledDatasources = new ConcurrentHashMap<>();
+  private final Map<Path, Long>           pendingFolders    = new HashMap<>();
+
+  private WatchService                    watchService;
+  private Thread                          watchThread;
+  private ScheduledExecutorService        executor;
+
+  /**
+   * the listener for changed folders
+   */
+  public interface IDatasourceChangeListener {
+    /**
+     * the given folders of the data source have been changed
+     *
+     * @param datasource
+     *          the data source
+     * @param folders
+     *          the changed folders in the root of the data source; contains the data source itself if something in the root has been changed
+     */
+    void foldersChanged(String datasource, Set<Path> folders);
+  }
+
+  /**
+   * create a new watcher
+   *
+   * @param name
+   *          the name of the module (for logging and the thread names)
+   * @param directoryStateIndex
+   *          the directory states of the module (for polling)
+   * @param listener
+   *          the listener to report the changed folders to
+   * @param delay
+   *          the time in ms without further changes before a folder is reported
+   * @param pollInterval
+   *          the interval in s to poll data sources which cannot be watched
+   */
+  public DatasourceWatcher(String name, DirectoryStateIndex directoryStateIndex, IDatasourceChangeListener listener, int delay,
+      int pollInterval) {
+    this.name = name;
+    this.directoryStateIndex = directoryStateIndex;
+    this.listener = listener;
+    this.delay = Math.max(delay, 1000);
+    this.pollInterval = Math.max(pollInterval, 10);
+  }
+
+  /**
+   * start watching the given data sources; a running watcher is restarted
+   *
+   * @param dataSources
+   *          the data sources to watch
+   */
+  public synchronized void start(Collection<String> dataSources) {
+    stop();
+
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "watcher-" + name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    try {
+      watchService = Paths.get("").getFileSystem().newWatchService();
+    }
+    catch (Exception e) {
+      LOGGER.warn("could not create watch service - polling all data sources: " + e.getMessage());
+      watchService = null;
+    }
+
+    for (String ds : dataSources) {
+      if (StringUtils.isBlank(ds)) {
+        continue;
+      }
+      Path root = Paths.get(ds).toAbsolutePath();
+      if (!Files.isDirectory(root)) {
+        LOGGER.warn("data source not available - not watching " + ds);
+        continue;
+      }
+      datasources.put(root, ds);
+
+      if (watchService != null && !isNetworkShare(root) && registerTree(root, root)) {
+        LOGGER.info(name + ": watching " + ds);
+      }
+      else {
+        LOGGER.info(name + ": polling " + ds + " every " + pollInterval + "s");
+        polledDatasources.put(root, listFolders(root));
+      }
+    }
+
+    if (watchService != null && !watchKeys.isEmpty()) {
+      watchThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          processEvents();
+        }
+      }, "watcher-" + name + "-events");
+      watchThread.setDaemon(true);
+      watchThread.start();
+    }
+
+    // also needed for watched data sources which fall back to polling later (out of watches)
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        poll();
+      }
+    }, pollInterval, pollInterval, TimeUnit.SECONDS);
+
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        reportFolders();
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * stop watching all data sources; pending changes are dropped
+   */
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    if (watchService != null) {
+      try {
+        watchService.close();
+      }
+      catch (IOException ignored) {
+      }
+      watchService = null;
+    }
+    if (watchThread != null) {
+      watchThread.interrupt();
+      watchThread = null;
+    }
+    datasources.clear();
+    watchKeys.clear();
+    polledDatasources.clear();
+    synchronized (pendingFolders) {
+      pendingFolders.clear();
+    }
+  }
+
+  private boolean isNetworkShare(Path root) {
+    try {
+      return TmmIoLane.isNetworkFileStore(Files.getFileStore(root));
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+
+  /**
+   * register the folder and all its sub folders
+   *
+   * @return false if the folder could not be registered (e.g. out of watches)
+   */
+  private boolean registerTree(final Path root, Path folder) {
+    try {
+      Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+          watchKeys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      return true;
+    }
+    catch (Exception e) {
+      LOGGER.warn(name + ": could not watch " + folder + " - " + e.getMessage());
+      // drop all watches of this data source
+      Iterator<Entry<WatchKey, Path>> it = watchKeys.entrySet().iterator();
+      while (it.hasNext()) {
+        Entry<WatchKey, Path> entry = it.next();
+        if (entry.getValue().startsWith(root)) {
+          entry.getKey().cancel();
+          it.remove();
+        }
+      }
+      return false;
+    }
+  }
+
+  private void processEvents() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+      }
+      catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+
+      Path dir = watchKeys.get(key);
+      if (dir != null) {
+        Path root = getDatasourceRoot(dir);
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (root == null) {
+            break;
+          }
+          if (event.kind() == OVERFLOW) {
+            // lost events - update the whole data source
+            addPendingFolder(root);
+            continue;
+          }
+
+          Path child = dir.resolve((Path) event.context());
+          if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+            if (!registerTree(root, child)) {
+              // fall back to polling for this data source
+              polledDatasources.put(root, listFolders(root));
+            }
+          }
+          addPendingFolder(getAffectedFolder(root, child));
+        }
+      }
+
+      if (!key.reset()) {
+        watchKeys.remove(key);
+      }
+    }
+  }
+
+  private void poll() {
+    for (Entry<Path, Set<Path>> entry : polledDatasources.entrySet()) {
+      Path root = entry.getKey();
+      Set<Path> folders = listFolders(root);
+      if (folders.isEmpty() && !entry.getValue().isEmpty()) {
+        // the share may be offline
+        continue;
+      }
+
+      // removed folders
+      if (!folders.containsAll(entry.getValue())) {
+        addPendingFolder(root);
+      }
+
+      // new and changed folders
+      for (Path folder : folders) {
+        if (!directoryStateIndex.isUnchanged(folder)) {
+          addPendingFolder(folder);
+        }
+      }
+      entry.setValue(folders);
+    }
+  }
+
+  /**
+   * report all folders which have not been changed within the delay
+   */
+  private void reportFolders() {
+    Map<String, Set<Path>> changed = new HashMap<>();
+    long now = System.currentTimeMillis();
+
+    synchronized (pendingFolders) {
+      Iterator<Entry<Path, Long>> it = pendingFolders.entrySet().iterator();
+      while (it.hasNext()) {
+        Entry<Path, Long> entry = it.next();
+        if (now - entry.getValue() < delay) {
+          continue;
+        }
+        it.remove();
+
+        Path root = getDatasourceRoot(entry.getKey());
+        if (root == null) {
+          continue;
+        }
+        String ds = datasources.get(root);
+        Set<Path> folders = changed.get(ds);
+        if (folders == null) {
+          folders = new HashSet<>();
+          changed.put(ds, folders);
+        }
+        folders.add(entry.getKey());
+      }
+    }
+
+    for (Entry<String, Set<Path>> entry : changed.entrySet()) {
+      LOGGER.info(name + ": " + entry.getValue().size() + " changed folder(s) in " + entry.getKey());
+      try {
+        listener.foldersChanged(entry.getKey(), entry.getValue());
+      }
+      catch (Exception e) {
+        LOGGER.error(name + ": could not process changed folders - " + e.getMessage());
+      }
+    }
+  }
+
+  private void addPendingFolder(Path folder) {
+    synchronized (pendingFolders) {
+      // re-insert to restart the delay
+      pendingFolders.put(folder, System.currentTimeMillis());
+    }
+  }
+
+  private Path getDatasourceRoot(Path path) {
+    for (Path root : datasources.keySet()) {
+      if (path.startsWith(root)) {
+        return root;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * get the folder in the root of the data source which contains the changed path; changed files in the root itself affect the whole data
+   * source
+   */
+  private Path getAffectedFolder(Path root, Path changed) {
+    Path relative = root.relativize(changed);
+    if (relative.getNameCount() == 0 || StringUtils.isBlank(relative.toString())) {
+      return root;
+    }
+    if (relative.getNameCount() == 1 && !Files.isDirectory(changed)) {
+      return root;
+    }
+    return root.resolve(relative.getName(0));
+  }
+
+  private Set<Path> listFolders(Path root) {
+    Set<Path> folders = new HashSet<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+      for (Path path : stream) {
+        if (Files.isDirectory(path)) {
+          folders.add(path.toAbsolutePath());
+        }
+      }
+    }
+    catch (IOException e) {
+      LOGGER.debug(name + ": could not list " + root + " - " + e.getMessage());
+    }
+    return folders;
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.h2.mvstore.MVMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class DirectoryStateIndex. A persistent index of directory fingerprints (last modified, entry count and a hash of all entry names) which
+ * is used by the update data source tasks to skip unchanged sub trees.<br>
+ * Every entry also stores the names of the sub directories found in the last run; so an unchanged directory can be checked without listing
+ * the attributes of all its entries.<br>
+ * Fingerprints are collected while walking the file tree and written to the database with {@link #commit()} after the folders have been
+ * parsed successfully.
+ *
+ * @author Manuel Laggner
+ */
+public class DirectoryStateIndex {
+  private static final Logger         LOGGER    = LoggerFactory.getLogger(DirectoryStateIndex.class);
+  // a slash cannot be part of a file name on any platform
+  private static final String         SEPARATOR = "/";
+
+  private final MVMap<String, String> map;
+  private final Map<String, String>   pending   = new ConcurrentHashMap<>();
+
+  public DirectoryStateIndex(MVMap<String, String> map) {
+    this.map = map;
+  }
+
+  /**
+   * check whether the directory and all its sub directories are unchanged since the last successful run
+   *
+   * @param dir
+   *          the directory to check
+   * @return true if nothing has been changed in the whole sub tree
+   */
+  public boolean isUnchanged(Path dir) {
+    String stored = map.get(getKey(dir));
+    if (stored == null) {
+      return false;
+    }
+
+    String[] parts = stored.split(SEPARATOR);
+    if (parts.length < 3) {
+      return false;
+    }
+
+    try {
+      if (!getState(dir).equals(parts[0] + SEPARATOR + parts[1] + SEPARATOR + parts[2])) {
+        return false;
+      }
+    }
+    catch (IOException e) {
+      return false;
+    }
+
+    for (int i = 3; i < parts.length; i++) {
+      if (!isUnchanged(dir.resolve(parts[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * record the current fingerprint of the directory (will be written to the database with the next {@link #commit()})
+   *
+   * @param dir
+   *          the directory
+   * @param subDirs
+   *          the names of all sub directories which have been visited
+   */
+  public void record(Path dir, Collection<String> subDirs) {
+    try {
+      put(dir, getState(dir), subDirs);
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not get the state of " + dir + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * record the fingerprint of the directory from an already available listing (saves listing the directory again)
+   *
+   * @param dir
+   *          the directory
+   * @param lastModified
+   *          the last modified time of the directory (read before the listing)
+   * @param entryNames
+   *          the names of all entries of the directory
+   * @param subDirs
+   *          the names of all sub directories which have been visited
+   */
+  public void record(Path dir, long lastModified, Collection<String> entryNames, Collection<String> subDirs) {
+    put(dir, getState(lastModified, entryNames), subDirs);
+  }
+
+  private void put(Path dir, String state, Collection<String> subDirs) {
+    StringBuilder sb = new StringBuilder(state);
+    for (String subDir : subDirs) {
+      sb.append(SEPARATOR).append(subDir);
+    }
+    pending.put(getKey(dir), sb.toString());
+  }
+
+  /**
+   * remove the fingerprint of the directory, so that it will be parsed again in the next run
+   *
+   * @param dir
+   *          the directory
+   */
+  public void invalidate(Path dir) {
+    if (dir == null) {
+      return;
+    }
+    String key = getKey(dir);
+    pending.remove(key);
+    map.remove(key);
+  }
+
+  /**
+   * write all recorded fingerprints to the database
+   */
+  public void commit() {
+    if (!pending.isEmpty()) {
+      LOGGER.debug("storing " + pending.size() + " directory states");
+      map.putAll(pending);
+      pending.clear();
+    }
+  }
+
+  /**
+   * throw away all recorded fingerprints (e.g. after a cancelled run)
+   */
+  public void discard() {
+    pending.clear();
+  }
+
+  /**
+   * remove all fingerprints; the next run will be a full scan
+   */
+  public void clear() {
+    pending.clear();
+    map.clear();
+  }
+
+  /**
+   * create a recorder for a file tree walk
+   *
+   * @return a new recorder
+   */
+  public Recorder createRecorder() {
+    return new Recorder();
+  }
+
+  private static String getKey(Path dir) {
+    return dir.toAbsolutePath().normalize().toString();
+  }
+
+  private static String getState(Path dir) throws IOException {
+    long lastModified = Files.getLastModifiedTime(dir).toMillis();
+    List<String> entryNames = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        entryNames.add(path.getFileName().toString());
+      }
+    }
+    return getState(lastModified, entryNames);
+  }
+
+  private static String getState(long lastModified, Collection<String> entryNames) {
+    long nameHash = 0;
+    for (String name : entryNames) {
+      // order independent (the listing order may vary)
+      nameHash += mix(name.hashCode());
+    }
+    return lastModified + SEPARATOR + entryNames.size() + SEPARATOR + Long.toHexString(nameHash);
+  }
+
+  private static long mix(long h) {
+    // finalizer of MurmurHash3
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * The class Recorder. Collects the fingerprints of all directories during a file tree walk (one instance per walk).
+   */
+  public class Recorder {
+    private final Deque<List<String>> stack = new ArrayDeque<>();
+
+    private Recorder() {
+    }
+
+    /**
+     * a directory has been entered (preVisitDirectory)
+     *
+     * @param dir
+     *          the directory
+     */
+    public void enterDirectory(Path dir) {
+      addToParent(dir);
+      stack.push(new ArrayList<String>());
+    }
+
+    /**
+     * a directory is skipped (preVisitDirectory with SKIP_SUBTREE); its own state is recorded to notice when it is no longer skipped
+     *
+     * @param dir
+     *          the directory
+     */
+    public void skipDirectory(Path dir) {
+      addToParent(dir);
+      record(dir, Collections.<String> emptyList());
+    }
+
+    /**
+     * a directory has been left (postVisitDirectory)
+     *
+     * @param dir
+     *          the directory
+     */
+    public void leaveDirectory(Path dir) {
+      if (!stack.isEmpty()) {
+        record(dir, stack.pop());
+      }
+    }
+
+    private void addToParent(Path dir) {
+      List<String> parent = stack.peek();
+      if (parent != null && dir.getFileName() != null) {
+        parent.add(dir.getFileName().toString());
+      }
+    }
+  }
+}
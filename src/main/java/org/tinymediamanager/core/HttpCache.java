@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.scraper.http.TmmHttpClient;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The class HttpCache. A persistent, size bounded cache of http responses (in cache/http) on top of the shared http client.<br>
+ * Responses without own caching headers are cached with a TTL depending on their content type; after the TTL the responses are
+ * revalidated with their ETag/Last-Modified headers (304 responses are served from the cache).<br>
+ * In the offline mode (system property <code>tmm.httpcache.offline=true</code> or {@link #setOfflineMode(boolean)}) all requests are
+ * answered from the cache only (e.g. to replay recorded responses in tests); uncached requests fail with a 504.<br>
+ * Only requests made with {@link #getHttpClient()} (artwork downloads and image previews) or a client of {@link #newBuilder()} (Trakt.tv)
+ * are cached; the scraper plugins do their metadata requests with the client of the scraper library and are not covered by this cache.
+ *
+ * @author Manuel Laggner
+ */
+public class HttpCache {
+  private static final Logger     LOGGER        = LoggerFactory.getLogger(HttpCache.class);
+  private static final Path       CACHE_DIR     = Paths.get("cache/http");
+
+  // TTLs of responses without own caching headers
+  static final int                IMAGE_TTL     = 30 * 24 * 60 * 60;
+  static final int                METADATA_TTL  = 24 * 60 * 60;
+  static final int                DEFAULT_TTL   = 60 * 60;
+
+  private static Cache            cache         = null;
+  private static volatile boolean offlineMode   = Boolean.getBoolean("tmm.httpcache.offline");
+
+  private static OkHttpClient     baseClient    = null;
+  private static OkHttpClient     cachingClient = null;
+
+  private HttpCache() {
+    // hide the public constructor for utility classes
+  }
+
+  /**
+   * initialize the cache with the configured size (in cache/http)
+   */
+  public static void init() {
+    init(CACHE_DIR, Globals.settings.getHttpCacheSize() * 1024L * 1024L);
+  }
+
+  /**
+   * initialize the cache in the given folder
+   *
+   * @param cacheDir
+   *          the folder for the cached responses
+   * @param maxSize
+   *          the max size in bytes (0 disables the cache)
+   */
+  public static synchronized void init(Path cacheDir, long maxSize) {
+    shutdown();
+    if (maxSize > 0) {
+      cache = new Cache(cacheDir.toFile(), maxSize);
+    }
+    cachingClient = null;
+  }
+
+  /**
+   * close the cache
+   */
+  public static synchronized void shutdown() {
+    if (cache != null) {
+      LOGGER.debug(getStatistics());
+      try {
+        cache.close();
+      }
+      catch (IOException e) {
+        LOGGER.warn("could not close http cache: " + e.getMessage());
+      }
+      cache = null;
+    }
+    cachingClient = null;
+  }
+
+  /**
+   * remove all cached responses
+   */
+  public static synchronized void clear() {
+    if (cache == null) {
+      return;
+    }
+    try {
+      cache.evictAll();
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not clear http cache: " + e.getMessage());
+    }
+  }
+
+  /**
+   * get the http client which uses the cache (shares connection pool, proxy settings, ... with the {@link TmmHttpClient})
+   *
+   * @return the caching http client or the plain one if the cache is not initialized
+   */
+  public static synchronized OkHttpClient getHttpClient() {
+    OkHttpClient client = TmmHttpClient.getHttpClient();
+    if (cache == null) {
+      return client;
+    }
+
+    // the shared client gets re-created on proxy changes
+    if (cachingClient == null || baseClient != client) {
+      baseClient = client;
+      cachingClient = client.newBuilder().cache(cache).addInterceptor(new OfflineInterceptor())
+          .addNetworkInterceptor(new TtlInterceptor()).build();
+    }
+    return cachingClient;
+  }
+
+  /**
+   * get a builder for an own http client (e.g. with additional interceptors of an api library) which uses the cache
+   *
+   * @return the builder of the {@link TmmHttpClient} with the cache (if initialized)
+   */
+  public static synchronized OkHttpClient.Builder newBuilder() {
+    OkHttpClient.Builder builder = TmmHttpClient.newBuilder();
+    if (cache != null) {
+      builder.cache(cache).addInterceptor(new OfflineInterceptor()).addNetworkInterceptor(new TtlInterceptor());
+    }
+    return builder;
+  }
+
+  public static boolean isOfflineMode() {
+    return offlineMode;
+  }
+
+  /**
+   * answer all requests from the cache only
+   *
+   * @param offlineMode
+   *          true to enable the offline mode
+   */
+  public static void setOfflineMode(boolean offlineMode) {
+    HttpCache.offlineMode = offlineMode;
+  }
+
+  /**
+   * get some statistics of the cache (for logging)
+   *
+   * @return the statistics as string
+   */
+  public static synchronized String getStatistics() {
+    if (cache == null) {
+      return "http cache: disabled";
+    }
+    long size = 0;
+    try {
+      size = cache.size();
+    }
+    catch (IOException e) {
+      // just statistics
+    }
+    return "http cache: " + size / (1024 * 1024) + "/" + cache.maxSize() / (1024 * 1024) + " MB; " + cache.requestCount() + " requests, "
+        + cache.hitCount() + " hits, " + cache.networkCount() + " network";
+  }
+
+  /**
+   * get the TTL for responses of the given content type
+   *
+   * @param contentType
+   *          the content type of the response
+   * @return the TTL in seconds
+   */
+  static int getTtl(String contentType) {
+    if (StringUtils.isBlank(contentType)) {
+      return DEFAULT_TTL;
+    }
+    String type = contentType.toLowerCase(Locale.ROOT);
+    if (type.startsWith("image/")) {
+      return IMAGE_TTL;
+    }
+    if (type.contains("json") || type.contains("xml") || type.startsWith("text/")) {
+      return METADATA_TTL;
+    }
+    return DEFAULT_TTL;
+  }
+
+  /**
+   * adds a max-age (by content type) to cacheable responses without own caching headers
+   */
+  private static class TtlInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Response response = chain.proceed(chain.request());
+      if (!"GET".equals(chain.request().method())) {
+        return response;
+      }
+      if (response.header("Cache-Control") != null || response.header("Expires") != null) {
+        // the server knows better
+        return response;
+      }
+      if (chain.request().header("Authorization") != null) {
+        // user specific responses (e.g. the Trakt.tv collection) are only cached with the headers of the server
+        return response;
+      }
+      return response.newBuilder().removeHeader("Pragma")
+          .header("Cache-Control", "max-age=" + getTtl(response.header("Content-Type"))).build();
+    }
+  }
+
+  /**
+   * answers all requests from the cache in the offline mode
+   */
+  private static class OfflineInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      if (offlineMode) {
+        request = request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build();
+      }
+      return chain.proceed(request);
+    }
+  }
+}
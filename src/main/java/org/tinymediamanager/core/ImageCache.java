@@ -20,6 +20,8 @@ import java.awt.Point;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorConvertOp;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
@@ -31,6 +33,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
@@ -58,14 +64,60 @@ import org.tinymediamanager.thirdparty.ImageLoader;
  * @author Manuel Laggner
  */
 public class ImageCache {
-  private static final Logger LOGGER    = LoggerFactory.getLogger(ImageCache.class);
-  private static final Path   CACHE_DIR = Paths.get("cache/image");
+  private static final Logger                        LOGGER      = LoggerFactory.getLogger(ImageCache.class);
+  private static final Path                          CACHE_DIR   = Paths.get("cache/image");
+
+  // caching images is CPU bound: one image per core (over all callers)
+  private static final Semaphore                     PERMITS     = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors()));
+  // the images being cached right now; other callers for the same image wait for the running one
+  private static final ConcurrentMap<String, Object> IN_PROGRESS = new ConcurrentHashMap<>();
+
+  private static ImageCacheIndex                     index;
 
   public enum CacheType {
     FAST,
     SMOOTH
   }
 
+  /**
+   * the sizes of the scaled copies in the image cache (the longest edge of the copy fits into the size)
+   */
+  public enum CacheSize {
+    SMALL(300), // thumbnails, banners
+    MEDIUM(600), // posters in the details panels
+    BIG(1000), // fanarts in the details panels
+    FULL(1920); // fullscreen
+
+    private final int size;
+
+    CacheSize(int size) {
+      this.size = size;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * get the smallest size which is not smaller than the given dimension
+     * 
+     * @param width
+     *          the width the image is displayed in
+     * @param height
+     *          the height the image is displayed in
+     * @return the cache size
+     */
+    public static CacheSize forSize(int width, int height) {
+      int longestEdge = Math.max(width, height);
+      for (CacheSize cacheSize : values()) {
+        if (cacheSize.size >= longestEdge) {
+          return cacheSize;
+        }
+      }
+      return FULL;
+    }
+  }
+
   /**
    * Gets the cache dir. If it is not on the disk - it will also create it
    * 
@@ -83,6 +135,138 @@ public class ImageCache {
     return CACHE_DIR;
   }
 
+  /**
+   * load the index of the image cache (and migrate the cache to the sharded layout if needed)
+   */
+  public static synchronized void init() {
+    if (index == null) {
+      index = new ImageCacheIndex(CACHE_DIR, Globals.settings.getImageCacheSize() * 1024L * 1024L);
+      index.load();
+      Globals.settings.addPropertyChangeListener("imageCacheSize", new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+          index.setMaxSize(Globals.settings.getImageCacheSize() * 1024L * 1024L);
+        }
+      });
+    }
+  }
+
+  /**
+   * persist the index of the image cache (and log the statistics of the image memory cache)
+   */
+  public static synchronized void shutdown() {
+    if (index != null) {
+      index.save();
+    }
+    LOGGER.debug(ImageMemoryCache.getInstance().toString());
+  }
+
+  /**
+   * use another index (and its cache directory) - for tests
+   *
+   * @param newIndex
+   *          the index to use
+   * @return the index used before
+   */
+  static synchronized ImageCacheIndex setIndex(ImageCacheIndex newIndex) {
+    ImageCacheIndex oldIndex = index;
+    index = newIndex;
+    return oldIndex;
+  }
+
+  private static synchronized ImageCacheIndex getIndex() {
+    if (index == null) {
+      init();
+    }
+    return index;
+  }
+
+  /**
+   * Gets the path of the cache file for the given key (url or path of the original image). The cache file is located in a sub directory
+   * named after the first two characters of the MD5 hash.
+   * 
+   * @param key
+   *          the url or path of the original image
+   * @param extension
+   *          the extension of the cached file
+   * @return the path to the cache file (which may not exist)
+   */
+  public static Path getCacheFile(String key, String extension) {
+    return getIndex().resolve(getMD5(key) + "." + extension);
+  }
+
+  /**
+   * Check whether there is a cache file for the given key (url or path of the original image) - without accessing the file system
+   * 
+   * @param key
+   *          the url or path of the original image
+   * @param extension
+   *          the extension of the cached file
+   * @return true/false
+   */
+  public static boolean isCached(String key, String extension) {
+    return getIndex().contains(getMD5(key) + "." + extension);
+  }
+
+  /**
+   * Gets the path of the scaled copy of the original image in the given size
+   * 
+   * @param key
+   *          the path of the original image
+   * @param cacheSize
+   *          the size of the copy
+   * @param extension
+   *          the extension of the cached file
+   * @return the path to the cache file (which may not exist)
+   */
+  public static Path getCacheFile(String key, CacheSize cacheSize, String extension) {
+    return getIndex().resolve(getCacheFilename(key, cacheSize, extension));
+  }
+
+  /**
+   * Check whether there is a scaled copy of the original image in the given size - without accessing the file system
+   * 
+   * @param key
+   *          the path of the original image
+   * @param cacheSize
+   *          the size of the copy
+   * @param extension
+   *          the extension of the cached file
+   * @return true/false
+   */
+  public static boolean isCached(String key, CacheSize cacheSize, String extension) {
+    return getIndex().contains(getCacheFilename(key, cacheSize, extension));
+  }
+
+  private static String getCacheFilename(String key, CacheSize cacheSize, String extension) {
+    return getMD5(key) + "." + cacheSize.name().toLowerCase(Locale.ROOT) + "." + extension;
+  }
+
+  /**
+   * register a cache file which has been written outside of the image cache (see {@link #getCacheFile(String, String)})
+   * 
+   * @param cachedFile
+   *          the written cache file
+   */
+  public static void addToCache(Path cachedFile) {
+    getIndex().add(cachedFile);
+  }
+
+  /**
+   * delete all cached files
+   */
+  public static void clearCache() {
+    getIndex().clear();
+    if (Files.exists(CACHE_DIR)) {
+      try {
+        Utils.deleteDirectoryRecursive(CACHE_DIR);
+      }
+      catch (Exception e) {
+        LOGGER.warn("could not clear the image cache: " + e.getMessage());
+      }
+    }
+  }
+
   /**
    * Gets the file name (MD5 hash) of the cached file.
    * 
@@ -119,11 +303,11 @@ public class ImageCache {
    * @throws InterruptedException
    */
   public static InputStream scaleImage(String imageUrl, int width) throws IOException, InterruptedException {
-    Url url = new Url(imageUrl);
+    byte[] imageData = ArtworkDownloader.download(imageUrl);
 
     BufferedImage originalImage = null;
     try {
-      originalImage = createImage(url.getBytes());
+      originalImage = createImage(imageData, width, Integer.MAX_VALUE);
     }
     catch (Exception e) {
       throw new IOException(e.getMessage());
@@ -195,7 +379,7 @@ public class ImageCache {
   public static InputStream scaleImage(Path file, int width) throws IOException, InterruptedException {
     BufferedImage originalImage = null;
     try {
-      originalImage = createImage(file);
+      originalImage = createImage(file, width, Integer.MAX_VALUE);
     }
     catch (Exception e) {
       throw new IOException(e.getMessage());
@@ -253,122 +437,212 @@ public class ImageCache {
   }
 
   /**
-   * Cache image.
+   * Cache image - creates all scaled copies of the image (if not already cached).
    * 
-   * @param mf
-   *          the media file
-   * @return the file the cached file
+   * @param originalFile
+   *          the original image file
+   * @return the cached file in the default size for the type of the image
    * @throws Exception
    */
   public static Path cacheImage(Path originalFile) throws Exception {
-    MediaFile mf = new MediaFile(originalFile);
-    Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(originalFile.toString()) + "." + Utils.getExtension(originalFile));
-    if (!Files.exists(cachedFile)) {
-      // check if the original file exists && size > 0
-      if (!Files.exists(originalFile)) {
-        throw new FileNotFoundException("unable to cache file: " + originalFile + "; file does not exist");
-      }
-      if (Files.size(originalFile) == 0) {
-        throw new EmptyFileException(originalFile);
-      }
+    return cacheImage(originalFile, getDefaultCacheSize(originalFile));
+  }
 
-      // recreate cache dir if needed
-      // rescale & cache
-      BufferedImage originalImage = null;
-      try {
-        originalImage = createImage(originalFile);
-      }
-      catch (Exception e) {
-        throw new Exception("cannot create image - file seems not to be valid? " + originalFile);
-      }
+  /**
+   * Cache image - creates all scaled copies of the image in one pass (if not already cached). Every image is cached only once at a time
+   * (parallel calls for the same image wait for the running one) and at most one image per core is cached at the same time.
+   * 
+   * @param originalFile
+   *          the original image file
+   * @param cacheSize
+   *          the size of the cached file to return
+   * @return the best cached file for the given size
+   * @throws Exception
+   */
+  public static Path cacheImage(Path originalFile, CacheSize cacheSize) throws Exception {
+    String key = originalFile.toString();
+    String extension = Utils.getExtension(originalFile);
+    Path cachedFile = findCachedFile(key, cacheSize, extension);
+    if (cachedFile != null) {
+      return cachedFile;
+    }
 
-      // calculate width based on MF type
-      int desiredWidth = originalImage.getWidth(); // initialize with fallback
-      switch (mf.getType()) {
-        case FANART:
-          if (originalImage.getWidth() > 1000) {
-            desiredWidth = 1000;
-          }
-          break;
+    // check if the original file exists && size > 0
+    if (!Files.exists(originalFile)) {
+      throw new FileNotFoundException("unable to cache file: " + originalFile + "; file does not exist");
+    }
+    if (Files.size(originalFile) == 0) {
+      throw new EmptyFileException(originalFile);
+    }
 
-        case POSTER:
-          if (originalImage.getHeight() > 500) {
-            desiredWidth = 350;
+    Object lock = new Object();
+    Object running = IN_PROGRESS.putIfAbsent(key, lock);
+    if (running != null) {
+      lock = running;
+    }
+    try {
+      synchronized (lock) {
+        // cached by the thread we have been waiting for?
+        if (findCachedFile(key, cacheSize, extension) == null) {
+          PERMITS.acquire();
+          try {
+            createCacheFiles(originalFile, key, extension);
           }
-          break;
+          finally {
+            PERMITS.release();
+          }
+        }
+      }
+    }
+    finally {
+      IN_PROGRESS.remove(key, lock);
+    }
 
-        case EXTRAFANART:
-        case THUMB:
-        case BANNER:
-        case GRAPHIC:
-          desiredWidth = 300;
-          break;
+    cachedFile = findCachedFile(key, cacheSize, extension);
+    if (cachedFile == null) {
+      throw new Exception("unable to cache file: " + originalFile);
+    }
+    return cachedFile;
+  }
 
-        default:
-          break;
+  /**
+   * create the scaled copies of the image - from the biggest to the smallest one; every copy is scaled from the next bigger one. Sizes
+   * bigger than the original image are stored only once (in the original size)
+   */
+  private static void createCacheFiles(Path originalFile, String key, String extension) throws Exception {
+    // the biggest copy is FULL - no need to decode more pixels
+    BufferedImage originalImage = null;
+    try {
+      originalImage = createImage(originalFile, CacheSize.FULL.getSize(), CacheSize.FULL.getSize());
+    }
+    catch (Exception e) {
+      throw new Exception("cannot create image - file seems not to be valid? " + originalFile);
+    }
+
+    int longestEdge = Math.max(originalImage.getWidth(), originalImage.getHeight());
+    CacheSize[] cacheSizes = CacheSize.values();
+    BufferedImage source = originalImage;
+    Boolean transparent = null;
+
+    // the smallest copy is written last: if it exists, all other copies exist too
+    for (int i = cacheSizes.length - 1; i >= 0; i--) {
+      CacheSize cacheSize = cacheSizes[i];
+      if (i > 0 && cacheSizes[i - 1].getSize() >= longestEdge) {
+        // the original already fits into the next smaller size
+        continue;
       }
 
-      // special handling for movieset-fanart or movieset-poster
-      if (mf.getFilename().startsWith("movieset-fanart") || mf.getFilename().startsWith("movieset-poster")) {
-        if (originalImage.getWidth() > 1000) {
-          desiredWidth = 1000;
+      if (cacheSize.getSize() < Math.max(source.getWidth(), source.getHeight())) {
+        Point size = calculateSize(cacheSize.getSize(), cacheSize.getSize(), source.getWidth(), source.getHeight(), true);
+        size.x = Math.max(size.x, 1);
+        size.y = Math.max(size.y, 1);
+        if (Globals.settings.getImageCacheType() == CacheType.FAST) {
+          // scale fast
+          source = Scalr.resize(source, Scalr.Method.BALANCED, Scalr.Mode.FIT_EXACT, size.x, size.y);
+        }
+        else {
+          // scale with good quality
+          source = Scalr.resize(source, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, size.x, size.y);
         }
       }
 
-      Point size = calculateSize(desiredWidth, (int) (originalImage.getHeight() / 1.5), originalImage.getWidth(), originalImage.getHeight(), true);
-      BufferedImage scaledImage = null;
-
-      if (Globals.settings.getImageCacheType() == CacheType.FAST) {
-        // scale fast
-        scaledImage = Scalr.resize(originalImage, Scalr.Method.BALANCED, Scalr.Mode.FIT_EXACT, size.x, size.y);
+      if (transparent == null) {
+        transparent = hasTransparentPixels(source);
       }
-      else {
-        // scale with good quality
-        scaledImage = Scalr.resize(originalImage, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, size.x, size.y);
-      }
-      originalImage = null;
 
-      ImageWriter imgWrtr = null;
-      ImageWriteParam imgWrtrPrm = null;
+      Path cachedFile = getCacheFile(key, cacheSize, extension);
+      Files.createDirectories(cachedFile.getParent());
+      writeImage(source, transparent, cachedFile);
+      addToCache(cachedFile);
+    }
+  }
 
-      // here we have two different ways to create our thumb
-      // a) a scaled down jpg/png (without transparency) which we have to modify since OpenJDK cannot call native jpg encoders
-      // b) a scaled down png (with transparency) which we can store without any more modifying as png
-      if (hasTransparentPixels(scaledImage)) {
-        // transparent image -> png
-        imgWrtr = ImageIO.getImageWritersByFormatName("png").next();
-        imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+  private static void writeImage(BufferedImage scaledImage, boolean transparent, Path cachedFile) throws IOException {
+    ImageWriter imgWrtr = null;
+    ImageWriteParam imgWrtrPrm = null;
 
-      }
-      else {
-        // non transparent image -> jpg
-        // convert to rgb
-        BufferedImage rgb = new BufferedImage(scaledImage.getWidth(), scaledImage.getHeight(), BufferedImage.TYPE_INT_RGB);
-        ColorConvertOp xformOp = new ColorConvertOp(null);
-        xformOp.filter(scaledImage, rgb);
-        imgWrtr = ImageIO.getImageWritersByFormatName("jpg").next();
-        imgWrtrPrm = imgWrtr.getDefaultWriteParam();
-        imgWrtrPrm.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
-        imgWrtrPrm.setCompressionQuality(0.80f);
-
-        scaledImage = rgb;
-      }
+    // here we have two different ways to create our thumb
+    // a) a scaled down jpg/png (without transparency) which we have to modify since OpenJDK cannot call native jpg encoders
+    // b) a scaled down png (with transparency) which we can store without any more modifying as png
+    if (transparent) {
+      // transparent image -> png
+      imgWrtr = ImageIO.getImageWritersByFormatName("png").next();
+      imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+
+    }
+    else {
+      // non transparent image -> jpg
+      // convert to rgb
+      BufferedImage rgb = new BufferedImage(scaledImage.getWidth(), scaledImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+      ColorConvertOp xformOp = new ColorConvertOp(null);
+      xformOp.filter(scaledImage, rgb);
+      imgWrtr = ImageIO.getImageWritersByFormatName("jpg").next();
+      imgWrtrPrm = imgWrtr.getDefaultWriteParam();
+      imgWrtrPrm.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
+      imgWrtrPrm.setCompressionQuality(0.80f);
+
+      scaledImage = rgb;
+    }
 
-      FileImageOutputStream output = new FileImageOutputStream(cachedFile.toFile());
+    FileImageOutputStream output = new FileImageOutputStream(cachedFile.toFile());
+    try {
       imgWrtr.setOutput(output);
       IIOImage image = new IIOImage(scaledImage, null, null);
       imgWrtr.write(null, image, imgWrtrPrm);
-      imgWrtr.dispose();
       output.flush();
+    }
+    finally {
+      imgWrtr.dispose();
       output.close();
-      scaledImage = null;
+    }
+  }
 
-      if (!Files.exists(cachedFile)) {
-        throw new Exception("unable to cache file: " + originalFile);
+  /**
+   * find the best cached copy for the given size: the copy in this size or - if the original image is smaller - the biggest existing copy
+   * 
+   * @return the cached file or null if the image has not been cached yet
+   */
+  private static Path findCachedFile(String key, CacheSize cacheSize, String extension) {
+    // the smallest copy is always created
+    if (!isCached(key, CacheSize.SMALL, extension)) {
+      return null;
+    }
+    for (int i = cacheSize.ordinal(); i > 0; i--) {
+      CacheSize size = CacheSize.values()[i];
+      if (isCached(key, size, extension)) {
+        return getCacheFile(key, size, extension);
       }
     }
+    return getCacheFile(key, CacheSize.SMALL, extension);
+  }
 
-    return cachedFile;
+  /**
+   * get the size of the cached file which is used when no size is requested - depending on the type of the image
+   */
+  private static CacheSize getDefaultCacheSize(Path originalFile) {
+    MediaFile mf = new MediaFile(originalFile);
+
+    // special handling for movieset-fanart or movieset-poster
+    if (mf.getFilename().startsWith("movieset-fanart") || mf.getFilename().startsWith("movieset-poster")) {
+      return CacheSize.BIG;
+    }
+
+    switch (mf.getType()) {
+      case FANART:
+        return CacheSize.BIG;
+
+      case POSTER:
+        return CacheSize.MEDIUM;
+
+      case EXTRAFANART:
+      case THUMB:
+      case BANNER:
+      case GRAPHIC:
+        return CacheSize.SMALL;
+
+      default:
+        return CacheSize.FULL;
+    }
   }
 
   private static boolean hasTransparentPixels(BufferedImage image) {
@@ -384,16 +658,23 @@ public class ImageCache {
   }
 
   /**
-   * Invalidate cached image.
+   * Invalidate cached image (the cached files and the decoded images in memory).
    * 
    * @param path
    *          the path
    */
   public static void invalidateCachedImage(Path path) {
-    Path cachedFile = getCacheDir().resolve(ImageCache.getMD5(path.toAbsolutePath().toString()) + "." + Utils.getExtension(path));
-    if (Files.exists(cachedFile)) {
-      Utils.deleteFileSafely(cachedFile);
+    String key = path.toAbsolutePath().toString();
+    String extension = Utils.getExtension(path);
+    for (CacheSize cacheSize : CacheSize.values()) {
+      getIndex().remove(getCacheFilename(key, cacheSize, extension));
     }
+    // unscaled cache file of older versions
+    getIndex().remove(getMD5(key) + "." + extension);
+
+    // the decoded images of all image labels
+    ImageMemoryCache.getInstance().invalidate(key);
+    ImageMemoryCache.getInstance().invalidate(path.toString());
   }
 
   /**
@@ -413,8 +694,8 @@ public class ImageCache {
     if (ext.isEmpty()) {
       ext = "jpg"; // just assume
     }
-    Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(url) + "." + ext);
-    if (Files.exists(cachedFile)) {
+    Path cachedFile = getCacheFile(url, ext);
+    if (isCached(url, ext)) {
       LOGGER.trace("found cached url :) " + url);
       return cachedFile;
     }
@@ -425,23 +706,28 @@ public class ImageCache {
     }
 
     try {
+      Files.createDirectories(cachedFile.getParent());
       Url u = new Url(url);
       boolean ok = u.download(cachedFile);
       if (ok) {
         LOGGER.trace("cached url successfully :) " + url);
+        addToCache(cachedFile);
         return cachedFile;
       }
     }
     catch (MalformedURLException e) {
       LOGGER.trace("Problem getting cached file for url " + e.getMessage());
     }
+    catch (IOException e) {
+      LOGGER.trace("Problem creating the cache dir " + e.getMessage());
+    }
 
     LOGGER.trace("Problem getting cached file for url " + url);
     return null;
   }
 
   /**
-   * Gets the cached file, if ImageCache is activated<br>
+   * Gets the cached file in the default size for the type of the image, if ImageCache is activated<br>
    * If not found, cache original first
    * 
    * @param path
@@ -449,13 +735,47 @@ public class ImageCache {
    * @return the cached file
    */
   public static Path getCachedFile(Path path) {
+    if (path == null) {
+      return null;
+    }
+    return getCachedFile(path, getDefaultCacheSize(path));
+  }
+
+  /**
+   * Gets the best cached file for displaying the image in the given size, if ImageCache is activated<br>
+   * If not found, cache original first
+   * 
+   * @param path
+   *          the path
+   * @param width
+   *          the width to display the image in
+   * @param height
+   *          the height to display the image in
+   * @return the cached file
+   */
+  public static Path getCachedFile(Path path, int width, int height) {
+    return getCachedFile(path, CacheSize.forSize(width, height));
+  }
+
+  /**
+   * Gets the cached file in the given size, if ImageCache is activated<br>
+   * If not found, cache original first
+   * 
+   * @param path
+   *          the path
+   * @param cacheSize
+   *          the size of the cached file
+   * @return the cached file
+   */
+  public static Path getCachedFile(Path path, CacheSize cacheSize) {
     if (path == null) {
       return null;
     }
     path = path.toAbsolutePath();
 
-    Path cachedFile = ImageCache.getCacheDir().resolve(getMD5(path.toString()) + "." + Utils.getExtension(path));
-    if (Files.exists(cachedFile)) {
+    String extension = Utils.getExtension(path);
+    Path cachedFile = findCachedFile(path.toString(), cacheSize, extension);
+    if (cachedFile != null) {
       LOGGER.trace("found cached file :) " + path);
       return cachedFile;
     }
@@ -475,7 +795,7 @@ public class ImageCache {
     }
 
     try {
-      Path p = ImageCache.cacheImage(path);
+      Path p = ImageCache.cacheImage(path, cacheSize);
       LOGGER.trace("cached file successfully :) " + p);
       return p;
     }
@@ -507,12 +827,7 @@ public class ImageCache {
       return false;
     }
 
-    Path cachedFile = CACHE_DIR.resolve(ImageCache.getMD5(path.toString()) + "." + Utils.getExtension(path));
-    if (Files.exists(cachedFile)) {
-      return true;
-    }
-
-    return false;
+    return isCached(path.toString(), CacheSize.SMALL, Utils.getExtension(path));
   }
 
   /**
@@ -525,10 +840,7 @@ public class ImageCache {
     List<MediaFile> mediaFiles = new ArrayList<>(entity.getMediaFiles());
     for (MediaFile mediaFile : mediaFiles) {
       if (mediaFile.isGraphic()) {
-        Path file = ImageCache.getCachedFile(mediaFile.getFileAsPath());
-        if (file != null) {
-          Utils.deleteFileSafely(file);
-        }
+        invalidateCachedImage(mediaFile.getFileAsPath());
       }
     }
   }
@@ -568,15 +880,81 @@ public class ImageCache {
     return size;
   }
 
+  /**
+   * decode the image (see {@link ImageDecoder}); falls back to the AWT toolkit if ImageIO cannot read the image
+   * 
+   * @param imageData
+   *          the encoded image
+   * @return the decoded image
+   * @throws Exception
+   */
   public static BufferedImage createImage(byte[] imageData) throws Exception {
-    return createImage(Toolkit.getDefaultToolkit().createImage(imageData));
+    return createImage(imageData, Integer.MAX_VALUE, Integer.MAX_VALUE);
   }
 
+  /**
+   * decode the image (see {@link ImageDecoder}); falls back to the AWT toolkit if ImageIO cannot read the image
+   * 
+   * @param file
+   *          the image file
+   * @return the decoded image
+   * @throws Exception
+   */
   public static BufferedImage createImage(Path file) throws Exception {
-    return createImage(Toolkit.getDefaultToolkit().createImage(file.toFile().getAbsolutePath()));
+    return createImage(file, Integer.MAX_VALUE, Integer.MAX_VALUE);
   }
 
   public static BufferedImage createImage(Image img) {
     return ImageLoader.createImage(img);
   }
+
+  /**
+   * Decode the image near the given size: only every n-th pixel of every n-th line is decoded (source subsampling), so that the decoded
+   * image is as small as possible but still not smaller than an image scaled to fit into maxWidth x maxHeight. The caller has to do the
+   * final scaling.<br>
+   * Falls back to a full decode with the AWT toolkit if ImageIO cannot read the image
+   * 
+   * @param imageData
+   *          the encoded image
+   * @param maxWidth
+   *          the max width of the scaled image
+   * @param maxHeight
+   *          the max height of the scaled image
+   * @return the decoded image
+   * @throws Exception
+   */
+  public static BufferedImage createImage(byte[] imageData, int maxWidth, int maxHeight) throws Exception {
+    try {
+      return ImageDecoder.decode(imageData, maxWidth, maxHeight);
+    }
+    catch (Exception e) {
+      LOGGER.trace("could not decode image with ImageIO: " + e.getMessage());
+    }
+    return createImage(Toolkit.getDefaultToolkit().createImage(imageData));
+  }
+
+  /**
+   * Decode the image near the given size: only every n-th pixel of every n-th line is decoded (source subsampling), so that the decoded
+   * image is as small as possible but still not smaller than an image scaled to fit into maxWidth x maxHeight. The caller has to do the
+   * final scaling.<br>
+   * Falls back to a full decode with the AWT toolkit if ImageIO cannot read the image
+   * 
+   * @param file
+   *          the image file
+   * @param maxWidth
+   *          the max width of the scaled image
+   * @param maxHeight
+   *          the max height of the scaled image
+   * @return the decoded image
+   * @throws Exception
+   */
+  public static BufferedImage createImage(Path file, int maxWidth, int maxHeight) throws Exception {
+    try {
+      return ImageDecoder.decode(file, maxWidth, maxHeight);
+    }
+    catch (Exception e) {
+      LOGGER.trace("could not decode " + file + " with ImageIO: " + e.getMessage());
+    }
+    return createImage(Toolkit.getDefaultToolkit().createImage(file.toFile().getAbsolutePath()));
+  }
 }
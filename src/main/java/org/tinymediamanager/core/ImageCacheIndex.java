@@ -0,0 +1,385 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class ImageCacheIndex. An in-memory index of all files in the image cache: the cached files are stored in sharded sub directories
+ * (the first two characters of the hash) and the size and last access of every file is kept in this index - so lookups do not need to hit
+ * the file system and the least recently used files can be evicted if the cache grows bigger than the max size.<br>
+ * The index is persisted on shutdown; if there is no index file, the cache directory is scanned once (and files of the old flat layout are
+ * moved into the shards). After loading, the index is the only source of truth: files written into the cache have to be registered with
+ * {@link #add(Path)}.
+ *
+ * @author Manuel Laggner
+ */
+class ImageCacheIndex {
+  private static final Logger      LOGGER       = LoggerFactory.getLogger(ImageCacheIndex.class);
+  static final String              INDEX_FILE   = "cache.index";
+  // evict down to this part of the max size (so that not every new file triggers an eviction)
+  private static final double      EVICT_TARGET = 0.9;
+
+  private final Path               cacheDir;
+  private final Clock              clock;
+  private final Map<String, Entry> entries      = new ConcurrentHashMap<>();
+  private final AtomicLong         size         = new AtomicLong();
+  private volatile long            maxSize;
+
+  /**
+   * create the index for the given cache directory
+   *
+   * @param cacheDir
+   *          the cache directory
+   * @param maxSize
+   *          the max size of the cache in bytes; 0 for unlimited
+   */
+  ImageCacheIndex(Path cacheDir, long maxSize) {
+    this(cacheDir, maxSize, Clock.SYSTEM);
+  }
+
+  /**
+   * create the index for the given cache directory
+   *
+   * @param cacheDir
+   *          the cache directory
+   * @param maxSize
+   *          the max size of the cache in bytes; 0 for unlimited
+   * @param clock
+   *          the clock for the last access of the files
+   */
+  ImageCacheIndex(Path cacheDir, long maxSize, Clock clock) {
+    this.cacheDir = cacheDir;
+    this.maxSize = maxSize;
+    this.clock = clock;
+  }
+
+  /**
+   * load the index (migrates the old flat layout and scans the cache directory if there is no index file)
+   */
+  synchronized void load() {
+    entries.clear();
+    size.set(0);
+
+    migrate();
+
+    Path indexFile = cacheDir.resolve(INDEX_FILE);
+    if (Files.exists(indexFile)) {
+      try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] parts = line.split(";");
+          if (parts.length == 3) {
+            put(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+          }
+        }
+        // the index file is only valid until the next shutdown
+        Files.delete(indexFile);
+        LOGGER.debug("loaded image cache index: " + entries.size() + " files, " + size.get() / (1024 * 1024) + " MB");
+        return;
+      }
+      catch (Exception e) {
+        LOGGER.warn("could not read the image cache index - rescanning the cache: " + e.getMessage());
+        entries.clear();
+        size.set(0);
+      }
+    }
+    scan();
+  }
+
+  /**
+   * move all files of the old flat layout into the shards
+   */
+  private void migrate() {
+    if (!Files.isDirectory(cacheDir)) {
+      return;
+    }
+    int count = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+      for (Path file : stream) {
+        String filename = file.getFileName().toString();
+        if (!Files.isRegularFile(file) || filename.startsWith(INDEX_FILE) || filename.length() < 3) {
+          continue;
+        }
+        Path target = resolve(filename);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        count++;
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not migrate the image cache: " + e.getMessage());
+    }
+    if (count > 0) {
+      LOGGER.info("moved " + count + " files of the image cache into sub directories");
+    }
+  }
+
+  /**
+   * build the index from the files in the cache directory (the last modified date is used as last access)
+   */
+  private void scan() {
+    if (!Files.isDirectory(cacheDir)) {
+      return;
+    }
+    try {
+      Files.walkFileTree(cacheDir, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (!cacheDir.equals(file.getParent())) {
+            put(file.getFileName().toString(), attrs.size(), attrs.lastModifiedTime().toMillis());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not scan the image cache: " + e.getMessage());
+    }
+    LOGGER.debug("scanned image cache: " + entries.size() + " files, " + size.get() / (1024 * 1024) + " MB");
+  }
+
+  /**
+   * write the index to the cache directory
+   */
+  synchronized void save() {
+    if (!Files.isDirectory(cacheDir)) {
+      return;
+    }
+    Path indexFile = cacheDir.resolve(INDEX_FILE);
+    Path tempFile = cacheDir.resolve(INDEX_FILE + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        writer.write(entry.getKey() + ";" + entry.getValue().size + ";" + entry.getValue().lastAccess);
+        writer.newLine();
+      }
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not write the image cache index: " + e.getMessage());
+      return;
+    }
+    try {
+      Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not write the image cache index: " + e.getMessage());
+    }
+  }
+
+  /**
+   * get the path of a cached file (sharded by the first two characters of the name); does not access the file system
+   *
+   * @param filename
+   *          the name of the cached file
+   * @return the path of the cached file
+   */
+  Path resolve(String filename) {
+    return cacheDir.resolve(filename.substring(0, 2)).resolve(filename);
+  }
+
+  /**
+   * check whether the file is in the cache (and mark it as used); does not access the file system
+   *
+   * @param filename
+   *          the name of the cached file
+   * @return true if the file is cached
+   */
+  boolean contains(String filename) {
+    Entry entry = entries.get(filename);
+    if (entry == null) {
+      return false;
+    }
+    entry.lastAccess = clock.currentTimeMillis();
+    return true;
+  }
+
+  /**
+   * add a newly written file to the index; evicts the least recently used files if the cache is too big
+   *
+   * @param file
+   *          the cached file
+   */
+  void add(Path file) {
+    try {
+      put(file.getFileName().toString(), Files.size(file), clock.currentTimeMillis());
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not add " + file + " to the image cache index: " + e.getMessage());
+      return;
+    }
+    evictIfNeeded();
+  }
+
+  private void evictIfNeeded() {
+    long max = maxSize;
+    if (max > 0 && size.get() > max) {
+      evict((long) (max * EVICT_TARGET));
+    }
+  }
+
+  /**
+   * remove the file from the index and the cache
+   *
+   * @param filename
+   *          the name of the cached file
+   */
+  void remove(String filename) {
+    Entry entry = entries.remove(filename);
+    if (entry != null) {
+      size.addAndGet(-entry.size);
+    }
+    Path file = resolve(filename);
+    if (Files.exists(file)) {
+      Utils.deleteFileSafely(file);
+    }
+  }
+
+  /**
+   * remove all entries from the index
+   */
+  synchronized void clear() {
+    entries.clear();
+    size.set(0);
+  }
+
+  private void put(String filename, long fileSize, long lastAccess) {
+    Entry entry = new Entry(fileSize, lastAccess);
+    Entry old = entries.put(filename, entry);
+    size.addAndGet(fileSize - (old != null ? old.size : 0));
+  }
+
+  /**
+   * remove the least recently used files until the cache is not bigger than the given size; all copies of one image (the files with the
+   * same hash) are removed together
+   */
+  private synchronized void evict(long targetSize) {
+    if (size.get() <= targetSize) {
+      return;
+    }
+    // the access time of the entries may change while sorting - sort on a snapshot
+    final Map<String, Long> accessTimes = new HashMap<>();
+    Map<String, List<String>> groups = new HashMap<>();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      String hash = getHash(entry.getKey());
+      Long lastAccess = accessTimes.get(hash);
+      if (lastAccess == null || lastAccess < entry.getValue().lastAccess) {
+        accessTimes.put(hash, entry.getValue().lastAccess);
+      }
+      List<String> group = groups.get(hash);
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.put(hash, group);
+      }
+      group.add(entry.getKey());
+    }
+    List<String> candidates = new ArrayList<>(groups.keySet());
+    Collections.sort(candidates, new Comparator<String>() {
+      @Override
+      public int compare(String o1, String o2) {
+        return Long.compare(accessTimes.get(o1), accessTimes.get(o2));
+      }
+    });
+
+    int count = 0;
+    for (String candidate : candidates) {
+      if (size.get() <= targetSize) {
+        break;
+      }
+      for (String filename : groups.get(candidate)) {
+        remove(filename);
+        count++;
+      }
+    }
+    LOGGER.debug("evicted " + count + " files from the image cache - size now " + size.get() / (1024 * 1024) + " MB");
+  }
+
+  private static String getHash(String filename) {
+    int index = filename.indexOf('.');
+    return index > 0 ? filename.substring(0, index) : filename;
+  }
+
+  /**
+   * set the max size of the cache; evicts the least recently used files if the cache is bigger than the new size
+   *
+   * @param maxSize
+   *          the max size of the cache in bytes; 0 for unlimited
+   */
+  void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+    evictIfNeeded();
+  }
+
+  /**
+   * the size of all cached files
+   *
+   * @return the size in bytes
+   */
+  long getSize() {
+    return size.get();
+  }
+
+  int getCount() {
+    return entries.size();
+  }
+
+  /**
+   * the source of the last access times (replaceable in tests)
+   */
+  interface Clock {
+    Clock SYSTEM = new Clock() {
+      @Override
+      public long currentTimeMillis() {
+        return System.currentTimeMillis();
+      }
+    };
+
+    long currentTimeMillis();
+  }
+
+  /**
+   * the size and the last access of one cached file
+   */
+  private static class Entry {
+    private final long    size;
+    private volatile long lastAccess;
+
+    Entry(long size, long lastAccess) {
+      this.size = size;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
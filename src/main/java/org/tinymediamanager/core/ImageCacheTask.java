@@ -19,68 +19,174 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.entities.MediaEntity;
+import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.threading.TmmTask;
 import org.tinymediamanager.ui.UTF8Control;
 
 /**
- * The Class ImageCacheTask. Cache a bunch of images in a separate task
+ * The Class ImageCacheTask. Cache a bunch of images in a separate task; the images are cached in parallel (one thread per core - the
+ * amount of images cached at the same time is limited by {@link ImageCache#cacheImage(Path)}). Images which are already cached are skipped
+ * and images of the entities which are currently visible in the UI are cached first.
  * 
  * @author Manuel Laggner
  */
 public class ImageCacheTask extends TmmTask {
-  private static final Logger         LOGGER       = LoggerFactory.getLogger(ImageCacheTask.class);
-  private static final ResourceBundle BUNDLE       = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private static final Logger         LOGGER        = LoggerFactory.getLogger(ImageCacheTask.class);
+  private static final ResourceBundle BUNDLE        = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  // caching images is CPU bound: one thread per core
+  private static final int            THREADS       = Math.max(1, Runtime.getRuntime().availableProcessors());
+  private static volatile Set<Path>   visibleImages = Collections.emptySet();
 
-  private List<Path>                  filesToCache = new ArrayList<>();
+  private final Set<Path>             filesToCache  = new LinkedHashSet<>();
+  private final AtomicInteger         filesDone     = new AtomicInteger();
 
   public ImageCacheTask(String pathToFile) {
-    super(BUNDLE.getString("tmm.rebuildimagecache"), 1, TaskType.BACKGROUND_TASK);
-    filesToCache.add(Paths.get(pathToFile));
+    this(Collections.singletonList(Paths.get(pathToFile)));
   }
 
   @Deprecated
   public ImageCacheTask(File file) {
-    super(BUNDLE.getString("tmm.rebuildimagecache"), 1, TaskType.BACKGROUND_TASK);
-    filesToCache.add(file.toPath());
+    this(Collections.singletonList(file.toPath()));
   }
 
   public ImageCacheTask(Path file) {
-    super(BUNDLE.getString("tmm.rebuildimagecache"), 1, TaskType.BACKGROUND_TASK);
-    filesToCache.add(file);
+    this(Collections.singletonList(file));
   }
 
   public ImageCacheTask(List<Path> files) {
-    super(BUNDLE.getString("tmm.rebuildimagecache"), files.size(), TaskType.BACKGROUND_TASK);
+    super(BUNDLE.getString("tmm.rebuildimagecache"), 0, TaskType.BACKGROUND_TASK);
+    // remove duplicates
     filesToCache.addAll(files);
+    setWorkUnits(filesToCache.size());
+  }
+
+  /**
+   * set the entities which are currently visible in the UI - the images of these entities are cached first by all running tasks
+   * 
+   * @param entities
+   *          the visible entities
+   */
+  public static void setVisibleEntities(Collection<? extends MediaEntity> entities) {
+    Set<Path> images = new HashSet<>();
+    for (MediaEntity entity : entities) {
+      for (MediaFile mediaFile : entity.getMediaFiles()) {
+        if (mediaFile.isGraphic()) {
+          images.add(mediaFile.getFileAsPath());
+        }
+      }
+    }
+    visibleImages = Collections.unmodifiableSet(images);
   }
 
   @Override
   protected void doInBackground() {
-    int i = 0;
-    for (Path fileToCache : filesToCache) {
-      try {
-        if (cancel) {
-          return;
-        }
+    int threads = Math.min(THREADS, filesToCache.size());
+    if (threads == 0) {
+      return;
+    }
 
-        publishState(++i);
-        ImageCache.cacheImage(fileToCache);
+    final AtomicInteger threadNumber = new AtomicInteger(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "image-cache-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
       }
-      catch (EmptyFileException e) {
-        LOGGER.warn("failed to cache file (file is empty): " + fileToCache);
+    });
+
+    for (int i = 0; i < threads; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          Path file;
+          while (!cancel && (file = nextFile()) != null) {
+            cacheFile(file);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        // the workers check the cancel flag after every image
       }
-      catch (FileNotFoundException e) {
-        LOGGER.warn("failed to cache file (file not found): " + fileToCache);
+    }
+    catch (InterruptedException e) {
+      LOGGER.debug("image cache task interrupted");
+      cancel = true;
+    }
+  }
+
+  /**
+   * get the next file to cache: visible images first, then in the given order
+   * 
+   * @return the next file or null if all files have been processed
+   */
+  private synchronized Path nextFile() {
+    if (filesToCache.isEmpty()) {
+      return null;
+    }
+    Path next = null;
+    for (Path visible : visibleImages) {
+      if (filesToCache.contains(visible)) {
+        next = visible;
+        break;
       }
-      catch (Exception e) {
-        LOGGER.warn("failed to cache file: " + fileToCache, e);
+    }
+    if (next == null) {
+      Iterator<Path> iterator = filesToCache.iterator();
+      next = iterator.next();
+    }
+    filesToCache.remove(next);
+    return next;
+  }
+
+  private void cacheFile(Path fileToCache) {
+    try {
+      // already cached
+      if (ImageCache.isImageCached(fileToCache)) {
+        return;
       }
+      ImageCache.cacheImage(fileToCache);
+    }
+    catch (EmptyFileException e) {
+      LOGGER.warn("failed to cache file (file is empty): " + fileToCache);
     }
+    catch (FileNotFoundException e) {
+      LOGGER.warn("failed to cache file (file not found): " + fileToCache);
+    }
+    catch (InterruptedException e) {
+      cancel = true;
+    }
+    catch (Exception e) {
+      LOGGER.warn("failed to cache file: " + fileToCache, e);
+    }
+    finally {
+      publishProgress(filesDone.incrementAndGet());
+    }
+  }
+
+  private synchronized void publishProgress(int done) {
+    publishState(done);
   }
 }
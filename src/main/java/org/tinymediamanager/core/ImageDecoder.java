@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The class ImageDecoder. Decodes images with the ImageIO readers: the readers are reused per thread, the images are decoded into the
+ * native raster type of the reader and CMYK/YCCK jpegs (which neither ImageIO nor the toolkit can display correctly) are converted to RGB.
+ * Formats which ImageIO cannot read are left to the AWT toolkit by the caller (see {@link ImageCache#createImage(Path, int, int)}).
+ *
+ * @author Manuel Laggner
+ */
+public class ImageDecoder {
+  private static final String                                JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+  // the Adobe transform of YCCK jpegs
+  private static final int                                   ADOBE_YCCK           = 2;
+
+  // the readers (by reader class) of the current thread
+  private static final ThreadLocal<Map<String, ImageReader>> READERS              = new ThreadLocal<Map<String, ImageReader>>() {
+                                                                                    @Override
+                                                                                    protected Map<String, ImageReader> initialValue() {
+                                                                                      return new HashMap<>();
+                                                                                    }
+                                                                                  };
+
+  private ImageDecoder() {
+    // hide the public constructor for utility classes
+  }
+
+  /**
+   * decode the given image file
+   *
+   * @param file
+   *          the image file
+   * @return the decoded image
+   * @throws IOException
+   *           if the image could not be read
+   */
+  public static BufferedImage decode(Path file) throws IOException {
+    return decode(file, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * decode the given image near the given size (see {@link #decode(ImageInputStream, int, int)})
+   *
+   * @param file
+   *          the image file
+   * @param maxWidth
+   *          the max width of the scaled image
+   * @param maxHeight
+   *          the max height of the scaled image
+   * @return the decoded image
+   * @throws IOException
+   *           if the image could not be read
+   */
+  public static BufferedImage decode(Path file, int maxWidth, int maxHeight) throws IOException {
+    try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+      return decode(input, maxWidth, maxHeight);
+    }
+  }
+
+  /**
+   * decode the given encoded image
+   *
+   * @param imageData
+   *          the encoded image
+   * @return the decoded image
+   * @throws IOException
+   *           if the image could not be read
+   */
+  public static BufferedImage decode(byte[] imageData) throws IOException {
+    return decode(imageData, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * decode the given encoded image near the given size (see {@link #decode(ImageInputStream, int, int)})
+   *
+   * @param imageData
+   *          the encoded image
+   * @param maxWidth
+   *          the max width of the scaled image
+   * @param maxHeight
+   *          the max height of the scaled image
+   * @return the decoded image
+   * @throws IOException
+   *           if the image could not be read
+   */
+  public static BufferedImage decode(byte[] imageData, int maxWidth, int maxHeight) throws IOException {
+    try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+      return decode(input, maxWidth, maxHeight);
+    }
+  }
+
+  /**
+   * Decode the image near the given size: only every n-th pixel of every n-th line is decoded (source subsampling), so that the decoded
+   * image is as small as possible but still not smaller than an image scaled to fit into maxWidth x maxHeight. The caller has to do the
+   * final scaling.
+   *
+   * @param input
+   *          the stream of the encoded image
+   * @param maxWidth
+   *          the max width of the scaled image
+   * @param maxHeight
+   *          the max height of the scaled image
+   * @return the decoded image
+   * @throws IOException
+   *           if the image could not be read
+   */
+  private static BufferedImage decode(ImageInputStream input, int maxWidth, int maxHeight) throws IOException {
+    if (input == null) {
+      throw new IIOException("no input stream");
+    }
+    ImageReader reader = getReader(input);
+    if (reader == null) {
+      throw new IIOException("no image reader found");
+    }
+
+    try {
+      // the metadata is needed for CMYK jpegs
+      reader.setInput(input, true, false);
+      int width = reader.getWidth(0);
+      int height = reader.getHeight(0);
+
+      // the factor of the final scaling; a subsampling by its integer part keeps the decoded image at least as big as the result
+      double factor = Math.max((double) width / Math.max(maxWidth, 1), (double) height / Math.max(maxHeight, 1));
+      int subsampling = Math.max(1, (int) factor);
+
+      ImageReadParam param = reader.getDefaultReadParam();
+      if (subsampling > 1) {
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+      }
+
+      if (isCmyk(reader)) {
+        return readCmyk(reader, param);
+      }
+
+      // decode into the type of the reader: any other destination type would be converted line by line (much slower)
+      try {
+        return reader.read(0, param);
+      }
+      catch (IIOException e) {
+        // some JREs report CMYK jpegs only while reading
+        if (reader.canReadRaster()) {
+          return readCmyk(reader, param);
+        }
+        throw e;
+      }
+    }
+    finally {
+      // do not dispose - the reader will be reused by this thread
+      reader.reset();
+    }
+  }
+
+  /**
+   * get the reader for the stream; the reader of every format is created only once per thread
+   */
+  private static ImageReader getReader(ImageInputStream input) throws IOException {
+    Iterator<ImageReaderSpi> providers = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+    while (providers.hasNext()) {
+      ImageReaderSpi provider = providers.next();
+      if (!provider.canDecodeInput(input)) {
+        continue;
+      }
+
+      Map<String, ImageReader> readers = READERS.get();
+      String key = provider.getClass().getName();
+      ImageReader reader = readers.get(key);
+      if (reader == null) {
+        reader = provider.createReaderInstance();
+        readers.put(key, reader);
+      }
+      return reader;
+    }
+    return null;
+  }
+
+  /**
+   * is the image a CMYK/YCCK jpeg? Older JREs offer no image type for them, newer ones decode them with a CMYK color space but ignore the
+   * inverted values of Adobe jpegs
+   */
+  private static boolean isCmyk(ImageReader reader) throws IOException {
+    Iterator<ImageTypeSpecifier> imageTypes = reader.getImageTypes(0);
+    if (imageTypes == null || !imageTypes.hasNext()) {
+      return reader.canReadRaster();
+    }
+    return imageTypes.next().getColorModel().getColorSpace().getType() == ColorSpace.TYPE_CMYK;
+  }
+
+  /**
+   * read a CMYK or YCCK jpeg as raster and convert it to RGB (without color profile)
+   */
+  private static BufferedImage readCmyk(ImageReader reader, ImageReadParam param) throws IOException {
+    Raster raster = reader.readRaster(0, param);
+    if (raster.getNumBands() != 4) {
+      throw new IIOException("unsupported image type (" + raster.getNumBands() + " bands)");
+    }
+
+    int adobeTransform = getAdobeTransform(reader.getImageMetadata(0));
+    boolean inverted = adobeTransform >= 0;
+    boolean ycck = adobeTransform == ADOBE_YCCK;
+
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] samples = new int[width * 4];
+    int[] rgb = new int[width];
+
+    for (int y = 0; y < height; y++) {
+      raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, samples);
+      for (int x = 0; x < width; x++) {
+        int c = samples[x * 4];
+        int m = samples[x * 4 + 1];
+        int ye = samples[x * 4 + 2];
+        int k = samples[x * 4 + 3];
+
+        if (ycck) {
+          // YCbCr -> RGB; CMY = 255 - RGB
+          int luma = c;
+          int cb = m;
+          int cr = ye;
+          c = 255 - clamp(luma + 1.402 * (cr - 128));
+          m = 255 - clamp(luma - 0.34414 * (cb - 128) - 0.71414 * (cr - 128));
+          ye = 255 - clamp(luma + 1.772 * (cb - 128));
+        }
+        if (inverted) {
+          // Adobe stores CMYK inverted
+          c = 255 - c;
+          m = 255 - m;
+          ye = 255 - ye;
+          k = 255 - k;
+        }
+
+        int r = (255 - c) * (255 - k) / 255;
+        int g = (255 - m) * (255 - k) / 255;
+        int b = (255 - ye) * (255 - k) / 255;
+        rgb[x] = (r << 16) | (g << 8) | b;
+      }
+      image.setRGB(0, y, width, 1, rgb, 0, width);
+    }
+    return image;
+  }
+
+  /**
+   * get the transform of the Adobe APP14 marker
+   *
+   * @return the transform or -1 if there is no Adobe marker
+   */
+  private static int getAdobeTransform(IIOMetadata metadata) {
+    if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+      return -1;
+    }
+    NodeList markers = ((Element) metadata.getAsTree(JPEG_METADATA_FORMAT)).getElementsByTagName("app14Adobe");
+    if (markers.getLength() == 0) {
+      return -1;
+    }
+    Node transform = markers.item(0).getAttributes().getNamedItem("transform");
+    if (transform == null) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(transform.getNodeValue());
+    }
+    catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static int clamp(double value) {
+    return value < 0 ? 0 : value > 255 ? 255 : (int) value;
+  }
+}
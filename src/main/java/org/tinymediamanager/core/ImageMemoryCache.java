@@ -0,0 +1,293 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The class ImageMemoryCache. A process wide cache of decoded and scaled images (keyed by the source - path or url - and the target size)
+ * for the image labels and dialogs.<br>
+ * The cache is bounded by the size of the decoded images; the least recently used images are moved to a second level of soft references,
+ * which are only cleared by the garbage collector if memory gets low. The statistics are logged on shutdown (see
+ * {@link ImageCache#shutdown()}).
+ *
+ * @author Manuel Laggner
+ */
+public class ImageMemoryCache {
+  // an eighth of the heap, but not more than 96 MB
+  private static final long                   MAX_BYTES  = Math.min(96 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+  private static final ImageMemoryCache       INSTANCE   = new ImageMemoryCache(MAX_BYTES);
+
+  private final long                          maxBytes;
+  private final Map<Key, BufferedImage>       images     = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Key, SoftImage>           softImages = new HashMap<>();
+  private final ReferenceQueue<BufferedImage> queue      = new ReferenceQueue<>();
+  private long                                bytes      = 0;
+
+  private long                                hits       = 0;
+  private long                                softHits   = 0;
+  private long                                misses     = 0;
+  private long                                evictions  = 0;
+
+  ImageMemoryCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public static ImageMemoryCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * get the image for the given source and size
+   *
+   * @param source
+   *          the path or url of the image
+   * @param width
+   *          the target width
+   * @param height
+   *          the target height
+   * @return the image or null if it is not in the cache
+   */
+  public synchronized BufferedImage get(String source, int width, int height) {
+    if (source == null) {
+      return null;
+    }
+    Key key = new Key(source, width, height);
+    BufferedImage image = images.get(key);
+    if (image != null) {
+      hits++;
+      return image;
+    }
+
+    expungeSoftImages();
+    SoftImage softImage = softImages.remove(key);
+    if (softImage != null) {
+      image = softImage.get();
+      if (image != null) {
+        softHits++;
+        // back into the first level
+        putImage(key, image);
+        return image;
+      }
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * put the image for the given source and size into the cache
+   *
+   * @param source
+   *          the path or url of the image
+   * @param width
+   *          the target width
+   * @param height
+   *          the target height
+   * @param image
+   *          the decoded/scaled image
+   */
+  public synchronized void put(String source, int width, int height, BufferedImage image) {
+    if (source == null || image == null) {
+      return;
+    }
+    Key key = new Key(source, width, height);
+    softImages.remove(key);
+    putImage(key, image);
+  }
+
+  /**
+   * remove all images of the given source (e.g. if the image has been changed)
+   *
+   * @param source
+   *          the path or url of the image
+   */
+  public synchronized void invalidate(String source) {
+    if (source == null) {
+      return;
+    }
+    Iterator<Map.Entry<Key, BufferedImage>> iterator = images.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, BufferedImage> entry = iterator.next();
+      if (entry.getKey().source.equals(source)) {
+        bytes -= getBytes(entry.getValue());
+        iterator.remove();
+      }
+    }
+    Iterator<Key> keys = softImages.keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().source.equals(source)) {
+        keys.remove();
+      }
+    }
+  }
+
+  /**
+   * remove all images from the cache
+   */
+  public synchronized void clear() {
+    images.clear();
+    softImages.clear();
+    bytes = 0;
+  }
+
+  private void putImage(Key key, BufferedImage image) {
+    BufferedImage old = images.put(key, image);
+    if (old != null) {
+      bytes -= getBytes(old);
+    }
+    bytes += getBytes(image);
+
+    // move the least recently used images to the second level
+    Iterator<Map.Entry<Key, BufferedImage>> iterator = images.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<Key, BufferedImage> eldest = iterator.next();
+      if (eldest.getKey().equals(key)) {
+        // do not evict the newest image (bigger than the whole cache)
+        continue;
+      }
+      bytes -= getBytes(eldest.getValue());
+      softImages.put(eldest.getKey(), new SoftImage(eldest.getKey(), eldest.getValue(), queue));
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * remove the soft references which have been cleared by the garbage collector
+   */
+  private void expungeSoftImages() {
+    SoftImage softImage;
+    while ((softImage = (SoftImage) queue.poll()) != null) {
+      if (softImages.get(softImage.key) == softImage) {
+        softImages.remove(softImage.key);
+      }
+    }
+  }
+
+  private static long getBytes(BufferedImage image) {
+    DataBuffer buffer = image.getRaster().getDataBuffer();
+    return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+  }
+
+  /**
+   * the size of the images in the first level
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized int getCount() {
+    return images.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * the hits which were served from the second level (soft references)
+   *
+   * @return the amount of soft hits
+   */
+  public synchronized long getSoftHits() {
+    return softHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * the amount of images in the second level (soft references)
+   *
+   * @return the amount of soft images
+   */
+  public synchronized int getSoftCount() {
+    expungeSoftImages();
+    return softImages.size();
+  }
+
+  /**
+   * get the soft reference of an image in the second level (for tests)
+   */
+  synchronized SoftReference<BufferedImage> getSoftImage(String source, int width, int height) {
+    return softImages.get(new Key(source, width, height));
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "image memory cache: " + images.size() + " images, " + bytes / (1024 * 1024) + "/" + maxBytes / (1024 * 1024) + " MB, "
+        + softImages.size() + " soft; " + hits + " hits, " + softHits + " soft hits, " + misses + " misses, " + evictions + " evictions";
+  }
+
+  /**
+   * the key of an image: source and target size
+   */
+  private static class Key {
+    private final String source;
+    private final int    width;
+    private final int    height;
+
+    Key(String source, int width, int height) {
+      this.source = source;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return width == other.width && height == other.height && source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+      return (source.hashCode() * 31 + width) * 31 + height;
+    }
+  }
+
+  /**
+   * a soft reference which knows its key (to remove it from the map when it has been cleared)
+   */
+  private static class SoftImage extends SoftReference<BufferedImage> {
+    private final Key key;
+
+    SoftImage(Key key, BufferedImage image, ReferenceQueue<BufferedImage> queue) {
+      super(image, queue);
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.threading.TmmIoLane;
+import org.tinymediamanager.thirdparty.MediaInfo;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * The class IsoInspector. Feeds the video files inside of a disc image (ISO) to libmediainfo: the content of the files is read with large
+ * positional reads directly from the image file and several files are parsed at the same time (limited by the free permits of the I/O
+ * budget of the storage device and the mediainfo handles).<br>
+ * Only the files of the main feature are parsed (see {@link #selectFeature(List, Set)}): no DVD menus, only the title set of the biggest
+ * VOB and only the clips of the longest blu-ray playlist.
+ *
+ * @author Manuel Laggner
+ */
+public class IsoInspector implements Closeable {
+  private static final Logger  LOGGER            = LoggerFactory.getLogger(IsoInspector.class);
+  // one read per MB - also over network shares
+  private static final int     BUFFER_SIZE       = 1024 * 1024;
+  // playlists are a few KB; everything bigger is no playlist
+  private static final int     MAX_PLAYLIST_SIZE = 1024 * 1024;
+
+  private static final Pattern DVD_MENU          = Pattern.compile("(video_ts|vts_\\d\\d_0)\\.vob");
+  private static final Pattern DVD_TITLE         = Pattern.compile("vts_(\\d\\d)_\\d\\.vob");
+  private static final Pattern BLURAY_CLIP       = Pattern.compile("(\\d{5})\\.m2ts");
+
+  private final Path           file;
+  private final FileChannel    channel;
+
+  /**
+   * open the given disc image
+   *
+   * @param file
+   *          the ISO file
+   * @throws IOException
+   *           if the file could not be opened
+   */
+  public IsoInspector(Path file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+  }
+
+  /**
+   * parse all given entries with libmediainfo; the snapshots will be set into the entries.<br>
+   * The calling thread parses in the I/O budget of the caller (e.g. the mediainfo stage); additional threads are only started for the
+   * permits of the device which are free right now (see {@link TmmIoLane#getPermits(Path)})
+   *
+   * @param entries
+   *          the entries (files inside of the image) to parse
+   * @throws InterruptedException
+   *           if interrupted while parsing
+   */
+  public void inspect(List<Entry> entries) throws InterruptedException {
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    final Semaphore permits = TmmIoLane.getPermits(file);
+    final Queue<Entry> queue = new ConcurrentLinkedQueue<>(entries);
+    int maxHelpers = Math.min(entries.size(), MediaInfoPool.getInstance().getSize()) - 1;
+    int helpers = 0;
+    while (helpers < maxHelpers && permits.tryAcquire()) {
+      helpers++;
+    }
+    if (helpers == 0) {
+      inspect(queue);
+      return;
+    }
+
+    final AtomicInteger threadNumber = new AtomicInteger(1);
+    ExecutorService executor = Executors.newFixedThreadPool(helpers, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "iso-inspector-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    try {
+      for (int i = 0; i < helpers; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              inspect(queue);
+            }
+            catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            finally {
+              permits.release();
+            }
+          }
+        });
+      }
+      inspect(queue);
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+    finally {
+      // helpers which did not start yet
+      for (int i = executor.shutdownNow().size(); i > 0; i--) {
+        permits.release();
+      }
+    }
+  }
+
+  private void inspect(Queue<Entry> queue) throws InterruptedException {
+    Entry entry;
+    while (!Thread.currentThread().isInterrupted() && (entry = queue.poll()) != null) {
+      inspect(entry);
+    }
+  }
+
+  /**
+   * get the clips of the longest blu-ray playlist
+   *
+   * @param playlists
+   *          the playlists (BDMV/PLAYLIST/*.mpls) in the image
+   * @return the names of the clips (5 digits) or an empty set if there is no readable playlist
+   */
+  public Set<String> getPlaylistClips(List<Entry> playlists) {
+    Set<String> longestClips = Collections.emptySet();
+    long longest = -1;
+    for (Entry playlist : playlists) {
+      if (playlist.size > MAX_PLAYLIST_SIZE) {
+        continue;
+      }
+      try {
+        ByteBuffer data = ByteBuffer.allocate((int) playlist.size);
+        while (data.hasRemaining()) {
+          if (channel.read(data, playlist.offset + data.position()) < 0) {
+            break;
+          }
+        }
+        Set<String> clips = new HashSet<>();
+        long duration = parsePlaylist(data, clips);
+        if (duration > longest) {
+          longest = duration;
+          longestClips = clips;
+        }
+      }
+      catch (IOException | RuntimeException e) {
+        LOGGER.debug("ISO: could not read playlist " + playlist.name + " in " + file + ": " + e.getMessage());
+      }
+    }
+    return longestClips;
+  }
+
+  /**
+   * parse the play items of a blu-ray playlist (MPLS)
+   *
+   * @param data
+   *          the content of the playlist
+   * @param clips
+   *          the names of the clips of the playlist will be added here
+   * @return the duration of the playlist in 45 kHz ticks; -1 if the data is no playlist
+   */
+  static long parsePlaylist(ByteBuffer data, Set<String> clips) {
+    if (data.limit() < 12 || !"MPLS".equals(readString(data, 0, 4))) {
+      return -1;
+    }
+    // the PlayList(): length (4), reserved (2), number of play items (2), number of sub paths (2), play items
+    int start = data.getInt(8);
+    int count = data.getShort(start + 6) & 0xffff;
+    int position = start + 10;
+    long duration = 0;
+    for (int i = 0; i < count; i++) {
+      // PlayItem(): length (2), clip name (5), codec (4), flags (2), STC id (1), IN time (4), OUT time (4)
+      int length = data.getShort(position) & 0xffff;
+      clips.add(readString(data, position + 2, 5));
+      long in = data.getInt(position + 14) & 0xffffffffL;
+      long out = data.getInt(position + 18) & 0xffffffffL;
+      duration += out - in;
+      position += 2 + length;
+    }
+    return duration;
+  }
+
+  private static String readString(ByteBuffer data, int position, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = data.get(position + i);
+    }
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * select the files of the main feature: DVD menus (VIDEO_TS.VOB, VTS_xx_0.VOB) are skipped, of the other VOBs only the title set of the
+   * biggest one is taken and of the blu-ray clips only the ones of the longest playlist
+   *
+   * @param videos
+   *          the video files of the image
+   * @param playlistClips
+   *          the clips of the longest playlist (see {@link #getPlaylistClips(List)}); empty to take all clips
+   * @return the video files of the main feature
+   */
+  public static List<Entry> selectFeature(List<Entry> videos, Set<String> playlistClips) {
+    // the title set of the biggest VOB
+    String titleSet = null;
+    long biggest = -1;
+    for (Entry video : videos) {
+      Matcher matcher = DVD_TITLE.matcher(video.getFilename());
+      if (matcher.matches() && !DVD_MENU.matcher(video.getFilename()).matches() && video.size > biggest) {
+        biggest = video.size;
+        titleSet = matcher.group(1);
+      }
+    }
+
+    List<Entry> feature = new ArrayList<>();
+    for (Entry video : videos) {
+      String filename = video.getFilename();
+      if (DVD_MENU.matcher(filename).matches()) {
+        continue;
+      }
+      Matcher dvd = DVD_TITLE.matcher(filename);
+      if (dvd.matches() && !dvd.group(1).equals(titleSet)) {
+        continue;
+      }
+      Matcher bluray = BLURAY_CLIP.matcher(filename);
+      if (bluray.matches() && !playlistClips.isEmpty() && !playlistClips.contains(bluray.group(1))) {
+        continue;
+      }
+      feature.add(video);
+    }
+    return feature;
+  }
+
+  private void inspect(Entry entry) throws InterruptedException {
+    MediaInfoPool pool = MediaInfoPool.getInstance();
+    MediaInfo mediaInfo = pool.acquire(entry.name);
+    Error crash = null;
+    try {
+      entry.snapshot = parse(mediaInfo, entry);
+    }
+    catch (IOException e) {
+      LOGGER.warn("ISO: could not read " + entry.name + " in " + file + ": " + e.getMessage());
+    }
+    // sometimes also an error is thrown (by the native library)
+    catch (Error e) {
+      LOGGER.error("Mediainfo crashed while reading file STREAM " + entry.name, e);
+      crash = e;
+    }
+    catch (Exception e) {
+      LOGGER.error("Mediainfo could not open file STREAM " + entry.name, e);
+    }
+    finally {
+      // only a crashed native handle is not reused
+      if (crash != null) {
+        pool.discard(mediaInfo, crash);
+      }
+      else {
+        pool.release(mediaInfo);
+      }
+    }
+  }
+
+  private Map<StreamKind, List<Map<String, String>>> parse(MediaInfo mediaInfo, Entry entry) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, entry.size));
+
+    // Preparing to fill MediaInfo with a buffer
+    mediaInfo.openBufferInit(entry.size, 0);
+
+    long position = 0;
+    while (position < entry.size && !Thread.currentThread().isInterrupted()) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), entry.size - position));
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, entry.offset + position + buffer.position()) < 0) {
+          break;
+        }
+      }
+      int read = buffer.position();
+      if (read <= 0) {
+        break;
+      }
+      position += read;
+
+      // Sending the buffer to MediaInfo
+      int result = mediaInfo.openBufferContinue(buffer.array(), read);
+      if ((result & 8) == 8) { // Status.Finalized
+        break;
+      }
+
+      // Testing if MediaInfo request to go elsewhere
+      long goTo = mediaInfo.openBufferContinueGoToGet();
+      if (goTo != -1) {
+        LOGGER.trace("ISO: Seek to " + goTo + " in " + entry.name);
+        position = goTo;
+        mediaInfo.openBufferInit(entry.size, position); // Informing MediaInfo we have seek
+      }
+    }
+
+    // This is the end of the stream, MediaInfo must finish some work
+    mediaInfo.openBufferFinalize();
+    return mediaInfo.snapshot(MediaFile.getMediaInfoParameters());
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * one file inside of the disc image
+   */
+  public static class Entry {
+    private final String                               name;
+    private final long                                 offset;
+    private final long                                 size;
+    private Map<StreamKind, List<Map<String, String>>> snapshot;
+
+    /**
+     * create a new entry
+     *
+     * @param name
+     *          the name/path of the file inside of the image
+     * @param offset
+     *          the offset of the file content in the image file
+     * @param size
+     *          the size of the file
+     */
+    public Entry(String name, long offset, long size) {
+      this.name = name;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * get the lower case file name (without the path inside of the image)
+     *
+     * @return the file name
+     */
+    public String getFilename() {
+      int index = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+      return name.substring(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * get the mediainfo snapshot of this entry
+     *
+     * @return the snapshot or null if the entry could not be parsed
+     */
+    public Map<StreamKind, List<Map<String, String>>> getSnapshot() {
+      return snapshot;
+    }
+  }
+}
@@ -15,21 +15,17 @@
  */
 package org.tinymediamanager.core;
 
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.Message.MessageLevel;
 import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.scraper.entities.MediaArtwork.MediaArtworkType;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The Class MediaEntityImageFetcherTask.
@@ -51,6 +47,9 @@ public class MediaEntityImageFetcherTask implements Runnable {
     this.type = type;
     this.filename = filename;
     this.firstImage = firstImage;
+
+    // all images of the entity are synced at once after the last download
+    ArtworkDownloader.start(entity);
   }
 
   @Override
@@ -105,21 +104,7 @@ public class MediaEntityImageFetcherTask implements Runnable {
 
         // fetch and store images
         if (!sameFile) {
-          Url url1 = new Url(url);
-          FileOutputStream outputStream = new FileOutputStream(tempFile.toFile());
-          InputStream is = url1.getInputStream();
-          IOUtils.copy(is, outputStream);
-          outputStream.flush();
-          try {
-            outputStream.getFD().sync(); // wait until file has been completely written
-            // give it a few milliseconds
-            Thread.sleep(150);
-          }
-          catch (Exception e) {
-            // empty here -> just not let the thread crash
-          }
-          outputStream.close();
-          is.close();
+          ArtworkDownloader.download(url, tempFile);
 
           // check if the file has been downloaded
           if (!Files.exists(tempFile) || Files.size(tempFile) == 0) {
@@ -139,6 +124,7 @@ public class MediaEntityImageFetcherTask implements Runnable {
           if (!Utils.moveFileSafe(tempFile, destFile)) {
             throw new Exception("renaming temp file failed: " + filename);
           }
+          ArtworkDownloader.addWrittenFile(entity, destFile);
         }
 
         // has tmm been shut down?
@@ -214,5 +200,8 @@ public class MediaEntityImageFetcherTask implements Runnable {
     catch (Exception e) {
       LOGGER.error("crashed thread: ", e);
     }
+    finally {
+      ArtworkDownloader.finish(entity);
+    }
   }
 }
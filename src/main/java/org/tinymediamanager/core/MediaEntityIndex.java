@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinymediamanager.core.entities.MediaEntity;
+
+/**
+ * The class MediaEntityIndex. Hash indexes for the lookup of media entities by their database id and by their path.<br>
+ * Lookups are lock free; the owner has to keep the index in sync on add/remove and path changes.
+ *
+ * @author Manuel Laggner
+ */
+public class MediaEntityIndex<T extends MediaEntity> {
+  private final Map<UUID, T>       idIndex   = new ConcurrentHashMap<>();
+  private final Map<Path, List<T>> pathIndex = new ConcurrentHashMap<>();
+
+  /**
+   * add the entity to the index
+   *
+   * @param entity
+   *          the entity to add
+   */
+  public void add(T entity) {
+    idIndex.put(entity.getDbId(), entity);
+    addPath(entity.getPath(), entity);
+  }
+
+  /**
+   * remove the entity from the index
+   *
+   * @param entity
+   *          the entity to remove
+   */
+  public void remove(T entity) {
+    idIndex.remove(entity.getDbId());
+    removePath(entity.getPath(), entity);
+  }
+
+  /**
+   * re-index the entity after its path has been changed (only if the entity is part of this index)
+   *
+   * @param entity
+   *          the entity with the changed path
+   * @param oldPath
+   *          the old path
+   * @param newPath
+   *          the new path
+   */
+  public void updatePath(T entity, String oldPath, String newPath) {
+    if (idIndex.get(entity.getDbId()) != entity) {
+      return;
+    }
+    removePath(oldPath, entity);
+    addPath(newPath, entity);
+  }
+
+  /**
+   * get the entity with the given database id
+   *
+   * @param uuid
+   *          the database id
+   * @return the entity or null
+   */
+  public T get(UUID uuid) {
+    if (uuid == null) {
+      return null;
+    }
+    return idIndex.get(uuid);
+  }
+
+  /**
+   * get all entities with the given path
+   *
+   * @param path
+   *          the path
+   * @return a list of all entities with this path (never null)
+   */
+  public List<T> getByPath(Path path) {
+    if (path == null) {
+      return Collections.emptyList();
+    }
+    List<T> entities = pathIndex.get(normalize(path));
+    if (entities == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(entities);
+  }
+
+  /**
+   * get the first entity with the given path
+   *
+   * @param path
+   *          the path
+   * @return the entity or null
+   */
+  public T getFirstByPath(Path path) {
+    List<T> entities = getByPath(path);
+    if (entities.isEmpty()) {
+      return null;
+    }
+    return entities.get(0);
+  }
+
+  /**
+   * remove all entries
+   */
+  public void clear() {
+    idIndex.clear();
+    pathIndex.clear();
+  }
+
+  private void addPath(String path, T entity) {
+    if (StringUtils.isBlank(path)) {
+      return;
+    }
+    Path key = normalize(Paths.get(path));
+    synchronized (pathIndex) {
+      List<T> entities = pathIndex.get(key);
+      if (entities == null) {
+        entities = new CopyOnWriteArrayList<>();
+        pathIndex.put(key, entities);
+      }
+      if (!entities.contains(entity)) {
+        entities.add(entity);
+      }
+    }
+  }
+
+  private void removePath(String path, T entity) {
+    if (StringUtils.isBlank(path)) {
+      return;
+    }
+    Path key = normalize(Paths.get(path));
+    synchronized (pathIndex) {
+      List<T> entities = pathIndex.get(key);
+      if (entities != null) {
+        entities.remove(entity);
+        if (entities.isEmpty()) {
+          pathIndex.remove(key);
+        }
+      }
+    }
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+}
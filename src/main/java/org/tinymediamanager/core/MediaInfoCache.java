@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The class MediaInfoCache. A persistent cache of the mediainfo results (the snapshot of all needed parameters) of the media files.<br>
+ * The results are keyed by the identity of the file (size, last modified and a hash of the first and last bytes) rather than its path - so
+ * unchanged files never need to be parsed by libmediainfo again; even after a reset of the database, a re-import or moving/renaming a data
+ * source. The cache has its own database file, which is not touched by {@link ITmmModule#initializeDatabase()}.
+ *
+ * @author Manuel Laggner
+ */
+public class MediaInfoCache {
+  private static final Logger         LOGGER          = LoggerFactory.getLogger(MediaInfoCache.class);
+  private static final String         MEDIAINFO_DB    = "mediainfo.db";
+  // the first and the last bytes of the file are hashed (one read each - also over network shares)
+  private static final int            HASH_BLOCK_SIZE = 8 * 1024;
+
+  private static MediaInfoCache       instance;
+
+  private final MVStore               mvStore;
+  private final MVMap<String, String> map;
+  private final ObjectReader          reader;
+  private final ObjectWriter          writer;
+
+  /**
+   * create a new cache
+   *
+   * @param file
+   *          the database file; null for an in-memory cache
+   */
+  MediaInfoCache(Path file) {
+    MVStore store = null;
+    if (file != null) {
+      try {
+        store = new MVStore.Builder().fileName(file.toString()).compress().open();
+      }
+      catch (Exception e) {
+        // the cache can be rebuilt at any time
+        LOGGER.warn("could not open the mediainfo cache - recreating it: " + e.getMessage());
+        Utils.deleteFileSafely(file);
+        store = new MVStore.Builder().fileName(file.toString()).compress().open();
+      }
+    }
+    else {
+      store = new MVStore.Builder().open();
+    }
+    this.mvStore = store;
+    this.map = mvStore.openMap("mediainfo");
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    this.reader = objectMapper.readerFor(new TypeReference<Map<StreamKind, List<Map<String, String>>>>() {
+    });
+    this.writer = objectMapper.writer();
+  }
+
+  /**
+   * get the instance of the mediainfo cache (the database will be opened on the first call)
+   *
+   * @return the mediainfo cache
+   */
+  public static synchronized MediaInfoCache getInstance() {
+    if (instance == null) {
+      instance = new MediaInfoCache(Paths.get(Settings.getInstance().getSettingsFolder(), MEDIAINFO_DB));
+    }
+    return instance;
+  }
+
+  /**
+   * close the database of the mediainfo cache (if it has been opened)
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.mvStore.close();
+      instance = null;
+    }
+  }
+
+  /**
+   * create the key (identity) of the given file
+   *
+   * @param file
+   *          the file
+   * @param version
+   *          the version of the cached data (e.g. a hash of the contained parameters); results of other versions are not used
+   * @return the key of the file or an empty string if the file could not be read
+   */
+  public String getKey(Path file, String version) {
+    try {
+      long size = Files.size(file);
+      long lastModified = Files.getLastModifiedTime(file).toMillis();
+      return version + "/" + size + "/" + lastModified + "/" + Long.toHexString(getPartialHash(file, size));
+    }
+    catch (IOException e) {
+      LOGGER.debug("could not create the mediainfo cache key for " + file + ": " + e.getMessage());
+      return "";
+    }
+  }
+
+  /**
+   * get the cached mediainfo result
+   *
+   * @param key
+   *          the key of the file (see {@link #getKey(Path, String)})
+   * @return the cached snapshot or null
+   */
+  public Map<StreamKind, List<Map<String, String>>> get(String key) {
+    if (key.isEmpty()) {
+      return null;
+    }
+    String value = map.get(key);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return reader.readValue(value);
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not read the cached mediainfo - removing it: " + e.getMessage());
+      map.remove(key);
+      return null;
+    }
+  }
+
+  /**
+   * store the mediainfo result
+   *
+   * @param key
+   *          the key of the file (see {@link #getKey(Path, String)})
+   * @param snapshot
+   *          the snapshot to store
+   */
+  public void put(String key, Map<StreamKind, List<Map<String, String>>> snapshot) {
+    if (key.isEmpty() || snapshot == null) {
+      return;
+    }
+    try {
+      map.put(key, writer.writeValueAsString(snapshot));
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not cache the mediainfo: " + e.getMessage());
+    }
+  }
+
+  /**
+   * remove all cached results
+   */
+  public void clear() {
+    map.clear();
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  private static long getPartialHash(Path file, long size) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(HASH_BLOCK_SIZE);
+      readBlock(channel, buffer, 0, crc);
+      if (size > HASH_BLOCK_SIZE) {
+        readBlock(channel, buffer, Math.max(size - HASH_BLOCK_SIZE, HASH_BLOCK_SIZE), crc);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private static void readBlock(FileChannel channel, ByteBuffer buffer, long position, CRC32 crc) throws IOException {
+    buffer.clear();
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        break;
+      }
+    }
+    crc.update(buffer.array(), 0, buffer.position());
+  }
+}
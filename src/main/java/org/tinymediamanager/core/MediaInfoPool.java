@@ -0,0 +1,309 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.Globals;
+import org.tinymediamanager.thirdparty.MediaInfo;
+
+/**
+ * The class MediaInfoPool. A bounded pool of native mediainfo handles: the handles are created once, checked out for one file and reset
+ * (closed) when they are returned. The size of the pool also limits the amount of files parsed by libmediainfo at the same time.<br>
+ * Handles which are not returned are detected (the owning thread died or the handle is checked out for too long); handles which crashed
+ * in the native library (an {@link Error} while parsing a file) are quarantined - they are never used (or freed) again, because the native
+ * state of them is unknown.
+ *
+ * @author Manuel Laggner
+ */
+public class MediaInfoPool {
+  private static final Logger            LOGGER          = LoggerFactory.getLogger(MediaInfoPool.class);
+  // a checked out handle is reported as leaked after this time
+  private static final long              LEAK_TIMEOUT    = TimeUnit.MINUTES.toMillis(10);
+  private static final long              LEAK_CHECK      = TimeUnit.SECONDS.toMillis(30);
+
+  private static MediaInfoPool           instance;
+
+  private final int                      size;
+  private final Semaphore                permits;
+  private final BlockingDeque<MediaInfo> idle            = new LinkedBlockingDeque<>();
+  private final Map<MediaInfo, Lease>    leases          = new IdentityHashMap<>();
+  private final List<MediaInfo>          quarantine      = new ArrayList<>();
+  private final AtomicLong               created         = new AtomicLong();
+  private final AtomicLong               checkouts       = new AtomicLong();
+
+  /**
+   * create a new pool
+   *
+   * @param size
+   *          the max amount of handles
+   */
+  MediaInfoPool(int size) {
+    this.size = Math.max(1, size);
+    this.permits = new Semaphore(this.size, true);
+  }
+
+  /**
+   * get the instance of the pool (the size is taken from the settings)
+   *
+   * @return the mediainfo pool
+   */
+  public static synchronized MediaInfoPool getInstance() {
+    if (instance == null) {
+      instance = new MediaInfoPool(Globals.settings.getMediaInfoHandles());
+    }
+    return instance;
+  }
+
+  /**
+   * free all idle handles of the pool
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.disposeIdle();
+      instance = null;
+    }
+  }
+
+  /**
+   * check out a handle; blocks while all handles are in use. If the handle cannot be created (e.g. the native library is missing), the
+   * error is thrown and nothing has to be returned
+   *
+   * @param name
+   *          the name of the file to parse (for the leak detection)
+   * @return the handle
+   * @throws InterruptedException
+   *           if interrupted while waiting for a free handle
+   */
+  public MediaInfo acquire(String name) throws InterruptedException {
+    reclaimLeaks();
+    while (!permits.tryAcquire(LEAK_CHECK, TimeUnit.MILLISECONDS)) {
+      reclaimLeaks();
+    }
+
+    // the last returned handle first
+    MediaInfo mediaInfo = idle.pollFirst();
+    if (mediaInfo == null) {
+      try {
+        mediaInfo = createHandle();
+      }
+      catch (RuntimeException | Error e) {
+        // no handle has been checked out (the caller cannot return it)
+        permits.release();
+        throw e;
+      }
+      created.incrementAndGet();
+    }
+    checkouts.incrementAndGet();
+    synchronized (leases) {
+      leases.put(mediaInfo, new Lease(name));
+    }
+    return mediaInfo;
+  }
+
+  /**
+   * create a new native handle
+   *
+   * @return the handle
+   */
+  MediaInfo createHandle() {
+    MediaInfo mediaInfo = new MediaInfo();
+    mediaInfo.init();
+    return mediaInfo;
+  }
+
+  /**
+   * return a handle to the pool; the opened file will be closed
+   *
+   * @param mediaInfo
+   *          the handle
+   */
+  public void release(MediaInfo mediaInfo) {
+    if (mediaInfo == null || removeLease(mediaInfo) == null) {
+      // already reclaimed or not from this pool
+      return;
+    }
+    try {
+      mediaInfo.close();
+      idle.offerFirst(mediaInfo);
+    }
+    catch (Error e) {
+      addToQuarantine(mediaInfo, "could not reset mediainfo handle", e);
+    }
+    catch (Exception e) {
+      // not reusable - but free it (and the opened file)
+      LOGGER.debug("could not reset mediainfo handle: " + e.getMessage());
+      dispose(mediaInfo);
+    }
+    finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * return a handle which crashed in the native library while parsing a file; the handle will never be used again. Handles which just
+   * failed (an exception on the java side) have to be returned with {@link #release(MediaInfo)}. A null handle (the checkout itself failed)
+   * is ignored - the checkout did not keep a permit
+   *
+   * @param mediaInfo
+   *          the handle
+   * @param cause
+   *          the error of the handle
+   */
+  public void discard(MediaInfo mediaInfo, Error cause) {
+    if (mediaInfo == null) {
+      return;
+    }
+    Lease lease = removeLease(mediaInfo);
+    if (lease == null) {
+      return;
+    }
+    addToQuarantine(mediaInfo, "mediainfo handle crashed while parsing " + lease.name, cause);
+    permits.release();
+  }
+
+  private Lease removeLease(MediaInfo mediaInfo) {
+    synchronized (leases) {
+      return leases.remove(mediaInfo);
+    }
+  }
+
+  private void addToQuarantine(MediaInfo mediaInfo, String message, Throwable cause) {
+    // do not free the native memory of the handle (a crashed handle could crash the whole JVM); keep a reference so that it is never
+    // finalized either
+    synchronized (quarantine) {
+      quarantine.add(mediaInfo);
+      LOGGER.warn(message + " - quarantined (" + quarantine.size() + " handles in quarantine)" + (cause != null ? ": " + cause : ""));
+    }
+  }
+
+  /**
+   * detect handles which have not been returned: handles of dead threads are reclaimed, handles which are checked out for too long are
+   * reported
+   */
+  private void reclaimLeaks() {
+    long now = System.currentTimeMillis();
+    List<MediaInfo> reclaimed = new ArrayList<>();
+    synchronized (leases) {
+      for (Map.Entry<MediaInfo, Lease> entry : leases.entrySet()) {
+        Lease lease = entry.getValue();
+        if (!lease.thread.isAlive()) {
+          LOGGER.warn("mediainfo handle for " + lease.name + " has not been returned by " + lease.thread.getName() + " - reclaiming it",
+              lease.origin);
+          reclaimed.add(entry.getKey());
+        }
+        else if (!lease.reported && now - lease.time > LEAK_TIMEOUT) {
+          LOGGER.warn("mediainfo handle for " + lease.name + " is checked out by " + lease.thread.getName() + " since "
+              + (now - lease.time) / 1000 + "s - possible leak", lease.origin);
+          lease.reported = true;
+        }
+      }
+      for (MediaInfo mediaInfo : reclaimed) {
+        leases.remove(mediaInfo);
+      }
+    }
+    // the state of a leaked handle is unknown
+    for (MediaInfo mediaInfo : reclaimed) {
+      addToQuarantine(mediaInfo, "leaked mediainfo handle", null);
+      permits.release();
+    }
+  }
+
+  private void disposeIdle() {
+    MediaInfo mediaInfo;
+    while ((mediaInfo = idle.pollFirst()) != null) {
+      dispose(mediaInfo);
+    }
+  }
+
+  private void dispose(MediaInfo mediaInfo) {
+    try {
+      if (mediaInfo.isLoaded()) {
+        mediaInfo.dispose();
+      }
+    }
+    catch (Exception | Error e) {
+      LOGGER.debug("could not dispose mediainfo handle: " + e.getMessage());
+    }
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getIdle() {
+    return idle.size();
+  }
+
+  public int getLeased() {
+    synchronized (leases) {
+      return leases.size();
+    }
+  }
+
+  public int getQuarantined() {
+    synchronized (quarantine) {
+      return quarantine.size();
+    }
+  }
+
+  /**
+   * the amount of created native handles (the rest of the checkouts reused a handle)
+   *
+   * @return the amount of created handles
+   */
+  public long getCreated() {
+    return created.get();
+  }
+
+  public long getCheckouts() {
+    return checkouts.get();
+  }
+
+  @Override
+  public String toString() {
+    return "mediainfo pool: " + getLeased() + "/" + size + " in use, " + getIdle() + " idle, " + getQuarantined() + " quarantined, "
+        + created.get() + " created for " + checkouts.get() + " checkouts";
+  }
+
+  /**
+   * the information about one checked out handle
+   */
+  private static class Lease {
+    private final String    name;
+    private final Thread    thread;
+    private final long      time;
+    private final Exception origin;
+    private boolean         reported = false;
+
+    Lease(String name) {
+      this.name = name;
+      this.thread = Thread.currentThread();
+      this.time = System.currentTimeMillis();
+      this.origin = new Exception("checkout of the mediainfo handle");
+    }
+  }
+}
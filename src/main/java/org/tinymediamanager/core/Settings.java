@@ -96,12 +96,22 @@ public class Settings extends AbstractModelObject {
   private final static String         PROXY_PASSWORD              = "proxyPassword";
   private final static String         IMAGE_CACHE                 = "imageCache";
   private final static String         IMAGE_CACHE_TYPE            = "imageCacheType";
+  private final static String         IMAGE_CACHE_SIZE            = "imageCacheSize";
+  private final static String         HTTP_CACHE_SIZE             = "httpCacheSize";
   private final static String         LANGUAGE                    = "language";
   private final static String         WOL_DEVICES                 = "wolDevices";
   private final static String         ENABLE_ANALYTICS            = "enableAnalytics";
 
   private final static String         UPNP_SHARE_LIBRARY          = "upnpShareLibrary";
   private final static String         UPNP_PLAY_ON_REMOTE         = "upnpRemotePlay";
+  private final static String         DATABASE_CODEC              = "databaseCodec";
+  private final static String         DATABASE_WRITE_DELAY        = "databaseWriteDelay";
+  private final static String         WATCH_DATASOURCES           = "watchDatasources";
+  private final static String         WATCHER_DELAY               = "watcherDelay";
+  private final static String         WATCHER_POLL_INTERVAL       = "watcherPollInterval";
+  private final static String         IO_THREADS_LOCAL            = "ioThreadsLocal";
+  private final static String         IO_THREADS_NETWORK          = "ioThreadsNetwork";
+  private final static String         MEDIAINFO_HANDLES           = "mediaInfoHandles";
 
   @XmlElementWrapper(name = TITLE_PREFIX)
   @XmlElement(name = PREFIX)
@@ -139,6 +149,8 @@ public class Settings extends AbstractModelObject {
 
   private boolean                     imageCache                  = true;
   private CacheType                   imageCacheType              = CacheType.SMOOTH;
+  private int                         imageCacheSize              = 4096;
+  private int                         httpCacheSize               = 256;
   private boolean                     dirty                       = false;
   private MovieSettings               movieSettings               = null;
   private TvShowSettings              tvShowSettings              = null;
@@ -162,6 +174,15 @@ public class Settings extends AbstractModelObject {
   private boolean                     upnpShareLibrary            = false;
   private boolean                     upnpRemotePlay              = false;
 
+  private DatabaseValueCodec          databaseCodec               = DatabaseValueCodec.JSON;
+  private int                         databaseWriteDelay          = 500;
+  private boolean                     watchDatasources            = false;
+  private int                         watcherDelay                = 10000;
+  private int                         watcherPollInterval         = 300;
+  private int                         ioThreadsLocal              = 2;
+  private int                         ioThreadsNetwork            = 3;
+  private int                         mediaInfoHandles            = 4;
+
   /**
    * Instantiates a new settings.
    */
@@ -988,6 +1009,48 @@ public class Settings extends AbstractModelObject {
     firePropertyChange(IMAGE_CACHE_TYPE, oldValue, newValue);
   }
 
+  /**
+   * Gets the max size of the image cache in MB (0 = unlimited); the least recently used images are removed if the cache grows bigger.
+   * 
+   * @return the max size of the image cache in MB
+   */
+  public int getImageCacheSize() {
+    return imageCacheSize;
+  }
+
+  /**
+   * Sets the max size of the image cache in MB; the cache is shrunk immediately if it is bigger than the new size.
+   * 
+   * @param newValue
+   *          the max size of the image cache in MB; 0 for unlimited
+   */
+  public void setImageCacheSize(int newValue) {
+    int oldValue = this.imageCacheSize;
+    this.imageCacheSize = newValue;
+    firePropertyChange(IMAGE_CACHE_SIZE, oldValue, newValue);
+  }
+
+  /**
+   * Gets the max size of the http response cache in MB (0 = disabled).
+   * 
+   * @return the max size of the http response cache in MB
+   */
+  public int getHttpCacheSize() {
+    return httpCacheSize;
+  }
+
+  /**
+   * Sets the max size of the http response cache in MB (takes effect after a restart).
+   * 
+   * @param newValue
+   *          the max size of the http response cache in MB; 0 to disable the cache
+   */
+  public void setHttpCacheSize(int newValue) {
+    int oldValue = this.httpCacheSize;
+    this.httpCacheSize = newValue;
+    firePropertyChange(HTTP_CACHE_SIZE, oldValue, newValue);
+  }
+
   /**
    * is our library shared via UPNP?
    * 
@@ -1170,4 +1233,172 @@ public class Settings extends AbstractModelObject {
     this.enableAnalytics = newValue;
     firePropertyChange(ENABLE_ANALYTICS, oldValue, newValue);
   }
+
+  /**
+   * get the codec used to store our entities in the databases
+   * 
+   * @return the database codec
+   */
+  public DatabaseValueCodec getDatabaseCodec() {
+    return databaseCodec;
+  }
+
+  /**
+   * set the codec used to store our entities in the databases (existing data will be migrated at the next start)
+   * 
+   * @param newValue
+   *          the database codec
+   */
+  public void setDatabaseCodec(DatabaseValueCodec newValue) {
+    DatabaseValueCodec oldValue = this.databaseCodec;
+    this.databaseCodec = newValue;
+    firePropertyChange(DATABASE_CODEC, oldValue, newValue);
+  }
+
+  /**
+   * get the time (in ms) in which writes to the databases are collected before they are written in one batch
+   * 
+   * @return the write delay in ms (0 = write synchronously)
+   */
+  public int getDatabaseWriteDelay() {
+    return databaseWriteDelay;
+  }
+
+  /**
+   * set the time (in ms) in which writes to the databases are collected before they are written in one batch (takes effect at the next start)
+   * 
+   * @param newValue
+   *          the write delay in ms (0 = write synchronously)
+   */
+  public void setDatabaseWriteDelay(int newValue) {
+    int oldValue = this.databaseWriteDelay;
+    this.databaseWriteDelay = newValue;
+    firePropertyChange(DATABASE_WRITE_DELAY, oldValue, newValue);
+  }
+
+  /**
+   * should the data sources be watched for changes (and changed folders be updated automatically)?
+   * 
+   * @return true if the data sources are watched
+   */
+  public boolean isWatchDatasources() {
+    return watchDatasources;
+  }
+
+  /**
+   * should the data sources be watched for changes (and changed folders be updated automatically)?
+   * 
+   * @param newValue
+   *          true to watch the data sources
+   */
+  public void setWatchDatasources(boolean newValue) {
+    boolean oldValue = this.watchDatasources;
+    this.watchDatasources = newValue;
+    firePropertyChange(WATCH_DATASOURCES, oldValue, newValue);
+  }
+
+  /**
+   * get the time (in ms) without any further change in a folder before the folder gets updated
+   * 
+   * @return the delay in ms
+   */
+  public int getWatcherDelay() {
+    return watcherDelay;
+  }
+
+  /**
+   * set the time (in ms) without any further change in a folder before the folder gets updated
+   * 
+   * @param newValue
+   *          the delay in ms
+   */
+  public void setWatcherDelay(int newValue) {
+    int oldValue = this.watcherDelay;
+    this.watcherDelay = newValue;
+    firePropertyChange(WATCHER_DELAY, oldValue, newValue);
+  }
+
+  /**
+   * get the interval (in s) for polling data sources which cannot be watched (e.g. network shares)
+   * 
+   * @return the poll interval in s
+   */
+  public int getWatcherPollInterval() {
+    return watcherPollInterval;
+  }
+
+  /**
+   * set the interval (in s) for polling data sources which cannot be watched (e.g. network shares)
+   * 
+   * @param newValue
+   *          the poll interval in s
+   */
+  public void setWatcherPollInterval(int newValue) {
+    int oldValue = this.watcherPollInterval;
+    this.watcherPollInterval = newValue;
+    firePropertyChange(WATCHER_POLL_INTERVAL, oldValue, newValue);
+  }
+
+  /**
+   * get the amount of parallel I/O tasks (e.g. parsing folders or reading media information) per local storage device
+   * 
+   * @return the amount of threads per local device
+   */
+  public int getIoThreadsLocal() {
+    return ioThreadsLocal;
+  }
+
+  /**
+   * set the amount of parallel I/O tasks (e.g. parsing folders or reading media information) per local storage device
+   * 
+   * @param newValue
+   *          the amount of threads per local device
+   */
+  public void setIoThreadsLocal(int newValue) {
+    int oldValue = this.ioThreadsLocal;
+    this.ioThreadsLocal = newValue;
+    firePropertyChange(IO_THREADS_LOCAL, oldValue, newValue);
+  }
+
+  /**
+   * get the amount of parallel I/O tasks per network share (network shares are latency bound and profit from more parallel requests)
+   * 
+   * @return the amount of threads per network share
+   */
+  public int getIoThreadsNetwork() {
+    return ioThreadsNetwork;
+  }
+
+  /**
+   * set the amount of parallel I/O tasks per network share
+   * 
+   * @param newValue
+   *          the amount of threads per network share
+   */
+  public void setIoThreadsNetwork(int newValue) {
+    int oldValue = this.ioThreadsNetwork;
+    this.ioThreadsNetwork = newValue;
+    firePropertyChange(IO_THREADS_NETWORK, oldValue, newValue);
+  }
+
+  /**
+   * get the max amount of native mediainfo handles (= the max amount of files which are parsed by libmediainfo at the same time)
+   * 
+   * @return the amount of mediainfo handles
+   */
+  public int getMediaInfoHandles() {
+    return mediaInfoHandles;
+  }
+
+  /**
+   * set the max amount of native mediainfo handles (takes effect after a restart)
+   * 
+   * @param newValue
+   *          the amount of mediainfo handles
+   */
+  public void setMediaInfoHandles(int newValue) {
+    int oldValue = this.mediaInfoHandles;
+    this.mediaInfoHandles = newValue;
+    firePropertyChange(MEDIAINFO_HANDLES, oldValue, newValue);
+  }
 }
@@ -67,7 +67,8 @@ public class TmmModuleManager {
    * start up tmm - do initialization code here
    */
   public void startUp() {
-
+    ImageCache.init();
+    HttpCache.init();
   }
 
   /**
@@ -84,6 +85,10 @@ public class TmmModuleManager {
         }
       }
     }
+    MediaInfoCache.shutdown();
+    MediaInfoPool.shutdown();
+    ImageCache.shutdown();
+    HttpCache.shutdown();
   }
 
   /**
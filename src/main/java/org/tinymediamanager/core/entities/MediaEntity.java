@@ -36,6 +36,7 @@ import static org.tinymediamanager.core.Constants.VOTES;
 import static org.tinymediamanager.core.Constants.YEAR;
 
 import java.awt.Dimension;
+import java.beans.PropertyChangeEvent;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -52,6 +53,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -106,6 +108,12 @@ public abstract class MediaEntity extends AbstractModelObject {
   protected boolean                    duplicate         = false;
   protected ReadWriteLock              readWriteLock     = new ReentrantReadWriteLock();
 
+  // dirty tracking for the database
+  private final AtomicLong             modificationCount = new AtomicLong();
+  private volatile long                persistedCount    = -1;
+  private volatile long                persistedFilesCount;
+  private volatile long                persistedHash;
+
   public MediaEntity() {
   }
 
@@ -140,6 +148,8 @@ public abstract class MediaEntity extends AbstractModelObject {
         this.artworkUrlMap.put(key, other.getArtworkUrl(key));
       }
     }
+
+    markModified();
   }
 
   /**
@@ -157,6 +167,99 @@ public abstract class MediaEntity extends AbstractModelObject {
     else {
       Collections.sort(mediaFiles);
     }
+    markModified();
+  }
+
+  /**
+   * mark this entity as modified (needed if a nested object has been changed without firing an event on this entity)
+   */
+  public void markModified() {
+    modificationCount.incrementAndGet();
+  }
+
+  /**
+   * check if this entity has been modified since it has been written to/read from the database the last time.<br>
+   * All property changes (events) and changes of the media files are tracked
+   * 
+   * @return true if the entity has to be serialized again
+   */
+  public boolean isModifiedSincePersist() {
+    return persistedCount != modificationCount.get() || persistedFilesCount != getMediaFilesModificationCount();
+  }
+
+  /**
+   * get the modification stamp of this entity; needs to be fetched <b>before</b> serializing the entity
+   * 
+   * @return the modification stamp consisting of the entity and the media files counters
+   */
+  public long[] getModificationStamp() {
+    return new long[] { modificationCount.get(), getMediaFilesModificationCount() };
+  }
+
+  /**
+   * remember the state which has been written to/read from the database
+   * 
+   * @param stamp
+   *          the modification stamp fetched before serializing
+   * @param hash
+   *          the content hash of the stored value
+   */
+  public void setPersisted(long[] stamp, long hash) {
+    this.persistedHash = hash;
+    this.persistedFilesCount = stamp[1];
+    this.persistedCount = stamp[0];
+  }
+
+  /**
+   * forget the persisted state (after the entity has been removed from the database)
+   */
+  public void clearPersisted() {
+    this.persistedCount = -1;
+  }
+
+  /**
+   * get the content hash of the stored value (only valid if this entity has been persisted/loaded)
+   * 
+   * @return the content hash
+   */
+  public long getPersistedHash() {
+    return persistedHash;
+  }
+
+  /**
+   * was this entity already written to/read from the database?
+   * 
+   * @return true if there is a persisted state
+   */
+  public boolean isPersisted() {
+    return persistedCount >= 0;
+  }
+
+  private long getMediaFilesModificationCount() {
+    // changes of the list itself are tracked by the entity counter; for an unchanged list this sum is strictly increasing
+    long count = 0;
+    readWriteLock.readLock().lock();
+    try {
+      for (MediaFile mediaFile : mediaFiles) {
+        count += mediaFile.getModificationCount();
+      }
+    }
+    finally {
+      readWriteLock.readLock().unlock();
+    }
+    return count;
+  }
+
+  @Override
+  protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    modificationCount.incrementAndGet();
+    super.firePropertyChange(propertyName, oldValue, newValue);
+  }
+
+  @Override
+  protected void firePropertyChange(PropertyChangeEvent evt) {
+    modificationCount.incrementAndGet();
+    super.firePropertyChange(evt);
   }
 
   /**
@@ -696,6 +799,7 @@ public abstract class MediaEntity extends AbstractModelObject {
       mediaFiles.remove(i);
     }
     readWriteLock.writeLock().unlock();
+    markModified();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
     }
@@ -726,6 +830,7 @@ public abstract class MediaEntity extends AbstractModelObject {
       }
     }
     readWriteLock.writeLock().unlock();
+    markModified();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
     }
@@ -743,6 +848,7 @@ public abstract class MediaEntity extends AbstractModelObject {
       }
     }
     readWriteLock.writeLock().unlock();
+    markModified();
     for (MediaFile mediaFile : changedMediafiles) {
       fireRemoveEventForMediaFile(mediaFile);
     }
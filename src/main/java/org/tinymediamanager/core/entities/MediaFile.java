@@ -26,8 +26,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -36,6 +38,7 @@ import java.util.Scanner;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,10 +54,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.AbstractModelObject;
+import org.tinymediamanager.core.IsoInspector;
+import org.tinymediamanager.core.MediaInfoCache;
+import org.tinymediamanager.core.MediaInfoPool;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.scraper.util.LanguageUtils;
 import org.tinymediamanager.scraper.util.StrgUtils;
+import org.tinymediamanager.thirdparty.ContainerProbe;
 import org.tinymediamanager.thirdparty.MediaInfo;
 import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
 import org.tinymediamanager.thirdparty.MediaInfoXMLParser;
@@ -78,6 +85,9 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
   private static final String                        FILESIZE_IN_MB       = "filesizeInMegabytes";
   private static final List<String>                  PLEX_EXTRA_FOLDERS   = Arrays.asList("behind the scenes", "behindthescenes", "deleted scenes",
       "deletedscenes", "featurettes", "interviews", "scenes", "shorts");
+  // all mediainfo parameters which are read in gatherMediaInformation - only these are fetched from libmediainfo (and cached)
+  private static final Map<StreamKind, List<String>> MEDIAINFO_PARAMETERS = createMediaInfoParameters();
+  private static final int                           ISO_BLOCK_SIZE       = 2048;
 
   private static Pattern                             moviesetPattern      = Pattern
       .compile("(?i)movieset-(poster|fanart|banner|disc|discart|logo|clearlogo|clearart|thumb)\\..{2,4}");
@@ -159,11 +169,11 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
   @JsonProperty
   private List<MediaFileSubtitle>                    subtitles            = new CopyOnWriteArrayList<>();
 
-  private MediaInfo                                  mediaInfo;
   private Map<StreamKind, List<Map<String, String>>> miSnapshot           = null;
   private Path                                       file                 = null;
   private boolean                                    isISO                = false;
   private boolean                                    isAnimatedGraphic    = false;
+  private final AtomicLong                           modificationCount    = new AtomicLong();
 
   /**
    * "clones" a new media file.
@@ -297,6 +307,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     sub.setCodec(getExtension());
     subtitles.clear();
     subtitles.add(sub);
+    markModified();
   }
 
   /**
@@ -671,6 +682,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
 
   public void setType(MediaFileType type) {
     this.type = type;
+    markModified();
   }
 
   public int getStacking() {
@@ -679,6 +691,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
 
   public void setStacking(int stacking) {
     this.stacking = stacking;
+    markModified();
   }
 
   public String getStackingMarker() {
@@ -687,6 +700,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
 
   public void setStackingMarker(String stackingMarker) {
     this.stackingMarker = stackingMarker;
+    markModified();
   }
 
   /**
@@ -711,6 +725,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
       // try to parse from parent directory
       this.stackingMarker = Utils.getFolderStackingMarker(FilenameUtils.getBaseName(getPath()));
     }
+    markModified();
   }
 
   public List<MediaFileSubtitle> getSubtitles() {
@@ -733,11 +748,13 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
 
   public void setSubtitles(List<MediaFileSubtitle> subtitles) {
     this.subtitles = subtitles;
+    markModified();
   }
 
   public void addSubtitle(MediaFileSubtitle subtitle) {
     if (!this.subtitles.contains(subtitle)) {
       this.subtitles.add(subtitle);
+      markModified();
     }
   }
 
@@ -746,6 +763,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
    */
   public void clearAllSubtitles() {
     this.subtitles.clear();
+    markModified();
   }
 
   public boolean hasSubtitles() {
@@ -765,44 +783,99 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
   }
 
+  private static Map<StreamKind, List<String>> createMediaInfoParameters() {
+    Map<StreamKind, List<String>> parameters = new EnumMap<>(StreamKind.class);
+    parameters.put(StreamKind.General, Arrays.asList("Codec/Extensions", "Format", "AudioCount", "TextCount", "OverallBitRate", "Duration"));
+    parameters.put(StreamKind.Video, Arrays.asList("Height", "ScanType", "Width", "CodecID/Hint", "Format", "BitDepth", "MultiView_Count",
+        "MultiView_Layout"));
+    parameters.put(StreamKind.Audio, Arrays.asList("StreamCount", "CodecID/Hint", "Format", "Format_Profile", "Channel(s)_Original", "Channel(s)",
+        "BitRate", "BitRate_Maximum", "BitRate_Minimum", "BitRate_Nominal", "BitRate_Mode", "Language/String", "Language", "BitDepth"));
+    parameters.put(StreamKind.Text, Arrays.asList("StreamCount", "CodecID/Hint", "Format", "Language/String", "Language", "Forced"));
+    parameters.put(StreamKind.Image, Arrays.asList("Height", "ScanType", "Width", "CodecID/Hint", "Format", "BitDepth"));
+    return Collections.unmodifiableMap(parameters);
+  }
+
+  /**
+   * get all mediainfo parameters which are read from the media files (per stream kind)
+   * 
+   * @return an unmodifiable map of all needed parameters
+   */
+  public static Map<StreamKind, List<String>> getMediaInfoParameters() {
+    return MEDIAINFO_PARAMETERS;
+  }
+
   /**
    * instantiates and gets new mediainfo object.
    */
   private void getMediaInfoSnapshot() {
-    if (mediaInfo == null) {
-      mediaInfo = new MediaInfo();
+    if (miSnapshot != null) {
+      return;
     }
 
-    if (miSnapshot == null) {
-      try {
-        if (!mediaInfo.open(this.getFileAsPath())) {
-          LOGGER.error("Mediainfo could not open file: " + getFileAsPath());
+    // unchanged files (also moved/renamed ones) do not need to be parsed again; the parameter list is the version of the cached data
+    MediaInfoCache cache = MediaInfoCache.getInstance();
+    String cacheKey = cache.getKey(getFileAsPath(), Integer.toHexString(MEDIAINFO_PARAMETERS.toString().hashCode()));
+    miSnapshot = cache.get(cacheKey);
+    if (miSnapshot != null) {
+      LOGGER.trace("got MI from the cache");
+      return;
+    }
 
-          // clear references
-          closeMediaInfo();
-        }
-        else {
-          miSnapshot = mediaInfo.snapshot();
-        }
+    // the headers of MKV/MP4 files can be read directly (without libmediainfo)
+    if (ContainerProbe.isSupported(getFileAsPath())) {
+      miSnapshot = ContainerProbe.probe(getFileAsPath());
+      if (miSnapshot != null) {
+        LOGGER.trace("got MI from the container probe");
+        cache.put(cacheKey, miSnapshot);
+        return;
       }
-      // sometimes also an error is thrown
-      catch (Exception | Error e) {
-        LOGGER.error("Mediainfo could not open file: " + getFileAsPath() + "; " + e.getMessage());
+    }
 
-        // clear references
-        closeMediaInfo();
+    // fetch only the needed parameters and return the native handle right away
+    MediaInfoPool pool = MediaInfoPool.getInstance();
+    MediaInfo mediaInfo = null;
+    Error crash = null;
+    try {
+      mediaInfo = pool.acquire(getFilename());
+      if (!mediaInfo.open(this.getFileAsPath())) {
+        LOGGER.error("Mediainfo could not open file: " + getFileAsPath());
+      }
+      else {
+        miSnapshot = mediaInfo.snapshot(MEDIAINFO_PARAMETERS);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // sometimes also an error is thrown (by the native library)
+    catch (Error e) {
+      LOGGER.error("Mediainfo crashed while reading file: " + getFileAsPath() + "; " + e.getMessage());
+      crash = e;
+      closeMediaInfo();
+    }
+    catch (Exception e) {
+      LOGGER.error("Mediainfo could not read file: " + getFileAsPath() + "; " + e.getMessage());
+      closeMediaInfo();
+    }
+    finally {
+      // only a crashed native handle is not reused (the released handle closes the file)
+      if (crash != null) {
+        pool.discard(mediaInfo, crash);
+      }
+      else {
+        pool.release(mediaInfo);
       }
     }
+
+    if (miSnapshot != null) {
+      cache.put(cacheKey, miSnapshot);
+    }
   }
 
   /**
-   * Closes the connection to the mediainfo lib.
+   * Clears the mediainfo results.
    */
   private void closeMediaInfo() {
-    if (mediaInfo != null) {
-      mediaInfo.close();
-      mediaInfo = null;
-    }
     miSnapshot = null;
   }
 
@@ -826,7 +899,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
       for (String key : keys) {
         List<Map<String, String>> stream = miSnapshot.get(streamKind);
         if (stream != null) {
-          LinkedHashMap<String, String> info = (LinkedHashMap<String, String>) stream.get(streamNumber);
+          Map<String, String> info = stream.get(streamNumber);
           if (info != null) {
             String value = info.get(key);
             // System.out.println(" " + streamKind + " " + key + " = " + value);
@@ -1357,6 +1430,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
 
   public void setAudioStreams(List<MediaFileAudioStream> audioStreams) {
     this.audioStreams = audioStreams;
+    markModified();
   }
 
   public String getCombinedCodecs() {
@@ -1389,6 +1463,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
    */
   public void setVideo3DFormat(String video3DFormat) {
     this.video3DFormat = video3DFormat;
+    markModified();
   }
 
   /**
@@ -1409,6 +1484,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
    */
   public void setAnimatedGraphic(boolean isAnimatedGraphic) {
     this.isAnimatedGraphic = isAnimatedGraphic;
+    markModified();
   }
 
   /**
@@ -1467,93 +1543,78 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     }
 
     if (miSnapshot == null) {
-      int BUFFER_SIZE = 64 * 1024;
       Iso9660FileSystem image = null;
       try {
         LOGGER.trace("ISO: Open");
         image = new Iso9660FileSystem(getFileAsPath().toFile(), true);
-        int dur = 0;
         long siz = 0L; // accumulated filesize
-        long biggest = 0L;
 
+        List<MediaFile> files = new ArrayList<>();
+        List<IsoInspector.Entry> entries = new ArrayList<>();
+        List<IsoInspector.Entry> playlists = new ArrayList<>();
         for (Iso9660FileEntry entry : image) {
           LOGGER.trace("ISO: got entry " + entry.getName() + " size:" + entry.getSize());
           siz += entry.getSize();
 
+          if (entry.getName().toLowerCase(Locale.ROOT).endsWith(".mpls")) {
+            playlists.add(new IsoInspector.Entry(entry.getPath(), (long) entry.getStartBlock() * ISO_BLOCK_SIZE, entry.getSize()));
+            continue;
+          }
           if (entry.getSize() <= 5000) { // small files and "." entries
             continue;
           }
 
           MediaFile mf = new MediaFile(Paths.get(getFileAsPath().toString(), entry.getPath())); // set ISO as MF path
-          // mf.setMediaInfo(fileMI); // we need set the inner MI
           if (mf.getType() == MediaFileType.VIDEO && mf.isDiscFile()) { // would not count video_ts.bup for ex (and not .dat files or other types)
             mf.setFilesize(entry.getSize());
+            files.add(mf);
+            entries.add(new IsoInspector.Entry(entry.getPath(), (long) entry.getStartBlock() * ISO_BLOCK_SIZE, entry.getSize()));
+          }
+        }
+        image.close();
+        image = null;
+
+        try (IsoInspector inspector = new IsoInspector(getFileAsPath())) {
+          // menus, other title sets and clips of other playlists (extras, trailers, ...) are not the main feature
+          List<IsoInspector.Entry> feature = IsoInspector.selectFeature(entries, inspector.getPlaylistClips(playlists));
+          for (int i = entries.size() - 1; i >= 0; i--) {
+            if (!feature.contains(entries.get(i))) {
+              LOGGER.trace("ISO: skip " + files.get(i).getFilename());
+              entries.remove(i);
+              files.remove(i);
+            }
+          }
+          inspector.inspect(entries);
+        }
 
-            MediaInfo fileMI = new MediaInfo();
-            try {
-              // mediaInfo.option("File_IsSeekable", "0");
-              byte[] From_Buffer = new byte[BUFFER_SIZE];
-              int From_Buffer_Size; // The size of the read file buffer
-
-              // Preparing to fill MediaInfo with a buffer
-              fileMI.openBufferInit(entry.getSize(), 0);
-
-              long pos = 0L;
-              // The parsing loop
-              do {
-                // Reading data somewhere, do what you want for this.
-                From_Buffer_Size = image.readBytes(entry, pos, From_Buffer, 0, BUFFER_SIZE);
-                if (From_Buffer_Size > 0) {
-                  pos += From_Buffer_Size; // add bytes read to file position
-
-                  // Sending the buffer to MediaInfo
-                  int Result = fileMI.openBufferContinue(From_Buffer, From_Buffer_Size);
-                  if ((Result & 8) == 8) { // Status.Finalized
-                    break;
-                  }
-
-                  // Testing if MediaInfo request to go elsewhere
-                  if (fileMI.openBufferContinueGoToGet() != -1) {
-                    pos = fileMI.openBufferContinueGoToGet();
-                    LOGGER.trace("ISO: Seek to " + pos);
-                    // From_Buffer_Size = image.readBytes(entry, newPos, From_Buffer, 0, BUFFER_SIZE);
-                    // pos = newPos + From_Buffer_Size; // add bytes read to file position
-                    fileMI.openBufferInit(entry.getSize(), pos); // Informing MediaInfo we have seek
-                  }
-                }
-              } while (From_Buffer_Size > 0);
-
-              LOGGER.trace("ISO: finalize");
-              // Finalizing
-              fileMI.openBufferFinalize(); // This is the end of the stream, MediaInfo must finish some work
-              Map<StreamKind, List<Map<String, String>>> tempSnapshot = fileMI.snapshot();
-              fileMI.close();
-
-              mf.setMiSnapshot(tempSnapshot); // set ours to MI for standard gathering
-              mf.gatherMediaInformation(); // normal gather from snapshots
-
-              // set ISO snapshot ONCE from biggest video file, so we copy all the resolutions & co
-              if (entry.getSize() > biggest) {
-                biggest = entry.getSize();
-                miSnapshot = tempSnapshot;
-              }
+        int dur = 0;
+        long biggest = 0L;
+        for (int i = 0; i < entries.size(); i++) {
+          Map<StreamKind, List<Map<String, String>>> tempSnapshot = entries.get(i).getSnapshot();
+          if (tempSnapshot == null) {
+            continue;
+          }
+          MediaFile mf = files.get(i);
+          mf.setMiSnapshot(tempSnapshot); // set ours to MI for standard gathering
+          mf.gatherMediaInformation(); // normal gather from snapshots
+
+          // set ISO snapshot ONCE from biggest video file, so we copy all the resolutions & co
+          if (mf.getFilesize() > biggest) {
+            biggest = mf.getFilesize();
+            miSnapshot = tempSnapshot;
+          }
 
-              // accumulate durations from every MF
-              dur += mf.getDuration();
-              LOGGER.trace("ISO: file duration:" + mf.getDurationHHMMSS() + "  accumulated min:" + dur / 60);
-            }
-            // sometimes also an error is thrown
-            catch (Exception | Error e) {
-              LOGGER.error("Mediainfo could not open file STREAM", e);
-              fileMI.close();
-            }
-          } // end VIDEO
-        } // end entry
+          // accumulate durations from every MF
+          dur += mf.getDuration();
+          LOGGER.trace("ISO: file duration:" + mf.getDurationHHMMSS() + "  accumulated min:" + dur / 60);
+        }
         setDuration(dur); // set it here, and ignore duration parsing for ISO in gatherMI method...
         LOGGER.trace("ISO: final duration:" + getDurationHHMMSS());
-        image.close();
         return siz;
       }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
       catch (Exception e) {
         LOGGER.error("Mediainfo could not open STREAM - trying fallback", e);
         try {
@@ -1572,14 +1633,6 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     return 0;
   }
 
-  /**
-   * DO NOT USE - only for ISO!!!
-   */
-  @Deprecated
-  public void setMediaInfo(MediaInfo mediaInfo) {
-    this.mediaInfo = mediaInfo;
-  }
-
   /**
    * DO NOT USE - only for ISO!!!
    */
@@ -1627,6 +1680,7 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     try {
       BasicFileAttributes attrs = Files.readAttributes(getFileAsPath(), BasicFileAttributes.class);
       filedate = attrs.lastModifiedTime().toMillis();
+      markModified();
       setFilesize(attrs.size());
     }
     catch (IOException e) {
@@ -2035,11 +2089,35 @@ public class MediaFile extends AbstractModelObject implements Comparable<MediaFi
     }
 
     LOGGER.trace("extracted MI");
+    // streams may have been changed directly
+    markModified();
     // close mediainfo lib
     closeMediaInfo();
     LOGGER.trace("closed MI");
   }
 
+  /**
+   * get the modification counter of this media file; every change of a persisted field increases this counter
+   * 
+   * @return the modification counter
+   */
+  public long getModificationCount() {
+    return modificationCount.get();
+  }
+
+  /**
+   * mark this media file as modified
+   */
+  public void markModified() {
+    modificationCount.incrementAndGet();
+  }
+
+  @Override
+  protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    modificationCount.incrementAndGet();
+    super.firePropertyChange(propertyName, oldValue, newValue);
+  }
+
   private String parseLanguageFromString(String shortname) {
     if (StringUtils.isBlank(shortname)) {
       return "";
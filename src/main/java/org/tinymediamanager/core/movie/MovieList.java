@@ -18,6 +18,7 @@ package org.tinymediamanager.core.movie;
 import static org.tinymediamanager.core.Constants.CERTIFICATION;
 import static org.tinymediamanager.core.Constants.MEDIA_FILES;
 import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.PATH;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
@@ -46,6 +47,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.AbstractModelObject;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.DatabaseLoader;
+import org.tinymediamanager.core.MediaEntityIndex;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
@@ -78,19 +81,21 @@ import ca.odell.glazedlists.ObservableElementList;
  * @author Manuel Laggner
  */
 public class MovieList extends AbstractModelObject {
-  private static final Logger          LOGGER             = LoggerFactory.getLogger(MovieList.class);
-  private static MovieList             instance;
-
-  private final MovieSettings          movieSettings;
-  private final List<Movie>            movieList;
-  private final List<MovieSet>         movieSetList;
-  private final List<String>           tagsObservable;
-  private final List<String>           videoCodecsObservable;
-  private final List<String>           audioCodecsObservable;
-  private final List<Certification>    certificationsObservable;
-
-  private final PropertyChangeListener tagListener;
-  private final Comparator<MovieSet>   movieSetComparator = new MovieSetComparator();
+  private static final Logger              LOGGER             = LoggerFactory.getLogger(MovieList.class);
+  private static MovieList                 instance;
+
+  private final MovieSettings              movieSettings;
+  private final List<Movie>                movieList;
+  private final List<MovieSet>             movieSetList;
+  private final List<String>               tagsObservable;
+  private final List<String>               videoCodecsObservable;
+  private final List<String>               audioCodecsObservable;
+  private final List<Certification>        certificationsObservable;
+  private final MediaEntityIndex<Movie>    movieIndex;
+  private final MediaEntityIndex<MovieSet> movieSetIndex;
+
+  private final PropertyChangeListener     tagListener;
+  private final Comparator<MovieSet>       movieSetComparator = new MovieSetComparator();
 
   /**
    * Instantiates a new movie list.
@@ -103,6 +108,8 @@ public class MovieList extends AbstractModelObject {
     videoCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
     audioCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
     certificationsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<Certification>());
+    movieIndex = new MediaEntityIndex<>();
+    movieSetIndex = new MediaEntityIndex<>();
 
     // the tag listener: its used to always have a full list of all tags used in tmm
     tagListener = new PropertyChangeListener() {
@@ -121,6 +128,10 @@ public class MovieList extends AbstractModelObject {
           Movie movie = (Movie) evt.getSource();
           updateCertifications(movie);
         }
+        if (PATH.equals(evt.getPropertyName())) {
+          Movie movie = (Movie) evt.getSource();
+          movieIndex.updatePath(movie, (String) evt.getOldValue(), (String) evt.getNewValue());
+        }
       }
     };
 
@@ -149,6 +160,7 @@ public class MovieList extends AbstractModelObject {
     if (!movieList.contains(movie)) {
       int oldValue = movieList.size();
       movieList.add(movie);
+      movieIndex.add(movie);
 
       updateTags(movie);
       movie.addPropertyChangeListener(tagListener);
@@ -226,6 +238,7 @@ public class MovieList extends AbstractModelObject {
     for (int i = movies.size() - 1; i >= 0; i--) {
       Movie movie = movies.get(i);
       movieList.remove(movie);
+      movieIndex.remove(movie);
       if (movie.getMovieSet() != null) {
         MovieSet movieSet = movie.getMovieSet();
 
@@ -263,6 +276,7 @@ public class MovieList extends AbstractModelObject {
       Movie movie = movies.get(i);
       movie.deleteFilesSafely();
       movieList.remove(movie);
+      movieIndex.remove(movie);
       if (movie.getMovieSet() != null) {
         MovieSet movieSet = movie.getMovieSet();
         movieSet.removeMovie(movie, false);
@@ -293,47 +307,34 @@ public class MovieList extends AbstractModelObject {
   /**
    * Load movies from database.
    */
-  void loadMoviesFromDatabase(MVMap<UUID, String> movieMap, ObjectMapper objectMapper) {
-    // load movies
+  void loadMoviesFromDatabase(MVMap<UUID, Object> movieMap, ObjectMapper objectMapper) {
+    // load movies (decoded on all cores)
     ObjectReader movieObjectReader = objectMapper.readerFor(Movie.class);
+    List<Movie> movies = new DatabaseLoader<Movie>(movieMap, movieObjectReader, "movie").load();
 
-    for (UUID uuid : new ArrayList<>(movieMap.keyList())) {
-      String json = "";
-      try {
-        json = movieMap.get(uuid);
-        Movie movie = movieObjectReader.readValue(json);
-        movie.setDbId(uuid);
-        // for performance reasons we add movies directly
-        movieList.add(movie);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding movie json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt movie");
-        movieMap.remove(uuid);
-      }
+    // for performance reasons we add movies directly
+    long start = System.currentTimeMillis();
+    movieList.addAll(movies);
+    for (Movie movie : movies) {
+      movieIndex.add(movie);
     }
-    LOGGER.info("found " + movieList.size() + " movies in database");
+    LOGGER.info("found " + movieList.size() + " movies in database (merged in " + (System.currentTimeMillis() - start) + "ms)");
   }
 
-  void loadMovieSetsFromDatabase(MVMap<UUID, String> movieSetMap, ObjectMapper objectMapper) {
-    // load movie sets
+  void loadMovieSetsFromDatabase(MVMap<UUID, Object> movieSetMap, ObjectMapper objectMapper) {
+    // load movie sets (decoded on all cores)
     ObjectReader movieSetObjectReader = objectMapper.readerFor(MovieSet.class);
-
-    for (UUID uuid : new ArrayList<>(movieSetMap.keyList())) {
-      try {
-        MovieSet movieSet = movieSetObjectReader.readValue(movieSetMap.get(uuid));
-        movieSet.setDbId(uuid);
-        // for performance reasons we add movies sets directly
-        movieSetList.add(movieSet);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding movie set json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt movie set");
-        movieSetMap.remove(uuid);
+    List<MovieSet> movieSets = new DatabaseLoader<MovieSet>(movieSetMap, movieSetObjectReader, "movie set").load();
+
+    // for performance reasons we add movies sets directly
+    long start = System.currentTimeMillis();
+    synchronized (this) {
+      movieSetList.addAll(movieSets);
+      for (MovieSet movieSet : movieSets) {
+        movieSetIndex.add(movieSet);
       }
     }
-
-    LOGGER.info("found " + movieSetList.size() + " movieSets in database");
+    LOGGER.info("found " + movieSetList.size() + " movieSets in database (merged in " + (System.currentTimeMillis() - start) + "ms)");
   }
 
   void initDataAfterLoading() {
@@ -395,21 +396,11 @@ public class MovieList extends AbstractModelObject {
   }
 
   public MovieSet lookupMovieSet(UUID uuid) {
-    for (MovieSet movieSet : movieSetList) {
-      if (movieSet.getDbId().equals(uuid)) {
-        return movieSet;
-      }
-    }
-    return null;
+    return movieSetIndex.get(uuid);
   }
 
   public Movie lookupMovie(UUID uuid) {
-    for (Movie movie : movieList) {
-      if (movie.getDbId().equals(uuid)) {
-        return movie;
-      }
-    }
-    return null;
+    return movieIndex.get(uuid);
   }
 
   /**
@@ -421,7 +412,7 @@ public class MovieList extends AbstractModelObject {
    * @deprecated use Java7 getMovieByPath(Path path) instead.
    */
   @Deprecated
-  public synchronized Movie getMovieByPath(File path) {
+  public Movie getMovieByPath(File path) {
     return getMovieByPath(path.toPath());
   }
 
@@ -432,16 +423,12 @@ public class MovieList extends AbstractModelObject {
    *          the path
    * @return the movie by path
    */
-  public synchronized Movie getMovieByPath(Path path) {
-
-    for (Movie movie : movieList) {
-      if (movie.getPathNIO().compareTo(path.toAbsolutePath()) == 0) {
-        LOGGER.debug("Ok, found already existing movie '" + movie.getTitle() + "' in DB (path: " + path + ")");
-        return movie;
-      }
+  public Movie getMovieByPath(Path path) {
+    Movie movie = movieIndex.getFirstByPath(path);
+    if (movie != null) {
+      LOGGER.debug("Ok, found already existing movie '" + movie.getTitle() + "' in DB (path: " + path + ")");
     }
-
-    return null;
+    return movie;
   }
 
   /**
@@ -453,7 +440,7 @@ public class MovieList extends AbstractModelObject {
    * @deprecated use Java7 getMoviesByPath(Path path) instead.
    */
   @Deprecated
-  public synchronized List<Movie> getMoviesByPath(File path) {
+  public List<Movie> getMoviesByPath(File path) {
     return getMoviesByPath(path.toPath());
   }
 
@@ -464,14 +451,8 @@ public class MovieList extends AbstractModelObject {
    *          the path
    * @return the movie list
    */
-  public synchronized List<Movie> getMoviesByPath(Path path) {
-    ArrayList<Movie> movies = new ArrayList<>();
-    for (Movie movie : movieList) {
-      if (movie.getPathNIO().compareTo(path) == 0) {
-        movies.add(movie);
-      }
-    }
-    return movies;
+  public List<Movie> getMoviesByPath(Path path) {
+    return new ArrayList<>(movieIndex.getByPath(path));
   }
 
   /**
@@ -988,8 +969,13 @@ public class MovieList extends AbstractModelObject {
    *          the movie set
    */
   public void addMovieSet(MovieSet movieSet) {
-    int oldValue = movieSetList.size();
-    this.movieSetList.add(movieSet);
+    int oldValue;
+    // the same lock as the lookups (see findMovieSet)
+    synchronized (this) {
+      oldValue = movieSetList.size();
+      this.movieSetList.add(movieSet);
+      movieSetIndex.add(movieSet);
+    }
     firePropertyChange("addedMovieSet", null, movieSet);
     firePropertyChange("movieSetCount", oldValue, movieSetList.size());
   }
@@ -1005,7 +991,10 @@ public class MovieList extends AbstractModelObject {
     movieSet.removeAllMovies();
 
     try {
-      movieSetList.remove(movieSet);
+      synchronized (this) {
+        movieSetList.remove(movieSet);
+        movieSetIndex.remove(movieSet);
+      }
       MovieModuleManager.getInstance().removeMovieSetFromDb(movieSet);
     }
     catch (Exception e) {
@@ -1016,6 +1005,10 @@ public class MovieList extends AbstractModelObject {
     firePropertyChange("movieSetCount", oldValue, movieSetList.size());
   }
 
+  /**
+   * find the movie set with the given tmdbId/title; the caller has to hold the lock of the movie list (all modifications of the movie set
+   * list are done with this lock)
+   */
   private MovieSet findMovieSet(String title, int tmdbId) {
     // first search by tmdbId
     if (tmdbId > 0) {
@@ -1036,18 +1029,67 @@ public class MovieList extends AbstractModelObject {
     return null;
   }
 
+  /**
+   * get the movie set with the given tmdbId/title or create a new one
+   *
+   * @param title
+   *          the title of the movie set
+   * @param tmdbId
+   *          the tmdbId of the movie set (0 if unknown)
+   * @return the found/created movie set or null if the title is empty and no movie set has been found
+   */
   public synchronized MovieSet getMovieSet(String title, int tmdbId) {
     MovieSet movieSet = findMovieSet(title, tmdbId);
 
-    if (movieSet == null && StringUtils.isNotBlank(title)) {
-      movieSet = new MovieSet(title);
-      movieSet.saveToDb();
-      addMovieSet(movieSet);
+    if (movieSet == null) {
+      movieSet = createMovieSet(title, tmdbId);
     }
 
     return movieSet;
   }
 
+  /**
+   * create a new movie set if there is no movie set with the given tmdbId/title yet. The new movie set gets the tmdbId assigned right away,
+   * so parallel lookups with the same tmdbId but a different title will not create another movie set
+   *
+   * @param title
+   *          the title of the movie set
+   * @param tmdbId
+   *          the tmdbId of the movie set (0 if unknown)
+   * @return the new movie set or null if there is already one (or the title is empty)
+   */
+  public synchronized MovieSet createMovieSet(String title, int tmdbId) {
+    if (StringUtils.isBlank(title) || findMovieSet(title, tmdbId) != null) {
+      return null;
+    }
+
+    MovieSet movieSet = new MovieSet(title);
+    if (tmdbId > 0) {
+      movieSet.setTmdbId(tmdbId);
+    }
+    movieSet.saveToDb();
+    addMovieSet(movieSet);
+
+    return movieSet;
+  }
+
+  /**
+   * assign the tmdbId to a movie set without one
+   *
+   * @param movieSet
+   *          the movie set
+   * @param tmdbId
+   *          the tmdbId to assign
+   * @return true if the tmdbId has been assigned by this call
+   */
+  public synchronized boolean assignTmdbId(MovieSet movieSet, int tmdbId) {
+    if (movieSet.getTmdbId() != 0) {
+      return false;
+    }
+    movieSet.setTmdbId(tmdbId);
+    return true;
+  }
+
   /**
    * Sort movies in movie set.
    * 
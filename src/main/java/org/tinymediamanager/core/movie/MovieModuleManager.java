@@ -15,12 +15,16 @@
  */
 package org.tinymediamanager.core.movie;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
 
-import org.apache.commons.lang3.StringUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.json.JSONObject;
@@ -29,11 +33,20 @@ import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
 import org.tinymediamanager.core.CustomNullStringSerializerProvider;
+import org.tinymediamanager.core.DatabaseValueCodec;
+import org.tinymediamanager.core.DatabaseWriteQueue;
+import org.tinymediamanager.core.DatabaseWriteQueue.IDatabaseWriteOperation;
+import org.tinymediamanager.core.DatasourceWatcher;
+import org.tinymediamanager.core.DatasourceWatcher.IDatasourceChangeListener;
+import org.tinymediamanager.core.DirectoryStateIndex;
 import org.tinymediamanager.core.ITmmModule;
 import org.tinymediamanager.core.Settings;
 import org.tinymediamanager.core.Utils;
+import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
+import org.tinymediamanager.core.movie.tasks.MovieUpdateDatasourceTask2;
+import org.tinymediamanager.core.threading.TmmTaskManager;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -56,12 +69,16 @@ public class MovieModuleManager implements ITmmModule {
 
   private boolean                   enabled;
   private MVStore                   mvStore;
+  private DatabaseValueCodec        codec;
   private ObjectMapper              objectMapper;
   private ObjectWriter              movieObjectWriter;
   private ObjectWriter              movieSetObjectWriter;
 
-  private MVMap<UUID, String>       movieMap;
-  private MVMap<UUID, String>       movieSetMap;
+  private MVMap<UUID, Object>       movieMap;
+  private MVMap<UUID, Object>       movieSetMap;
+  private DatabaseWriteQueue        writeQueue;
+  private DirectoryStateIndex       directoryStateIndex;
+  private DatasourceWatcher         datasourceWatcher;
 
   private MovieModuleManager() {
     enabled = false;
@@ -87,7 +104,11 @@ public class MovieModuleManager implements ITmmModule {
     Utils.deleteOldBackupFile(db, 15);
 
     // configure database
-    mvStore = new MVStore.Builder().fileName(Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_DB).toString()).compressHigh()
+    codec = Settings.getInstance().getDatabaseCodec();
+    if (codec == null) {
+      codec = DatabaseValueCodec.JSON;
+    }
+    mvStore = codec.configureCompression(new MVStore.Builder()).fileName(Paths.get(Settings.getInstance().getSettingsFolder(), MOVIE_DB).toString())
         .backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
           @Override
           public void uncaughtException(Thread t, Throwable e) {
@@ -114,6 +135,14 @@ public class MovieModuleManager implements ITmmModule {
     movieMap = mvStore.openMap("movies");
     movieSetMap = mvStore.openMap("movieSets");
 
+    // migrate existing values in place if the codec has been changed
+    codec.migrate(movieMap);
+    codec.migrate(movieSetMap);
+
+    writeQueue = new DatabaseWriteQueue("movies", mvStore, Settings.getInstance().getDatabaseWriteDelay());
+    MVMap<String, String> directoryStateMap = mvStore.openMap("directoryStates");
+    directoryStateIndex = new DirectoryStateIndex(directoryStateMap);
+
     MovieList.getInstance().loadMoviesFromDatabase(movieMap, objectMapper);
     MovieList.getInstance().loadMovieSetsFromDatabase(movieSetMap, objectMapper);
     MovieList.getInstance().initDataAfterLoading();
@@ -122,6 +151,8 @@ public class MovieModuleManager implements ITmmModule {
 
   @Override
   public void shutDown() throws Exception {
+    stopDatasourceWatcher();
+    writeQueue.shutdown();
     mvStore.compactMoveChunks();
     mvStore.close();
 
@@ -172,30 +203,138 @@ public class MovieModuleManager implements ITmmModule {
     }
   }
 
-  void persistMovie(Movie movie) throws Exception {
-    String newValue = movieObjectWriter.writeValueAsString(movie);
-    String oldValue = movieMap.get(movie.getDbId());
+  /**
+   * get the index of the directory fingerprints for the incremental update of the data sources
+   * 
+   * @return the directory state index
+   */
+  public DirectoryStateIndex getDirectoryStateIndex() {
+    return directoryStateIndex;
+  }
+
+  /**
+   * watch the movie data sources for changes if enabled in the settings; the watcher follows later changes of the settings
+   */
+  public void startDatasourceWatcher() {
+    PropertyChangeListener listener = new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        String property = evt.getPropertyName();
+        if ("movieDataSource".equals(property) || "watchDatasources".equals(property) || "watcherDelay".equals(property)
+            || "watcherPollInterval".equals(property)) {
+          updateDatasourceWatcher();
+        }
+      }
+    };
+    MOVIE_SETTINGS.addPropertyChangeListener(listener);
+    Globals.settings.addPropertyChangeListener(listener);
+    updateDatasourceWatcher();
+  }
+
+  private synchronized void updateDatasourceWatcher() {
+    stopDatasourceWatcher();
+    if (!enabled || !Globals.settings.isWatchDatasources()) {
+      return;
+    }
+
+    datasourceWatcher = new DatasourceWatcher("movies", directoryStateIndex, new IDatasourceChangeListener() {
+      @Override
+      public void foldersChanged(String datasource, Set<Path> folders) {
+        TmmTaskManager.getInstance().addMainTask(new MovieUpdateDatasourceTask2(datasource, folders));
+      }
+    }, Globals.settings.getWatcherDelay(), Globals.settings.getWatcherPollInterval());
+    datasourceWatcher.start(MOVIE_SETTINGS.getMovieDataSource());
+  }
+
+  private synchronized void stopDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.stop();
+      datasourceWatcher = null;
+    }
+  }
+
+  /**
+   * write all pending changes to the database now
+   */
+  public void flush() {
+    if (writeQueue != null) {
+      writeQueue.flush();
+    }
+  }
 
-    if (!StringUtils.equals(newValue, oldValue)) {
-      // write movie to DB
-      movieMap.put(movie.getDbId(), newValue);
+  void persistMovie(final Movie movie) throws Exception {
+    // nothing changed since the last write/load
+    if (!movie.isModifiedSincePersist()) {
+      return;
     }
+
+    // the entity is serialized on the writer thread (see writeEntity)
+    writeQueue.enqueue(movie.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        writeEntity(movieMap, movieObjectWriter, movie);
+      }
+    });
   }
 
-  void removeMovieFromDb(Movie movie) throws Exception {
-    movieMap.remove(movie.getDbId());
+  void removeMovieFromDb(final Movie movie) throws Exception {
+    // let the next update parse this folder again
+    directoryStateIndex.invalidate(movie.getPathNIO());
+    // a later persist has to write the entity again
+    movie.clearPersisted();
+    writeQueue.enqueue(movie.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        movieMap.remove(movie.getDbId());
+        movie.clearPersisted();
+      }
+    });
   }
 
-  void persistMovieSet(MovieSet movieSet) throws Exception {
-    String newValue = movieSetObjectWriter.writeValueAsString(movieSet);
-    String oldValue = movieMap.get(movieSet.getDbId());
-    if (!StringUtils.equals(newValue, oldValue)) {
-      movieSetMap.put(movieSet.getDbId(), newValue);
+  void persistMovieSet(final MovieSet movieSet) throws Exception {
+    // nothing changed since the last write/load
+    if (!movieSet.isModifiedSincePersist()) {
+      return;
     }
+
+    // the entity is serialized on the writer thread (see writeEntity)
+    writeQueue.enqueue(movieSet.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        writeEntity(movieSetMap, movieSetObjectWriter, movieSet);
+      }
+    });
   }
 
-  void removeMovieSetFromDb(MovieSet movieSet) throws Exception {
-    movieSetMap.remove(movieSet.getDbId());
+  void removeMovieSetFromDb(final MovieSet movieSet) throws Exception {
+    // a later persist has to write the entity again
+    movieSet.clearPersisted();
+    writeQueue.enqueue(movieSet.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        movieSetMap.remove(movieSet.getDbId());
+        movieSet.clearPersisted();
+      }
+    });
+  }
+
+  /**
+   * serialize the entity and write it if its content has changed. This runs on the writer thread while other threads may still modify the
+   * entity: a modification while serializing is detected with the modification stamp and the write is queued again
+   */
+  private void writeEntity(MVMap<UUID, Object> map, ObjectWriter writer, MediaEntity entity) throws Exception {
+    long[] stamp = entity.getModificationStamp();
+    Object newValue = codec.encode(writer, entity);
+    if (!Arrays.equals(stamp, entity.getModificationStamp())) {
+      throw new ConcurrentModificationException("modified while serializing");
+    }
+
+    long hash = DatabaseValueCodec.hash(newValue);
+    // compare the content hash rather than reading the old value back
+    if (!entity.isPersisted() || hash != entity.getPersistedHash()) {
+      map.put(entity.getDbId(), newValue);
+    }
+    entity.setPersisted(stamp, hash);
   }
 
   @Override
@@ -15,10 +15,7 @@
  */
 package org.tinymediamanager.core.movie;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -32,10 +29,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Utils;
@@ -43,8 +40,8 @@ import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
 import org.tinymediamanager.core.threading.TmmTaskManager;
+import org.tinymediamanager.scraper.MediaMetadata;
 import org.tinymediamanager.scraper.entities.MediaArtwork;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The class MovieSetArtworkHelper. A helper class for managing movie set artwork
@@ -131,6 +128,23 @@ public class MovieSetArtworkHelper {
     }
   }
 
+  /**
+   * set the poster/fanart urls of the scraped movie set metadata
+   *
+   * @param movieSet
+   *          the movie set to set the artwork urls for
+   * @param metadata
+   *          the scraped metadata of the movie set
+   */
+  public static void setArtworkUrls(MovieSet movieSet, MediaMetadata metadata) {
+    if (!metadata.getMediaArt(MediaArtwork.MediaArtworkType.POSTER).isEmpty()) {
+      movieSet.setArtworkUrl(metadata.getMediaArt(MediaArtwork.MediaArtworkType.POSTER).get(0).getDefaultUrl(), MediaFileType.POSTER);
+    }
+    if (!metadata.getMediaArt(MediaArtwork.MediaArtworkType.BACKGROUND).isEmpty()) {
+      movieSet.setArtworkUrl(metadata.getMediaArt(MediaArtwork.MediaArtworkType.BACKGROUND).get(0).getDefaultUrl(), MediaFileType.FANART);
+    }
+  }
+
   /**
    * set the found artwork for the given movie
    *
@@ -395,6 +409,9 @@ public class MovieSetArtworkHelper {
       this.writeToMovieFolder = MovieModuleManager.MOVIE_SETTINGS.isEnableMovieSetArtworkMovieFolder();
       this.artworkFolder = MovieModuleManager.MOVIE_SETTINGS.getMovieSetArtworkFolder();
       this.writeToArtworkFolder = MovieModuleManager.MOVIE_SETTINGS.isEnableMovieSetArtworkFolder() && StringUtils.isNotBlank(artworkFolder);
+
+      // all images of the movie set are synced at once after the last download
+      ArtworkDownloader.start(movieSet);
     }
 
     /**
@@ -419,20 +436,15 @@ public class MovieSetArtworkHelper {
       this.writeToMovieFolder = MovieModuleManager.MOVIE_SETTINGS.isEnableMovieSetArtworkMovieFolder();
       this.artworkFolder = "";
       this.writeToArtworkFolder = false;
+
+      ArtworkDownloader.start(movieSet);
     }
 
     @Override
     public void run() {
       // first, fetch image
       try {
-        Url url = new Url(urlToArtwork);
-        InputStream is = url.getInputStream();
-        if (url.isFault()) {
-          return;
-        }
-
-        byte[] bytes = IOUtils.toByteArray(is);
-        is.close();
+        byte[] bytes = ArtworkDownloader.download(urlToArtwork);
 
         String extension = FilenameUtils.getExtension(urlToArtwork);
 
@@ -462,6 +474,9 @@ public class MovieSetArtworkHelper {
           LOGGER.error("fetch image", e);
         }
       }
+      finally {
+        ArtworkDownloader.finish(movieSet);
+      }
     }
 
     private void writeImageToArtworkFolder(byte[] bytes, String extension) {
@@ -523,10 +538,12 @@ public class MovieSetArtworkHelper {
     }
 
     private void writeImageToCacheFolder(byte[] bytes) {
-      String filename = ImageCache.getMD5(urlToArtwork);
+      Path cacheFile = ImageCache.getCacheFile(urlToArtwork, "jpg");
 
       try {
-        writeImage(bytes, ImageCache.getCacheDir().resolve(filename + ".jpg"));
+        Files.createDirectories(cacheFile.getParent());
+        writeImage(bytes, cacheFile);
+        ImageCache.addToCache(cacheFile);
       }
       catch (Exception e) {
         LOGGER.warn("error in image fetcher", e);
@@ -534,18 +551,8 @@ public class MovieSetArtworkHelper {
     }
 
     private void writeImage(byte[] bytes, Path pathAndFilename) throws IOException, InterruptedException {
-      FileOutputStream outputStream = new FileOutputStream(pathAndFilename.toFile());
-      InputStream is = new ByteArrayInputStream(bytes);
-      IOUtils.copy(is, outputStream);
-      outputStream.flush();
-      try {
-        outputStream.getFD().sync(); // wait until file has been completely written
-      }
-      catch (Exception e) {
-        // empty here -> just not let the thread crash
-      }
-      outputStream.close();
-      is.close();
+      Files.write(pathAndFilename, bytes);
+      ArtworkDownloader.addWrittenFile(movieSet, pathAndFilename);
 
       ImageCache.invalidateCachedImage(pathAndFilename);
 
@@ -87,6 +87,7 @@ import org.tinymediamanager.core.movie.MovieModuleManager;
 import org.tinymediamanager.core.movie.MovieNfoNaming;
 import org.tinymediamanager.core.movie.MovieRenamer;
 import org.tinymediamanager.core.movie.MovieScraperMetadataConfig;
+import org.tinymediamanager.core.movie.MovieSetArtworkHelper;
 import org.tinymediamanager.core.movie.MovieTrailerQuality;
 import org.tinymediamanager.core.movie.MovieTrailerSources;
 import org.tinymediamanager.core.movie.connector.MovieConnectors;
@@ -614,6 +615,7 @@ public class Movie extends MediaEntity {
   /** set subtitles */
   public void setSubtitles(boolean sub) {
     this.subtitles = sub;
+    markModified();
   }
 
   /**
@@ -794,6 +796,7 @@ public class Movie extends MediaEntity {
   public void setExtraThumbs(List<String> extraThumbs) {
     this.extraThumbs.clear();
     this.extraThumbs.addAll(extraThumbs);
+    markModified();
   }
 
   /**
@@ -815,6 +818,7 @@ public class Movie extends MediaEntity {
   public void setExtraFanarts(List<String> extraFanarts) {
     this.extraFanarts.clear();
     this.extraFanarts.addAll(extraFanarts);
+    markModified();
   }
 
   /**
@@ -970,9 +974,15 @@ public class Movie extends MediaEntity {
       catch (Exception ignored) {
       }
       if (col != 0) {
-        MovieSet movieSet = MovieList.getInstance().getMovieSet(metadata.getCollectionName(), col);
-        if (movieSet != null && movieSet.getTmdbId() == 0) {
-          movieSet.setTmdbId(col);
+        // only set the movie set metadata for new movie sets or ones without a tmdbId (parallel scrapes may get the same movie set)
+        MovieList movieList = MovieList.getInstance();
+        MovieSet movieSet = movieList.createMovieSet(metadata.getCollectionName(), col);
+        boolean updateMetadata = movieSet != null;
+        if (movieSet == null) {
+          movieSet = movieList.getMovieSet(metadata.getCollectionName(), col);
+          updateMetadata = movieSet != null && movieList.assignTmdbId(movieSet, col);
+        }
+        if (updateMetadata) {
           // get movieset metadata
           try {
             List<MediaScraper> sets = MediaScraper.getMediaScrapers(ScraperType.MOVIE_SET);
@@ -988,13 +998,7 @@ public class Movie extends MediaEntity {
               if (info != null && StringUtils.isNotBlank(info.getTitle())) {
                 movieSet.setTitle(info.getTitle());
                 movieSet.setPlot(info.getPlot());
-
-                if (!info.getMediaArt(MediaArtworkType.POSTER).isEmpty()) {
-                  movieSet.setArtworkUrl(info.getMediaArt(MediaArtworkType.POSTER).get(0).getDefaultUrl(), MediaFileType.POSTER);
-                }
-                if (!info.getMediaArt(MediaArtworkType.BACKGROUND).isEmpty()) {
-                  movieSet.setArtworkUrl(info.getMediaArt(MediaArtworkType.BACKGROUND).get(0).getDefaultUrl(), MediaFileType.FANART);
-                }
+                MovieSetArtworkHelper.setArtworkUrls(movieSet, info);
               }
             }
           }
@@ -1633,6 +1637,7 @@ public class Movie extends MediaEntity {
    */
   public void setMultiMovieDir(boolean multiDir) {
     this.multiMovieDir = multiDir;
+    markModified();
   }
 
   /**
@@ -1716,6 +1721,7 @@ public class Movie extends MediaEntity {
    */
   public void setDisc(boolean isDisc) {
     this.isDisc = isDisc;
+    markModified();
   }
 
   /**
@@ -2095,6 +2101,7 @@ public class Movie extends MediaEntity {
 
   public void setStacked(boolean stacked) {
     this.stacked = stacked;
+    markModified();
   }
 
   /**
@@ -17,7 +17,6 @@ package org.tinymediamanager.core.movie.entities;
 
 import static org.tinymediamanager.core.Constants.TMDB;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -162,9 +161,9 @@ public class MovieSet extends MediaEntity {
     if (StringUtils.isBlank(artworkFilename)) {
       final String artworkUrl = getArtworkUrl(type);
       if (StringUtils.isNotBlank(artworkUrl)) {
-        Path artworkFile = ImageCache.getCacheDir().resolve(ImageCache.getMD5(artworkUrl));
-        if (Files.exists(artworkFile)) {
-          artworkFilename = artworkFile.toAbsolutePath().toString();
+        // the artwork is written as jpg into the cache (see MovieSetArtworkHelper)
+        if (ImageCache.isCached(artworkUrl, "jpg")) {
+          artworkFilename = ImageCache.getCacheFile(artworkUrl, "jpg").toAbsolutePath().toString();
         }
       }
     }
@@ -189,6 +188,7 @@ public class MovieSet extends MediaEntity {
       // update artwork
       MovieSetArtworkHelper.updateArtwork(this);
 
+      markModified();
       saveToDb();
     }
 
@@ -228,6 +228,7 @@ public class MovieSet extends MediaEntity {
       // update artwork
       MovieSetArtworkHelper.updateArtwork(this);
 
+      markModified();
       saveToDb();
     }
 
@@ -270,6 +271,7 @@ public class MovieSet extends MediaEntity {
         MovieSetArtworkHelper.updateArtwork(this);
       }
 
+      markModified();
       saveToDb();
     }
 
@@ -320,6 +322,7 @@ public class MovieSet extends MediaEntity {
       // update artwork
       MovieSetArtworkHelper.updateArtwork(this);
 
+      markModified();
       saveToDb();
     }
 
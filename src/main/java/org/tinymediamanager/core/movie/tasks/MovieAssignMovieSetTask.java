@@ -18,14 +18,15 @@ package org.tinymediamanager.core.movie.tasks;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.movie.MovieModuleManager;
+import org.tinymediamanager.core.movie.MovieSetArtworkHelper;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieSet;
 import org.tinymediamanager.core.threading.TmmThreadPool;
@@ -33,7 +34,6 @@ import org.tinymediamanager.scraper.MediaMetadata;
 import org.tinymediamanager.scraper.MediaScrapeOptions;
 import org.tinymediamanager.scraper.MediaScraper;
 import org.tinymediamanager.scraper.ScraperType;
-import org.tinymediamanager.scraper.entities.MediaArtwork.MediaArtworkType;
 import org.tinymediamanager.scraper.entities.MediaType;
 import org.tinymediamanager.scraper.mediaprovider.IMovieSetMetadataProvider;
 import org.tinymediamanager.ui.UTF8Control;
@@ -44,10 +44,11 @@ import org.tinymediamanager.ui.UTF8Control;
  * @author Manuel Laggner
  */
 public class MovieAssignMovieSetTask extends TmmThreadPool {
-  private final static Logger         LOGGER = LoggerFactory.getLogger(MovieAssignMovieSetTask.class);
-  private static final ResourceBundle BUNDLE = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
+  private final static Logger         LOGGER           = LoggerFactory.getLogger(MovieAssignMovieSetTask.class);
+  private static final ResourceBundle BUNDLE           = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
 
   private List<Movie>                 moviesToScrape;
+  private final AtomicInteger         movieSetsScraped = new AtomicInteger();
 
   public MovieAssignMovieSetTask(List<Movie> moviesToScrape) {
     super(BUNDLE.getString("movie.assignmovieset"));
@@ -56,7 +57,7 @@ public class MovieAssignMovieSetTask extends TmmThreadPool {
 
   @Override
   protected void doInBackground() {
-    initThreadPool(1, "scrape");
+    initThreadPool(3, "scrape");
     start();
 
     for (int i = 0; i < moviesToScrape.size(); i++) {
@@ -64,7 +65,29 @@ public class MovieAssignMovieSetTask extends TmmThreadPool {
       submitTask(new Worker(movie));
     }
     waitForCompletionOrCancel();
-    LOGGER.info("Done assigning movies to movie sets");
+    LOGGER.info("Done assigning movies to movie sets (" + movieSetsScraped.get() + " movie sets scraped)");
+  }
+
+  /**
+   * get the metadata of the given movie set; only the worker which created the movie set (or assigned its tmdbId) calls this, so every
+   * movie set is scraped once per run
+   *
+   * @param scraper
+   *          the movie set scraper
+   * @param collectionId
+   *          the tmdbId of the movie set
+   * @return the metadata of the movie set
+   * @throws Exception
+   *           any exception of the scraper
+   */
+  private MediaMetadata getMovieSetMetadata(MediaScraper scraper, int collectionId) throws Exception {
+    IMovieSetMetadataProvider mp = (IMovieSetMetadataProvider) scraper.getMediaProvider();
+    MediaScrapeOptions options = new MediaScrapeOptions(MediaType.MOVIE_SET);
+    options.setTmdbId(collectionId);
+    options.setLanguage(LocaleUtils.toLocale(MovieModuleManager.MOVIE_SETTINGS.getScraperLanguage().name()));
+    options.setCountry(MovieModuleManager.MOVIE_SETTINGS.getCertificationCountry());
+    movieSetsScraped.incrementAndGet();
+    return mp.getMetadata(options);
   }
 
   private class Worker implements Runnable {
@@ -96,29 +119,25 @@ public class MovieAssignMovieSetTask extends TmmThreadPool {
           int collectionId = (int) md.getId(MediaMetadata.TMDB_SET);
           if (collectionId > 0) {
             String collectionName = md.getCollectionName();
-            MovieSet movieSet = movieList.getMovieSet(collectionName, collectionId);
-            if (movieSet != null && movieSet.getTmdbId() == 0) {
-              movieSet.setTmdbId(collectionId);
+            // only the worker which created the movie set (or assigned its tmdbId) sets the movie set metadata
+            MovieSet movieSet = movieList.createMovieSet(collectionName, collectionId);
+            boolean updateMetadata = movieSet != null;
+            if (movieSet == null) {
+              movieSet = movieList.getMovieSet(collectionName, collectionId);
+              updateMetadata = movieSet != null && movieList.assignTmdbId(movieSet, collectionId);
+            }
+            if (updateMetadata) {
               // get movieset metadata
               try {
-                options = new MediaScrapeOptions(MediaType.MOVIE_SET);
-                options.setTmdbId(collectionId);
-                options.setLanguage(LocaleUtils.toLocale(MovieModuleManager.MOVIE_SETTINGS.getScraperLanguage().name()));
-                options.setCountry(MovieModuleManager.MOVIE_SETTINGS.getCertificationCountry());
-
-                MediaMetadata info = mp.getMetadata(options);
+                MediaMetadata info = getMovieSetMetadata(first, collectionId);
                 if (info != null && StringUtils.isNotBlank(info.getTitle())) {
                   movieSet.setTitle(info.getTitle());
                   movieSet.setPlot(info.getPlot());
-                  if (!info.getMediaArt(MediaArtworkType.POSTER).isEmpty()) {
-                    movieSet.setArtworkUrl(info.getMediaArt(MediaArtworkType.POSTER).get(0).getDefaultUrl(), MediaFileType.POSTER);
-                  }
-                  if (!info.getMediaArt(MediaArtworkType.BACKGROUND).isEmpty()) {
-                    movieSet.setArtworkUrl(info.getMediaArt(MediaArtworkType.BACKGROUND).get(0).getDefaultUrl(), MediaFileType.FANART);
-                  }
+                  MovieSetArtworkHelper.setArtworkUrls(movieSet, info);
                 }
               }
               catch (Exception e) {
+                LOGGER.warn("could not get movie set metadata: " + e.getMessage());
               }
             }
 
@@ -15,11 +15,11 @@
  */
 package org.tinymediamanager.core.movie.tasks;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Locale;
 
@@ -28,6 +28,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Message;
@@ -38,7 +39,6 @@ import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.movie.MovieModuleManager;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.scraper.entities.MediaArtwork.MediaArtworkType;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The class MovieExtraImageFetcher. To fetch extrafanarts and extrathumbs
@@ -54,6 +54,9 @@ public class MovieExtraImageFetcher implements Runnable {
   public MovieExtraImageFetcher(Movie movie, MediaFileType type) {
     this.movie = movie;
     this.type = type;
+
+    // all images of the movie are synced at once after the last download
+    ArtworkDownloader.start(movie);
   }
 
   @Override
@@ -107,6 +110,9 @@ public class MovieExtraImageFetcher implements Runnable {
       LOGGER.error("Thread crashed: ", e);
       MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, movie, "message.extraimage.threadcrashed"));
     }
+    finally {
+      ArtworkDownloader.finish(movie);
+    }
 
   }
 
@@ -121,8 +127,6 @@ public class MovieExtraImageFetcher implements Runnable {
       filename += "-";
     }
 
-    FileOutputStream outputStream = null;
-    InputStream is = null;
     try {
       String oldFilename = movie.getArtworkFilename(type);
       // we are lucky and have chosen our enums wisely - except the discart :(
@@ -138,22 +142,8 @@ public class MovieExtraImageFetcher implements Runnable {
       LOGGER.debug("writing " + type + " " + filename);
 
       // fetch and store images
-      Url url1 = new Url(artworkUrl);
       Path tempFile = movie.getPathNIO().resolve(filename + ".part");
-      outputStream = new FileOutputStream(tempFile.toFile());
-      is = url1.getInputStream();
-      IOUtils.copy(is, outputStream);
-      outputStream.flush();
-      try {
-        outputStream.getFD().sync(); // wait until file has been completely written
-        // give it a few milliseconds
-        Thread.sleep(150);
-      }
-      catch (Exception e) {
-        // empty here -> just not let the thread crash
-      }
-      IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
+      ArtworkDownloader.download(artworkUrl, tempFile);
 
       // has tmm been shut down?
       if (Thread.interrupted()) {
@@ -179,6 +169,7 @@ public class MovieExtraImageFetcher implements Runnable {
       if (!Utils.moveFileSafe(tempFile, destinationFile)) {
         throw new Exception("renaming temp file failed: " + filename);
       }
+      ArtworkDownloader.addWrittenFile(movie, destinationFile);
 
       movie.setArtwork(destinationFile, type);
       movie.callbackForWrittenArtwork(MediaFileType.getMediaArtworkType(type));
@@ -192,8 +183,6 @@ public class MovieExtraImageFetcher implements Runnable {
       else {
         LOGGER.error("fetch image: " + e.getMessage());
       }
-      IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
       // remove temp file
       Path tempFile = movie.getPathNIO().resolve(filename + ".part");
       if (Files.exists(tempFile)) {
@@ -210,8 +199,6 @@ public class MovieExtraImageFetcher implements Runnable {
       return;
     }
 
-    FileOutputStream outputStream = null;
-    InputStream is = null;
     try {
       Path folder = movie.getPathNIO().resolve("extrafanart");
       if (Files.isDirectory(folder)) {
@@ -224,22 +211,9 @@ public class MovieExtraImageFetcher implements Runnable {
       for (int i = 0; i < fanarts.size(); i++) {
         String urlAsString = fanarts.get(i);
         String providedFiletype = FilenameUtils.getExtension(urlAsString);
-        Url url = new Url(urlAsString);
         Path file = folder.resolve("fanart" + (i + 1) + "." + providedFiletype);
-        outputStream = new FileOutputStream(file.toFile());
-        is = url.getInputStream();
-        IOUtils.copy(is, outputStream);
-        outputStream.flush();
-        try {
-          outputStream.getFD().sync(); // wait until file has been completely written
-          // give it a few milliseconds
-          Thread.sleep(150);
-        }
-        catch (Exception e) {
-          // empty here -> just not let the thread crash
-        }
-        IOUtils.closeQuietly(is);
-        IOUtils.closeQuietly(outputStream);
+        ArtworkDownloader.download(urlAsString, file);
+        ArtworkDownloader.addWrittenFile(movie, file);
 
         MediaFile mf = new MediaFile(file, MediaFileType.EXTRAFANART);
         mf.gatherMediaInformation();
@@ -248,13 +222,9 @@ public class MovieExtraImageFetcher implements Runnable {
     }
     catch (InterruptedException e) {
       LOGGER.warn("interrupted download extrafanarts");
-      IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
     }
     catch (Exception e) {
       LOGGER.warn("download extrafanarts", e);
-      IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
     }
   }
 
@@ -266,7 +236,6 @@ public class MovieExtraImageFetcher implements Runnable {
       return;
     }
 
-    FileOutputStream outputStream = null;
     InputStream is = null;
     try {
       Path folder = movie.getPathNIO().resolve("extrathumbs");
@@ -284,7 +253,6 @@ public class MovieExtraImageFetcher implements Runnable {
         Path file = null;
         if (MovieModuleManager.MOVIE_SETTINGS.isImageExtraThumbsResize() && MovieModuleManager.MOVIE_SETTINGS.getImageExtraThumbsSize() > 0) {
           file = folder.resolve("thumb" + (i + 1) + ".jpg");
-          outputStream = new FileOutputStream(file.toFile());
           try {
             is = ImageCache.scaleImage(url, MovieModuleManager.MOVIE_SETTINGS.getImageExtraThumbsSize());
           }
@@ -292,24 +260,14 @@ public class MovieExtraImageFetcher implements Runnable {
             LOGGER.warn("problem with rescaling: " + e.getMessage());
             continue;
           }
+          Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+          IOUtils.closeQuietly(is);
         }
         else {
           file = folder.resolve("thumb" + (i + 1) + "." + providedFiletype);
-          outputStream = new FileOutputStream(file.toFile());
-          Url url1 = new Url(url);
-          is = url1.getInputStream();
-        }
-
-        IOUtils.copy(is, outputStream);
-        outputStream.flush();
-        try {
-          outputStream.getFD().sync();
-        }
-        catch (Exception e) {
-          // empty here -> just not let the thread crash
+          ArtworkDownloader.download(url, file);
         }
-        IOUtils.closeQuietly(is);
-        IOUtils.closeQuietly(outputStream);
+        ArtworkDownloader.addWrittenFile(movie, file);
 
         MediaFile mf = new MediaFile(file, MediaFileType.EXTRATHUMB);
         mf.gatherMediaInformation();
@@ -319,12 +277,10 @@ public class MovieExtraImageFetcher implements Runnable {
     catch (IOException e) {
       LOGGER.warn("download extrathumbs", e);
       IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
     }
     catch (Exception e) {
       LOGGER.error(e.getMessage());
       IOUtils.closeQuietly(is);
-      IOUtils.closeQuietly(outputStream);
     }
   }
 }
@@ -15,6 +15,7 @@
  */
 package org.tinymediamanager.core.movie.tasks;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -61,7 +62,7 @@ public class MovieReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : m.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, m, true));
+          submitTask(Paths.get(m.getDataSource()), new MediaFileInformationFetcherTask(mf, m, true));
         }
       }
 
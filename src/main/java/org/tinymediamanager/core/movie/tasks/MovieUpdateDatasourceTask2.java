@@ -17,13 +17,12 @@ package org.tinymediamanager.core.movie.tasks;
 
 import static java.nio.file.FileVisitResult.CONTINUE;
 import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
-import static java.nio.file.FileVisitResult.TERMINATE;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -31,6 +30,7 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -41,7 +41,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,9 +59,12 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
-import org.tinymediamanager.core.ImageCacheTask;
+import org.tinymediamanager.core.DirectoryStateIndex;
+import org.tinymediamanager.core.EmptyFileException;
+import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaFileInformationFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
+import org.tinymediamanager.core.MediaInfoPool;
 import org.tinymediamanager.core.MediaSource;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -69,6 +79,8 @@ import org.tinymediamanager.core.movie.connector.MovieToMpNfoConnector;
 import org.tinymediamanager.core.movie.connector.MovieToXbmcNfoConnector;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.movie.entities.MovieTrailer;
+import org.tinymediamanager.core.threading.TmmIoLane;
+import org.tinymediamanager.core.threading.TmmPipelineStage;
 import org.tinymediamanager.core.threading.TmmTask;
 import org.tinymediamanager.core.threading.TmmTaskManager;
 import org.tinymediamanager.core.threading.TmmThreadPool;
@@ -89,9 +101,12 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
   private static final Logger         LOGGER         = LoggerFactory.getLogger(MovieUpdateDatasourceTask2.class);
   private static final ResourceBundle BUNDLE         = ResourceBundle.getBundle("messages", new UTF8Control());                                  //$NON-NLS-1$
 
-  private static long                 preDir         = 0;
-  private static long                 postDir        = 0;
-  private static long                 visFile        = 0;
+  // max amount of movies waiting in a stage of the pipeline; a full stage blocks the previous one
+  private static final int            STAGE_CAPACITY = 100;
+
+  private static final AtomicLong     preDir         = new AtomicLong();
+  private static final AtomicLong     postDir        = new AtomicLong();
+  private static final AtomicLong     visFile        = new AtomicLong();
   private static long                 preDirAll      = 0;
   private static long                 postDirAll     = 0;
   private static long                 visFileAll     = 0;
@@ -108,6 +123,14 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
   private List<Movie>                 movieFolders   = new ArrayList<>();
   private MovieList                   movieList;
   private HashSet<Path>               filesFound     = new HashSet<>();
+  private Set<Path>                   changedFolders = new HashSet<>();
+  private DirectoryStateIndex         directoryStateIndex;
+  private boolean                     fullRescan     = false;
+  private Set<Movie>                  parsedMovies   = Collections.newSetFromMap(new ConcurrentHashMap<Movie, Boolean>());
+  private TmmPipelineStage<Movie>     imageStage;
+
+  // the mediainfo stages per storage device
+  private Map<String, TmmPipelineStage<Movie>> mediainfoStages = new ConcurrentHashMap<>();
 
   public MovieUpdateDatasourceTask2() {
     super(BUNDLE.getString("update.datasource"));
@@ -122,6 +145,25 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     dataSources.add(datasource);
   }
 
+  /**
+   * update only the given folders of the data source (e.g. reported by the data source watcher)
+   * 
+   * @param datasource
+   *          the data source
+   * @param folders
+   *          the changed folders in the root of the data source; the data source itself to update all changed folders
+   */
+  public MovieUpdateDatasourceTask2(String datasource, Collection<Path> folders) {
+    this(datasource);
+    for (Path folder : folders) {
+      changedFolders.add(folder.toAbsolutePath());
+    }
+    // a change in the root may affect every folder
+    if (changedFolders.contains(Paths.get(datasource).toAbsolutePath())) {
+      changedFolders.clear();
+    }
+  }
+
   public MovieUpdateDatasourceTask2(List<Movie> movies) {
     super(BUNDLE.getString("update.datasource"));
     movieList = MovieList.getInstance();
@@ -129,6 +171,16 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     movieFolders.addAll(movies);
   }
 
+  /**
+   * parse all folders again, even if they have not been changed since the last update
+   * 
+   * @param fullRescan
+   *          true to ignore the stored directory states
+   */
+  public void setFullRescan(boolean fullRescan) {
+    this.fullRescan = fullRescan;
+  }
+
   @Override
   public void doInBackground() {
     // check if there is at least one DS to update
@@ -138,12 +190,13 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
       MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, "update.datasource", "update.datasource.nonespecified"));
       return;
     }
-    preDir = 0;
-    postDir = 0;
-    visFile = 0;
+    preDir.set(0);
+    postDir.set(0);
+    visFile.set(0);
     preDirAll = 0;
     postDirAll = 0;
     visFileAll = 0;
+    directoryStateIndex = MovieModuleManager.getInstance().getDirectoryStateIndex();
 
     // get existing movie folders
     List<Path> existing = new ArrayList<>();
@@ -154,14 +207,21 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     try {
       StopWatch stopWatch = new StopWatch();
       stopWatch.start();
-      List<Path> imageFiles = new ArrayList<>();
 
       if (movieFolders.isEmpty()) {
+        // all data sources are parsed at once (every storage device has its own I/O lane); the parsed movies stream through the mediainfo
+        // and the image cache stage while the parser is still running
+        startPipeline(dataSources, MovieModuleManager.MOVIE_SETTINGS.isBuildImageCacheOnImport());
+        initThreadPool(1, "update");
+        setTaskName(BUNDLE.getString("update.datasource"));
+        publishState();
+
+        List<String> parsedDataSources = new ArrayList<>();
         for (String ds : dataSources) {
+          if (cancel) {
+            break;
+          }
           LOGGER.info("Start UDS on datasource: " + ds);
-          initThreadPool(3, "update");
-          setTaskName(BUNDLE.getString("update.datasource") + " '" + ds + "'");
-          publishState();
 
           Path dsAsPath = Paths.get(ds);
 
@@ -205,50 +265,73 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
             }
           }
           rootList.clear();
+          List<Path> unchangedDirs = new ArrayList<>();
+          List<Path> changedDirs = new ArrayList<>();
           for (Path path : newMovieDirs) {
-            searchAndParse(dsAsPath.toAbsolutePath(), path, Integer.MAX_VALUE);
+            if (isUnchanged(path)) {
+              unchangedDirs.add(path);
+            }
+            else {
+              changedDirs.add(path);
+            }
           }
           for (Path path : existingMovieDirs) {
-            searchAndParse(dsAsPath.toAbsolutePath(), path, Integer.MAX_VALUE);
-          }
-          if (rootFiles.size() > 0) {
-            submitTask(new parseMultiMovieDirTask(dsAsPath.toAbsolutePath(), dsAsPath.toAbsolutePath(), rootFiles));
+            if (isUnchanged(path)) {
+              unchangedDirs.add(path);
+            }
+            else {
+              changedDirs.add(path);
+            }
           }
-
-          waitForCompletionOrCancel();
-          newMovieDirs.clear();
-          existingMovieDirs.clear();
-          rootFiles.clear();
-
-          if (cancel) {
-            break;
+          searchAndParse(dsAsPath.toAbsolutePath(), changedDirs, Integer.MAX_VALUE);
+          if (rootFiles.size() > 0 && changedFolders.isEmpty()) {
+            submitTask(dsAsPath, new parseMultiMovieDirTask(dsAsPath.toAbsolutePath(), dsAsPath.toAbsolutePath(), rootFiles));
           }
+          LOGGER.info("skipped " + unchangedDirs.size() + " unchanged folders");
+          addUnchangedMoviesToFilesFound(dsAsPath.toAbsolutePath(), unchangedDirs);
+          parsedDataSources.add(ds);
+        } // END datasource loop
 
-          // cleanup
-          cleanup(ds);
+        waitForCompletionOrCancel();
 
-          // mediainfo
-          gatherMediainfo(ds);
+        if (cancel) {
+          directoryStateIndex.discard();
+        }
+        else {
+          // the folders have been parsed - remember their state
+          directoryStateIndex.commit();
 
-          if (cancel) {
-            break;
+          // final cleanup sweep (before the other movies are passed through the pipeline - no need to read removed files)
+          for (String ds : parsedDataSources) {
+            if (cancel) {
+              break;
+            }
+            cleanup(ds);
           }
 
-          // build image cache on import
-          if (MovieModuleManager.MOVIE_SETTINGS.isBuildImageCacheOnImport()) {
-            for (Movie movie : movieList.getMovies()) {
-              if (!dsAsPath.equals(Paths.get(movie.getDataSource()))) {
-                // check only movies matching datasource
-                continue;
-              }
-              imageFiles.addAll(movie.getImagesToCache());
+          // pass all other movies of the data sources through the pipeline (movies from unchanged folders may still need mediainfo or cached
+          // images - e.g. after a cancelled run)
+          List<Path> parsedPaths = new ArrayList<>();
+          for (String ds : parsedDataSources) {
+            parsedPaths.add(Paths.get(ds));
+          }
+          List<Movie> otherMovies = new ArrayList<>();
+          for (Movie movie : movieList.getMovies()) {
+            if (parsedPaths.contains(Paths.get(movie.getDataSource())) && !parsedMovies.contains(movie)) {
+              otherMovies.add(movie);
             }
           }
-        } // END datasource loop
+          finishPipeline(otherMovies);
+        }
       }
       else {
         LOGGER.info("Start UDS for selected movies");
-        initThreadPool(3, "update");
+        List<String> movieDataSources = new ArrayList<>();
+        for (Movie m : movieFolders) {
+          movieDataSources.add(m.getDataSource());
+        }
+        startPipeline(movieDataSources, false);
+        initThreadPool(1, "update");
         setTaskName(BUNDLE.getString("update.datasource"));
         publishState();
 
@@ -261,20 +344,21 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
         for (Map.Entry<Path, String> entry : folder.entrySet()) {
           Path dir = entry.getKey();
           String ds = entry.getValue();
-          submitTask(new FindMovieTask(dir, Paths.get(ds)));
+          submitTask(Paths.get(ds), new FindMovieTask(dir, Paths.get(ds)));
         }
         waitForCompletionOrCancel();
 
         // cleanup
         cleanup(movieFolders);
 
-        // mediainfo
-        gatherMediainfo(movieFolders);
-      }
-
-      if (imageFiles.size() > 0) {
-        ImageCacheTask task = new ImageCacheTask(imageFiles);
-        TmmTaskManager.getInstance().addUnnamedTask(task);
+        // mediainfo (only for the movies which are still there)
+        List<Movie> otherMovies = new ArrayList<>();
+        for (Movie movie : movieFolders) {
+          if (!parsedMovies.contains(movie) && movieList.getMovies().contains(movie)) {
+            otherMovies.add(movie);
+          }
+        }
+        finishPipeline(otherMovies);
       }
 
       if (MovieModuleManager.MOVIE_SETTINGS.getSyncTrakt()) {
@@ -298,6 +382,185 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
       LOGGER.error("Thread crashed", e);
       MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, "update.datasource", "message.update.threadcrashed"));
     }
+    finally {
+      stopPipeline();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    super.cancel();
+    for (TmmPipelineStage<Movie> stage : mediainfoStages.values()) {
+      stage.cancel();
+    }
+    TmmPipelineStage<Movie> stage = imageStage;
+    if (stage != null) {
+      stage.cancel();
+    }
+  }
+
+  /**
+   * create the stages after the parser: parsed movies flow to the mediainfo stage of their storage device and from there to the image cache
+   * stage
+   * 
+   * @param dataSources
+   *          the data sources to update (every storage device gets its own mediainfo stage)
+   * @param cacheImages
+   *          create the image cache stage
+   */
+  private void startPipeline(Collection<String> dataSources, boolean cacheImages) {
+    for (String ds : dataSources) {
+      getMediainfoStage(Paths.get(ds));
+    }
+
+    if (cacheImages) {
+      // scaling the images is CPU bound
+      imageStage = new TmmPipelineStage<Movie>("imagecache", Math.max(Runtime.getRuntime().availableProcessors() / 2, 1), STAGE_CAPACITY) {
+        @Override
+        protected void process(Movie movie) {
+          for (Path image : movie.getImagesToCache()) {
+            if (cancel) {
+              return;
+            }
+            try {
+              ImageCache.cacheImage(image);
+            }
+            catch (EmptyFileException e) {
+              LOGGER.warn("failed to cache file (file is empty): " + image);
+            }
+            catch (FileNotFoundException e) {
+              LOGGER.warn("failed to cache file (file not found): " + image);
+            }
+            catch (Exception e) {
+              LOGGER.warn("failed to cache file: " + image, e);
+            }
+          }
+        }
+      };
+    }
+  }
+
+  /**
+   * get the mediainfo stage for the storage device of the given data source; mediainfo reads the video files, so every storage device gets
+   * its own stage (a slow device does not hold up the others). Every file is read with a permit of the I/O budget of the device (shared
+   * with the parser), the threads of the stage are only bounded by the mediainfo handles
+   * 
+   * @param dataSource
+   *          the data source
+   * @return the mediainfo stage for the device
+   */
+  private synchronized TmmPipelineStage<Movie> getMediainfoStage(final Path dataSource) {
+    String device = TmmIoLane.getDevice(dataSource);
+    TmmPipelineStage<Movie> stage = mediainfoStages.get(device);
+    if (stage == null) {
+      stage = new TmmPipelineStage<Movie>("mediainfo-D" + (mediainfoStages.size() + 1), MediaInfoPool.getInstance().getSize(),
+          STAGE_CAPACITY) {
+        @Override
+        protected void process(Movie movie) throws Exception {
+          for (MediaFile mf : new ArrayList<>(movie.getMediaFiles())) {
+            if (cancel) {
+              return;
+            }
+            if (StringUtils.isBlank(mf.getContainerFormat())) {
+              TmmIoLane.callWithPermit(dataSource, new MediaFileInformationFetcherTask(mf, movie, false));
+            }
+          }
+          TmmPipelineStage<Movie> next = imageStage;
+          if (next != null) {
+            next.offer(movie);
+          }
+        }
+      };
+      mediainfoStages.put(device, stage);
+    }
+    return stage;
+  }
+
+  /**
+   * hand a parsed movie over to the next stage (blocks if the next stage is full)
+   * 
+   * @param movie
+   *          the parsed movie
+   */
+  private void movieParsed(final Movie movie) {
+    if (parsedMovies.add(movie)) {
+      // the parser holds a permit of the device, which the mediainfo stage of the same device needs to make room
+      TmmIoLane.runWithoutPermit(new Runnable() {
+        @Override
+        public void run() {
+          getMediainfoStage(Paths.get(movie.getDataSource())).offer(movie);
+        }
+      });
+    }
+  }
+
+  /**
+   * wait until all stages are empty
+   * 
+   * @param otherMovies
+   *          movies which have not been passed through the pipeline by the parser
+   */
+  private void finishPipeline(List<Movie> otherMovies) {
+    setTaskName(BUNDLE.getString("update.mediainfo"));
+    setTaskDescription(null);
+    publishState();
+
+    LOGGER.info("getting Mediainfo...");
+    awaitStages(mediainfoStages.values());
+    for (Movie movie : otherMovies) {
+      if (cancel) {
+        break;
+      }
+      getMediainfoStage(Paths.get(movie.getDataSource())).offer(movie);
+    }
+    awaitStages(mediainfoStages.values());
+
+    if (imageStage != null) {
+      setTaskName(BUNDLE.getString("tmm.rebuildimagecache"));
+      publishState();
+      awaitStages(Collections.singletonList(imageStage));
+    }
+  }
+
+  private void awaitStages(Collection<TmmPipelineStage<Movie>> stages) {
+    for (TmmPipelineStage<Movie> stage : stages) {
+      try {
+        while (!cancel && !stage.awaitDrained(500)) {
+          // progress over all stages
+          int processed = 0;
+          int pending = 0;
+          for (TmmPipelineStage<Movie> s : stages) {
+            processed += s.getProcessed();
+            pending += s.getPending();
+          }
+          setWorkUnits(processed + pending);
+          setProgressDone(processed);
+          publishState();
+        }
+      }
+      catch (InterruptedException e) {
+        LOGGER.error("stage " + stage.getName() + " interrupted", e);
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void stopPipeline() {
+    for (TmmPipelineStage<Movie> stage : mediainfoStages.values()) {
+      if (cancel) {
+        stage.cancel();
+      }
+      stage.shutdown();
+      LOGGER.debug("stage " + stage);
+    }
+    if (imageStage != null) {
+      if (cancel) {
+        imageStage.cancel();
+      }
+      imageStage.shutdown();
+      LOGGER.debug("stage " + imageStage);
+    }
   }
 
   /**
@@ -327,7 +590,14 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
       name = name.replaceAll("\\-G\\d+", "-G" + uniqueId);
       Thread.currentThread().setName(name);
 
-      parseMovieDirectory(subdir, datasource);
+      try {
+        parseMovieDirectory(subdir, datasource);
+      }
+      catch (RuntimeException e) {
+        // parse this folder again in the next run
+        directoryStateIndex.invalidate(subdir);
+        throw e;
+      }
       return subdir.toString();
     }
   }
@@ -352,7 +622,14 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
 
     @Override
     public String call() {
-      createMultiMovieFromDir(datasource, movieDir, allFiles);
+      try {
+        createMultiMovieFromDir(datasource, movieDir, allFiles);
+      }
+      catch (RuntimeException e) {
+        // parse this folder again in the next run
+        directoryStateIndex.invalidate(movieDir);
+        throw e;
+      }
       return movieDir.toString();
     }
   }
@@ -698,6 +975,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
 
     movie.reEvaluateStacking();
     movie.saveToDb();
+    movieParsed(movie);
   }
 
   /**
@@ -879,6 +1157,7 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     for (Movie m : movieList.getMoviesByPath(movieDir)) {
       m.reEvaluateStacking();
       m.saveToDb();
+      movieParsed(m);
     }
   }
 
@@ -983,6 +1262,50 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     } // end MF loop
   }
 
+  /**
+   * check whether the folder in the root of the data source can be skipped
+   * 
+   * @param dir
+   *          the folder
+   * @return true if nothing has been changed in this folder
+   */
+  private boolean isUnchanged(Path dir) {
+    if (!changedFolders.isEmpty()) {
+      // only update the given folders
+      return !changedFolders.contains(dir);
+    }
+    return !fullRescan && directoryStateIndex.isUnchanged(dir);
+  }
+
+  /**
+   * the files of movies in unchanged folders are not collected while parsing; add them here to avoid the file checks in the cleanup
+   * 
+   * @param datasource
+   *          the data source
+   * @param unchangedDirs
+   *          the unchanged folders in the root of the data source
+   */
+  private void addUnchangedMoviesToFilesFound(Path datasource, List<Path> unchangedDirs) {
+    if (unchangedDirs.isEmpty()) {
+      return;
+    }
+
+    Set<Path> dirs = new HashSet<>(unchangedDirs);
+    for (Movie movie : movieList.getMovies()) {
+      Path movieDir = movie.getPathNIO();
+      if (!movieDir.startsWith(datasource) || movieDir.equals(datasource)) {
+        continue;
+      }
+      Path relative = datasource.relativize(movieDir);
+      if (dirs.contains(datasource.resolve(relative.getName(0)))) {
+        filesFound.add(movieDir);
+        for (MediaFile mf : movie.getMediaFiles()) {
+          filesFound.add(mf.getFileAsPath());
+        }
+      }
+    }
+  }
+
   /*
    * cleanup database - remove orphaned movies/files
    */
@@ -1112,58 +1435,6 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
     movieList.removeMovies(moviesToRemove);
   }
 
-  /*
-   * gather mediainfo for ungathered movies
-   */
-  private void gatherMediainfo(String datasource) {
-    // start MI
-    setTaskName(BUNDLE.getString("update.mediainfo"));
-    publishState();
-
-    initThreadPool(1, "mediainfo");
-
-    LOGGER.info("getting Mediainfo...");
-    for (int i = movieList.getMovies().size() - 1; i >= 0; i--) {
-      if (cancel) {
-        break;
-      }
-      Movie movie = movieList.getMovies().get(i);
-
-      // check only movies matching datasource
-      if (!Paths.get(datasource).equals(Paths.get(movie.getDataSource()))) {
-        continue;
-      }
-
-      for (MediaFile mf : new ArrayList<>(movie.getMediaFiles())) {
-        if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, movie, false));
-        }
-      }
-    }
-    waitForCompletionOrCancel();
-  }
-
-  private void gatherMediainfo(List<Movie> movies) {
-    // start MI
-    setTaskName(BUNDLE.getString("update.mediainfo"));
-    publishState();
-
-    initThreadPool(1, "mediainfo");
-
-    LOGGER.info("getting Mediainfo...");
-    for (Movie movie : movies) {
-      if (cancel) {
-        break;
-      }
-      for (MediaFile mf : new ArrayList<>(movie.getMediaFiles())) {
-        if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, movie, false));
-        }
-      }
-    }
-    waitForCompletionOrCancel();
-  }
-
   /**
    * gets mediaFile of specific type
    * 
@@ -1343,116 +1614,219 @@ public class MovieUpdateDatasourceTask2 extends TmmThreadPool {
   // and starts parsing directory immediately
   // **************************************
   public void searchAndParse(Path datasource, Path folder, int deep) {
-    folder = folder.toAbsolutePath();
-    SearchAndParseVisitor visitor = new SearchAndParseVisitor(datasource);
+    searchAndParse(datasource, Collections.singletonList(folder), deep);
+  }
+
+  /**
+   * search all given folders concurrently; every found movie folder is submitted to the parse pool as soon as its sub tree has been searched
+   * 
+   * @param datasource
+   *          the data source
+   * @param folders
+   *          the folders to search
+   * @param deep
+   *          the max depth to search
+   */
+  private void searchAndParse(Path datasource, List<Path> folders, int deep) {
+    if (folders.isEmpty()) {
+      return;
+    }
+
+    // listing directories is I/O bound - every listing takes a permit of the I/O budget of the storage device (shared with the parser)
+    ForkJoinPool discoveryPool = new ForkJoinPool();
     try {
-      Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), deep, visitor);
+      List<ForkJoinTask<Set<Path>>> tasks = new ArrayList<>();
+      for (Path folder : folders) {
+        folder = folder.toAbsolutePath();
+        BasicFileAttributes attrs;
+        try {
+          attrs = Files.readAttributes(folder, BasicFileAttributes.class);
+        }
+        catch (IOException e) {
+          LOGGER.error("" + e);
+          continue;
+        }
+        List<Object> ancestors = new ArrayList<>(1);
+        if (attrs.fileKey() != null) {
+          ancestors.add(attrs.fileKey());
+        }
+        // every folder in the data source root has its own stacking detection (like a separate walk)
+        tasks.add(discoveryPool.submit(new SearchAndParseTask(datasource, folder, attrs.lastModifiedTime().toMillis(), 0, deep,
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()), ancestors)));
+      }
+
+      for (ForkJoinTask<Set<Path>> task : tasks) {
+        try {
+          task.join();
+        }
+        catch (Exception e) {
+          LOGGER.error("error searching for movie folders", e);
+        }
+      }
     }
-    catch (IOException e) {
-      // can not happen, since we override visitFileFailed, which throws no
-      // exception ;)
+    finally {
+      discoveryPool.shutdown();
     }
   }
 
-  private class SearchAndParseVisitor implements FileVisitor<Path> {
-    private Path              datasource;
-    private ArrayList<String> unstackedRoot = new ArrayList<>(); // only for
-                                                                 // folder
-                                                                 // stacking
-    private HashSet<Path>     videofolders  = new HashSet<>();   // all found
-                                                                 // video
-                                                                 // folders
-
-    protected SearchAndParseVisitor(Path datasource) {
+  /**
+   * searches a folder for video files and forks a sub task for every sub folder. After all sub folders have been searched, the folder is
+   * submitted for parsing if it contains a video file (so the deepest folders are always parsed first)
+   */
+  private class SearchAndParseTask extends RecursiveTask<Set<Path>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Path         datasource;
+    private final Path         dir;
+    private final long         lastModified;
+    private final int          depth;
+    private final int          maxDepth;
+    private final Set<String>  unstackedRoot; // only for folder stacking
+    private final List<Object> ancestors;     // file keys of all parent folders (symlink loop detection)
+
+    SearchAndParseTask(Path datasource, Path dir, long lastModified, int depth, int maxDepth, Set<String> unstackedRoot,
+        List<Object> ancestors) {
       this.datasource = datasource;
+      this.dir = dir;
+      this.lastModified = lastModified;
+      this.depth = depth;
+      this.maxDepth = maxDepth;
+      this.unstackedRoot = unstackedRoot;
+      this.ancestors = ancestors;
     }
 
+    /**
+     * @return all found video folders in this sub tree
+     */
     @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
-      visFile++;
-      if (Utils.isRegularFile(attr) && !file.getFileName().toString().matches(skipRegex)) {
-        // check for video?
-        if (Globals.settings.getVideoFileType().contains("." + FilenameUtils.getExtension(file.toString()).toLowerCase(Locale.ROOT))) {
-          if (file.getParent().getFileName().toString().equals("STREAM")) {
-            return CONTINUE; // BD folder has an additional parent video folder
-                             // - ignore it here
-          }
+    protected Set<Path> compute() {
+      Set<Path> videofolders = new HashSet<>();
+      if (cancel) {
+        return videofolders;
+      }
 
-          // check if file is a VIDEO type - only scan those folders (and not extras/trailer folders)!
-          MediaFile mf = new MediaFile(file);
-          if (mf.getType() == MediaFileType.VIDEO) {
-            videofolders.add(file.getParent());
+      preDir.incrementAndGet();
+      List<String> entryNames = new ArrayList<>();
+      List<String> subDirNames = new ArrayList<>();
+      List<SearchAndParseTask> subTasks = new ArrayList<>();
+      boolean videoFound = false;
+
+      // the folder is read with a permit of the I/O budget of the device; the sub folders are searched after the permit has been released
+      Semaphore permits = TmmIoLane.getPermits(datasource);
+      permits.acquireUninterruptibly();
+      try {
+        String fn = dir.getFileName().toString().toUpperCase(Locale.ROOT);
+        if (skipFolders.contains(fn) || fn.matches(skipRegex) || Files.exists(dir.resolve(".tmmignore"))
+            || Files.exists(dir.resolve("tmmignore")) || Files.exists(dir.resolve(".nomedia"))
+            || MovieModuleManager.MOVIE_SETTINGS.getMovieSkipFolders().contains(dir.toFile().getAbsolutePath())) {
+          LOGGER.debug("Skipping dir: " + dir);
+          // record the state to notice when the folder is no longer skipped
+          directoryStateIndex.record(dir, Collections.<String> emptyList());
+          return videofolders;
+        }
+
+        // list the folder once: files are checked here, sub folders are searched in parallel
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+          for (Path path : stream) {
+            String name = path.getFileName().toString();
+            entryNames.add(name);
+
+            BasicFileAttributes attrs;
+            try {
+              attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            }
+            catch (IOException e) {
+              LOGGER.error("" + e);
+              continue;
+            }
+
+            if (attrs.isDirectory() && depth + 1 < maxDepth) {
+              Object fileKey = attrs.fileKey();
+              if (fileKey != null && ancestors.contains(fileKey)) {
+                LOGGER.error("file system loop detected: " + path);
+                continue;
+              }
+              List<Object> subAncestors = new ArrayList<>(ancestors);
+              if (fileKey != null) {
+                subAncestors.add(fileKey);
+              }
+              subDirNames.add(name);
+              subTasks.add(new SearchAndParseTask(datasource, path, attrs.lastModifiedTime().toMillis(), depth + 1, maxDepth, unstackedRoot,
+                  subAncestors));
+            }
+            else if (isVideoFile(path, attrs)) {
+              videoFound = true;
+            }
           }
         }
+        catch (IOException e) {
+          LOGGER.error("" + e);
+          return videofolders;
+        }
+      }
+      finally {
+        permits.release();
       }
-      return CONTINUE;
-    }
 
-    @Override
-    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-      preDir++;
-      String fn = dir.getFileName().toString().toUpperCase(Locale.ROOT);
-      if (skipFolders.contains(fn) || fn.matches(skipRegex) || Files.exists(dir.resolve(".tmmignore")) || Files.exists(dir.resolve("tmmignore"))
-          || Files.exists(dir.resolve(".nomedia"))
-          || MovieModuleManager.MOVIE_SETTINGS.getMovieSkipFolders().contains(dir.toFile().getAbsolutePath())) {
-        LOGGER.debug("Skipping dir: " + dir);
-        return SKIP_SUBTREE;
+      invokeAll(subTasks);
+      for (SearchAndParseTask subTask : subTasks) {
+        videofolders.addAll(subTask.join());
       }
-      return CONTINUE;
-    }
 
-    @Override
-    public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-      postDir++;
+      postDir.incrementAndGet();
+      directoryStateIndex.record(dir, lastModified, entryNames, subDirNames);
+      if (!videoFound) {
+        return videofolders;
+      }
+      videofolders.add(dir);
       if (cancel) {
-        return TERMINATE;
+        return videofolders;
       }
 
-      if (this.videofolders.contains(dir)) {
-        boolean update = true;
+      // quick fix for folder stacking
+      // name = stacking marker & parent has already been processed - skip
+      Path relative = datasource.relativize(dir);
+      if (!Utils.getFolderStackingMarker(relative.toString()).isEmpty()
+          && Utils.getFolderStackingMarker(relative.toString()).equals(dir.getFileName().toString())) {
+        if (!unstackedRoot.add(dir.getParent().toString())) {
+          return videofolders;
+        }
+      }
 
-        // quick fix for folder stacking
-        // name = stacking marker & parent has already been processed - skip
-        Path relative = datasource.relativize(dir);
-        if (!Utils.getFolderStackingMarker(relative.toString()).isEmpty()
-            && Utils.getFolderStackingMarker(relative.toString()).equals(dir.getFileName().toString())) {
-          if (unstackedRoot.contains(dir.getParent().toString())) {
-            update = false;
-          }
-          else {
-            unstackedRoot.add(dir.getParent().toString());
-          }
+      // check if any existing movie has already the same (sub)dir
+      // IF we already have a movie a level deeper, we HAVE TO treat this folder as MMD!
+      // all sub folders have already been searched (and parsed), so they are all already populated
+      for (Path sub : videofolders) {
+        if (sub.equals(dir)) {
+          continue; // don't check ourself ;)
         }
-        if (update) {
-          // this.videofolders.remove(dir);
-
-          // check if any existing movie has already the same (sub)dir
-          // IF we already have a movie a level deeper, we HAVE TO treat this folder as MMD!
-          // we always start to parse from deepest level down to root, so they should be all already populated
-          for (Path sub : this.videofolders) {
-            if (sub.equals(dir)) {
-              continue; // don't check ourself ;)
-            }
-            if (sub.startsWith(dir)) {
-              // ka-ching! parse this now as MMD and return
-              List<Path> rootFiles = listFilesOnly(dir); // get all files and dirs
-              submitTask(new parseMultiMovieDirTask(datasource.toAbsolutePath(), dir, rootFiles));
-              return CONTINUE;
-            }
-          }
-          submitTask(new FindMovieTask(dir, datasource));
+        if (sub.startsWith(dir)) {
+          // ka-ching! parse this now as MMD and return
+          List<Path> rootFiles = listFilesOnly(dir); // get all files and dirs
+          submitTask(datasource, new parseMultiMovieDirTask(datasource.toAbsolutePath(), dir, rootFiles));
+          return videofolders;
         }
       }
-      return CONTINUE;
+      submitTask(datasource, new FindMovieTask(dir, datasource));
+      return videofolders;
     }
 
-    // If there is some error accessing the file, let the user know.
-    // If you don't override this method and an error occurs, an IOException is
-    // thrown.
-    @Override
-    public FileVisitResult visitFileFailed(Path file, IOException exc) {
-      LOGGER.error("" + exc);
-      return CONTINUE;
+    private boolean isVideoFile(Path file, BasicFileAttributes attrs) {
+      visFile.incrementAndGet();
+      if (Utils.isRegularFile(attrs) && !file.getFileName().toString().matches(skipRegex)) {
+        // check for video?
+        if (Globals.settings.getVideoFileType().contains("." + FilenameUtils.getExtension(file.toString()).toLowerCase(Locale.ROOT))) {
+          if (file.getParent().getFileName().toString().equals("STREAM")) {
+            return false; // BD folder has an additional parent video folder
+                          // - ignore it here
+          }
+
+          // check if file is a VIDEO type - only scan those folders (and not extras/trailer folders)!
+          MediaFile mf = new MediaFile(file);
+          return mf.getType() == MediaFileType.VIDEO;
+        }
+      }
+      return false;
     }
   }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.threading;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tinymediamanager.Globals;
+
+/**
+ * The class TmmIoLane. An I/O lane of a {@link TmmThreadPool} for one storage device (file store): tasks for different devices run in
+ * parallel, tasks for the same device are limited to the concurrency budget of the device (see the settings). All lanes of a pool deliver
+ * their results to the completion queue of the pool.<br>
+ * The concurrency budget of a device is one set of permits (see {@link #getPermits(Path)}) which is shared by everything reading from the
+ * device (the lanes, the directory search, the mediainfo stages, ...) - so the device never sees more concurrent accesses than configured.
+ *
+ * @author Manuel Laggner
+ */
+public class TmmIoLane {
+  // file store types of network shares
+  private static final List<String>             NETWORK_FILE_SYSTEMS = Arrays.asList("cifs", "smb", "smbfs", "smb2", "smb3", "nfs", "nfs4",
+      "afpfs", "webdav", "davfs", "fuse.sshfs");
+  private static final Map<Path, FileStoreInfo> FILE_STORES          = new ConcurrentHashMap<>();
+  private static final Map<String, Budget>      BUDGETS              = new ConcurrentHashMap<>();
+  // the permit held by the current thread (see callWithPermit)
+  private static final ThreadLocal<Semaphore>   HELD_PERMIT          = new ThreadLocal<>();
+
+  private final String                          device;
+  private final int                             threads;
+  private final Semaphore                       permits;
+  private final ThreadPoolExecutor              executor;
+  private final CompletionService<Object>       service;
+  private final AtomicLong                      submitted            = new AtomicLong();
+  private final AtomicLong                      completed            = new AtomicLong();
+  private final AtomicInteger                   maxQueueDepth        = new AtomicInteger();
+  private final long                            created;
+
+  /**
+   * create a new lane
+   *
+   * @param poolname
+   *          the name of the owning pool and the lane (for the thread names)
+   * @param device
+   *          the name of the device
+   * @param permits
+   *          the concurrency budget of this device (see {@link #getPermits(Path)})
+   * @param completionQueue
+   *          the completion queue of the owning pool
+   */
+  TmmIoLane(String poolname, String device, Semaphore permits, BlockingQueue<Future<Object>> completionQueue) {
+    this.device = device;
+    // more threads would only wait for permits
+    this.threads = ((Budget) permits).size;
+    this.permits = permits;
+    this.executor = new ThreadPoolExecutor(threads, threads, // max threads
+        2, TimeUnit.SECONDS, // time to wait before closing idle workers
+        new LinkedBlockingQueue<Runnable>(), // our queue
+        new TmmThreadPool.TmmThreadFactory(poolname) // our thread settings
+    );
+    this.executor.allowCoreThreadTimeOut(true);
+    this.service = new ExecutorCompletionService<>(executor, completionQueue);
+    this.created = System.currentTimeMillis();
+  }
+
+  void submit(final Callable<Object> task) {
+    submitted.incrementAndGet();
+    service.submit(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        try {
+          return callWithPermit(permits, task);
+        }
+        finally {
+          completed.incrementAndGet();
+        }
+      }
+    });
+    int depth = executor.getQueue().size();
+    if (depth > maxQueueDepth.get()) {
+      maxQueueDepth.set(depth);
+    }
+  }
+
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  boolean isTerminated() {
+    return executor.isTerminated();
+  }
+
+  void abort() throws InterruptedException {
+    executor.getQueue().clear();
+    executor.awaitTermination(3, TimeUnit.SECONDS);
+  }
+
+  /**
+   * the name of the storage device of this lane
+   *
+   * @return the device name
+   */
+  public String getDevice() {
+    return device;
+  }
+
+  /**
+   * the concurrency budget of this lane
+   *
+   * @return the amount of threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * the amount of tasks waiting for a free thread of this lane
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * the max amount of tasks which have been waiting for this lane at the same time
+   *
+   * @return the max queue depth
+   */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  public long getSubmittedTasks() {
+    return submitted.get();
+  }
+
+  public long getCompletedTasks() {
+    return completed.get();
+  }
+
+  /**
+   * the throughput of this lane since its creation
+   *
+   * @return the completed tasks per second
+   */
+  public double getThroughput() {
+    long duration = System.currentTimeMillis() - created;
+    if (duration <= 0) {
+      return 0;
+    }
+    return completed.get() * 1000d / duration;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "%s (%d threads): %d/%d tasks, max queue depth %d, %.1f tasks/s", device, threads, completed.get(),
+        submitted.get(), maxQueueDepth.get(), getThroughput());
+  }
+
+  /**
+   * get the name of the storage device (file store) containing the given path
+   *
+   * @param path
+   *          the path (e.g. a data source)
+   * @return the device name
+   */
+  public static String getDevice(Path path) {
+    return getFileStoreInfo(path).name;
+  }
+
+  /**
+   * get the concurrency budget for the storage device containing the given path (from the settings)
+   *
+   * @param path
+   *          the path (e.g. a data source)
+   * @return the amount of threads for this device
+   */
+  public static int getThreads(Path path) {
+    int threads;
+    if (getFileStoreInfo(path).network) {
+      threads = Globals.settings.getIoThreadsNetwork();
+    }
+    else {
+      threads = Globals.settings.getIoThreadsLocal();
+    }
+    return Math.max(threads, 1);
+  }
+
+  /**
+   * get the concurrency budget of the storage device containing the given path: one permit per concurrent access. The budget is shared
+   * by all tasks accessing the device; it is taken from the settings and recreated if the settings change
+   *
+   * @param path
+   *          the path (e.g. a data source)
+   * @return the permits of the device
+   */
+  public static Semaphore getPermits(Path path) {
+    String device = getDevice(path);
+    int threads = getThreads(path);
+    synchronized (BUDGETS) {
+      Budget budget = BUDGETS.get(device);
+      if (budget == null || budget.size != threads) {
+        // holders of the old budget release their permits to the old one
+        budget = new Budget(threads);
+        BUDGETS.put(device, budget);
+      }
+      return budget;
+    }
+  }
+
+  /**
+   * call the given task with a permit of the storage device containing the given path; blocks until a permit is free
+   *
+   * @param path
+   *          the path to access
+   * @param task
+   *          the task accessing the path
+   * @return the result of the task
+   * @throws Exception
+   *           any exception of the task or an {@link InterruptedException} if interrupted while waiting for a permit
+   */
+  public static <V> V callWithPermit(Path path, Callable<V> task) throws Exception {
+    return callWithPermit(getPermits(path), task);
+  }
+
+  private static <V> V callWithPermit(Semaphore permits, Callable<V> task) throws Exception {
+    if (HELD_PERMIT.get() == permits) {
+      // nested call - the thread already has a permit of this device
+      return task.call();
+    }
+    Semaphore outer = HELD_PERMIT.get();
+    permits.acquire();
+    HELD_PERMIT.set(permits);
+    try {
+      return task.call();
+    }
+    finally {
+      HELD_PERMIT.set(outer);
+      permits.release();
+    }
+  }
+
+  /**
+   * run something blocking which does not access the device (e.g. handing a result over to a full pipeline stage) without holding the
+   * permit of the current thread - otherwise the consumers on the same device could wait for the permit forever
+   *
+   * @param blocking
+   *          the blocking code
+   */
+  public static void runWithoutPermit(Runnable blocking) {
+    Semaphore held = HELD_PERMIT.get();
+    if (held == null) {
+      blocking.run();
+      return;
+    }
+    held.release();
+    HELD_PERMIT.remove();
+    try {
+      blocking.run();
+    }
+    finally {
+      held.acquireUninterruptibly();
+      HELD_PERMIT.set(held);
+    }
+  }
+
+  /**
+   * check whether the file store is a network share
+   *
+   * @param fileStore
+   *          the file store
+   * @return true if the file store is a network share
+   */
+  public static boolean isNetworkFileStore(FileStore fileStore) {
+    return NETWORK_FILE_SYSTEMS.contains(fileStore.type().toLowerCase(Locale.ROOT));
+  }
+
+  private static FileStoreInfo getFileStoreInfo(Path path) {
+    Path key = path.toAbsolutePath();
+    FileStoreInfo info = FILE_STORES.get(key);
+    if (info == null) {
+      info = new FileStoreInfo();
+      try {
+        FileStore fileStore = Files.getFileStore(key);
+        // the name is not unique (e.g. the volume label on windows); the string representation contains the mount point too
+        info.name = fileStore.toString();
+        info.network = isNetworkFileStore(fileStore);
+      }
+      catch (IOException e) {
+        info.name = "unknown";
+        info.network = false;
+      }
+      FILE_STORES.put(key, info);
+    }
+    return info;
+  }
+
+  /**
+   * the permits of a device (with the configured size to notice changed settings)
+   */
+  private static class Budget extends Semaphore {
+    private static final long serialVersionUID = 1L;
+
+    private final int         size;
+
+    Budget(int size) {
+      super(size, true);
+      this.size = size;
+    }
+  }
+
+  private static class FileStoreInfo {
+    private String  name;
+    private boolean network;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.threading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The class TmmPipelineStage. One stage of a processing pipeline: items offered to this stage are processed by its own threads. The queue of
+ * the stage is bounded - if it is full, {@link #offer(Object)} blocks the producer until there is room again (backpressure).
+ *
+ * @author Manuel Laggner
+ */
+public abstract class TmmPipelineStage<E> {
+  private static final Logger      LOGGER    = LoggerFactory.getLogger(TmmPipelineStage.class);
+
+  private final String             name;
+  private final ThreadPoolExecutor executor;
+  private final AtomicInteger      pending   = new AtomicInteger();
+  private final AtomicLong         processed = new AtomicLong();
+  private volatile boolean         cancelled = false;
+
+  /**
+   * create a new stage
+   *
+   * @param name
+   *          the name of the stage (for the thread names)
+   * @param threads
+   *          the amount of threads of this stage
+   * @param capacity
+   *          the max amount of items waiting in this stage
+   */
+  public TmmPipelineStage(String name, int threads, int capacity) {
+    this.name = name;
+    this.executor = new ThreadPoolExecutor(threads, threads, // max threads
+        2, TimeUnit.SECONDS, // time to wait before closing idle workers
+        new ArrayBlockingQueue<Runnable>(capacity), // our bounded queue
+        new TmmThreadPool.TmmThreadFactory(name), // our thread settings
+        new BlockingPolicy() // block the producer if the queue is full
+    );
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * process one item (called in the threads of this stage)
+   *
+   * @param item
+   *          the item to process
+   * @throws Exception
+   *           any exception while processing; will be logged
+   */
+  protected abstract void process(E item) throws Exception;
+
+  /**
+   * offer an item to this stage; blocks while the queue of this stage is full
+   *
+   * @param item
+   *          the item to process
+   * @return true if the item has been queued; false if the stage has been cancelled
+   */
+  public boolean offer(final E item) {
+    if (cancelled) {
+      return false;
+    }
+    pending.incrementAndGet();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (!cancelled) {
+              process(item);
+            }
+          }
+          catch (Exception e) {
+            LOGGER.warn("stage " + name + " - could not process " + item + ": " + e.getMessage());
+          }
+          finally {
+            processed.incrementAndGet();
+            done();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      done();
+      return false;
+    }
+    return true;
+  }
+
+  private void done() {
+    if (pending.decrementAndGet() <= 0) {
+      synchronized (pending) {
+        pending.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * wait until all offered items have been processed
+   *
+   * @param timeout
+   *          the max time to wait in ms
+   * @return true if the stage is empty
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public boolean awaitDrained(long timeout) throws InterruptedException {
+    long end = System.currentTimeMillis() + timeout;
+    synchronized (pending) {
+      while (pending.get() > 0 && !cancelled) {
+        long wait = end - System.currentTimeMillis();
+        if (wait <= 0) {
+          return false;
+        }
+        pending.wait(wait);
+      }
+    }
+    return pending.get() <= 0;
+  }
+
+  /**
+   * cancel this stage: all waiting items are discarded and no more items are accepted
+   */
+  public void cancel() {
+    cancelled = true;
+    // the discarded items will never run - and blocked producers can continue
+    List<Runnable> discarded = new ArrayList<>();
+    executor.getQueue().drainTo(discarded);
+    pending.addAndGet(-discarded.size());
+    synchronized (pending) {
+      pending.notifyAll();
+    }
+  }
+
+  /**
+   * shut down the threads of this stage after all items have been processed
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * the amount of items which have been offered, but not processed yet
+   *
+   * @return the amount of pending items
+   */
+  public int getPending() {
+    return pending.get();
+  }
+
+  public long getProcessed() {
+    return processed.get();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return name + ": " + processed.get() + " processed, " + getPending() + " pending";
+  }
+
+  /**
+   * puts the rejected task into the queue (waits until there is room) instead of throwing an exception
+   */
+  private static class BlockingPolicy implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("stage has been shut down");
+      }
+      try {
+        executor.getQueue().put(r);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException(e);
+      }
+    }
+  }
+}
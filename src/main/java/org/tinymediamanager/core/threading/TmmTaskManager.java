@@ -26,6 +26,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.threading.TmmTaskHandle.TaskState;
 import org.tinymediamanager.core.threading.TmmThreadPool.TmmThreadFactory;
@@ -88,7 +89,9 @@ public class TmmTaskManager implements TmmTaskListener {
   }
 
   private ThreadPoolExecutor createImageDownloadExecutor() {
-    ThreadPoolExecutor executor = new ThreadPoolExecutor(3, 3, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+    // the connections per host are limited by the ArtworkDownloader; more threads allow downloading from several hosts at once
+    int threads = 2 * ArtworkDownloader.MAX_CONNECTIONS_PER_HOST;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
         new TmmThreadFactory("image-download-task")) {
       @Override
       protected void beforeExecute(Thread d, Runnable r) {
@@ -185,6 +188,7 @@ public class TmmTaskManager implements TmmTaskListener {
     if (imageDownloadExecutor != null) {
       imageDownloadExecutor.shutdownNow();
     }
+    ArtworkDownloader.cancelAll();
   }
 
   /**
@@ -261,6 +265,7 @@ public class TmmTaskManager implements TmmTaskListener {
     if (imageDownloadExecutor != null && !imageDownloadExecutor.isTerminated()) {
       imageDownloadExecutor.shutdownNow();
     }
+    ArtworkDownloader.cancelAll();
     if (unnamedTaskExecutor != null && !unnamedTaskExecutor.isTerminated()) {
       unnamedTaskExecutor.shutdownNow();
     }
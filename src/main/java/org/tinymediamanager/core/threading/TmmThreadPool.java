@@ -15,10 +15,17 @@
  */
 package org.tinymediamanager.core.threading;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -37,10 +44,12 @@ import org.slf4j.LoggerFactory;
 public abstract class TmmThreadPool extends TmmTask {
   private static final Logger       LOGGER  = LoggerFactory.getLogger(TmmThreadPool.class);
 
-  private ThreadPoolExecutor        pool    = null;
-  private CompletionService<Object> service = null;
+  private ThreadPoolExecutor            pool            = null;
+  private CompletionService<Object>     service         = null;
+  private BlockingQueue<Future<Object>> completionQueue = null;
+  private Map<String, TmmIoLane>        lanes           = new LinkedHashMap<>();
 
-  protected String                  poolname;
+  protected String                      poolname;
 
   protected TmmThreadPool(String taskName) {
     super(taskName, 0, TaskType.MAIN_TASK);
@@ -63,7 +72,9 @@ public abstract class TmmThreadPool extends TmmTask {
         new TmmThreadFactory(name) // our thread settings
     );
     pool.allowCoreThreadTimeOut(true);
-    this.service = new ExecutorCompletionService<>(pool);
+    this.completionQueue = new LinkedBlockingQueue<>();
+    this.service = new ExecutorCompletionService<>(pool, completionQueue);
+    this.lanes = new LinkedHashMap<>();
   }
 
   /**
@@ -92,12 +103,67 @@ public abstract class TmmThreadPool extends TmmTask {
     }
   }
 
+  /**
+   * submits a new callable to the I/O lane of the storage device containing the given path. Tasks for different devices run in parallel,
+   * tasks for the same device are limited to the concurrency budget of the device
+   * 
+   * @param path
+   *          the path to find the device for (e.g. the data source)
+   * @param task
+   *          the callable
+   */
+  protected synchronized void submitTask(Path path, Callable<Object> task) {
+    if (!cancel) {
+      workUnits++;
+      getLane(path).submit(task);
+    }
+  }
+
+  /**
+   * submits a new runnable to the I/O lane of the storage device containing the given path
+   * 
+   * @param path
+   *          the path to find the device for (e.g. the data source)
+   * @param task
+   *          the runnable
+   */
+  protected void submitTask(Path path, Runnable task) {
+    submitTask(path, Executors.callable(task, (Object) ""));
+  }
+
+  private TmmIoLane getLane(Path path) {
+    String device = TmmIoLane.getDevice(path);
+    TmmIoLane lane = lanes.get(device);
+    if (lane == null) {
+      lane = new TmmIoLane(poolname + "-L" + (lanes.size() + 1), device, TmmIoLane.getPermits(path), completionQueue);
+      lanes.put(device, lane);
+    }
+    return lane;
+  }
+
+  private synchronized boolean isTerminated() {
+    if (!pool.isTerminated()) {
+      return false;
+    }
+    for (TmmIoLane lane : lanes.values()) {
+      if (!lane.isTerminated()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Wait for completion or cancel.
    */
   protected void waitForCompletionOrCancel() {
     pool.shutdown();
-    while (!cancel && !pool.isTerminated() && progressDone < workUnits) {
+    synchronized (this) {
+      for (TmmIoLane lane : lanes.values()) {
+        lane.shutdown();
+      }
+    }
+    while (!cancel && !isTerminated() && progressDone < workUnits) {
       try {
         final Future<Object> future = service.take();
         progressDone++;
@@ -115,6 +181,9 @@ public abstract class TmmThreadPool extends TmmTask {
         LOGGER.info("Abort queue (discarding " + (workUnits - progressDone) + " tasks)");
         pool.getQueue().clear();
         pool.awaitTermination(3, TimeUnit.SECONDS);
+        for (TmmIoLane lane : getLanes()) {
+          lane.abort();
+        }
 
         // shutdown now can cause a inconsistency because it will call Thread.interrupt which can cause a (sub)thread to crash
         // pool.shutdownNow();
@@ -124,6 +193,18 @@ public abstract class TmmThreadPool extends TmmTask {
         LOGGER.error("ThreadPool " + this.poolname + " interrupted in shutdown!", e);
       }
     }
+    for (TmmIoLane lane : getLanes()) {
+      LOGGER.debug("ThreadPool " + this.poolname + " - lane " + lane);
+    }
+  }
+
+  /**
+   * get the I/O lanes of this pool (one per storage device) with their metrics
+   * 
+   * @return a list of all lanes
+   */
+  public synchronized List<TmmIoLane> getLanes() {
+    return new ArrayList<>(lanes.values());
   }
 
   /**
@@ -16,19 +16,17 @@
 package org.tinymediamanager.core.tvshow;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
 import org.tinymediamanager.core.MediaEntityImageFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
@@ -41,7 +39,6 @@ import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 import org.tinymediamanager.core.tvshow.entities.TvShowSeason;
 import org.tinymediamanager.scraper.entities.MediaArtwork;
-import org.tinymediamanager.scraper.http.Url;
 
 /**
  * The class TvShowArtworkHelper . A helper class for managing TV show artwork
@@ -314,6 +311,9 @@ public class TvShowArtworkHelper {
       this.filename = filename;
       this.tvShowSeason = tvShowSeason;
       this.url = url;
+
+      // all images of the show are synced at once after the last download
+      ArtworkDownloader.start(tvShow);
     }
 
     @Override
@@ -328,19 +328,8 @@ public class TvShowArtworkHelper {
         LOGGER.debug("writing season poster " + filename);
 
         // fetch and store images
-        Url url1 = new Url(url);
-        FileOutputStream outputStream = new FileOutputStream(filename);
-        InputStream is = url1.getInputStream();
-        IOUtils.copy(is, outputStream);
-        outputStream.close();
-        outputStream.flush();
-        try {
-          outputStream.getFD().sync(); // wait until file has been completely written
-        }
-        catch (Exception e) {
-          // empty here -> just not let the thread crash
-        }
-        is.close();
+        ArtworkDownloader.download(url, Paths.get(filename));
+        ArtworkDownloader.addWrittenFile(tvShow, Paths.get(filename));
 
         ImageCache.invalidateCachedImage(Paths.get(filename));
         if (tvShowSeason != null) {
@@ -354,12 +343,16 @@ public class TvShowArtworkHelper {
           tvShowSeason.setPoster(new File(oldFilename));
         }
       }
+      catch (InterruptedException e) {
+        LOGGER.warn("interrupted image download");
+      }
       catch (Exception e) {
         LOGGER.error("Thread crashed", e);
         MessageManager.instance.pushMessage(new Message(MessageLevel.ERROR, this, "message.scrape.tvshowartworkfailed"));
       }
       finally {
         tvShow.saveToDb();
+        ArtworkDownloader.finish(tvShow);
       }
     }
   }
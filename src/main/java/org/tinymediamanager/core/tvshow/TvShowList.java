@@ -19,6 +19,7 @@ import static org.tinymediamanager.core.Constants.ADDED_TV_SHOW;
 import static org.tinymediamanager.core.Constants.EPISODE_COUNT;
 import static org.tinymediamanager.core.Constants.MEDIA_FILES;
 import static org.tinymediamanager.core.Constants.MEDIA_INFORMATION;
+import static org.tinymediamanager.core.Constants.PATH;
 import static org.tinymediamanager.core.Constants.REMOVED_TV_SHOW;
 import static org.tinymediamanager.core.Constants.TV_SHOWS;
 import static org.tinymediamanager.core.Constants.TV_SHOW_COUNT;
@@ -30,7 +31,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -42,6 +46,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.AbstractModelObject;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.DatabaseLoader;
+import org.tinymediamanager.core.MediaEntityIndex;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Message;
 import org.tinymediamanager.core.Message.MessageLevel;
@@ -69,16 +75,17 @@ import com.fasterxml.jackson.databind.ObjectReader;
  * @author Manuel Laggner
  */
 public class TvShowList extends AbstractModelObject {
-  private static final Logger    LOGGER   = LoggerFactory.getLogger(TvShowList.class);
-  private static TvShowList      instance = null;
+  private static final Logger            LOGGER   = LoggerFactory.getLogger(TvShowList.class);
+  private static TvShowList              instance = null;
 
-  private final List<TvShow>     tvShowList;
-  private final List<String>     tvShowTagsObservable;
-  private final List<String>     episodeTagsObservable;
-  private final List<String>     videoCodecsObservable;
-  private final List<String>     audioCodecsObservable;
+  private final List<TvShow>             tvShowList;
+  private final List<String>             tvShowTagsObservable;
+  private final List<String>             episodeTagsObservable;
+  private final List<String>             videoCodecsObservable;
+  private final List<String>             audioCodecsObservable;
+  private final MediaEntityIndex<TvShow> tvShowIndex;
 
-  private PropertyChangeListener propertyChangeListener;
+  private PropertyChangeListener         propertyChangeListener;
 
   /**
    * Instantiates a new TvShowList.
@@ -90,6 +97,7 @@ public class TvShowList extends AbstractModelObject {
     episodeTagsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
     videoCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
     audioCodecsObservable = ObservableCollections.observableList(new CopyOnWriteArrayList<String>());
+    tvShowIndex = new MediaEntityIndex<>();
 
     // the tag listener: its used to always have a full list of all tags used in tmm
     propertyChangeListener = new PropertyChangeListener() {
@@ -112,6 +120,10 @@ public class TvShowList extends AbstractModelObject {
         if (EPISODE_COUNT.equals(evt.getPropertyName())) {
           firePropertyChange(EPISODE_COUNT, 0, 1);
         }
+        if (PATH.equals(evt.getPropertyName()) && evt.getSource() instanceof TvShow) {
+          TvShow tvShow = (TvShow) evt.getSource();
+          tvShowIndex.updatePath(tvShow, (String) evt.getOldValue(), (String) evt.getNewValue());
+        }
       }
     };
   }
@@ -163,6 +175,7 @@ public class TvShowList extends AbstractModelObject {
     int oldValue = tvShowList.size();
 
     tvShowList.add(newValue);
+    tvShowIndex.add(newValue);
     newValue.addPropertyChangeListener(propertyChangeListener);
     firePropertyChange(TV_SHOWS, null, tvShowList);
     firePropertyChange(ADDED_TV_SHOW, null, newValue);
@@ -198,6 +211,7 @@ public class TvShowList extends AbstractModelObject {
     int oldValue = tvShowList.size();
     tvShow.removeAllEpisodes();
     tvShowList.remove(tvShow);
+    tvShowIndex.remove(tvShow);
 
     try {
       TvShowModuleManager.getInstance().removeTvShowFromDb(tvShow);
@@ -223,6 +237,7 @@ public class TvShowList extends AbstractModelObject {
     tvShow.deleteFilesSafely();
     tvShow.removeAllEpisodes();
     tvShowList.remove(tvShow);
+    tvShowIndex.remove(tvShow);
 
     try {
       TvShowModuleManager.getInstance().removeTvShowFromDb(tvShow);
@@ -261,68 +276,55 @@ public class TvShowList extends AbstractModelObject {
   }
 
   public TvShow lookupTvShow(UUID uuid) {
-    for (TvShow tvShow : tvShowList) {
-      if (tvShow.getDbId().equals(uuid)) {
-        return tvShow;
-      }
-    }
-    return null;
+    return tvShowIndex.get(uuid);
   }
 
   /**
    * Load tv shows from database.
    */
-  void loadTvShowsFromDatabase(MVMap<UUID, String> tvShowMap, ObjectMapper objectMapper) {
-    // load all TV shows from the database
+  void loadTvShowsFromDatabase(MVMap<UUID, Object> tvShowMap, ObjectMapper objectMapper) {
+    // load all TV shows from the database (decoded on all cores)
     ObjectReader tvShowObjectReader = objectMapper.readerFor(TvShow.class);
+    List<TvShow> tvShows = new DatabaseLoader<TvShow>(tvShowMap, tvShowObjectReader, "TV show").load();
 
-    for (UUID uuid : new ArrayList<>(tvShowMap.keyList())) {
-      try {
-        TvShow tvShow = tvShowObjectReader.readValue(tvShowMap.get(uuid));
-        tvShow.setDbId(uuid);
-
-        // for performance reasons we add tv shows directly
-        tvShowList.add(tvShow);
-      }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding TV show json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt TV show");
-        tvShowMap.remove(uuid);
-      }
+    // for performance reasons we add tv shows directly
+    long start = System.currentTimeMillis();
+    tvShowList.addAll(tvShows);
+    for (TvShow tvShow : tvShows) {
+      tvShowIndex.add(tvShow);
     }
-    LOGGER.info("found " + tvShowList.size() + " TV shows in database");
+    LOGGER.info("found " + tvShowList.size() + " TV shows in database (merged in " + (System.currentTimeMillis() - start) + "ms)");
   }
 
   /**
    * Load episodes from database.
    */
-  void loadEpisodesFromDatabase(MVMap<UUID, String> episodesMap, ObjectMapper objectMapper) {
-    // load all episodes from the database
+  void loadEpisodesFromDatabase(MVMap<UUID, Object> episodesMap, ObjectMapper objectMapper) {
+    // load all episodes from the database (decoded on all cores)
     ObjectReader episodeObjectReader = objectMapper.readerFor(TvShowEpisode.class);
-    int episodeCount = 0;
-
-    for (UUID uuid : new ArrayList<>(episodesMap.keyList())) {
-      try {
-        episodeCount++;
-        TvShowEpisode episode = episodeObjectReader.readValue(episodesMap.get(uuid));
-        episode.setDbId(uuid);
-
-        // and assign it the the right TV show
-        for (TvShow tvShow : tvShowList) {
-          if (tvShow.getDbId().equals(episode.getTvShowDbId())) {
-            episode.setTvShow(tvShow);
-            tvShow.addEpisode(episode);
-            break;
-          }
-        }
+    List<TvShowEpisode> episodes = new DatabaseLoader<TvShowEpisode>(episodesMap, episodeObjectReader, "episode").load();
+
+    long start = System.currentTimeMillis();
+    // and assign them to the right TV show (in one go per TV show)
+    Map<TvShow, List<TvShowEpisode>> episodesPerTvShow = new LinkedHashMap<>();
+    for (TvShowEpisode episode : episodes) {
+      TvShow tvShow = tvShowIndex.get(episode.getTvShowDbId());
+      if (tvShow == null) {
+        continue;
       }
-      catch (Exception e) {
-        LOGGER.warn("problem decoding episode json string: " + e.getMessage());
-        LOGGER.info("dropping corrupt episode");
-        episodesMap.remove(uuid);
+      episode.setTvShow(tvShow);
+
+      List<TvShowEpisode> episodesOfTvShow = episodesPerTvShow.get(tvShow);
+      if (episodesOfTvShow == null) {
+        episodesOfTvShow = new ArrayList<>();
+        episodesPerTvShow.put(tvShow, episodesOfTvShow);
       }
+      episodesOfTvShow.add(episode);
+    }
+    for (Entry<TvShow, List<TvShowEpisode>> entry : episodesPerTvShow.entrySet()) {
+      entry.getKey().addEpisodes(entry.getValue());
     }
-    LOGGER.info("found " + episodeCount + " episodes in database");
+    LOGGER.info("found " + episodes.size() + " episodes in database (merged in " + (System.currentTimeMillis() - start) + "ms)");
   }
 
   void initDataAfterLoading() {
@@ -699,15 +701,7 @@ public class TvShowList extends AbstractModelObject {
    * @return the TV show by path
    */
   public TvShow getTvShowByPath(Path path) {
-    ArrayList<TvShow> tvShows = new ArrayList<>(tvShowList);
-    // iterate over all tv shows and check whether this path is being owned by one
-    for (TvShow tvShow : tvShows) {
-      if (tvShow.getPathNIO().compareTo(path.toAbsolutePath()) == 0) {
-        return tvShow;
-      }
-    }
-
-    return null;
+    return tvShowIndex.getFirstByPath(path);
   }
 
   /**
@@ -15,12 +15,16 @@
  */
 package org.tinymediamanager.core.tvshow;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
 
-import org.apache.commons.lang3.StringUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.json.JSONArray;
@@ -30,11 +34,20 @@ import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
 import org.tinymediamanager.core.CustomNullStringSerializerProvider;
+import org.tinymediamanager.core.DatabaseValueCodec;
+import org.tinymediamanager.core.DatabaseWriteQueue;
+import org.tinymediamanager.core.DatabaseWriteQueue.IDatabaseWriteOperation;
+import org.tinymediamanager.core.DatasourceWatcher;
+import org.tinymediamanager.core.DatasourceWatcher.IDatasourceChangeListener;
+import org.tinymediamanager.core.DirectoryStateIndex;
 import org.tinymediamanager.core.ITmmModule;
 import org.tinymediamanager.core.Settings;
 import org.tinymediamanager.core.Utils;
+import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
+import org.tinymediamanager.core.tvshow.tasks.TvShowUpdateDatasourceTask2;
+import org.tinymediamanager.core.threading.TmmTaskManager;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -57,12 +70,16 @@ public class TvShowModuleManager implements ITmmModule {
 
   private boolean                    enabled;
   private MVStore                    mvStore;
+  private DatabaseValueCodec         codec;
   private ObjectMapper               objectMapper;
   private ObjectWriter               tvShowObjectWriter;
   private ObjectWriter               episodeObjectWriter;
 
-  private MVMap<UUID, String>        tvShowMap;
-  private MVMap<UUID, String>        episodeMap;
+  private MVMap<UUID, Object>        tvShowMap;
+  private MVMap<UUID, Object>        episodeMap;
+  private DatabaseWriteQueue         writeQueue;
+  private DirectoryStateIndex        directoryStateIndex;
+  private DatasourceWatcher          datasourceWatcher;
 
   private TvShowModuleManager() {
     enabled = false;
@@ -88,7 +105,11 @@ public class TvShowModuleManager implements ITmmModule {
     Utils.deleteOldBackupFile(db, 15);
 
     // configure database
-    mvStore = new MVStore.Builder().fileName(Paths.get(Settings.getInstance().getSettingsFolder(), TV_SHOW_DB).toString()).compressHigh()
+    codec = Settings.getInstance().getDatabaseCodec();
+    if (codec == null) {
+      codec = DatabaseValueCodec.JSON;
+    }
+    mvStore = codec.configureCompression(new MVStore.Builder()).fileName(Paths.get(Settings.getInstance().getSettingsFolder(), TV_SHOW_DB).toString())
         .backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
           @Override
           public void uncaughtException(Thread t, Throwable e) {
@@ -115,6 +136,14 @@ public class TvShowModuleManager implements ITmmModule {
     tvShowMap = mvStore.openMap("tvshows");
     episodeMap = mvStore.openMap("episodes");
 
+    // migrate existing values in place if the codec has been changed
+    codec.migrate(tvShowMap);
+    codec.migrate(episodeMap);
+
+    writeQueue = new DatabaseWriteQueue("tvshows", mvStore, Settings.getInstance().getDatabaseWriteDelay());
+    MVMap<String, String> directoryStateMap = mvStore.openMap("directoryStates");
+    directoryStateIndex = new DirectoryStateIndex(directoryStateMap);
+
     TvShowList.getInstance().loadTvShowsFromDatabase(tvShowMap, objectMapper);
     TvShowList.getInstance().loadEpisodesFromDatabase(episodeMap, objectMapper);
     TvShowList.getInstance().initDataAfterLoading();
@@ -123,6 +152,8 @@ public class TvShowModuleManager implements ITmmModule {
 
   @Override
   public void shutDown() throws Exception {
+    stopDatasourceWatcher();
+    writeQueue.shutdown();
     mvStore.compactMoveChunks();
     mvStore.close();
 
@@ -163,31 +194,140 @@ public class TvShowModuleManager implements ITmmModule {
     }
   }
 
-  void persistTvShow(TvShow tvShow) throws Exception {
-    String newValue = tvShowObjectWriter.writeValueAsString(tvShow);
-    String oldValue = tvShowMap.get(tvShow.getDbId());
+  /**
+   * get the index of the directory fingerprints for the incremental update of the data sources
+   * 
+   * @return the directory state index
+   */
+  public DirectoryStateIndex getDirectoryStateIndex() {
+    return directoryStateIndex;
+  }
 
-    if (!StringUtils.equals(newValue, oldValue)) {
-      // write to DB
-      tvShowMap.put(tvShow.getDbId(), newValue);
+  /**
+   * watch the TV show data sources for changes if enabled in the settings; the watcher follows later changes of the settings
+   */
+  public void startDatasourceWatcher() {
+    PropertyChangeListener listener = new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        String property = evt.getPropertyName();
+        if ("tvShowDataSource".equals(property) || "watchDatasources".equals(property) || "watcherDelay".equals(property)
+            || "watcherPollInterval".equals(property)) {
+          updateDatasourceWatcher();
+        }
+      }
+    };
+    SETTINGS.addPropertyChangeListener(listener);
+    Globals.settings.addPropertyChangeListener(listener);
+    updateDatasourceWatcher();
+  }
+
+  private synchronized void updateDatasourceWatcher() {
+    stopDatasourceWatcher();
+    if (!enabled || !Globals.settings.isWatchDatasources()) {
+      return;
     }
+
+    datasourceWatcher = new DatasourceWatcher("tvshows", directoryStateIndex, new IDatasourceChangeListener() {
+      @Override
+      public void foldersChanged(String datasource, Set<Path> folders) {
+        TmmTaskManager.getInstance().addMainTask(new TvShowUpdateDatasourceTask2(datasource, folders));
+      }
+    }, Globals.settings.getWatcherDelay(), Globals.settings.getWatcherPollInterval());
+    datasourceWatcher.start(SETTINGS.getTvShowDataSource());
   }
 
-  void removeTvShowFromDb(TvShow tvShow) throws Exception {
-    tvShowMap.remove(tvShow.getDbId());
+  private synchronized void stopDatasourceWatcher() {
+    if (datasourceWatcher != null) {
+      datasourceWatcher.stop();
+      datasourceWatcher = null;
+    }
   }
 
-  void persistEpisode(TvShowEpisode episode) throws Exception {
-    String newValue = episodeObjectWriter.writeValueAsString(episode);
-    String oldValue = episodeMap.get(episode.getDbId());
+  /**
+   * write all pending changes to the database now
+   */
+  public void flush() {
+    if (writeQueue != null) {
+      writeQueue.flush();
+    }
+  }
 
-    if (!StringUtils.equals(newValue, oldValue)) {
-      episodeMap.put(episode.getDbId(), newValue);
+  void persistTvShow(final TvShow tvShow) throws Exception {
+    // nothing changed since the last write/load
+    if (!tvShow.isModifiedSincePersist()) {
+      return;
     }
+
+    // the entity is serialized on the writer thread (see writeEntity)
+    writeQueue.enqueue(tvShow.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        writeEntity(tvShowMap, tvShowObjectWriter, tvShow);
+      }
+    });
+  }
+
+  void removeTvShowFromDb(final TvShow tvShow) throws Exception {
+    // let the next update parse this folder again
+    directoryStateIndex.invalidate(tvShow.getPathNIO());
+    // a later persist has to write the entity again
+    tvShow.clearPersisted();
+    writeQueue.enqueue(tvShow.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        tvShowMap.remove(tvShow.getDbId());
+        tvShow.clearPersisted();
+      }
+    });
+  }
+
+  void persistEpisode(final TvShowEpisode episode) throws Exception {
+    // nothing changed since the last write/load
+    if (!episode.isModifiedSincePersist()) {
+      return;
+    }
+
+    // the entity is serialized on the writer thread (see writeEntity)
+    writeQueue.enqueue(episode.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        writeEntity(episodeMap, episodeObjectWriter, episode);
+      }
+    });
   }
 
-  void removeEpisodeFromDb(TvShowEpisode episode) throws Exception {
-    episodeMap.remove(episode.getDbId());
+  void removeEpisodeFromDb(final TvShowEpisode episode) throws Exception {
+    // let the next update parse this folder again
+    directoryStateIndex.invalidate(episode.getPathNIO());
+    // a later persist has to write the entity again
+    episode.clearPersisted();
+    writeQueue.enqueue(episode.getDbId(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        episodeMap.remove(episode.getDbId());
+        episode.clearPersisted();
+      }
+    });
+  }
+
+  /**
+   * serialize the entity and write it if its content has changed. This runs on the writer thread while other threads may still modify the
+   * entity: a modification while serializing is detected with the modification stamp and the write is queued again
+   */
+  private void writeEntity(MVMap<UUID, Object> map, ObjectWriter writer, MediaEntity entity) throws Exception {
+    long[] stamp = entity.getModificationStamp();
+    Object newValue = codec.encode(writer, entity);
+    if (!Arrays.equals(stamp, entity.getModificationStamp())) {
+      throw new ConcurrentModificationException("modified while serializing");
+    }
+
+    long hash = DatabaseValueCodec.hash(newValue);
+    // compare the content hash rather than reading the old value back
+    if (!entity.isPersisted() || hash != entity.getPersistedHash()) {
+      map.put(entity.getDbId(), newValue);
+    }
+    entity.setPersisted(stamp, hash);
   }
 
   @Override
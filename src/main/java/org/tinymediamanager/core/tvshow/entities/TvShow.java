@@ -52,11 +52,14 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
@@ -289,6 +292,43 @@ public class TvShow extends MediaEntity {
     firePropertyChange(EPISODE_COUNT, oldValue, episodes.size());
   }
 
+  /**
+   * Adds a bunch of episodes at once. The episode list is only sorted once, every season gets its episodes in one go and only one event is
+   * fired.
+   * 
+   * @param newEpisodes
+   *          the episodes to add
+   */
+  public void addEpisodes(Collection<TvShowEpisode> newEpisodes) {
+    if (newEpisodes == null || newEpisodes.isEmpty()) {
+      return;
+    }
+
+    int oldValue = episodes.size();
+    Map<TvShowSeason, List<TvShowEpisode>> episodesPerSeason = new LinkedHashMap<>();
+    for (TvShowEpisode episode : newEpisodes) {
+      episode.addPropertyChangeListener(propertyChangeListener);
+
+      TvShowSeason season = getSeasonForEpisode(episode);
+      List<TvShowEpisode> episodesInSeason = episodesPerSeason.get(season);
+      if (episodesInSeason == null) {
+        episodesInSeason = new ArrayList<>();
+        episodesPerSeason.put(season, episodesInSeason);
+      }
+      episodesInSeason.add(episode);
+    }
+
+    episodes.addAll(newEpisodes);
+    Utils.sortList(episodes);
+
+    for (Entry<TvShowSeason, List<TvShowEpisode>> entry : episodesPerSeason.entrySet()) {
+      entry.getKey().addEpisodes(entry.getValue());
+    }
+
+    firePropertyChange(ADDED_EPISODE, null, new ArrayList<>(newEpisodes));
+    firePropertyChange(EPISODE_COUNT, oldValue, episodes.size());
+  }
+
   /**
    * Gets the episode count.
    * 
@@ -1310,6 +1350,7 @@ public class TvShow extends MediaEntity {
    */
   public void setSeasonPosterUrl(int season, String url) {
     seasonPosterUrlMap.put(season, url);
+    markModified();
   }
 
   /**
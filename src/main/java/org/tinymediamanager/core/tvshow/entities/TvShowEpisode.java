@@ -297,6 +297,7 @@ public class TvShowEpisode extends MediaEntity implements Comparable<TvShowEpiso
    */
   public void setDisc(boolean disc) {
     this.disc = disc;
+    markModified();
   }
 
   /**
@@ -310,6 +311,7 @@ public class TvShowEpisode extends MediaEntity implements Comparable<TvShowEpiso
 
   public void setMultiEpisode(boolean multiEpisode) {
     this.multiEpisode = multiEpisode;
+    markModified();
   }
 
   /**
@@ -988,6 +990,7 @@ public class TvShowEpisode extends MediaEntity implements Comparable<TvShowEpiso
 
   public void setSubtitles(boolean sub) {
     this.subtitles = sub;
+    markModified();
   }
 
   public int getRuntimeFromMediaFiles() {
@@ -26,6 +26,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -77,6 +78,15 @@ public class TvShowSeason extends AbstractModelObject implements Comparable<TvSh
     firePropertyChange(ADDED_EPISODE, null, episodes);
   }
 
+  public void addEpisodes(Collection<TvShowEpisode> newEpisodes) {
+    for (TvShowEpisode episode : newEpisodes) {
+      episode.addPropertyChangeListener(listener);
+    }
+    episodes.addAll(newEpisodes);
+    Utils.sortList(episodes);
+    firePropertyChange(ADDED_EPISODE, null, episodes);
+  }
+
   public void removeEpisode(TvShowEpisode episode) {
     episodes.remove(episode);
     episode.removePropertyChangeListener(listener);
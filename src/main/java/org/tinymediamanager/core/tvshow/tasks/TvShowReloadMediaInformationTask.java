@@ -15,6 +15,7 @@
  */
 package org.tinymediamanager.core.tvshow.tasks;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -74,7 +75,7 @@ public class TvShowReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : show.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, show, true));
+          submitTask(Paths.get(show.getDataSource()), new MediaFileInformationFetcherTask(mf, show, true));
         }
       }
 
@@ -83,7 +84,7 @@ public class TvShowReloadMediaInformationTask extends TmmThreadPool {
           break;
         }
         for (MediaFile mf : episode.getMediaFiles()) {
-          submitTask(new MediaFileInformationFetcherTask(mf, episode, true));
+          submitTask(Paths.get(episode.getTvShow().getDataSource()), new MediaFileInformationFetcherTask(mf, episode, true));
         }
       }
 
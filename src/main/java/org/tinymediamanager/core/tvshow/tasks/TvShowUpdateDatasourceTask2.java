@@ -18,6 +18,7 @@ package org.tinymediamanager.core.tvshow.tasks;
 import static java.nio.file.FileVisitResult.CONTINUE;
 import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
@@ -29,11 +30,15 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,6 +49,7 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.DirectoryStateIndex;
 import org.tinymediamanager.core.MediaFileInformationFetcherTask;
 import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.MediaSource;
@@ -74,26 +80,29 @@ import com.sun.jna.Platform;
  */
 
 public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
-  private static final Logger         LOGGER        = LoggerFactory.getLogger(TvShowUpdateDatasourceTask2.class);
-  private static final ResourceBundle BUNDLE        = ResourceBundle.getBundle("messages", new UTF8Control());                                  //$NON-NLS-1$
+  private static final Logger         LOGGER         = LoggerFactory.getLogger(TvShowUpdateDatasourceTask2.class);
+  private static final ResourceBundle BUNDLE         = ResourceBundle.getBundle("messages", new UTF8Control());                                 //$NON-NLS-1$
 
   // skip well-known, but unneeded folders (UPPERCASE)
-  private static final List<String>   skipFolders   = Arrays.asList(".", "..", "CERTIFICATE", "BACKUP", "PLAYLIST", "CLPINF", "SSIF", "AUXDATA",
+  private static final List<String>   skipFolders    = Arrays.asList(".", "..", "CERTIFICATE", "BACKUP", "PLAYLIST", "CLPINF", "SSIF", "AUXDATA",
       "AUDIO_TS", "$RECYCLE.BIN", "RECYCLER", "SYSTEM VOLUME INFORMATION", "@EADIR");
 
   // skip folders starting with a SINGLE "." or "._"
-  private static final String         skipRegex     = "^[.][\\w@]+.*";
+  private static final String         skipRegex      = "^[.][\\w@]+.*";
 
-  private static final Pattern        seasonPattern = Pattern.compile("(?i)season([0-9]{0,2}|-specials)-poster\\..{2,4}");
+  private static final Pattern        seasonPattern  = Pattern.compile("(?i)season([0-9]{0,2}|-specials)-poster\\..{2,4}");
 
-  private static long                 preDir        = 0;
-  private static long                 postDir       = 0;
-  private static long                 visFile       = 0;
+  private static long                 preDir         = 0;
+  private static long                 postDir        = 0;
+  private static long                 visFile        = 0;
 
   private List<String>                dataSources;
-  private List<Path>                  tvShowFolders = new ArrayList<>();
+  private List<Path>                  tvShowFolders  = new ArrayList<>();
   private TvShowList                  tvShowList;
-  private HashSet<Path>               filesFound    = new HashSet<>();
+  private HashSet<Path>               filesFound     = new HashSet<>();
+  private Set<Path>                   changedFolders = new HashSet<>();
+  private DirectoryStateIndex         directoryStateIndex;
+  private boolean                     fullRescan     = false;
 
   /**
    * Instantiates a new scrape task - to update all datasources
@@ -118,6 +127,25 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     dataSources.add(datasource);
   }
 
+  /**
+   * Instantiates a new scrape task - to update only the given folders of a datasource (e.g. reported by the data source watcher)
+   * 
+   * @param datasource
+   *          the data source
+   * @param folders
+   *          the changed folders in the root of the data source; the data source itself to update all changed folders
+   */
+  public TvShowUpdateDatasourceTask2(String datasource, Collection<Path> folders) {
+    this(datasource);
+    for (Path folder : folders) {
+      changedFolders.add(folder.toAbsolutePath());
+    }
+    // a change in the root may affect every folder
+    if (changedFolders.contains(Paths.get(datasource).toAbsolutePath())) {
+      changedFolders.clear();
+    }
+  }
+
   /**
    * Instantiates a new scrape task - to update given tv shows
    * 
@@ -131,6 +159,16 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     this.tvShowFolders.addAll(tvShowFolders);
   }
 
+  /**
+   * parse all folders again, even if they have not been changed since the last update
+   * 
+   * @param fullRescan
+   *          true to ignore the stored directory states
+   */
+  public void setFullRescan(boolean fullRescan) {
+    this.fullRescan = fullRescan;
+  }
+
   @Override
   public void doInBackground() {
     // check if there is at least one DS to update
@@ -143,6 +181,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     preDir = 0;
     postDir = 0;
     visFile = 0;
+    directoryStateIndex = TvShowModuleManager.getInstance().getDirectoryStateIndex();
 
     try {
       StopWatch stopWatch = new StopWatch();
@@ -176,8 +215,8 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             continue;
           }
 
-          initThreadPool(3, "update"); // FIXME: more threads result in
-                                       // duplicate tree entries :/
+          // the shows are parsed in the I/O lane of the data source (see the I/O thread settings)
+          initThreadPool(1, "update");
           List<Path> newTvShowDirs = new ArrayList<>();
           List<Path> existingTvShowDirs = new ArrayList<>();
           List<Path> rootList = listFilesAndDirs(dsAsPath);
@@ -211,17 +250,33 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             }
           }
 
+          List<Path> unchangedDirs = new ArrayList<>();
           for (Path subdir : newTvShowDirs) {
-            submitTask(new FindTvShowTask(subdir, dsAsPath.toAbsolutePath()));
+            if (isUnchanged(subdir)) {
+              unchangedDirs.add(subdir);
+              continue;
+            }
+            submitTask(dsAsPath, new FindTvShowTask(subdir, dsAsPath.toAbsolutePath()));
           }
           for (Path subdir : existingTvShowDirs) {
-            submitTask(new FindTvShowTask(subdir, dsAsPath.toAbsolutePath()));
+            if (isUnchanged(subdir)) {
+              unchangedDirs.add(subdir);
+              continue;
+            }
+            submitTask(dsAsPath, new FindTvShowTask(subdir, dsAsPath.toAbsolutePath()));
           }
+          LOGGER.info("skipped " + unchangedDirs.size() + " unchanged folders");
+          addUnchangedTvShowsToFilesFound(unchangedDirs);
+
           waitForCompletionOrCancel();
           if (cancel) {
+            directoryStateIndex.discard();
             break;
           }
 
+          // the folders have been parsed - remember their state
+          directoryStateIndex.commit();
+
           cleanupDatasource(ds);
           waitForCompletionOrCancel();
           if (cancel) {
@@ -230,7 +285,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
         } // end forech datasource
       }
       else {
-        initThreadPool(3, "update");
+        initThreadPool(1, "update");
         // update selected TV shows
         for (Path path : tvShowFolders) {
           // first of all check if the DS is available; we can take the
@@ -244,11 +299,15 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
                 new String[] { path.toAbsolutePath().toString() }));
             continue;
           }
-          submitTask(new FindTvShowTask(path, path.getParent().toAbsolutePath()));
+          submitTask(path.getParent(), new FindTvShowTask(path, path.getParent().toAbsolutePath()));
         }
         waitForCompletionOrCancel();
 
-        if (!cancel) {
+        if (cancel) {
+          directoryStateIndex.discard();
+        }
+        else {
+          directoryStateIndex.commit();
           cleanupShows();
           waitForCompletionOrCancel();
         }
@@ -335,6 +394,45 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     }
   }
 
+  /**
+   * check whether the TV show folder can be skipped
+   * 
+   * @param dir
+   *          the folder
+   * @return true if nothing has been changed in this folder
+   */
+  private boolean isUnchanged(Path dir) {
+    if (!changedFolders.isEmpty()) {
+      // only update the given folders
+      return !changedFolders.contains(dir);
+    }
+    return !fullRescan && directoryStateIndex.isUnchanged(dir);
+  }
+
+  /**
+   * the files of TV shows in unchanged folders are not collected while parsing; add them here to avoid the file checks in the cleanup
+   * 
+   * @param unchangedDirs
+   *          the unchanged TV show folders
+   */
+  private void addUnchangedTvShowsToFilesFound(List<Path> unchangedDirs) {
+    for (Path dir : unchangedDirs) {
+      TvShow tvShow = tvShowList.getTvShowByPath(dir);
+      if (tvShow == null) {
+        continue;
+      }
+      filesFound.add(dir.toAbsolutePath());
+      for (MediaFile mf : tvShow.getMediaFiles()) {
+        filesFound.add(mf.getFileAsPath());
+      }
+      for (TvShowEpisode episode : tvShow.getEpisodes()) {
+        for (MediaFile mf : episode.getMediaFiles()) {
+          filesFound.add(mf.getFileAsPath());
+        }
+      }
+    }
+  }
+
   private void cleanupDatasource(String datasource) {
     setTaskName(BUNDLE.getString("update.cleanup"));
     setTaskDescription(null);
@@ -416,7 +514,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     // get mediainfo for tv show (fanart/poster..)
     for (MediaFile mf : tvShow.getMediaFiles()) {
       if (StringUtils.isBlank(mf.getContainerFormat())) {
-        submitTask(new MediaFileInformationFetcherTask(mf, tvShow, false));
+        submitTask(Paths.get(tvShow.getDataSource()), new MediaFileInformationFetcherTask(mf, tvShow, false));
       }
     }
 
@@ -424,7 +522,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
     for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
       for (MediaFile mf : episode.getMediaFiles()) {
         if (StringUtils.isBlank(mf.getContainerFormat())) {
-          submitTask(new MediaFileInformationFetcherTask(mf, episode, false));
+          submitTask(Paths.get(tvShow.getDataSource()), new MediaFileInformationFetcherTask(mf, episode, false));
         }
       }
     }
@@ -456,6 +554,17 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
 
     @Override
     public String call() throws Exception {
+      try {
+        return findTvShow();
+      }
+      catch (Exception e) {
+        // parse this folder again in the next run
+        directoryStateIndex.invalidate(showDir);
+        throw e;
+      }
+    }
+
+    private String findTvShow() throws Exception {
       String name = Thread.currentThread().getName();
       if (!name.contains("-G")) {
         name = name + "-G0";
@@ -469,7 +578,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
         return "";
       }
 
-      HashSet<Path> allFiles = getAllFilesRecursive(showDir, Integer.MAX_VALUE);
+      HashSet<Path> allFiles = getAllFilesRecursive(showDir, Integer.MAX_VALUE, directoryStateIndex.createRecorder());
       if (allFiles != null && allFiles.isEmpty()) {
         LOGGER.info("skip empty directory " + showDir);
         return "";
@@ -526,6 +635,13 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
       // STEP 2 - get all video MFs and get or create episodes
       // ******************************
       HashSet<Path> discFolders = new HashSet<>();
+      // new episodes are collected and added to the show at once; the file index covers existing and new episodes
+      List<TvShowEpisode> newEpisodes = new ArrayList<>();
+      Map<File, List<TvShowEpisode>> episodesByFile = new HashMap<>();
+      for (TvShowEpisode episode : new ArrayList<>(tvShow.getEpisodes())) {
+        indexEpisodeFiles(episodesByFile, episode);
+      }
+
       for (MediaFile mf : getMediaFiles(mfs, MediaFileType.VIDEO)) {
 
         // build an array of MFs, which might be in same episode
@@ -576,8 +692,8 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
         // ******************************
         // STEP 2.1 - is this file already assigned to another episode?
         // ******************************
-        List<TvShowEpisode> episodes = tvShowList.getTvEpisodesByFile(tvShow, mf.getFile());
-        if (episodes.size() == 0) {
+        List<TvShowEpisode> episodes = episodesByFile.get(mf.getFile());
+        if (episodes == null || episodes.size() == 0) {
 
           // ******************************
           // STEP 2.1.1 - parse EP NFO (has precedence over files)
@@ -629,7 +745,8 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
                 episode.merge(vsMetaEP); // merge VSmeta infos
 
                 episode.saveToDb();
-                tvShow.addEpisode(episode);
+                newEpisodes.add(episode);
+                indexEpisodeFiles(episodesByFile, episode);
               }
               continue; // with next video MF
             }
@@ -648,9 +765,13 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
           if (result.episodes.size() == 1 && result.season > -1 && result.stackingMarkerFound) {
             // get any assigned episode
             TvShowEpisode ep = tvShow.getEpisode(result.season, result.episodes.get(0));
+            if (ep == null) {
+              ep = getEpisode(newEpisodes, result.season, result.episodes.get(0));
+            }
             if (ep != null) {
               ep.setNewlyAdded(true);
               ep.addToMediaFiles(mf);
+              indexEpisodeFiles(episodesByFile, ep);
               continue;
             }
           }
@@ -706,7 +827,8 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
               }
               episode.merge(vsMetaEP); // merge VSmeta infos
               episode.saveToDb();
-              tvShow.addEpisode(episode);
+              newEpisodes.add(episode);
+              indexEpisodeFiles(episodesByFile, episode);
             }
           }
           else {
@@ -744,7 +866,8 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
             episode.setNewlyAdded(true);
             episode.merge(vsMetaEP); // merge VSmeta infos
             episode.saveToDb();
-            tvShow.addEpisode(episode);
+            newEpisodes.add(episode);
+            indexEpisodeFiles(episodesByFile, episode);
           }
         } // end creation of new episodes
         else {
@@ -766,6 +889,7 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
           }
         }
       } // end for all video MFs loop
+      tvShow.addEpisodes(newEpisodes);
 
       // ******************************
       // STEP 3 - now we have a working show/episode object
@@ -813,6 +937,34 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
       return showDir.getFileName().toString();
     }
 
+    /**
+     * add all files of the given episode to the file index
+     */
+    private void indexEpisodeFiles(Map<File, List<TvShowEpisode>> episodesByFile, TvShowEpisode episode) {
+      for (MediaFile mediaFile : new ArrayList<>(episode.getMediaFiles())) {
+        List<TvShowEpisode> episodes = episodesByFile.get(mediaFile.getFile());
+        if (episodes == null) {
+          episodes = new ArrayList<>(1);
+          episodesByFile.put(mediaFile.getFile(), episodes);
+        }
+        if (!episodes.contains(episode)) {
+          episodes.add(episode);
+        }
+      }
+    }
+
+    /**
+     * get the episode with the given S/E out of the given episode list
+     */
+    private TvShowEpisode getEpisode(List<TvShowEpisode> episodes, int season, int episode) {
+      for (TvShowEpisode ep : episodes) {
+        if (ep.getSeason() == season && ep.getEpisode() == episode) {
+          return ep;
+        }
+      }
+      return null;
+    }
+
   }
 
   /**
@@ -957,8 +1109,15 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
   // gets all files recursive,
   // **************************************
   public static HashSet<Path> getAllFilesRecursive(Path folder, int deep) {
+    return getAllFilesRecursive(folder, deep, null);
+  }
+
+  // **************************************
+  // gets all files recursive and records the state of all visited folders
+  // **************************************
+  private static HashSet<Path> getAllFilesRecursive(Path folder, int deep, DirectoryStateIndex.Recorder recorder) {
     folder = folder.toAbsolutePath();
-    AllFilesRecursive visitor = new AllFilesRecursive();
+    AllFilesRecursive visitor = new AllFilesRecursive(recorder);
     try {
       Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), deep, visitor);
     }
@@ -970,7 +1129,12 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
   }
 
   private static class AllFilesRecursive extends SimpleFileVisitor<Path> {
-    private HashSet<Path> fFound = new HashSet<>();
+    private HashSet<Path>                fFound = new HashSet<>();
+    private DirectoryStateIndex.Recorder recorder;
+
+    AllFilesRecursive(DirectoryStateIndex.Recorder recorder) {
+      this.recorder = recorder;
+    }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attr) {
@@ -992,14 +1156,23 @@ public class TvShowUpdateDatasourceTask2 extends TmmThreadPool {
               || skipFolders.contains(dir.getFileName().toString().toUpperCase(Locale.ROOT)) || dir.getFileName().toString().matches(skipRegex))
           || TvShowModuleManager.SETTINGS.getTvShowSkipFolders().contains(dir.toFile().getAbsolutePath())) {
         LOGGER.debug("Skipping dir: " + dir);
+        if (recorder != null) {
+          recorder.skipDirectory(dir);
+        }
         return SKIP_SUBTREE;
       }
+      if (recorder != null) {
+        recorder.enterDirectory(dir);
+      }
       return CONTINUE;
     }
 
     @Override
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
       postDir++;
+      if (recorder != null) {
+        recorder.leaveDirectory(dir);
+      }
       return CONTINUE;
     }
 
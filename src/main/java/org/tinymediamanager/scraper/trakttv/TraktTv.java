@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
 import org.tinymediamanager.core.Constants;
+import org.tinymediamanager.core.HttpCache;
 import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.movie.entities.Movie;
 import org.tinymediamanager.core.tvshow.TvShowList;
@@ -35,7 +36,6 @@ import org.tinymediamanager.core.tvshow.entities.TvShow;
 import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 import org.tinymediamanager.core.tvshow.entities.TvShowSeason;
 import org.tinymediamanager.scraper.MediaProviderInfo;
-import org.tinymediamanager.scraper.http.TmmHttpClient;
 import org.tinymediamanager.scraper.util.ApiKey;
 
 import com.uwetrottmann.trakt5.TraktV2;
@@ -86,7 +86,7 @@ public class TraktTv {
 
       @Override
       protected synchronized OkHttpClient okHttpClient() {
-        OkHttpClient.Builder builder = TmmHttpClient.newBuilder();
+        OkHttpClient.Builder builder = HttpCache.newBuilder();
         builder.addInterceptor(new TraktV2Interceptor(this));
         return builder.build();
       }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * The class ContainerProbe. A pure Java probe for the headers of the common containers (Matroska/WebM and MP4): the track list, codecs,
+ * resolution, languages and duration are read from the EBML header/Tracks element or the moov atom with a few positional reads.<br>
+ * The result has the same structure (and the same parameter names) as a {@link MediaInfo#snapshot()}. If a file cannot be described
+ * completely (unknown codecs, values which are only available by parsing the streams, broken headers), null is returned and the caller has
+ * to use libmediainfo.
+ *
+ * @author Manuel Laggner
+ */
+public class ContainerProbe {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContainerProbe.class);
+
+  private ContainerProbe() {
+  }
+
+  /**
+   * check whether the container of this file can be probed
+   *
+   * @param file
+   *          the file
+   * @return true if the extension is one of the supported containers
+   */
+  public static boolean isSupported(Path file) {
+    String extension = getExtension(file);
+    return MatroskaProbe.EXTENSIONS.contains(extension) || Mp4Probe.EXTENSIONS.contains(extension);
+  }
+
+  /**
+   * read the header of the given file
+   *
+   * @param file
+   *          the file
+   * @return the snapshot of the needed parameters or null if the file could not be probed completely
+   */
+  public static Map<StreamKind, List<Map<String, String>>> probe(Path file) {
+    String extension = getExtension(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (MatroskaProbe.EXTENSIONS.contains(extension)) {
+        return new MatroskaProbe(channel).probe();
+      }
+      if (Mp4Probe.EXTENSIONS.contains(extension)) {
+        return new Mp4Probe(channel).probe();
+      }
+    }
+    catch (Exception e) {
+      LOGGER.debug("could not probe " + file + ": " + e.getMessage());
+    }
+    return null;
+  }
+
+  private static String getExtension(Path file) {
+    String filename = file.getFileName().toString();
+    int dot = filename.lastIndexOf('.');
+    return dot < 0 ? "" : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * read the given amount of bytes at the given position
+   */
+  static byte[] read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("unexpected end of file at " + (position + buffer.position()));
+      }
+    }
+    return buffer.array();
+  }
+
+  /**
+   * add a new stream of the given kind to the snapshot
+   */
+  static Map<String, String> addStream(Map<StreamKind, List<Map<String, String>>> snapshot, StreamKind streamKind) {
+    List<Map<String, String>> streams = snapshot.get(streamKind);
+    if (streams == null) {
+      streams = new ArrayList<>();
+      snapshot.put(streamKind, streams);
+    }
+    Map<String, String> stream = new LinkedHashMap<>();
+    streams.add(stream);
+    return stream;
+  }
+
+  static Map<StreamKind, List<Map<String, String>>> createSnapshot() {
+    return new EnumMap<>(StreamKind.class);
+  }
+
+  /**
+   * fill the general stream and the stream counts (like mediainfo does)
+   */
+  static void finishSnapshot(Map<StreamKind, List<Map<String, String>>> snapshot, Map<String, String> general, long fileSize, double durationMs) {
+    if (durationMs > 0) {
+      general.put("Duration", String.format(Locale.ROOT, "%.3f", durationMs));
+      general.put("OverallBitRate", Long.toString(Math.round(fileSize * 8 * 1000d / durationMs)));
+    }
+    for (StreamKind streamKind : new StreamKind[] { StreamKind.Video, StreamKind.Audio, StreamKind.Text }) {
+      List<Map<String, String>> streams = snapshot.get(streamKind);
+      if (streams == null) {
+        continue;
+      }
+      general.put(streamKind.name() + "Count", Integer.toString(streams.size()));
+      for (Map<String, String> stream : streams) {
+        stream.put("StreamCount", Integer.toString(streams.size()));
+      }
+    }
+  }
+
+  /**
+   * get the bit depth and scan type out of an AVC decoder configuration record (avcC)
+   *
+   * @param avcC
+   *          the decoder configuration record
+   * @return an array with the bit depth and the scan type
+   * @throws IOException
+   *           if the record cannot be parsed
+   */
+  static String[] parseAvcConfig(byte[] avcC) throws IOException {
+    if (avcC == null || avcC.length < 9 || avcC[0] != 1 || (avcC[5] & 0x1f) == 0) {
+      throw new IOException("invalid avcC");
+    }
+    int spsLength = ((avcC[6] & 0xff) << 8) | (avcC[7] & 0xff);
+    if (8 + spsLength > avcC.length || spsLength < 4) {
+      throw new IOException("invalid SPS");
+    }
+
+    // skip the NAL header and remove the emulation prevention bytes
+    byte[] sps = new byte[spsLength];
+    int length = 0;
+    int zeros = 0;
+    for (int i = 9; i < 8 + spsLength; i++) {
+      byte b = avcC[i];
+      if (zeros >= 2 && b == 3) {
+        zeros = 0;
+        continue;
+      }
+      zeros = b == 0 ? zeros + 1 : 0;
+      sps[length++] = b;
+    }
+
+    BitReader reader = new BitReader(sps, length);
+    int profile = reader.readBits(8);
+    reader.readBits(16); // constraint flags + level
+    reader.readUe(); // seq_parameter_set_id
+    int bitDepth = 8;
+    if (profile == 100 || profile == 110 || profile == 122 || profile == 244 || profile == 44 || profile == 83 || profile == 86 || profile == 118
+        || profile == 128 || profile == 138 || profile == 139 || profile == 134 || profile == 135) {
+      int chromaFormat = reader.readUe();
+      if (chromaFormat == 3) {
+        reader.readBits(1); // separate_colour_plane_flag
+      }
+      bitDepth = reader.readUe() + 8;
+      reader.readUe(); // bit_depth_chroma_minus8
+      reader.readBits(1); // qpprime_y_zero_transform_bypass_flag
+      if (reader.readBits(1) == 1) {
+        // scaling matrices
+        for (int i = 0; i < (chromaFormat != 3 ? 8 : 12); i++) {
+          if (reader.readBits(1) == 1) {
+            int size = i < 6 ? 16 : 64;
+            int lastScale = 8;
+            int nextScale = 8;
+            for (int j = 0; j < size; j++) {
+              if (nextScale != 0) {
+                nextScale = (lastScale + reader.readSe() + 256) % 256;
+              }
+              lastScale = nextScale == 0 ? lastScale : nextScale;
+            }
+          }
+        }
+      }
+    }
+    reader.readUe(); // log2_max_frame_num_minus4
+    int pocType = reader.readUe();
+    if (pocType == 0) {
+      reader.readUe(); // log2_max_pic_order_cnt_lsb_minus4
+    }
+    else if (pocType == 1) {
+      reader.readBits(1); // delta_pic_order_always_zero_flag
+      reader.readSe(); // offset_for_non_ref_pic
+      reader.readSe(); // offset_for_top_to_bottom_field
+      int cycle = reader.readUe();
+      for (int i = 0; i < cycle; i++) {
+        reader.readSe();
+      }
+    }
+    reader.readUe(); // max_num_ref_frames
+    reader.readBits(1); // gaps_in_frame_num_value_allowed_flag
+    reader.readUe(); // pic_width_in_mbs_minus1
+    reader.readUe(); // pic_height_in_map_units_minus1
+    boolean frameMbsOnly = reader.readBits(1) == 1;
+
+    return new String[] { Integer.toString(bitDepth), frameMbsOnly ? "Progressive" : "Interlaced" };
+  }
+
+  /**
+   * get the bit depth out of a HEVC decoder configuration record (hvcC)
+   *
+   * @param hvcC
+   *          the decoder configuration record
+   * @return the bit depth
+   * @throws IOException
+   *           if the record cannot be parsed
+   */
+  static String parseHevcBitDepth(byte[] hvcC) throws IOException {
+    if (hvcC == null || hvcC.length < 23 || hvcC[0] != 1) {
+      throw new IOException("invalid hvcC");
+    }
+    return Integer.toString((hvcC[17] & 0x07) + 8);
+  }
+
+  /**
+   * get the bit depth out of an AV1 codec configuration record (av1C)
+   *
+   * @param av1C
+   *          the codec configuration record
+   * @return the bit depth
+   * @throws IOException
+   *           if the record cannot be parsed
+   */
+  static String parseAv1BitDepth(byte[] av1C) throws IOException {
+    if (av1C == null || av1C.length < 4 || (av1C[0] & 0xff) != 0x81) {
+      throw new IOException("invalid av1C");
+    }
+    boolean highBitDepth = (av1C[2] & 0x40) != 0;
+    boolean twelveBit = (av1C[2] & 0x20) != 0;
+    return highBitDepth ? twelveBit ? "12" : "10" : "8";
+  }
+
+  /**
+   * get the channels out of an AAC AudioSpecificConfig
+   *
+   * @param config
+   *          the AudioSpecificConfig (the decoder specific info of an esds atom or the codec private data of a Matroska track)
+   * @return the channels
+   * @throws IOException
+   *           if the config cannot be parsed or the channels are only defined in a program config element
+   */
+  static String parseAacChannels(byte[] config) throws IOException {
+    if (config == null || config.length < 2) {
+      throw new IOException("invalid AudioSpecificConfig");
+    }
+    int audioObjectType = (config[0] >> 3) & 0x1f;
+    int frequencyIndex = ((config[0] & 0x07) << 1) | ((config[1] >> 7) & 0x01);
+    if (audioObjectType == 31 || frequencyIndex == 15) {
+      throw new IOException("unsupported AudioSpecificConfig");
+    }
+    int channelConfig = (config[1] >> 3) & 0x0f;
+    if (channelConfig < 1 || channelConfig > 7) {
+      throw new IOException("unsupported AAC channel configuration " + channelConfig);
+    }
+    return Integer.toString(channelConfig == 7 ? 8 : channelConfig);
+  }
+
+  /**
+   * a reader for the bits of a NAL unit (incl. exp-golomb codes)
+   */
+  private static class BitReader {
+    private final byte[] data;
+    private final int    length;
+    private int          position = 0;
+
+    BitReader(byte[] data, int length) {
+      this.data = data;
+      this.length = length;
+    }
+
+    int readBits(int count) throws IOException {
+      int value = 0;
+      for (int i = 0; i < count; i++) {
+        if (position >= length * 8) {
+          throw new EOFException("end of NAL unit");
+        }
+        int bit = (data[position / 8] >> (7 - position % 8)) & 1;
+        value = (value << 1) | bit;
+        position++;
+      }
+      return value;
+    }
+
+    int readUe() throws IOException {
+      int zeros = 0;
+      while (readBits(1) == 0) {
+        zeros++;
+        if (zeros > 31) {
+          throw new IOException("invalid exp-golomb code");
+        }
+      }
+      return (int) ((1L << zeros) - 1 + readBits(zeros));
+    }
+
+    int readSe() throws IOException {
+      int value = readUe();
+      return (value & 1) == 1 ? (value + 1) / 2 : -(value / 2);
+    }
+  }
+}
@@ -0,0 +1,620 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * The class MatroskaProbe. Reads the EBML header, the segment info, the tracks and the track statistic tags (written by mkvmerge) of a
+ * Matroska/WebM file.
+ *
+ * @author Manuel Laggner
+ */
+class MatroskaProbe {
+  static final List<String>   EXTENSIONS       = Arrays.asList("mkv", "mk3d", "mka", "webm");
+
+  private static final int    EBML             = 0x1A45DFA3;
+  private static final int    DOC_TYPE         = 0x4282;
+  private static final int    SEGMENT          = 0x18538067;
+  private static final int    SEEK_HEAD        = 0x114D9B74;
+  private static final int    SEEK             = 0x4DBB;
+  private static final int    SEEK_ID          = 0x53AB;
+  private static final int    SEEK_POSITION    = 0x53AC;
+  private static final int    INFO             = 0x1549A966;
+  private static final int    TIMECODE_SCALE   = 0x2AD7B1;
+  private static final int    DURATION         = 0x4489;
+  private static final int    TRACKS           = 0x1654AE6B;
+  private static final int    TRACK_ENTRY      = 0xAE;
+  private static final int    TRACK_UID        = 0x73C5;
+  private static final int    TRACK_TYPE       = 0x83;
+  private static final int    CODEC_ID         = 0x86;
+  private static final int    CODEC_PRIVATE    = 0x63A2;
+  private static final int    LANGUAGE         = 0x22B59C;
+  private static final int    FLAG_FORCED      = 0x55AA;
+  private static final int    VIDEO            = 0xE0;
+  private static final int    PIXEL_WIDTH      = 0xB0;
+  private static final int    PIXEL_HEIGHT     = 0xBA;
+  private static final int    FLAG_INTERLACED  = 0x9A;
+  private static final int    STEREO_MODE      = 0x53B8;
+  private static final int    AUDIO            = 0xE1;
+  private static final int    CHANNELS         = 0x9F;
+  private static final int    TAGS             = 0x1254C367;
+  private static final int    TAG              = 0x7373;
+  private static final int    TARGETS          = 0x63C0;
+  private static final int    TAG_TRACK_UID    = 0x63C5;
+  private static final int    SIMPLE_TAG       = 0x67C8;
+  private static final int    TAG_NAME         = 0x45A3;
+  private static final int    TAG_STRING       = 0x4487;
+  private static final int    CLUSTER          = 0x1F43B675;
+
+  // the max size of an element which is read into memory (Tracks, Tags, ...)
+  private static final int    MAX_ELEMENT_SIZE = 16 * 1024 * 1024;
+
+  private final FileChannel   channel;
+  private final long          fileSize;
+
+  MatroskaProbe(FileChannel channel) throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+  }
+
+  Map<StreamKind, List<Map<String, String>>> probe() throws IOException {
+    // EBML header
+    Element header = readElementHeader(0);
+    if (header.id != EBML) {
+      return null;
+    }
+    String docType = "matroska";
+    for (Element element : readChildren(header)) {
+      if (element.id == DOC_TYPE) {
+        docType = element.getString();
+      }
+    }
+
+    Element segment = readElementHeader(header.end);
+    if (segment.id != SEGMENT) {
+      return null;
+    }
+
+    // walk through the top level elements until the first cluster; Tags are normally at the end of the file (found via the SeekHead)
+    Element info = null;
+    Element tracks = null;
+    Element tags = null;
+    long tagsPosition = -1;
+    long position = segment.dataStart;
+    while (position < segment.end && position < fileSize) {
+      Element element = readElementHeader(position);
+      if (element.id == CLUSTER) {
+        break;
+      }
+      switch (element.id) {
+        case SEEK_HEAD:
+          for (Element seek : readChildren(element)) {
+            if (seek.id != SEEK) {
+              continue;
+            }
+            int seekId = 0;
+            long seekPosition = -1;
+            for (Element child : seek.getChildren()) {
+              if (child.id == SEEK_ID) {
+                seekId = (int) child.getUnsigned();
+              }
+              else if (child.id == SEEK_POSITION) {
+                seekPosition = child.getUnsigned();
+              }
+            }
+            if (seekId == TAGS && seekPosition >= 0) {
+              tagsPosition = segment.dataStart + seekPosition;
+            }
+          }
+          break;
+
+        case INFO:
+          info = loadElement(element);
+          break;
+
+        case TRACKS:
+          tracks = loadElement(element);
+          break;
+
+        case TAGS:
+          tags = loadElement(element);
+          break;
+
+        default:
+          break;
+      }
+      if (element.size < 0) {
+        // unknown size - we cannot skip this element
+        break;
+      }
+      position = element.end;
+    }
+
+    if (tags == null && tagsPosition > 0 && tagsPosition < fileSize) {
+      Element element = readElementHeader(tagsPosition);
+      if (element.id == TAGS && element.size >= 0) {
+        tags = loadElement(element);
+      }
+    }
+    if (info == null || tracks == null) {
+      return null;
+    }
+
+    // duration
+    long timecodeScale = 1000000;
+    double duration = 0;
+    for (Element element : info.getChildren()) {
+      if (element.id == TIMECODE_SCALE) {
+        timecodeScale = element.getUnsigned();
+      }
+      else if (element.id == DURATION) {
+        duration = element.getFloat();
+      }
+    }
+    double durationMs = duration * timecodeScale / 1000000d;
+
+    // the track statistic tags (BPS per track uid)
+    Map<Long, String> bitrates = new HashMap<>();
+    if (tags != null) {
+      for (Element tag : tags.getChildren()) {
+        if (tag.id != TAG) {
+          continue;
+        }
+        long trackUid = 0;
+        String bps = null;
+        for (Element child : tag.getChildren()) {
+          if (child.id == TARGETS) {
+            for (Element target : child.getChildren()) {
+              if (target.id == TAG_TRACK_UID) {
+                trackUid = target.getUnsigned();
+              }
+            }
+          }
+          else if (child.id == SIMPLE_TAG) {
+            String name = null;
+            String value = null;
+            for (Element simpleTag : child.getChildren()) {
+              if (simpleTag.id == TAG_NAME) {
+                name = simpleTag.getString();
+              }
+              else if (simpleTag.id == TAG_STRING) {
+                value = simpleTag.getString();
+              }
+            }
+            if ("BPS".equals(name) || name != null && name.startsWith("BPS-")) {
+              bps = value;
+            }
+          }
+        }
+        if (trackUid != 0 && bps != null) {
+          bitrates.put(trackUid, bps);
+        }
+      }
+    }
+
+    Map<StreamKind, List<Map<String, String>>> snapshot = ContainerProbe.createSnapshot();
+    Map<String, String> general = ContainerProbe.addStream(snapshot, StreamKind.General);
+    if ("webm".equals(docType)) {
+      general.put("Format", "WebM");
+      general.put("Codec/Extensions", "webm");
+    }
+    else {
+      general.put("Format", "Matroska");
+      general.put("Codec/Extensions", "mkv mk3d mka mks");
+    }
+
+    for (Element trackEntry : tracks.getChildren()) {
+      if (trackEntry.id == TRACK_ENTRY && !parseTrack(trackEntry, snapshot, bitrates)) {
+        return null;
+      }
+    }
+
+    ContainerProbe.finishSnapshot(snapshot, general, fileSize, durationMs);
+    return snapshot;
+  }
+
+  /**
+   * parse one track entry
+   *
+   * @return false if the track cannot be described without libmediainfo
+   */
+  private boolean parseTrack(Element trackEntry, Map<StreamKind, List<Map<String, String>>> snapshot, Map<Long, String> bitrates)
+      throws IOException {
+    int type = 0;
+    long uid = 0;
+    String codecId = "";
+    byte[] codecPrivate = null;
+    String language = "eng"; // the default value of the Matroska spec
+    boolean forced = false;
+    Element video = null;
+    Element audio = null;
+    for (Element element : trackEntry.getChildren()) {
+      switch (element.id) {
+        case TRACK_TYPE:
+          type = (int) element.getUnsigned();
+          break;
+
+        case TRACK_UID:
+          uid = element.getUnsigned();
+          break;
+
+        case CODEC_ID:
+          codecId = element.getString();
+          break;
+
+        case CODEC_PRIVATE:
+          codecPrivate = element.getData();
+          break;
+
+        case LANGUAGE:
+          language = element.getString();
+          break;
+
+        case FLAG_FORCED:
+          forced = element.getUnsigned() == 1;
+          break;
+
+        case VIDEO:
+          video = element;
+          break;
+
+        case AUDIO:
+          audio = element;
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    switch (type) {
+      case 1:
+        return parseVideoTrack(codecId, codecPrivate, video, ContainerProbe.addStream(snapshot, StreamKind.Video));
+
+      case 2:
+        String bitrate = bitrates.get(uid);
+        if (bitrate == null) {
+          // the bitrate is only available by parsing the stream
+          return false;
+        }
+        Map<String, String> audioStream = ContainerProbe.addStream(snapshot, StreamKind.Audio);
+        audioStream.put("BitRate", bitrate);
+        putLanguage(audioStream, language);
+        return parseAudioTrack(codecId, codecPrivate, audio, audioStream);
+
+      case 17:
+        Map<String, String> textStream = ContainerProbe.addStream(snapshot, StreamKind.Text);
+        putLanguage(textStream, language);
+        textStream.put("Forced", forced ? "Yes" : "No");
+        return parseTextTrack(codecId, textStream);
+
+      default:
+        // buttons, metadata, ... are not needed
+        return true;
+    }
+  }
+
+  private boolean parseVideoTrack(String codecId, byte[] codecPrivate, Element video, Map<String, String> stream) throws IOException {
+    if (video == null) {
+      return false;
+    }
+    String scanType = "Progressive";
+    for (Element element : video.getChildren()) {
+      switch (element.id) {
+        case PIXEL_WIDTH:
+          stream.put("Width", Long.toString(element.getUnsigned()));
+          break;
+
+        case PIXEL_HEIGHT:
+          stream.put("Height", Long.toString(element.getUnsigned()));
+          break;
+
+        case FLAG_INTERLACED:
+          if (element.getUnsigned() == 1) {
+            scanType = "Interlaced";
+          }
+          break;
+
+        case STEREO_MODE:
+          int stereoMode = (int) element.getUnsigned();
+          if (stereoMode == 1 || stereoMode == 11) {
+            stream.put("MultiView_Count", "2");
+            stream.put("MultiView_Layout", "Side by Side (left eye first)");
+          }
+          else if (stereoMode == 2 || stereoMode == 3) {
+            stream.put("MultiView_Count", "2");
+            stream.put("MultiView_Layout", "Top-Bottom (left eye first)");
+          }
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    switch (codecId) {
+      case "V_MPEG4/ISO/AVC":
+        String[] avc = ContainerProbe.parseAvcConfig(codecPrivate);
+        stream.put("Format", "AVC");
+        stream.put("BitDepth", avc[0]);
+        stream.put("ScanType", "Interlaced".equals(scanType) ? scanType : avc[1]);
+        return true;
+
+      case "V_MPEGH/ISO/HEVC":
+        stream.put("Format", "HEVC");
+        stream.put("BitDepth", ContainerProbe.parseHevcBitDepth(codecPrivate));
+        break;
+
+      case "V_VP8":
+        stream.put("Format", "VP8");
+        stream.put("BitDepth", "8");
+        break;
+
+      case "V_VP9":
+        // the bit depth is an optional feature (id 3) of the codec private data
+        String bitDepth = null;
+        for (int i = 0; codecPrivate != null && i + 2 < codecPrivate.length; i += 2 + (codecPrivate[i + 1] & 0xff)) {
+          if (codecPrivate[i] == 3) {
+            bitDepth = Integer.toString(codecPrivate[i + 2] & 0xff);
+          }
+        }
+        if (bitDepth == null) {
+          return false;
+        }
+        stream.put("Format", "VP9");
+        stream.put("BitDepth", bitDepth);
+        break;
+
+      case "V_AV1":
+        stream.put("Format", "AV1");
+        stream.put("BitDepth", ContainerProbe.parseAv1BitDepth(codecPrivate));
+        break;
+
+      default:
+        // MPEG-2, VC-1, VfW, ... - the details are only available in the stream
+        return false;
+    }
+    stream.put("ScanType", scanType);
+    return true;
+  }
+
+  private boolean parseAudioTrack(String codecId, byte[] codecPrivate, Element audio, Map<String, String> stream) throws IOException {
+    if (audio != null) {
+      for (Element element : audio.getChildren()) {
+        if (element.id == CHANNELS) {
+          stream.put("Channel(s)", Long.toString(element.getUnsigned()));
+        }
+      }
+    }
+    if (!stream.containsKey("Channel(s)")) {
+      stream.put("Channel(s)", "1");
+    }
+
+    if (codecId.startsWith("A_AAC")) {
+      // the channel element is often 2 (e.g. for HE-AAC with parametric stereo) - the AudioSpecificConfig is reliable
+      if (codecPrivate == null) {
+        return false;
+      }
+      stream.put("Format", "AAC");
+      stream.put("Channel(s)", ContainerProbe.parseAacChannels(codecPrivate));
+      return true;
+    }
+    if (codecId.startsWith("A_PCM")) {
+      stream.put("Format", "PCM");
+      return true;
+    }
+    switch (codecId) {
+      case "A_AC3":
+        stream.put("Format", "AC-3");
+        return true;
+
+      case "A_MPEG/L3":
+        stream.put("Format", "MPEG Audio");
+        stream.put("CodecID/Hint", "MP3");
+        return true;
+
+      case "A_MPEG/L2":
+        stream.put("Format", "MPEG Audio");
+        return true;
+
+      case "A_FLAC":
+        stream.put("Format", "FLAC");
+        return true;
+
+      case "A_VORBIS":
+        stream.put("Format", "Vorbis");
+        return true;
+
+      case "A_OPUS":
+        stream.put("Format", "Opus");
+        return true;
+
+      default:
+        // E-AC-3 (dependent substreams, Atmos), DTS (-HD/X), TrueHD (Atmos), ... - the channels/profile are only available in the stream
+        // (Matroska has no dec3 like MP4)
+        return false;
+    }
+  }
+
+  private boolean parseTextTrack(String codecId, Map<String, String> stream) {
+    switch (codecId) {
+      case "S_TEXT/UTF8":
+        stream.put("Format", "UTF-8");
+        return true;
+
+      case "S_TEXT/ASS":
+        stream.put("Format", "ASS");
+        return true;
+
+      case "S_TEXT/SSA":
+        stream.put("Format", "SSA");
+        return true;
+
+      case "S_TEXT/WEBVTT":
+        stream.put("Format", "WebVTT");
+        return true;
+
+      case "S_HDMV/PGS":
+        stream.put("Format", "PGS");
+        return true;
+
+      case "S_VOBSUB":
+        stream.put("Format", "VobSub");
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  private static void putLanguage(Map<String, String> stream, String language) {
+    if (!language.isEmpty() && !"und".equals(language)) {
+      stream.put("Language", language);
+    }
+  }
+
+  /**
+   * read the id and the size of the element at the given position
+   */
+  private Element readElementHeader(long position) throws IOException {
+    byte[] header = ContainerProbe.read(channel, position, (int) Math.min(12, fileSize - position));
+    int[] offset = new int[] { 0 };
+    long id = readVint(header, offset, false);
+    long size = readVint(header, offset, true);
+    return new Element((int) id, size, position + offset[0], null, fileSize);
+  }
+
+  /**
+   * read the content of the element into memory
+   */
+  private Element loadElement(Element element) throws IOException {
+    if (element.size < 0 || element.size > MAX_ELEMENT_SIZE) {
+      throw new IOException("element " + Integer.toHexString(element.id) + " is too large");
+    }
+    byte[] data = ContainerProbe.read(channel, element.dataStart, (int) element.size);
+    return new Element(element.id, element.size, 0, data, fileSize);
+  }
+
+  private List<Element> readChildren(Element element) throws IOException {
+    return loadElement(element).getChildren();
+  }
+
+  /**
+   * read an EBML variable size integer
+   *
+   * @param data
+   *          the data
+   * @param offset
+   *          the offset in the data (will be moved behind the vint)
+   * @param removeMarker
+   *          true for sizes (the length marker is not part of the value); false for ids
+   * @return the value or -1 for an unknown size
+   */
+  private static long readVint(byte[] data, int[] offset, boolean removeMarker) throws IOException {
+    if (offset[0] >= data.length) {
+      throw new IOException("unexpected end of element");
+    }
+    int first = data[offset[0]] & 0xff;
+    int length = Integer.numberOfLeadingZeros(first) - 23;
+    if (first == 0 || length > 8 || offset[0] + length > data.length) {
+      throw new IOException("invalid EBML vint");
+    }
+    long value = removeMarker ? first & (0xff >> length) : first;
+    boolean allOnes = value == (0xff >> length);
+    for (int i = 1; i < length; i++) {
+      int b = data[offset[0] + i] & 0xff;
+      value = (value << 8) | b;
+      allOnes &= b == 0xff;
+    }
+    offset[0] += length;
+    return removeMarker && allOnes ? -1 : value;
+  }
+
+  /**
+   * one EBML element; the data is only available for loaded elements (and their children)
+   */
+  private static class Element {
+    final int    id;
+    final long   size;
+    final long   dataStart;
+    final long   end;
+    final byte[] data;
+
+    Element(int id, long size, long dataStart, byte[] data, long fileSize) {
+      this.id = id;
+      this.size = size;
+      this.dataStart = dataStart;
+      this.end = size < 0 ? fileSize : dataStart + size;
+      this.data = data;
+    }
+
+    List<Element> getChildren() throws IOException {
+      List<Element> children = new ArrayList<>();
+      int[] offset = new int[] { (int) dataStart };
+      while (offset[0] < end) {
+        int id = (int) readVint(data, offset, false);
+        long size = readVint(data, offset, true);
+        if (size < 0 || offset[0] + size > end) {
+          throw new IOException("invalid size of element " + Integer.toHexString(id));
+        }
+        byte[] childData = Arrays.copyOfRange(data, offset[0], offset[0] + (int) size);
+        children.add(new Element(id, size, 0, childData, 0));
+        offset[0] += size;
+      }
+      return children;
+    }
+
+    byte[] getData() {
+      return data;
+    }
+
+    long getUnsigned() {
+      long value = 0;
+      for (byte b : data) {
+        value = (value << 8) | (b & 0xff);
+      }
+      return value;
+    }
+
+    double getFloat() {
+      if (data.length == 4) {
+        return Float.intBitsToFloat((int) getUnsigned());
+      }
+      if (data.length == 8) {
+        return Double.longBitsToDouble(getUnsigned());
+      }
+      return 0;
+    }
+
+    String getString() {
+      int length = data.length;
+      while (length > 0 && data[length - 1] == 0) {
+        length--;
+      }
+      return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+  }
+}
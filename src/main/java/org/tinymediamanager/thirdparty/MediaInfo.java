@@ -38,13 +38,19 @@ import com.sun.jna.WString;
  */
 public class MediaInfo implements Closeable {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfo.class);
+  private static final Logger LOGGER                       = LoggerFactory.getLogger(MediaInfo.class);
+
+  // separators for the batched Inform output (see snapshot(Map))
+  private static final String INFORM_KIND_SEPARATOR        = "<:>";
+  private static final String INFORM_VALUE_SEPARATOR       = "<|>";
+  private static final String INFORM_VALUE_SEPARATOR_REGEX = "<\\|>";
+  private static final String INFORM_STREAM_SEPARATOR      = "<#>";
 
   /**
    * the internal pointer handle of mediainfo<br>
    * .
    */
-  private Pointer             handle;
+  private Pointer                     handle;
 
   /**
    * checks if the internal handle is null.
@@ -62,14 +68,11 @@ public class MediaInfo implements Closeable {
   }
 
   /**
-   * Open.
+   * create the native handle (if not already done)
    * 
-   * @param file
-   *          the file
-   * @return true, if successful
+   * @return true if the native handle is available
    */
-  public boolean open(Path file) throws MediaInfoException {
-    // create handle
+  public boolean init() {
     try {
       if (handle == null) {
         handle = MediaInfoLibrary.INSTANCE.New();
@@ -78,8 +81,18 @@ public class MediaInfo implements Closeable {
     catch (LinkageError e) {
       return false;
     }
+    return isLoaded();
+  }
 
-    if (file != null && isLoaded()) {
+  /**
+   * Open.
+   * 
+   * @param file
+   *          the file
+   * @return true, if successful
+   */
+  public boolean open(Path file) throws MediaInfoException {
+    if (file != null && init()) {
       return MediaInfoLibrary.INSTANCE.Open(handle, new WString(file.toAbsolutePath().toString())) > 0;
     }
     else {
@@ -95,15 +108,7 @@ public class MediaInfo implements Closeable {
    * @return
    */
   public boolean openBufferInit(long length, long offset) {
-    try {
-      if (handle == null) {
-        handle = MediaInfoLibrary.INSTANCE.New();
-      }
-    }
-    catch (LinkageError e) {
-      return false;
-    }
-    if (isLoaded()) {
+    if (init()) {
       return MediaInfoLibrary.INSTANCE.Open_Buffer_Init(handle, length, offset) > 0;
     }
     else {
@@ -448,6 +453,117 @@ public class MediaInfo implements Closeable {
     return streamInfo;
   }
 
+  /**
+   * Snapshot of the given parameters only. All parameters are fetched with one batched Inform call (a custom template) instead of
+   * iterating over all parameters of all streams; falls back to one Get call per parameter if the Inform output could not be parsed.
+   * 
+   * @param parameters
+   *          the parameters to fetch per stream kind
+   * @return the map (only non empty values are contained)
+   */
+  public Map<StreamKind, List<Map<String, String>>> snapshot(Map<StreamKind, List<String>> parameters) {
+    Map<StreamKind, List<Map<String, String>>> mediaInfo = null;
+    try {
+      mediaInfo = informSnapshot(parameters);
+    }
+    catch (Exception e) {
+      LOGGER.debug("could not parse the batched mediainfo output: " + e.getMessage());
+    }
+
+    if (mediaInfo == null) {
+      mediaInfo = getSnapshot(parameters);
+    }
+    return mediaInfo;
+  }
+
+  private Map<StreamKind, List<Map<String, String>>> informSnapshot(Map<StreamKind, List<String>> parameters) {
+    if (!isLoaded()) {
+      return null;
+    }
+
+    // one section per stream kind; every stream is written as KIND<:>value<|>value...<#>
+    StringBuilder template = new StringBuilder();
+    for (Map.Entry<StreamKind, List<String>> entry : parameters.entrySet()) {
+      template.append(entry.getKey().name()).append(';').append(entry.getKey().name()).append(INFORM_KIND_SEPARATOR);
+      for (int i = 0; i < entry.getValue().size(); i++) {
+        if (i > 0) {
+          template.append(INFORM_VALUE_SEPARATOR);
+        }
+        template.append('%').append(entry.getValue().get(i)).append('%');
+      }
+      template.append(INFORM_STREAM_SEPARATOR).append("\r\n");
+    }
+
+    option("Inform", template.toString());
+    String output = inform();
+    option("Inform", "");
+    if (output == null || !output.contains(INFORM_STREAM_SEPARATOR)) {
+      return null;
+    }
+
+    Map<StreamKind, List<Map<String, String>>> mediaInfo = new EnumMap<>(StreamKind.class);
+    for (String stream : output.split(INFORM_STREAM_SEPARATOR)) {
+      stream = stream.replaceFirst("^[\\r\\n]+", "");
+      if (stream.isEmpty()) {
+        continue;
+      }
+
+      int kindEnd = stream.indexOf(INFORM_KIND_SEPARATOR);
+      if (kindEnd < 0) {
+        return null;
+      }
+      StreamKind streamKind = StreamKind.valueOf(stream.substring(0, kindEnd));
+      List<String> keys = parameters.get(streamKind);
+      String[] values = stream.substring(kindEnd + INFORM_KIND_SEPARATOR.length()).split(INFORM_VALUE_SEPARATOR_REGEX, -1);
+      if (keys == null || values.length != keys.size()) {
+        return null;
+      }
+
+      Map<String, String> streamInfo = new LinkedHashMap<>();
+      for (int i = 0; i < values.length; i++) {
+        if (values[i].length() > 0) {
+          streamInfo.put(keys.get(i), values[i]);
+        }
+      }
+
+      List<Map<String, String>> streamInfoList = mediaInfo.get(streamKind);
+      if (streamInfoList == null) {
+        streamInfoList = new ArrayList<>();
+        mediaInfo.put(streamKind, streamInfoList);
+      }
+      streamInfoList.add(streamInfo);
+    }
+
+    return mediaInfo;
+  }
+
+  private Map<StreamKind, List<Map<String, String>>> getSnapshot(Map<StreamKind, List<String>> parameters) {
+    Map<StreamKind, List<Map<String, String>>> mediaInfo = new EnumMap<>(StreamKind.class);
+
+    for (Map.Entry<StreamKind, List<String>> entry : parameters.entrySet()) {
+      int streamCount = streamCount(entry.getKey());
+
+      if (streamCount > 0) {
+        List<Map<String, String>> streamInfoList = new ArrayList<>(streamCount);
+
+        for (int i = 0; i < streamCount; i++) {
+          Map<String, String> streamInfo = new LinkedHashMap<>();
+          for (String parameter : entry.getValue()) {
+            String value = get(entry.getKey(), i, parameter);
+            if (value.length() > 0) {
+              streamInfo.put(parameter, value);
+            }
+          }
+          streamInfoList.add(streamInfo);
+        }
+
+        mediaInfo.put(entry.getKey(), streamInfoList);
+      }
+    }
+
+    return mediaInfo;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.thirdparty;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * The class Mp4Probe. Reads the movie header and the sample descriptions of all tracks out of the moov atom of a MP4 (ISO base media) file.
+ *
+ * @author Manuel Laggner
+ */
+class Mp4Probe {
+  static final List<String>   EXTENSIONS    = Arrays.asList("mp4", "m4v");
+
+  // the max size of the moov atom which is read into memory
+  private static final int    MAX_MOOV_SIZE = 64 * 1024 * 1024;
+  private static final int[]  AC3_CHANNELS  = { 2, 1, 2, 3, 3, 4, 4, 5 };
+  private static final int[]  AC3_BITRATES  = { 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, 448, 512, 576, 640 };
+
+  private final FileChannel   channel;
+  private final long          fileSize;
+  private byte[]              data;
+
+  Mp4Probe(FileChannel channel) throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+  }
+
+  Map<StreamKind, List<Map<String, String>>> probe() throws IOException {
+    // find the moov atom (at the start or at the end of the file)
+    Box moov = null;
+    long position = 0;
+    while (position + 8 <= fileSize) {
+      byte[] header = ContainerProbe.read(channel, position, (int) Math.min(16, fileSize - position));
+      long size = readUnsigned(header, 0, 4);
+      String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+      int headerSize = 8;
+      if (size == 1) {
+        if (header.length < 16) {
+          return null;
+        }
+        size = readUnsigned(header, 8, 8);
+        headerSize = 16;
+      }
+      else if (size == 0) {
+        size = fileSize - position;
+      }
+      if (size < headerSize) {
+        return null;
+      }
+
+      if ("ftyp".equals(type) && header.length >= 12 && "qt  ".equals(new String(header, 8, 4, StandardCharsets.ISO_8859_1))) {
+        // QuickTime movies have other sample descriptions
+        return null;
+      }
+      if ("moov".equals(type)) {
+        if (size - headerSize > MAX_MOOV_SIZE) {
+          return null;
+        }
+        data = ContainerProbe.read(channel, position + headerSize, (int) (size - headerSize));
+        moov = new Box("moov", 0, data.length);
+        break;
+      }
+      position += size;
+    }
+    if (moov == null) {
+      return null;
+    }
+
+    Map<StreamKind, List<Map<String, String>>> snapshot = ContainerProbe.createSnapshot();
+    Map<String, String> general = ContainerProbe.addStream(snapshot, StreamKind.General);
+    general.put("Format", "MPEG-4");
+    general.put("Codec/Extensions", "mp4 m4v m4a m4b m4p 3gpp 3gp 3gpp2 3g2 k3g jpm jpx mqv ismv isma f4v");
+
+    // duration
+    double durationMs = 0;
+    Box mvhd = moov.getChild("mvhd");
+    if (mvhd != null) {
+      long[] duration = readDuration(mvhd);
+      if (duration[0] > 0) {
+        durationMs = duration[1] * 1000d / duration[0];
+      }
+    }
+
+    // chapter tracks are text tracks too - but no subtitles
+    List<Box> traks = moov.getChildren("trak");
+    Set<Long> chapterTracks = new HashSet<>();
+    for (Box trak : traks) {
+      Box chap = trak.getPath("tref", "chap");
+      if (chap != null) {
+        for (int i = chap.start; i + 4 <= chap.end; i += 4) {
+          chapterTracks.add(readUnsigned(data, i, 4));
+        }
+      }
+    }
+
+    for (Box trak : traks) {
+      Box tkhd = trak.getChild("tkhd");
+      if (tkhd != null && chapterTracks.contains(readUnsigned(data, tkhd.start + (data[tkhd.start] == 1 ? 20 : 12), 4))) {
+        continue;
+      }
+      if (!parseTrack(trak, snapshot)) {
+        return null;
+      }
+    }
+
+    ContainerProbe.finishSnapshot(snapshot, general, fileSize, durationMs);
+    return snapshot;
+  }
+
+  /**
+   * parse one track
+   *
+   * @return false if the track cannot be described without libmediainfo
+   */
+  private boolean parseTrack(Box trak, Map<StreamKind, List<Map<String, String>>> snapshot) throws IOException {
+    Box mdia = trak.getChild("mdia");
+    if (mdia == null) {
+      return true;
+    }
+    Box hdlr = mdia.getChild("hdlr");
+    Box mdhd = mdia.getChild("mdhd");
+    Box stbl = mdia.getPath("minf", "stbl");
+    if (hdlr == null || mdhd == null || stbl == null) {
+      return true;
+    }
+    String handler = new String(data, hdlr.start + 8, 4, StandardCharsets.ISO_8859_1);
+
+    Box stsd = stbl.getChild("stsd");
+    if (stsd == null || readUnsigned(data, stsd.start + 4, 4) < 1) {
+      return true;
+    }
+    List<Box> sampleEntries = new Box("stsd", stsd.start + 8, stsd.end).getChildren(null);
+    if (sampleEntries.isEmpty()) {
+      return false;
+    }
+    Box sampleEntry = sampleEntries.get(0);
+
+    // bitrate = size of all samples / duration
+    long[] duration = readDuration(mdhd);
+    long bitrate = 0;
+    Box stsz = stbl.getChild("stsz");
+    if (stsz != null && duration[0] > 0 && duration[1] > 0) {
+      long sampleSize = readUnsigned(data, stsz.start + 4, 4);
+      long sampleCount = readUnsigned(data, stsz.start + 8, 4);
+      long totalSize = sampleSize * sampleCount;
+      if (sampleSize == 0) {
+        for (int i = 0; i < sampleCount && stsz.start + 12 + i * 4 + 4 <= stsz.end; i++) {
+          totalSize += readUnsigned(data, stsz.start + 12 + i * 4, 4);
+        }
+      }
+      bitrate = Math.round(totalSize * 8d * duration[0] / duration[1]);
+    }
+
+    switch (handler) {
+      case "vide":
+        return parseVideoTrack(sampleEntry, ContainerProbe.addStream(snapshot, StreamKind.Video));
+
+      case "soun":
+        Map<String, String> audioStream = ContainerProbe.addStream(snapshot, StreamKind.Audio);
+        putLanguage(audioStream, mdhd);
+        if (bitrate > 0) {
+          audioStream.put("BitRate", Long.toString(bitrate));
+        }
+        return parseAudioTrack(sampleEntry, audioStream);
+
+      case "sbtl":
+      case "subt":
+      case "text":
+        Map<String, String> textStream = ContainerProbe.addStream(snapshot, StreamKind.Text);
+        putLanguage(textStream, mdhd);
+        textStream.put("Forced", "No");
+        return parseTextTrack(sampleEntry, textStream);
+
+      case "clcp":
+        // closed captions are only visible in the stream
+        return false;
+
+      default:
+        // hint, timecode, metadata, ... tracks are not needed
+        return true;
+    }
+  }
+
+  private boolean parseVideoTrack(Box sampleEntry, Map<String, String> stream) throws IOException {
+    if (sampleEntry.end - sampleEntry.start < 78) {
+      return false;
+    }
+    stream.put("Width", Long.toString(readUnsigned(data, sampleEntry.start + 24, 2)));
+    stream.put("Height", Long.toString(readUnsigned(data, sampleEntry.start + 26, 2)));
+    Box config = new Box(sampleEntry.type, sampleEntry.start + 78, sampleEntry.end);
+
+    switch (sampleEntry.type) {
+      case "avc1":
+      case "avc3":
+        String[] avc = ContainerProbe.parseAvcConfig(getData(config.getChild("avcC")));
+        stream.put("Format", "AVC");
+        stream.put("BitDepth", avc[0]);
+        stream.put("ScanType", avc[1]);
+        return true;
+
+      case "hvc1":
+      case "hev1":
+        stream.put("Format", "HEVC");
+        stream.put("BitDepth", ContainerProbe.parseHevcBitDepth(getData(config.getChild("hvcC"))));
+        break;
+
+      case "vp09":
+        byte[] vpcC = getData(config.getChild("vpcC"));
+        if (vpcC == null || vpcC.length < 7) {
+          return false;
+        }
+        stream.put("Format", "VP9");
+        stream.put("BitDepth", Integer.toString((vpcC[6] >> 4) & 0x0f));
+        break;
+
+      case "av01":
+        stream.put("Format", "AV1");
+        stream.put("BitDepth", ContainerProbe.parseAv1BitDepth(getData(config.getChild("av1C"))));
+        break;
+
+      default:
+        // MPEG-4 Visual, MPEG-2, ... - the details are only available in the stream
+        return false;
+    }
+    stream.put("ScanType", "Progressive");
+    return true;
+  }
+
+  private boolean parseAudioTrack(Box sampleEntry, Map<String, String> stream) throws IOException {
+    if (sampleEntry.end - sampleEntry.start < 28) {
+      return false;
+    }
+    stream.put("Channel(s)", Long.toString(readUnsigned(data, sampleEntry.start + 16, 2)));
+    // sound sample description version 1 and 2 (QuickTime) have additional fields
+    int version = (int) readUnsigned(data, sampleEntry.start + 8, 2);
+    int offset = version == 1 ? 44 : version == 2 ? 64 : 28;
+    Box config = new Box(sampleEntry.type, Math.min(sampleEntry.start + offset, sampleEntry.end), sampleEntry.end);
+
+    switch (sampleEntry.type) {
+      case "mp4a":
+        return parseEsds(getData(config.getChild("esds")), stream);
+
+      case "ac-3":
+        byte[] dac3 = getData(config.getChild("dac3"));
+        if (dac3 == null || dac3.length < 3) {
+          return false;
+        }
+        int acmod = (dac3[1] >> 3) & 0x07;
+        int lfe = (dac3[1] >> 2) & 0x01;
+        int bitrateCode = ((dac3[1] & 0x03) << 3) | ((dac3[2] >> 5) & 0x07);
+        stream.put("Format", "AC-3");
+        stream.put("Channel(s)", Integer.toString(AC3_CHANNELS[acmod] + lfe));
+        if (bitrateCode < AC3_BITRATES.length) {
+          stream.put("BitRate", Integer.toString(AC3_BITRATES[bitrateCode] * 1000));
+        }
+        return true;
+
+      case "ec-3":
+        byte[] dec3 = getData(config.getChild("dec3"));
+        if (dec3 == null || dec3.length < 5 || (dec3[1] & 0x07) != 0 || (dec3[4] & 0x1e) != 0) {
+          // more than one independent or any dependent substream: the channels are only available in the stream
+          return false;
+        }
+        acmod = (dec3[3] >> 1) & 0x07;
+        lfe = dec3[3] & 0x01;
+        stream.put("Format", "E-AC-3");
+        stream.put("Channel(s)", Integer.toString(AC3_CHANNELS[acmod] + lfe));
+        return true;
+
+      case "Opus":
+        stream.put("Format", "Opus");
+        return true;
+
+      case "fLaC":
+        stream.put("Format", "FLAC");
+        return true;
+
+      default:
+        // DTS, ALAC, PCM, ... - the details are only available in the stream
+        return false;
+    }
+  }
+
+  /**
+   * parse the elementary stream descriptor of a mp4a sample entry
+   */
+  private boolean parseEsds(byte[] esds, Map<String, String> stream) throws IOException {
+    if (esds == null || esds.length < 5) {
+      return false;
+    }
+    int[] offset = new int[] { 4 }; // version + flags
+    // ES_Descriptor
+    if (readDescriptor(esds, offset) != 3 || offset[0] + 3 > esds.length) {
+      return false;
+    }
+    int flags = esds[offset[0] + 2] & 0xff;
+    offset[0] += 3;
+    if ((flags & 0x80) != 0) {
+      offset[0] += 2;
+    }
+    if ((flags & 0x40) != 0 && offset[0] < esds.length) {
+      offset[0] += (esds[offset[0]] & 0xff) + 1;
+    }
+    if ((flags & 0x20) != 0) {
+      offset[0] += 2;
+    }
+    // DecoderConfigDescriptor
+    if (readDescriptor(esds, offset) != 4 || offset[0] + 13 > esds.length) {
+      return false;
+    }
+    int objectType = esds[offset[0]] & 0xff;
+    offset[0] += 13;
+
+    switch (objectType) {
+      case 0x40:
+      case 0x66:
+      case 0x67:
+      case 0x68:
+        // the channels of AAC are in the AudioSpecificConfig (the sample entry often contains 2)
+        if (readDescriptor(esds, offset) != 5) {
+          return false;
+        }
+        stream.put("Format", "AAC");
+        stream.put("Channel(s)", ContainerProbe.parseAacChannels(Arrays.copyOfRange(esds, offset[0], esds.length)));
+        return true;
+
+      case 0x69:
+      case 0x6B:
+        stream.put("Format", "MPEG Audio");
+        if (objectType == 0x6B) {
+          stream.put("CodecID/Hint", "MP3");
+        }
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * read the tag and the size of a MPEG-4 descriptor; the offset is moved to the content of the descriptor
+   */
+  private static int readDescriptor(byte[] data, int[] offset) {
+    if (offset[0] >= data.length) {
+      return -1;
+    }
+    int tag = data[offset[0]++] & 0xff;
+    for (int i = 0; i < 4 && offset[0] < data.length; i++) {
+      if ((data[offset[0]++] & 0x80) == 0) {
+        break;
+      }
+    }
+    return tag;
+  }
+
+  private boolean parseTextTrack(Box sampleEntry, Map<String, String> stream) {
+    switch (sampleEntry.type) {
+      case "tx3g":
+        stream.put("Format", "Timed Text");
+        return true;
+
+      case "wvtt":
+        stream.put("Format", "WebVTT");
+        return true;
+
+      case "stpp":
+        stream.put("Format", "TTML");
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * read the timescale and the duration of a mvhd/mdhd atom
+   */
+  private long[] readDuration(Box header) {
+    if (data[header.start] == 1) {
+      return new long[] { readUnsigned(data, header.start + 20, 4), readUnsigned(data, header.start + 24, 8) };
+    }
+    return new long[] { readUnsigned(data, header.start + 12, 4), readUnsigned(data, header.start + 16, 4) };
+  }
+
+  private void putLanguage(Map<String, String> stream, Box mdhd) {
+    int packed = (int) readUnsigned(data, mdhd.start + (data[mdhd.start] == 1 ? 32 : 20), 2);
+    if (packed < 0x400 || packed == 0x7fff) {
+      // Macintosh language codes or not set
+      return;
+    }
+    char[] language = new char[] { (char) (((packed >> 10) & 0x1f) + 0x60), (char) (((packed >> 5) & 0x1f) + 0x60),
+        (char) ((packed & 0x1f) + 0x60) };
+    String value = new String(language);
+    if (!"und".equals(value)) {
+      stream.put("Language", value);
+    }
+  }
+
+  private byte[] getData(Box box) {
+    return box == null ? null : Arrays.copyOfRange(data, box.start, box.end);
+  }
+
+  private static long readUnsigned(byte[] data, int offset, int length) {
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value = (value << 8) | (data[offset + i] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * one atom inside the moov atom (start/end of the content)
+   */
+  private class Box {
+    final String type;
+    final int    start;
+    final int    end;
+
+    Box(String type, int start, int end) {
+      this.type = type;
+      this.start = start;
+      this.end = end;
+    }
+
+    List<Box> getChildren(String childType) {
+      List<Box> children = new ArrayList<>();
+      int position = start;
+      while (position + 8 <= end) {
+        long size = readUnsigned(data, position, 4);
+        if (size < 8 || position + size > end) {
+          break;
+        }
+        String boxType = new String(data, position + 4, 4, StandardCharsets.ISO_8859_1);
+        if (childType == null || childType.equals(boxType)) {
+          children.add(new Box(boxType, position + 8, (int) (position + size)));
+        }
+        position += size;
+      }
+      return children;
+    }
+
+    Box getChild(String childType) {
+      List<Box> children = getChildren(childType);
+      return children.isEmpty() ? null : children.get(0);
+    }
+
+    Box getPath(String... types) {
+      Box box = this;
+      for (String childType : types) {
+        box = box.getChild(childType);
+        if (box == null) {
+          return null;
+        }
+      }
+      return box;
+    }
+  }
+}
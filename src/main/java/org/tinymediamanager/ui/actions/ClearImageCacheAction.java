@@ -16,16 +16,11 @@
 package org.tinymediamanager.ui.actions;
 
 import java.awt.event.ActionEvent;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ResourceBundle;
 
 import javax.swing.AbstractAction;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.tinymediamanager.core.ImageCache;
-import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.ui.UTF8Control;
 
 /**
@@ -36,7 +31,6 @@ import org.tinymediamanager.ui.UTF8Control;
 public class ClearImageCacheAction extends AbstractAction {
   private static final long           serialVersionUID = -4615019451671427233L;
   private static final ResourceBundle BUNDLE           = ResourceBundle.getBundle("messages", new UTF8Control()); //$NON-NLS-1$
-  private final static Logger         LOGGER           = LoggerFactory.getLogger(ClearImageCacheAction.class);
 
   public ClearImageCacheAction() {
     putValue(NAME, BUNDLE.getString("tmm.clearimagecache")); //$NON-NLS-1$
@@ -45,14 +39,6 @@ public class ClearImageCacheAction extends AbstractAction {
 
   @Override
   public void actionPerformed(ActionEvent arg0) {
-    Path cache = ImageCache.getCacheDir();
-    if (Files.exists(cache)) {
-      try {
-        Utils.deleteDirectoryRecursive(cache);
-      }
-      catch (Exception e) {
-        LOGGER.warn(e.getMessage());
-      }
-    }
+    ImageCache.clearCache();
   }
 }
@@ -23,6 +23,7 @@ import javax.swing.SwingWorker;
 
 import org.apache.commons.lang3.StringUtils;
 import org.tinymediamanager.core.ImageCache;
+import org.tinymediamanager.core.ImageMemoryCache;
 import org.tinymediamanager.core.entities.Person;
 import org.tinymediamanager.ui.UTF8Control;
 
@@ -71,6 +72,12 @@ public class ActorImageLabel extends ImageLabel {
       return;
     }
 
+    // already decoded in this size?
+    scaledImage = ImageMemoryCache.getInstance().get(newValue, getWidth(), getHeight());
+    if (scaledImage != null) {
+      return;
+    }
+
     // fetch image in separate worker -> performance
     // only do http fetches, if the label is visible
     if (isShowing()) {
@@ -38,8 +38,9 @@ import javax.swing.SwingWorker;
 
 import org.apache.commons.lang3.StringUtils;
 import org.imgscalr.Scalr;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
-import org.tinymediamanager.scraper.http.Url;
+import org.tinymediamanager.core.ImageMemoryCache;
 import org.tinymediamanager.ui.MainWindow;
 import org.tinymediamanager.ui.TmmFontHelper;
 import org.tinymediamanager.ui.UTF8Control;
@@ -131,12 +132,22 @@ public class ImageLabel extends JLabel {
       return;
     }
 
+    // already decoded in this size?
+    if (useCache) {
+      scaledImage = ImageMemoryCache.getInstance().get(newValue, getWidth(), getHeight());
+      if (scaledImage != null) {
+        revalidate();
+        return;
+      }
+    }
+
     // load image in separate worker -> performance
     worker = new ImageLoader(this.imagePath, this.getSize());
     worker.execute();
   }
 
   public void clearImage() {
+    // the decoded image stays in the memory cache (changed files are evicted by ImageCache.invalidateCachedImage)
     imagePath = "";
     imageUrl = "";
     scaledImage = null;
@@ -164,6 +175,13 @@ public class ImageLabel extends JLabel {
       return;
     }
 
+    // already decoded in this size?
+    scaledImage = ImageMemoryCache.getInstance().get(newValue, getWidth(), getHeight());
+    if (scaledImage != null) {
+      revalidate();
+      return;
+    }
+
     // fetch image in separate worker -> performance
     worker = new ImageFetcher(this.getSize());
     worker.execute();
@@ -368,9 +386,13 @@ public class ImageLabel extends JLabel {
     @Override
     protected BufferedImage doInBackground() throws Exception {
       try {
-        Url url = new Url(imageUrl);
-        return Scalr.resize(ImageCache.createImage(url.getBytes()), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
-            Scalr.OP_ANTIALIAS);
+        BufferedImage image = ImageMemoryCache.getInstance().get(imageUrl, newSize.width, newSize.height);
+        if (image == null) {
+          image = Scalr.resize(ImageCache.createImage(ArtworkDownloader.download(imageUrl)), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width,
+              newSize.height, Scalr.OP_ANTIALIAS);
+          ImageMemoryCache.getInstance().put(imageUrl, newSize.width, newSize.height, image);
+        }
+        return image;
       }
       catch (Exception e) {
         imageUrl = "";
@@ -409,20 +431,34 @@ public class ImageLabel extends JLabel {
 
     @Override
     protected BufferedImage doInBackground() throws Exception {
+      if (useCache) {
+        BufferedImage image = ImageMemoryCache.getInstance().get(imagePath, newSize.width, newSize.height);
+        if (image != null) {
+          return image;
+        }
+      }
+
       Path file = null;
+      // the cached copies are at most twice as big as needed - no need for the expensive quality scaling
+      Scalr.Method method = Scalr.Method.BALANCED;
 
       if (useCache) {
-        file = ImageCache.getCachedFile(Paths.get(imagePath));
+        file = ImageCache.getCachedFile(Paths.get(imagePath), newSize.width, newSize.height);
       }
 
       if (file == null) {
         file = Paths.get(imagePath);
+        method = Scalr.Method.QUALITY;
       }
 
       if (file != null && Files.exists(file)) {
         try {
-          return Scalr.resize(ImageCache.createImage(file), Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
+          BufferedImage image = Scalr.resize(ImageCache.createImage(file), method, Scalr.Mode.AUTOMATIC, newSize.width, newSize.height,
               Scalr.OP_ANTIALIAS);
+          if (useCache) {
+            ImageMemoryCache.getInstance().put(imagePath, newSize.width, newSize.height, image);
+          }
+          return image;
         }
         catch (Exception e) {
           return null;
@@ -60,7 +60,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.imgscalr.Scalr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
+import org.tinymediamanager.core.ImageMemoryCache;
 import org.tinymediamanager.core.TmmProperties;
 import org.tinymediamanager.core.Utils;
 import org.tinymediamanager.core.movie.MovieModuleManager;
@@ -71,7 +73,6 @@ import org.tinymediamanager.scraper.entities.MediaArtwork;
 import org.tinymediamanager.scraper.entities.MediaArtwork.ImageSizeAndUrl;
 import org.tinymediamanager.scraper.entities.MediaArtwork.MediaArtworkType;
 import org.tinymediamanager.scraper.entities.MediaType;
-import org.tinymediamanager.scraper.http.Url;
 import org.tinymediamanager.scraper.mediaprovider.IMediaArtworkProvider;
 import org.tinymediamanager.ui.EqualsLayout;
 import org.tinymediamanager.ui.IconManager;
@@ -395,10 +396,45 @@ public class ImageChooserDialog extends TmmDialog {
     progressBar.setIndeterminate(false);
   }
 
-  @SuppressWarnings({ "unchecked", "rawtypes" })
-  private void addImage(BufferedImage originalImage, final MediaArtwork artwork) {
-    Point size = null;
+  /**
+   * get the box the previews have to fit into (depending on the image type)
+   */
+  private Dimension getPreviewSize() {
+    switch (type) {
+      case FANART:
+      case CLEARART:
+      case THUMB:
+      case DISC:
+        return new Dimension(300, 150);
+
+      case BANNER:
+      case LOGO:
+      case CLEARLOGO:
+        return new Dimension(300, 100);
 
+      case POSTER:
+      default:
+        return new Dimension(150, 250);
+    }
+  }
+
+  /**
+   * download and scale the preview image (or take it from the memory cache if it has already been shown)
+   */
+  private BufferedImage createPreview(String previewUrl) throws Exception {
+    Dimension previewSize = getPreviewSize();
+    BufferedImage preview = ImageMemoryCache.getInstance().get(previewUrl, previewSize.width, previewSize.height);
+    if (preview == null) {
+      BufferedImage originalImage = ImageCache.createImage(ArtworkDownloader.download(previewUrl));
+      Point size = ImageCache.calculateSize(previewSize.width, previewSize.height, originalImage.getWidth(), originalImage.getHeight(), true);
+      preview = Scalr.resize(originalImage, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, size.x, size.y, Scalr.OP_ANTIALIAS);
+      ImageMemoryCache.getInstance().put(previewUrl, previewSize.width, previewSize.height, preview);
+    }
+    return preview;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private void addImage(BufferedImage preview, final MediaArtwork artwork) {
     GridBagLayout gbl = new GridBagLayout();
 
     switch (type) {
@@ -408,7 +444,6 @@ public class ImageChooserDialog extends TmmDialog {
       case DISC:
         gbl.columnWidths = new int[] { 130 };
         gbl.rowHeights = new int[] { 180 };
-        size = ImageCache.calculateSize(300, 150, originalImage.getWidth(), originalImage.getHeight(), true);
         break;
 
       case BANNER:
@@ -416,14 +451,12 @@ public class ImageChooserDialog extends TmmDialog {
       case CLEARLOGO:
         gbl.columnWidths = new int[] { 130 };
         gbl.rowHeights = new int[] { 120 };
-        size = ImageCache.calculateSize(300, 100, originalImage.getWidth(), originalImage.getHeight(), true);
         break;
 
       case POSTER:
       default:
         gbl.columnWidths = new int[] { 180 };
         gbl.rowHeights = new int[] { 270 };
-        size = ImageCache.calculateSize(150, 250, originalImage.getWidth(), originalImage.getHeight(), true);
         break;
 
     }
@@ -445,13 +478,12 @@ public class ImageChooserDialog extends TmmDialog {
     button.setUI(toggleButtonUI);
     button.setMargin(new Insets(10, 10, 10, 10));
     if (artwork.isAnimated()) {
-      button.setText("<html><img width=\"" + size.x + "\" height=\"" + size.y + "\" src='" + artwork.getPreviewUrl() + "'/></html>");
+      button.setText("<html><img width=\"" + preview.getWidth() + "\" height=\"" + preview.getHeight() + "\" src='" + artwork.getPreviewUrl()
+          + "'/></html>");
       button.setBorder(BorderFactory.createLineBorder(Color.GREEN, 3));
     }
     else {
-      ImageIcon imageIcon = new ImageIcon(
-          Scalr.resize(originalImage, Scalr.Method.BALANCED, Scalr.Mode.AUTOMATIC, size.x, size.y, Scalr.OP_ANTIALIAS));
-      button.setIcon(imageIcon);
+      button.setIcon(new ImageIcon(preview));
     }
     button.putClientProperty("MediaArtwork", artwork);
 
@@ -575,8 +607,7 @@ public class ImageChooserDialog extends TmmDialog {
           art.setDefaultUrl(tfImageUrl.getText());
           art.setPreviewUrl(tfImageUrl.getText());
 
-          Url url = new Url(art.getPreviewUrl());
-          final BufferedImage bufferedImage = ImageCache.createImage(url.getBytes());
+          final BufferedImage bufferedImage = createPreview(art.getPreviewUrl());
 
           SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -849,10 +880,8 @@ public class ImageChooserDialog extends TmmDialog {
               return null;
             }
 
-            Url url = null;
             try {
-              url = new Url(art.getPreviewUrl());
-              BufferedImage bufferedImage = ImageCache.createImage(url.getBytes());
+              BufferedImage bufferedImage = createPreview(art.getPreviewUrl());
 
               DownloadChunk chunk = new DownloadChunk();
               chunk.artwork = art;
@@ -26,8 +26,8 @@ import javax.swing.border.EmptyBorder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.core.ArtworkDownloader;
 import org.tinymediamanager.core.ImageCache;
-import org.tinymediamanager.scraper.http.Url;
 import org.tinymediamanager.ui.MainWindow;
 import org.tinymediamanager.ui.TmmFontHelper;
 import org.tinymediamanager.ui.UTF8Control;
@@ -91,8 +91,7 @@ public class ImagePreviewDialog extends TmmDialog {
     @Override
     protected BufferedImage doInBackground() throws Exception {
       try {
-        Url url = new Url(imageUrl);
-        return ImageCache.createImage(url.getBytes());
+        return ImageCache.createImage(ArtworkDownloader.download(imageUrl));
       }
       catch (Exception e) {
         LOGGER.warn("fetch image: " + e.getMessage());
@@ -15,6 +15,7 @@
  */
 package org.tinymediamanager.ui.movies;
 
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -25,6 +26,8 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -45,6 +48,8 @@ import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.MenuEvent;
 import javax.swing.event.MenuListener;
 import javax.swing.event.TableModelEvent;
@@ -59,6 +64,7 @@ import org.jdesktop.beansbinding.Bindings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.ImageCacheTask;
 import org.tinymediamanager.core.movie.MovieList;
 import org.tinymediamanager.core.movie.MovieModuleManager;
 import org.tinymediamanager.core.movie.MovieSettings;
@@ -340,6 +346,13 @@ public class MoviePanel extends JPanel {
     // JScrollPane scrollPane = new JScrollPane(table);
     JScrollPane scrollPane = ZebraJTable.createStripedJScrollPane(table);
     panelMovieList.add(scrollPane, "2, 3, 4, 1, fill, fill");
+    // cache the images of the visible movies first
+    scrollPane.getViewport().addChangeListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent e) {
+        updateVisibleMovies();
+      }
+    });
 
     {
       final JToggleButton filterButton = new JToggleButton(IconManager.FILTER);
@@ -798,6 +811,27 @@ public class MoviePanel extends JPanel {
     //
   }
 
+  /**
+   * pass the movies which are visible in the table to the image cache
+   */
+  private void updateVisibleMovies() {
+    Rectangle visibleRect = table.getVisibleRect();
+    int first = table.rowAtPoint(visibleRect.getLocation());
+    if (first < 0) {
+      return;
+    }
+    int last = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+    if (last < 0) {
+      last = table.getRowCount() - 1;
+    }
+
+    List<Movie> movies = new ArrayList<>();
+    for (int row = first; row <= last; row++) {
+      movies.add(movieTableModel.getElementAt(row));
+    }
+    ImageCacheTask.setVisibleEntities(movies);
+  }
+
   private void addKeyListener() {
     table.addKeyListener(new KeyListener() {
       private long   lastKeypress = 0;
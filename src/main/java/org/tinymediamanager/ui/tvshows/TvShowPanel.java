@@ -29,6 +29,8 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import javax.swing.AbstractAction;
@@ -50,6 +52,8 @@ import javax.swing.JToolBar;
 import javax.swing.JTree;
 import javax.swing.KeyStroke;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.TreeSelectionEvent;
@@ -63,6 +67,8 @@ import org.jdesktop.beansbinding.AutoBinding.UpdateStrategy;
 import org.jdesktop.beansbinding.BeanProperty;
 import org.jdesktop.beansbinding.Bindings;
 import org.tinymediamanager.Globals;
+import org.tinymediamanager.core.ImageCacheTask;
+import org.tinymediamanager.core.entities.MediaEntity;
 import org.tinymediamanager.core.tvshow.TvShowList;
 import org.tinymediamanager.core.tvshow.TvShowModuleManager;
 import org.tinymediamanager.core.tvshow.entities.TvShow;
@@ -354,6 +360,13 @@ public class TvShowPanel extends JPanel {
     tree.setCellRenderer(new TvShowTreeCellRenderer());
     tree.setRowHeight(0);
     scrollPane.setViewportView(tree);
+    // cache the images of the visible tv shows/episodes first
+    scrollPane.getViewport().addChangeListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent e) {
+        updateVisibleTvShows();
+      }
+    });
 
     JPanel panelHeader = new JPanel() {
       private static final long serialVersionUID = -6914183798172482157L;
@@ -535,6 +548,30 @@ public class TvShowPanel extends JPanel {
     }
   }
 
+  /**
+   * pass the tv shows and episodes which are visible in the tree to the image cache
+   */
+  private void updateVisibleTvShows() {
+    Rectangle visibleRect = tree.getVisibleRect();
+    int first = tree.getClosestRowForLocation(visibleRect.x, visibleRect.y);
+    if (first < 0) {
+      return;
+    }
+    int last = tree.getClosestRowForLocation(visibleRect.x, visibleRect.y + visibleRect.height - 1);
+
+    List<MediaEntity> entities = new ArrayList<>();
+    for (int row = first; row <= last; row++) {
+      TreePath path = tree.getPathForRow(row);
+      if (path != null && path.getLastPathComponent() instanceof DefaultMutableTreeNode) {
+        Object userObject = ((DefaultMutableTreeNode) path.getLastPathComponent()).getUserObject();
+        if (userObject instanceof MediaEntity) {
+          entities.add((MediaEntity) userObject);
+        }
+      }
+    }
+    ImageCacheTask.setVisibleEntities(entities);
+  }
+
   /**
    * Inits the.
    */
@@ -29,6 +29,7 @@ import static org.tinymediamanager.core.Constants.TITLE;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -101,6 +102,16 @@ public class TvShowTreeModel implements TreeModel {
           addTvShowEpisode(episode, episode.getTvShow().getSeasonForEpisode(episode));
         }
 
+        // added a bunch of episodes
+        if (ADDED_EPISODE.equals(evt.getPropertyName()) && evt.getSource() instanceof TvShow && evt.getNewValue() instanceof Collection) {
+          for (Object obj : (Collection<?>) evt.getNewValue()) {
+            if (obj instanceof TvShowEpisode) {
+              TvShowEpisode episode = (TvShowEpisode) obj;
+              addTvShowEpisode(episode, episode.getTvShow().getSeasonForEpisode(episode));
+            }
+          }
+        }
+
         // removed an episode
         if (REMOVED_EPISODE.equals(evt.getPropertyName()) && evt.getNewValue() instanceof TvShowEpisode) {
           TvShowEpisode episode = (TvShowEpisode) evt.getNewValue();
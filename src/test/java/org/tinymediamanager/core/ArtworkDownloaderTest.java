@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author Manuel Laggner
+ */
+public class ArtworkDownloaderTest extends BasicTest {
+  private static final Path   FOLDER      = Paths.get("target", "test", "artworkDownloader");
+
+  private HttpServer          server;
+  private byte[]              image;
+  private int                 delay       = 0;
+  private final Set<Integer>  clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+  private final AtomicInteger running     = new AtomicInteger();
+  private final AtomicInteger maxRunning  = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    Utils.deleteDirectoryRecursive(FOLDER);
+    Files.createDirectories(FOLDER);
+
+    image = new byte[200 * 1024];
+    new Random(42).nextBytes(image);
+
+    // a local stand-in for the artwork hosts
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        try {
+          if (delay > 0) {
+            Thread.sleep(delay);
+          }
+          if (exchange.getRequestURI().getPath().startsWith("/missing")) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+          }
+          exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+          exchange.sendResponseHeaders(200, image.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(image);
+          }
+        }
+        catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        finally {
+          running.decrementAndGet();
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  private String getUrl(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  @Test
+  public void testDownload() throws Exception {
+    // sequential downloads re-use the pooled connection
+    for (int i = 0; i < 10; i++) {
+      Path file = FOLDER.resolve("poster" + i + ".jpg");
+      assertThat(ArtworkDownloader.download(getUrl("/poster" + i + ".jpg"), file)).isEqualTo(image.length);
+      assertThat(Files.readAllBytes(file)).isEqualTo(image);
+    }
+    assertThat(clientPorts.size()).isEqualTo(1);
+
+    assertThat(ArtworkDownloader.download(getUrl("/fanart.jpg"))).isEqualTo(image);
+
+    try {
+      ArtworkDownloader.download(getUrl("/missing.jpg"), FOLDER.resolve("missing.jpg"));
+      throw new AssertionError("no exception for a 404");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testConnectionsPerHost() throws Exception {
+    delay = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    List<Future<Long>> results = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      final int index = i;
+      results.add(executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return ArtworkDownloader.download(getUrl("/extrafanart" + index + ".jpg"), FOLDER.resolve("extrafanart" + index + ".jpg"));
+        }
+      }));
+    }
+    for (Future<Long> result : results) {
+      assertThat(result.get()).isEqualTo(image.length);
+    }
+    executor.shutdown();
+
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(ArtworkDownloader.MAX_CONNECTIONS_PER_HOST);
+    assertThat(clientPorts.size()).isLessThanOrEqualTo(ArtworkDownloader.MAX_CONNECTIONS_PER_HOST);
+  }
+
+  @Test
+  public void testPendingWrites() throws Exception {
+    Object entity = new Object();
+    ArtworkDownloader.start(entity);
+    ArtworkDownloader.start(entity);
+    assertThat(ArtworkDownloader.getOpenDownloads(entity)).isEqualTo(2);
+
+    Path file = FOLDER.resolve("poster.jpg");
+    ArtworkDownloader.download(getUrl("/poster.jpg"), file);
+    ArtworkDownloader.addWrittenFile(entity, file);
+    ArtworkDownloader.finish(entity);
+    assertThat(ArtworkDownloader.getOpenDownloads(entity)).isEqualTo(1);
+
+    // the last one syncs all files
+    ArtworkDownloader.finish(entity);
+    assertThat(ArtworkDownloader.getOpenDownloads(entity)).isEqualTo(0);
+
+    // unbalanced calls are ignored
+    ArtworkDownloader.finish(entity);
+    assertThat(ArtworkDownloader.getOpenDownloads(entity)).isEqualTo(0);
+  }
+
+  @Test
+  public void testParallelEntities() throws Exception {
+    // 20 movies with poster, fanart and 3 extrafanarts each, downloaded in parallel
+    delay = 10;
+    final int movies = 20;
+    final int images = 5;
+
+    ExecutorService executor = Executors.newFixedThreadPool(2 * ArtworkDownloader.MAX_CONNECTIONS_PER_HOST);
+    List<Object> entities = new ArrayList<>();
+    List<Future<?>> results = new ArrayList<>();
+    for (int m = 0; m < movies; m++) {
+      final Object movie = new Object();
+      entities.add(movie);
+      for (int i = 0; i < images; i++) {
+        final int index = m * images + i;
+        ArtworkDownloader.start(movie);
+        results.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            try {
+              Path file = FOLDER.resolve("image" + index + ".jpg");
+              ArtworkDownloader.download(getUrl("/image" + index + ".jpg"), file);
+              ArtworkDownloader.addWrittenFile(movie, file);
+            }
+            finally {
+              ArtworkDownloader.finish(movie);
+            }
+            return null;
+          }
+        }));
+      }
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+
+    // all entities are finished and every file has been written completely
+    for (Object movie : entities) {
+      assertThat(ArtworkDownloader.getOpenDownloads(movie)).isEqualTo(0);
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(FOLDER)) {
+      int count = 0;
+      for (Path file : stream) {
+        assertThat(file.getFileName().toString()).matches("image\\d+\\.jpg");
+        assertThat(Files.readAllBytes(file)).isEqualTo(image);
+        count++;
+      }
+      assertThat(count).isEqualTo(movies * images);
+    }
+
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(ArtworkDownloader.MAX_CONNECTIONS_PER_HOST);
+    assertThat(clientPorts.size()).isLessThanOrEqualTo(ArtworkDownloader.MAX_CONNECTIONS_PER_HOST);
+  }
+}
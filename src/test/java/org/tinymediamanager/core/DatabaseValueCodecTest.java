@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.entities.MovieActor;
+import org.tinymediamanager.scraper.entities.MediaGenres;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author Manuel Laggner
+ */
+public class DatabaseValueCodecTest extends BasicTest {
+  private static ObjectWriter writer;
+  private static ObjectReader reader;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    Settings.getInstance(getSettingsFolder());
+
+    // same configuration as in the module managers
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.configure(MapperFeature.AUTO_DETECT_GETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_IS_GETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_SETTERS, false);
+    objectMapper.configure(MapperFeature.AUTO_DETECT_FIELDS, false);
+    objectMapper.setTimeZone(TimeZone.getDefault());
+    objectMapper.setSerializationInclusion(Include.NON_DEFAULT);
+    objectMapper.setSerializerProvider(new CustomNullStringSerializerProvider());
+
+    writer = objectMapper.writerFor(Movie.class);
+    reader = objectMapper.readerFor(Movie.class);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Movie movie = createMovie();
+
+    for (DatabaseValueCodec codec : DatabaseValueCodec.values()) {
+      Object value = codec.encode(writer, movie);
+      assertThat(codec.isNativeFormat(value)).isTrue();
+
+      Movie decoded = DatabaseValueCodec.decode(reader, value);
+      assertThat(decoded.getTitle()).isEqualTo(movie.getTitle());
+      assertThat(decoded.getActors()).hasSize(2);
+      assertThat(decoded.getMediaFiles()).hasSize(1);
+
+      // encoding an unchanged entity must produce an equal value
+      assertThat(DatabaseValueCodec.isEqual(value, codec.encode(writer, movie))).isTrue();
+    }
+  }
+
+  @Test
+  public void testMigration() throws Exception {
+    Movie movie = createMovie();
+
+    // every codec converts the values of all others into its own format without changing the content
+    for (DatabaseValueCodec from : DatabaseValueCodec.values()) {
+      Object value = from.encode(writer, movie);
+      for (DatabaseValueCodec to : DatabaseValueCodec.values()) {
+        Object converted = to.convert(value);
+        assertThat(to.isNativeFormat(converted)).isTrue();
+        Movie decoded = DatabaseValueCodec.decode(reader, converted);
+        assertThat(decoded.getTitle()).isEqualTo(movie.getTitle());
+        assertThat(decoded.getTmdbId()).isEqualTo(movie.getTmdbId());
+        assertThat(decoded.getMediaFiles().get(0).getVideoWidth()).isEqualTo(1280);
+      }
+    }
+
+    // text formats are converted losslessly
+    Object json = DatabaseValueCodec.JSON.encode(writer, movie);
+    Object utf8 = DatabaseValueCodec.UTF8_JSON.convert(json);
+    assertThat(DatabaseValueCodec.isEqual(utf8, DatabaseValueCodec.UTF8_JSON.encode(writer, movie))).isTrue();
+    assertThat(DatabaseValueCodec.isEqual(json, DatabaseValueCodec.JSON.convert(utf8))).isTrue();
+    assertThat(DatabaseValueCodec.isEqual(json, DatabaseValueCodec.JSON.convert(DatabaseValueCodec.BINARY.convert(json)))).isTrue();
+
+    // garbage must not be decoded
+    try {
+      DatabaseValueCodec.decode(reader, new byte[] { 1, 2, 3, 4, 5 });
+      fail("invalid header not detected");
+    }
+    catch (Exception ignored) {
+    }
+  }
+
+  @Test
+  public void testBinaryFormat() throws Exception {
+    Movie movie = createMovie();
+
+    // no field names after the first occurrence and no numbers as text
+    byte[] binary = (byte[]) DatabaseValueCodec.BINARY.encode(writer, movie);
+    byte[] utf8 = (byte[]) DatabaseValueCodec.UTF8_JSON.encode(writer, movie);
+    assertThat(binary.length).isLessThan(utf8.length);
+
+    // truncated values must not be decoded
+    try {
+      DatabaseValueCodec.decode(reader, Arrays.copyOf(binary, binary.length / 2));
+      fail("truncated value not detected");
+    }
+    catch (Exception ignored) {
+    }
+  }
+
+  private Movie createMovie() {
+    Movie movie = new Movie();
+    movie.setTitle("Aladdin");
+    movie.setOriginalTitle("Aladdin");
+    movie.setYear("1992");
+    movie.setPlot("Aladdin, a street urchin, accidentally meets Princess Jasmine, who is in the city undercover.");
+    movie.setImdbId("tt0103639");
+    movie.setTmdbId(812);
+    movie.setGenres(Arrays.asList(MediaGenres.ADVENTURE, MediaGenres.FAMILY));
+    movie.addActor(new MovieActor("Scott Weinger", "Aladdin 'Al' (voice)"));
+    movie.addActor(new MovieActor("Robin Williams", "Genie (voice)"));
+
+    MediaFile mf = new MediaFile();
+    mf.setType(MediaFileType.VIDEO);
+    mf.setFilename("Aladdin.mkv");
+    mf.setVideoCodec("h264");
+    mf.setVideoWidth(1280);
+    mf.setVideoHeight(720);
+    movie.addToMediaFiles(mf);
+
+    return movie;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ConcurrentModificationException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.DatabaseWriteQueue.IDatabaseWriteOperation;
+
+/**
+ * @author Manuel Laggner
+ */
+public class DatabaseWriteQueueTest extends BasicTest {
+  private MVStore             mvStore;
+  private MVMap<UUID, String> map;
+
+  @Before
+  public void setUp() {
+    // in memory store
+    mvStore = new MVStore.Builder().open();
+    map = mvStore.openMap("test");
+  }
+
+  @After
+  public void tearDown() {
+    mvStore.close();
+  }
+
+  @Test
+  public void testRetry() throws Exception {
+    DatabaseWriteQueue queue = new DatabaseWriteQueue("test", mvStore, 10);
+    final UUID id = UUID.randomUUID();
+    final AtomicInteger tries = new AtomicInteger();
+
+    // fails twice, succeeds with the third try
+    queue.enqueue(id, new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        if (tries.incrementAndGet() < 3) {
+          throw new IllegalStateException("write failed");
+        }
+        map.put(id, "value");
+      }
+    });
+    queue.shutdown();
+
+    assertThat(tries.get()).isEqualTo(3);
+    assertThat(map.get(id)).isEqualTo("value");
+  }
+
+  @Test
+  public void testModifiedWhileWriting() throws Exception {
+    DatabaseWriteQueue queue = new DatabaseWriteQueue("test", mvStore, 10);
+    final UUID id = UUID.randomUUID();
+    final AtomicInteger version = new AtomicInteger();
+
+    // the entity is modified while the first try serializes it
+    queue.enqueue(id, new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        int stamp = version.get();
+        String value = "value" + stamp;
+        if (stamp == 0) {
+          version.incrementAndGet();
+        }
+        if (stamp != version.get()) {
+          throw new ConcurrentModificationException("modified while serializing");
+        }
+        map.put(id, value);
+      }
+    });
+    queue.shutdown();
+
+    assertThat(map.get(id)).isEqualTo("value1");
+  }
+
+  @Test
+  public void testGiveUp() throws Exception {
+    DatabaseWriteQueue queue = new DatabaseWriteQueue("test", mvStore, 10);
+    final AtomicInteger tries = new AtomicInteger();
+
+    queue.enqueue(UUID.randomUUID(), new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        tries.incrementAndGet();
+        throw new IllegalStateException("write failed");
+      }
+    });
+    queue.shutdown();
+
+    // first try + 3 retries
+    assertThat(tries.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void testShutdownWhileWriting() throws Exception {
+    DatabaseWriteQueue queue = new DatabaseWriteQueue("test", mvStore, 10);
+    final UUID id = UUID.randomUUID();
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicBoolean interrupted = new AtomicBoolean();
+
+    queue.enqueue(id, new IDatabaseWriteOperation() {
+      @Override
+      public void execute() throws Exception {
+        started.countDown();
+        // a long running write
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+        while (System.nanoTime() < end) {
+          if (Thread.currentThread().isInterrupted()) {
+            interrupted.set(true);
+          }
+        }
+        map.put(id, "value");
+      }
+    });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    queue.shutdown();
+
+    assertThat(interrupted.get()).isFalse();
+    assertThat(map.get(id)).isEqualTo("value");
+    assertThat(mvStore.isClosed()).isFalse();
+  }
+}
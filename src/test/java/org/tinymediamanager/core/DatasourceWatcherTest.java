@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.mvstore.MVStore;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class DatasourceWatcherTest extends BasicTest {
+
+  @Test
+  public void testWatch() throws Exception {
+    Path root = Paths.get("target", "test", "watcher").toAbsolutePath();
+    Utils.deleteDirectoryRecursive(root);
+    Path existing = Files.createDirectories(root.resolve("Aladdin (1992)"));
+
+    final BlockingQueue<Set<Path>> changes = new LinkedBlockingQueue<>();
+    MVStore store = MVStore.open(null);
+    DatasourceWatcher watcher = new DatasourceWatcher("test", new DirectoryStateIndex(store.<String, String> openMap("directoryStates")),
+        new DatasourceWatcher.IDatasourceChangeListener() {
+          @Override
+          public void foldersChanged(String datasource, Set<Path> folders) {
+            changes.add(folders);
+          }
+        }, 1000, 60);
+    watcher.start(Collections.singletonList(root.toString()));
+
+    try {
+      // a new movie folder: several events for the folder and its file are reported once (after the delay)
+      Path created = Files.createDirectories(root.resolve("Alien (1979)"));
+      Files.createFile(created.resolve("Alien.mkv"));
+      assertThat(awaitChanges(changes)).containsOnly(created);
+
+      // a new file in a sub folder of an existing movie folder
+      Path extras = Files.createDirectories(existing.resolve("extras"));
+      assertThat(awaitChanges(changes)).containsOnly(existing);
+      Files.createFile(extras.resolve("trailer.mkv"));
+      assertThat(awaitChanges(changes)).containsOnly(existing);
+
+      // a file in the root affects the whole data source
+      Files.createFile(root.resolve("movie.mkv"));
+      assertThat(awaitChanges(changes)).containsOnly(root);
+    }
+    finally {
+      watcher.stop();
+      store.close();
+    }
+
+    // no more events after stopping
+    Files.createDirectories(root.resolve("Aliens (1986)"));
+    assertThat(changes.poll(2500, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  private Set<Path> awaitChanges(BlockingQueue<Set<Path>> changes) throws InterruptedException {
+    Set<Path> folders = changes.poll(15, TimeUnit.SECONDS);
+    assertThat(folders).isNotNull();
+    // events which arrived in between
+    Set<Path> more;
+    while ((more = changes.poll(1500, TimeUnit.MILLISECONDS)) != null) {
+      folders = new HashSet<>(folders);
+      folders.addAll(more);
+    }
+    return folders;
+  }
+}
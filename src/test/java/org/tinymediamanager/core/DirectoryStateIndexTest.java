@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class DirectoryStateIndexTest extends BasicTest {
+
+  @Test
+  public void testUnchangedDetection() throws Exception {
+    Path root = Paths.get("target", "test", "directoryStates");
+    Utils.deleteDirectoryRecursive(root);
+    Path movie = Files.createDirectories(root.resolve("Aladdin (1992)"));
+    Path extras = Files.createDirectories(movie.resolve("extras"));
+    Files.createFile(movie.resolve("Aladdin.mkv"));
+
+    MVStore store = MVStore.open(null);
+    MVMap<String, String> map = store.openMap("directoryStates");
+    DirectoryStateIndex index = new DirectoryStateIndex(map);
+
+    // nothing stored yet
+    assertThat(index.isUnchanged(movie)).isFalse();
+
+    walk(index, movie);
+    // not committed yet
+    assertThat(index.isUnchanged(movie)).isFalse();
+    index.commit();
+    assertThat(index.isUnchanged(movie)).isTrue();
+
+    // a new file in a sub folder
+    Files.createFile(extras.resolve("trailer.mkv"));
+    assertThat(index.isUnchanged(movie)).isFalse();
+    walk(index, movie);
+    index.commit();
+    assertThat(index.isUnchanged(movie)).isTrue();
+
+    // a discarded walk does not change the stored state
+    Files.createFile(movie.resolve("Aladdin.nfo"));
+    walk(index, movie);
+    index.discard();
+    assertThat(index.isUnchanged(movie)).isFalse();
+
+    walk(index, movie);
+    index.commit();
+    assertThat(index.isUnchanged(movie)).isTrue();
+    index.invalidate(extras);
+    assertThat(index.isUnchanged(movie)).isFalse();
+
+    store.close();
+  }
+
+  private void walk(DirectoryStateIndex index, Path folder) throws IOException {
+    final DirectoryStateIndex.Recorder recorder = index.createRecorder();
+    Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        recorder.enterDirectory(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+        recorder.leaveDirectory(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+}
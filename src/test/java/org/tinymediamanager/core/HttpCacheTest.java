@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * @author Manuel Laggner
+ */
+public class HttpCacheTest extends BasicTest {
+  private static final Path   CACHE_DIR   = Paths.get("target", "test", "httpCache");
+
+  private HttpServer          server;
+  private final AtomicInteger requests    = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    Utils.deleteDirectoryRecursive(CACHE_DIR);
+    HttpCache.init(CACHE_DIR, 10 * 1024 * 1024);
+
+    // a local stand-in for the scraper/artwork hosts
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = ("response of " + path).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if (path.startsWith("/image")) {
+          // no caching headers -> TTL by content type
+          exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        }
+        else {
+          // always revalidate
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+          if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+          os.write(body);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    HttpCache.setOfflineMode(false);
+    HttpCache.shutdown();
+  }
+
+  private String getUrl(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    byte[] first = ArtworkDownloader.download(getUrl("/image/poster.jpg"));
+    byte[] second = ArtworkDownloader.download(getUrl("/image/poster.jpg"));
+    assertThat(second).isEqualTo(first);
+    assertThat(requests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRevalidation() throws Exception {
+    byte[] first = ArtworkDownloader.download(getUrl("/movie/603"));
+    byte[] second = ArtworkDownloader.download(getUrl("/movie/603"));
+    assertThat(second).isEqualTo(first);
+    assertThat(requests.get()).isEqualTo(2);
+    assertThat(notModified.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testOfflineMode() throws Exception {
+    byte[] recorded = ArtworkDownloader.download(getUrl("/image/fanart.jpg"));
+
+    HttpCache.setOfflineMode(true);
+    assertThat(ArtworkDownloader.download(getUrl("/image/fanart.jpg"))).isEqualTo(recorded);
+    assertThat(requests.get()).isEqualTo(1);
+
+    try {
+      ArtworkDownloader.download(getUrl("/image/banner.jpg"));
+      throw new AssertionError("no exception for an uncached url in the offline mode");
+    }
+    catch (IOException e) {
+      // expected: 504
+    }
+    assertThat(requests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testNewBuilder() throws Exception {
+    // an own client with the interceptor of an api library (like Trakt.tv)
+    OkHttpClient client = HttpCache.newBuilder().addInterceptor(new Interceptor() {
+      @Override
+      public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.url().encodedPath().startsWith("/image/user")) {
+          request = request.newBuilder().header("Authorization", "Bearer token").build();
+        }
+        return chain.proceed(request);
+      }
+    }).build();
+
+    // revalidated with the headers of the server
+    assertThat(get(client, "/movie/603")).isEqualTo(get(client, "/movie/603"));
+    assertThat(requests.get()).isEqualTo(2);
+    assertThat(notModified.get()).isEqualTo(1);
+
+    // TTL by content type
+    assertThat(get(client, "/image/poster.jpg")).isEqualTo(get(client, "/image/poster.jpg"));
+    assertThat(requests.get()).isEqualTo(3);
+
+    // user specific responses get no TTL
+    get(client, "/image/user/avatar.jpg");
+    get(client, "/image/user/avatar.jpg");
+    assertThat(requests.get()).isEqualTo(5);
+  }
+
+  private String get(OkHttpClient client, String path) throws IOException {
+    Response response = client.newCall(new Request.Builder().url(getUrl(path)).build()).execute();
+    assertThat(response.isSuccessful()).isTrue();
+    // reads and closes the body
+    return response.body().string();
+  }
+
+  @Test
+  public void testTtl() {
+    assertThat(HttpCache.getTtl("image/jpeg")).isEqualTo(HttpCache.IMAGE_TTL);
+    assertThat(HttpCache.getTtl("application/json; charset=utf-8")).isEqualTo(HttpCache.METADATA_TTL);
+    assertThat(HttpCache.getTtl("text/xml")).isEqualTo(HttpCache.METADATA_TTL);
+    assertThat(HttpCache.getTtl("application/octet-stream")).isEqualTo(HttpCache.DEFAULT_TTL);
+    assertThat(HttpCache.getTtl(null)).isEqualTo(HttpCache.DEFAULT_TTL);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class ImageCacheIndexTest extends BasicTest {
+  private final AtomicLong            now   = new AtomicLong();
+  private final ImageCacheIndex.Clock clock = new ImageCacheIndex.Clock() {
+                                              @Override
+                                              public long currentTimeMillis() {
+                                                return now.get();
+                                              }
+                                            };
+
+  @Test
+  public void testIndex() throws Exception {
+    Path cacheDir = Paths.get("target", "test", "imageCache");
+    Utils.deleteDirectoryRecursive(cacheDir);
+    Files.createDirectories(cacheDir);
+
+    // old flat layout
+    Files.write(cacheDir.resolve("aa11.jpg"), new byte[1000]);
+    Files.write(cacheDir.resolve("bb22.jpg"), new byte[1000]);
+
+    ImageCacheIndex index = new ImageCacheIndex(cacheDir, 3000, clock);
+    index.load();
+    assertThat(Files.exists(cacheDir.resolve("aa").resolve("aa11.jpg"))).isTrue();
+    assertThat(Files.exists(cacheDir.resolve("aa11.jpg"))).isFalse();
+    assertThat(index.getCount()).isEqualTo(2);
+    assertThat(index.getSize()).isEqualTo(2000);
+
+    // least recently used files are evicted (the scanned files got their last modified date as last access)
+    now.set(System.currentTimeMillis() + 60000);
+    assertThat(index.contains("aa11.jpg")).isTrue();
+    now.addAndGet(10);
+    Path file = index.resolve("cc33.jpg");
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[1500]);
+    index.add(file);
+    assertThat(index.contains("bb22.jpg")).isFalse();
+    assertThat(Files.exists(index.resolve("bb22.jpg"))).isFalse();
+    assertThat(index.getSize()).isEqualTo(2500);
+
+    // files which are not registered are not in the index
+    Path unregistered = index.resolve("dd44.jpg");
+    Files.createDirectories(unregistered.getParent());
+    Files.write(unregistered, new byte[10]);
+    assertThat(index.contains("dd44.jpg")).isFalse();
+    Files.delete(unregistered);
+
+    // persisted index
+    index.save();
+    ImageCacheIndex reloaded = new ImageCacheIndex(cacheDir, 3000);
+    reloaded.load();
+    assertThat(reloaded.getCount()).isEqualTo(2);
+    assertThat(reloaded.getSize()).isEqualTo(2500);
+    assertThat(Files.exists(cacheDir.resolve(ImageCacheIndex.INDEX_FILE))).isFalse();
+
+    // shrinking the max size evicts immediately
+    reloaded.setMaxSize(2000);
+    assertThat(reloaded.getSize()).isLessThanOrEqualTo(1800);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class ImageCacheTest extends BasicTest {
+
+  @Test
+  public void testSubsampledDecoding() throws Exception {
+    Path file = TestImages.createImage("fanart", 3840, 2160, false);
+
+    // 3840 / 1000 -> every 3rd pixel
+    BufferedImage image = ImageCache.createImage(file, 1000, 1000);
+    assertThat(image.getWidth()).isEqualTo(1280);
+    assertThat(image.getHeight()).isEqualTo(720);
+
+    // only the width is limited
+    image = ImageCache.createImage(Files.readAllBytes(file), 300, Integer.MAX_VALUE);
+    assertThat(image.getWidth()).isEqualTo(320);
+
+    // the original is smaller - full decode
+    image = ImageCache.createImage(file, 5000, 5000);
+    assertThat(image.getWidth()).isEqualTo(3840);
+
+    // progressive jpegs are subsampled too
+    file = TestImages.createImage("fanart-progressive", 3840, 2160, true);
+    image = ImageCache.createImage(file, 1000, 1000);
+    assertThat(image.getWidth()).isEqualTo(1280);
+    assertThat(image.getHeight()).isEqualTo(720);
+  }
+
+  @Test
+  public void testCacheSize() {
+    assertThat(ImageCache.CacheSize.forSize(0, 0)).isEqualTo(ImageCache.CacheSize.SMALL);
+    assertThat(ImageCache.CacheSize.forSize(200, 300)).isEqualTo(ImageCache.CacheSize.SMALL);
+    // the longest edge counts
+    assertThat(ImageCache.CacheSize.forSize(301, 10)).isEqualTo(ImageCache.CacheSize.MEDIUM);
+    assertThat(ImageCache.CacheSize.forSize(10, 600)).isEqualTo(ImageCache.CacheSize.MEDIUM);
+    assertThat(ImageCache.CacheSize.forSize(1000, 562)).isEqualTo(ImageCache.CacheSize.BIG);
+    assertThat(ImageCache.CacheSize.forSize(1001, 1)).isEqualTo(ImageCache.CacheSize.FULL);
+    // bigger than all sizes
+    assertThat(ImageCache.CacheSize.forSize(3840, 2160)).isEqualTo(ImageCache.CacheSize.FULL);
+  }
+
+  @Test
+  public void testCacheFiles() throws Exception {
+    Path cacheDir = Paths.get("target", "test", "imagecache-sizes");
+    Utils.deleteDirectoryRecursive(cacheDir);
+    ImageCacheIndex oldIndex = ImageCache.setIndex(new ImageCacheIndex(cacheDir, 0));
+    try {
+      // a big image: all sizes are created (every one scaled from the next bigger one)
+      Path file = TestImages.createImage("fanart", 3840, 2160, false);
+      String key = file.toString();
+      Path cachedFile = ImageCache.cacheImage(file, ImageCache.CacheSize.SMALL);
+      assertThat(cachedFile).isEqualTo(ImageCache.getCacheFile(key, ImageCache.CacheSize.SMALL, "jpg"));
+      assertThat(cachedFile.startsWith(cacheDir)).isTrue();
+      assertThat(getWidth(ImageCache.getCacheFile(key, ImageCache.CacheSize.FULL, "jpg"))).isEqualTo(1920);
+      assertThat(getWidth(ImageCache.getCacheFile(key, ImageCache.CacheSize.BIG, "jpg"))).isEqualTo(1000);
+      assertThat(getWidth(ImageCache.getCacheFile(key, ImageCache.CacheSize.MEDIUM, "jpg"))).isEqualTo(600);
+      assertThat(getWidth(cachedFile)).isEqualTo(300);
+      // the other sizes come out of the cache
+      assertThat(ImageCache.cacheImage(file, ImageCache.CacheSize.BIG)).isEqualTo(ImageCache.getCacheFile(key, ImageCache.CacheSize.BIG,
+          "jpg"));
+
+      // a medium image: the sizes bigger than the original are stored once (in the original size)
+      file = TestImages.createImage("fanart", 800, 450, false);
+      key = file.toString();
+      cachedFile = ImageCache.cacheImage(file, ImageCache.CacheSize.FULL);
+      assertThat(ImageCache.isCached(key, ImageCache.CacheSize.FULL, "jpg")).isFalse();
+      assertThat(cachedFile).isEqualTo(ImageCache.getCacheFile(key, ImageCache.CacheSize.BIG, "jpg"));
+      assertThat(getWidth(cachedFile)).isEqualTo(800);
+      assertThat(getWidth(ImageCache.getCacheFile(key, ImageCache.CacheSize.MEDIUM, "jpg"))).isEqualTo(600);
+      assertThat(getWidth(ImageCache.getCacheFile(key, ImageCache.CacheSize.SMALL, "jpg"))).isEqualTo(300);
+
+      // a small image: only the smallest copy exists and is used for all sizes
+      file = TestImages.createImage("poster", 200, 300, false);
+      key = file.toString();
+      cachedFile = ImageCache.cacheImage(file, ImageCache.CacheSize.BIG);
+      assertThat(cachedFile).isEqualTo(ImageCache.getCacheFile(key, ImageCache.CacheSize.SMALL, "jpg"));
+      assertThat(getWidth(cachedFile)).isEqualTo(200);
+      assertThat(ImageCache.isCached(key, ImageCache.CacheSize.MEDIUM, "jpg")).isFalse();
+      assertThat(ImageCache.cacheImage(file, ImageCache.CacheSize.FULL)).isEqualTo(cachedFile);
+    }
+    finally {
+      ImageCache.setIndex(oldIndex);
+    }
+  }
+
+  private int getWidth(Path file) throws Exception {
+    assertThat(Files.exists(file)).isTrue();
+    return ImageIO.read(file.toFile()).getWidth();
+  }
+
+  @Test
+  public void testReplacedImage() throws Exception {
+    Path file = Paths.get("target", "test", "imagecache-replaced.jpg");
+    Files.createDirectories(file.getParent());
+    Files.copy(TestImages.createImage("poster", 400, 600, false), file, StandardCopyOption.REPLACE_EXISTING);
+    String imagePath = file.toAbsolutePath().toString();
+
+    // decoded and shown once
+    ImageMemoryCache.getInstance().put(imagePath, 200, 300, ImageCache.createImage(file));
+    assertThat(ImageMemoryCache.getInstance().get(imagePath, 200, 300)).isNotNull();
+
+    // replace the artwork (like the artwork downloads) -> the next load must decode the new file
+    Files.copy(TestImages.createImage("fanart", 600, 400, false), file, StandardCopyOption.REPLACE_EXISTING);
+    ImageCache.invalidateCachedImage(file);
+    assertThat(ImageMemoryCache.getInstance().get(imagePath, 200, 300)).isNull();
+    assertThat(ImageCache.createImage(file).getWidth()).isEqualTo(600);
+  }
+}
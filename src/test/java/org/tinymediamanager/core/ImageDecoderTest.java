@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.thirdparty.ImageLoader;
+
+/**
+ * @author Manuel Laggner
+ */
+public class ImageDecoderTest extends BasicTest {
+
+  @Test
+  public void testDecode() throws Exception {
+    Path file = TestImages.createImage("poster", 1000, 1500, false);
+    BufferedImage image = ImageDecoder.decode(file);
+    assertThat(image.getWidth()).isEqualTo(1000);
+    assertThat(image.getHeight()).isEqualTo(1500);
+    assertThat(new Color(image.getRGB(0, 0)).getBlue()).isGreaterThan(200);
+
+    // subsampled
+    file = TestImages.createImage("fanart", 1920, 1080, false);
+    image = ImageDecoder.decode(Files.readAllBytes(file), 960, 960);
+    assertThat(image.getWidth()).isEqualTo(960);
+    assertThat(image.getHeight()).isEqualTo(540);
+
+    // progressive jpegs are subsampled too
+    file = TestImages.createImage("fanart-progressive", 1920, 1080, true);
+    image = ImageDecoder.decode(file, 960, 960);
+    assertThat(image.getWidth()).isEqualTo(960);
+    assertThat(image.getHeight()).isEqualTo(540);
+
+    // png with alpha
+    file = TestImages.createImage("logo", 800, 310, false);
+    image = ImageDecoder.decode(file, 400, 400);
+    assertThat(image.getWidth()).isEqualTo(400);
+    assertThat(image.getColorModel().hasAlpha()).isTrue();
+  }
+
+  @Test
+  public void testDecodeCmyk() throws Exception {
+    Path file = Paths.get("target", "test", "decoder-cmyk.jpg");
+    Files.createDirectories(file.getParent());
+
+    // a plain cyan CMYK jpeg (no Adobe marker)
+    WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 64, 32, 4, null);
+    int[] pixel = new int[] { 255, 0, 0, 0 };
+    for (int y = 0; y < 32; y++) {
+      for (int x = 0; x < 64; x++) {
+        raster.setPixel(x, y, pixel);
+      }
+    }
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(raster, null, null), null);
+    }
+    finally {
+      writer.dispose();
+    }
+
+    BufferedImage image = ImageDecoder.decode(file);
+    assertThat(image.getWidth()).isEqualTo(64);
+    assertThat(image.getHeight()).isEqualTo(32);
+
+    Color color = new Color(image.getRGB(32, 16));
+    assertThat(color.getRed()).isLessThan(30);
+    assertThat(color.getGreen()).isGreaterThan(220);
+    assertThat(color.getBlue()).isGreaterThan(220);
+  }
+
+  @Test
+  public void testSameAsToolkit() throws Exception {
+    // the decoded pixels must match the ones of the old decoding pipeline (AWT toolkit + ImageLoader)
+    Path[] files = new Path[] { TestImages.createImage("poster", 1000, 1500, false), TestImages.createImage("logo", 800, 310, false) };
+    for (Path file : files) {
+      BufferedImage expected = ImageLoader.createImage(Toolkit.getDefaultToolkit().createImage(file.toFile().getAbsolutePath()));
+      BufferedImage image = ImageDecoder.decode(file);
+      assertThat(image.getWidth()).isEqualTo(expected.getWidth());
+      assertThat(image.getHeight()).isEqualTo(expected.getHeight());
+
+      for (int y = 0; y < image.getHeight(); y += 97) {
+        for (int x = 0; x < image.getWidth(); x += 89) {
+          Color color = new Color(image.getRGB(x, y), true);
+          Color expectedColor = new Color(expected.getRGB(x, y), true);
+          // jpeg decoders may round differently
+          assertThat(Math.abs(color.getRed() - expectedColor.getRed())).isLessThanOrEqualTo(8);
+          assertThat(Math.abs(color.getGreen() - expectedColor.getGreen())).isLessThanOrEqualTo(8);
+          assertThat(Math.abs(color.getBlue() - expectedColor.getBlue())).isLessThanOrEqualTo(8);
+          assertThat(Math.abs(color.getAlpha() - expectedColor.getAlpha())).isLessThanOrEqualTo(8);
+        }
+      }
+    }
+  }
+}
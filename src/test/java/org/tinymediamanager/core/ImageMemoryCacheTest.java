@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class ImageMemoryCacheTest extends BasicTest {
+  // 100x100 int RGB = 40000 bytes
+  private static final int IMAGE_BYTES = 100 * 100 * 4;
+
+  @Test
+  public void testLru() {
+    // room for two images
+    ImageMemoryCache cache = new ImageMemoryCache(2 * IMAGE_BYTES);
+    BufferedImage a = createImage();
+    BufferedImage b = createImage();
+    BufferedImage c = createImage();
+
+    cache.put("a", 100, 100, a);
+    cache.put("b", 100, 100, b);
+    assertThat(cache.getBytes()).isEqualTo(2 * IMAGE_BYTES);
+
+    // a is used -> b is the least recently used one
+    assertThat(cache.get("a", 100, 100)).isSameAs(a);
+    cache.put("c", 100, 100, c);
+    assertThat(cache.getCount()).isEqualTo(2);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(cache.getSoftCount()).isEqualTo(1);
+    assertThat(cache.getSoftImage("b", 100, 100)).isNotNull();
+
+    // b comes back from the second level and pushes a (now the least recently used) out
+    assertThat(cache.get("b", 100, 100)).isSameAs(b);
+    assertThat(cache.getSoftHits()).isEqualTo(1);
+    assertThat(cache.getSoftImage("a", 100, 100)).isNotNull();
+    assertThat(cache.getBytes()).isEqualTo(2 * IMAGE_BYTES);
+
+    // other size -> other entry
+    assertThat(cache.get("c", 50, 50)).isNull();
+
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void testClearedSoftReference() {
+    ImageMemoryCache cache = new ImageMemoryCache(IMAGE_BYTES);
+    cache.put("a", 100, 100, createImage());
+    cache.put("b", 100, 100, createImage());
+
+    // simulate the garbage collector clearing the soft reference of a
+    SoftReference<BufferedImage> reference = cache.getSoftImage("a", 100, 100);
+    assertThat(reference).isNotNull();
+    reference.clear();
+    reference.enqueue();
+
+    assertThat(cache.get("a", 100, 100)).isNull();
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getSoftHits()).isEqualTo(0);
+    assertThat(cache.getSoftCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testInvalidate() {
+    ImageMemoryCache cache = new ImageMemoryCache(IMAGE_BYTES);
+    cache.put("a", 100, 100, createImage());
+    cache.put("a", 50, 50, createImage());
+    cache.put("b", 100, 100, createImage());
+
+    cache.invalidate("a");
+    assertThat(cache.get("a", 100, 100)).isNull();
+    assertThat(cache.get("a", 50, 50)).isNull();
+    assertThat(cache.getSoftImage("a", 100, 100)).isNull();
+    assertThat(cache.get("b", 100, 100)).isNotNull();
+  }
+
+  private BufferedImage createImage() {
+    return new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class IsoInspectorTest extends BasicTest {
+
+  @Test
+  public void testSelectDvdFeature() {
+    IsoInspector.Entry menu = new IsoInspector.Entry("VIDEO_TS/VIDEO_TS.VOB", 0, 50000);
+    IsoInspector.Entry titleMenu = new IsoInspector.Entry("VIDEO_TS/VTS_01_0.VOB", 0, 80000);
+    IsoInspector.Entry part1 = new IsoInspector.Entry("VIDEO_TS/VTS_01_1.VOB", 0, 1073709056);
+    IsoInspector.Entry part2 = new IsoInspector.Entry("VIDEO_TS/VTS_01_2.VOB", 0, 1073709056);
+    // the last part of the feature is small
+    IsoInspector.Entry part3 = new IsoInspector.Entry("VIDEO_TS/VTS_01_3.VOB", 0, 20000000);
+    IsoInspector.Entry trailer = new IsoInspector.Entry("VIDEO_TS/VTS_02_1.VOB", 0, 90000000);
+
+    List<IsoInspector.Entry> feature = IsoInspector.selectFeature(Arrays.asList(menu, titleMenu, part1, part2, part3, trailer),
+        Collections.<String> emptySet());
+    assertThat(feature).containsExactly(part1, part2, part3);
+  }
+
+  @Test
+  public void testSelectBlurayFeature() {
+    IsoInspector.Entry main = new IsoInspector.Entry("BDMV/STREAM/00800.m2ts", 0, 30000000000L);
+    IsoInspector.Entry extra = new IsoInspector.Entry("BDMV/STREAM/00801.m2ts", 0, 2000000000L);
+    IsoInspector.Entry credits = new IsoInspector.Entry("BDMV/STREAM/00802.m2ts", 0, 100000000L);
+
+    ByteBuffer playlist = createPlaylist(new String[] { "00800", "00802" }, new long[] { 45000L * 7200, 45000L * 300 });
+    Set<String> clips = new HashSet<>();
+    assertThat(IsoInspector.parsePlaylist(playlist, clips)).isEqualTo(45000L * 7500);
+    assertThat(clips).containsOnly("00800", "00802");
+
+    List<IsoInspector.Entry> feature = IsoInspector.selectFeature(Arrays.asList(main, extra, credits), clips);
+    assertThat(feature).containsExactly(main, credits);
+
+    // without playlist all clips are taken
+    feature = IsoInspector.selectFeature(Arrays.asList(main, extra, credits), Collections.<String> emptySet());
+    assertThat(feature).containsExactly(main, extra, credits);
+
+    // no playlist
+    assertThat(IsoInspector.parsePlaylist(ByteBuffer.wrap("INDX0200".getBytes(StandardCharsets.US_ASCII)), clips)).isEqualTo(-1);
+  }
+
+  private ByteBuffer createPlaylist(String[] clips, long[] durations) {
+    List<byte[]> items = new ArrayList<>();
+    for (int i = 0; i < clips.length; i++) {
+      ByteBuffer item = ByteBuffer.allocate(22);
+      item.putShort((short) 20);
+      item.put(clips[i].getBytes(StandardCharsets.US_ASCII));
+      item.put("M2TS".getBytes(StandardCharsets.US_ASCII));
+      item.putShort((short) 1);
+      item.put((byte) 0);
+      item.putInt(1000);
+      item.putInt((int) (1000 + durations[i]));
+      items.add(item.array());
+    }
+
+    ByteBuffer data = ByteBuffer.allocate(40 + 10 + 22 * clips.length);
+    data.put("MPLS0200".getBytes(StandardCharsets.US_ASCII));
+    data.putInt(40);
+    data.position(40);
+    data.putInt(10 + 22 * clips.length - 4);
+    data.putShort((short) 0);
+    data.putShort((short) clips.length);
+    data.putShort((short) 0);
+    for (byte[] item : items) {
+      data.put(item);
+    }
+    data.flip();
+    return data;
+  }
+}
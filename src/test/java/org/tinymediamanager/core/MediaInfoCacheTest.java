@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+/**
+ * @author Manuel Laggner
+ */
+public class MediaInfoCacheTest extends BasicTest {
+
+  @Test
+  public void testFileIdentity() throws Exception {
+    Path root = Paths.get("target", "test", "mediainfoCache");
+    Utils.deleteDirectoryRecursive(root);
+    Files.createDirectories(root);
+
+    byte[] content = new byte[100 * 1024];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Path file = Files.write(root.resolve("Aladdin.mkv"), content);
+
+    MediaInfoCache cache = new MediaInfoCache(null);
+    String key = cache.getKey(file, "1");
+    assertThat(key).isNotEmpty();
+    assertThat(cache.getKey(file, "2")).isNotEqualTo(key);
+    assertThat(cache.get(key)).isNull();
+
+    Map<StreamKind, List<Map<String, String>>> snapshot = new EnumMap<>(StreamKind.class);
+    Map<String, String> video = new LinkedHashMap<>();
+    video.put("Width", "1280");
+    video.put("Height", "720");
+    List<Map<String, String>> videoStreams = new ArrayList<>();
+    videoStreams.add(video);
+    snapshot.put(StreamKind.Video, videoStreams);
+    cache.put(key, snapshot);
+
+    Map<StreamKind, List<Map<String, String>>> cached = cache.get(key);
+    assertThat(cached).isNotNull();
+    assertThat(cached.get(StreamKind.Video).get(0).get("Width")).isEqualTo("1280");
+
+    // a moved file (same size, date and content) is found again
+    Path moved = Files.move(file, root.resolve("Aladdin (1992).mkv"));
+    assertThat(cache.getKey(moved, "1")).isEqualTo(key);
+
+    // same size and date, but other content at the end
+    content[content.length - 1]++;
+    FileTime lastModified = Files.getLastModifiedTime(moved);
+    Files.write(moved, content);
+    Files.setLastModifiedTime(moved, lastModified);
+    assertThat(cache.getKey(moved, "1")).isNotEqualTo(key);
+
+    // not existing files cannot be cached
+    assertThat(cache.getKey(root.resolve("missing.mkv"), "1")).isEmpty();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.thirdparty.MediaInfo;
+
+/**
+ * @author Manuel Laggner
+ */
+public class MediaInfoPoolTest extends BasicTest {
+
+  @Test
+  public void testPool() throws Exception {
+    final MediaInfoPool pool = new MediaInfoPool(2);
+
+    // handles are reused
+    MediaInfo first = pool.acquire("first.mkv");
+    MediaInfo second = pool.acquire("second.mkv");
+    assertThat(pool.getLeased()).isEqualTo(2);
+    pool.release(first);
+    assertThat(pool.acquire("third.mkv")).isSameAs(first);
+    assertThat(pool.getCreated()).isEqualTo(2);
+    assertThat(pool.getCheckouts()).isEqualTo(3);
+
+    // crashed handles are never used again
+    pool.discard(second, new Error("Invalid memory access"));
+    assertThat(pool.getQuarantined()).isEqualTo(1);
+    MediaInfo fourth = pool.acquire("fourth.mkv");
+    assertThat(fourth).isNotSameAs(second);
+    pool.release(fourth);
+    pool.release(first);
+    assertThat(pool.getIdle()).isEqualTo(2);
+
+    // a handle of a dead thread is reclaimed
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pool.acquire("leaked.mkv");
+          pool.acquire("leaked2.mkv");
+        }
+        catch (InterruptedException ignored) {
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+    assertThat(pool.getLeased()).isEqualTo(2);
+    pool.release(pool.acquire("fifth.mkv"));
+    assertThat(pool.getLeased()).isEqualTo(0);
+    assertThat(pool.getQuarantined()).isEqualTo(3);
+  }
+
+  @Test
+  public void testFailingHandle() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    MediaInfoPool pool = new MediaInfoPool(1) {
+      @Override
+      MediaInfo createHandle() {
+        if (attempts.incrementAndGet() <= 2) {
+          throw new UnsatisfiedLinkError("Unable to load library 'mediainfo'");
+        }
+        return new MediaInfo();
+      }
+    };
+
+    // the permit of a failed checkout is not lost
+    for (int i = 0; i < 2; i++) {
+      MediaInfo mediaInfo = null;
+      try {
+        mediaInfo = pool.acquire("broken.mkv");
+        throw new AssertionError("no error for a failed handle");
+      }
+      catch (UnsatisfiedLinkError e) {
+        // like the callers: return the (not existing) handle
+        pool.discard(mediaInfo, e);
+      }
+    }
+    assertThat(pool.getLeased()).isEqualTo(0);
+    assertThat(pool.getQuarantined()).isEqualTo(0);
+    assertThat(pool.getCreated()).isEqualTo(0);
+
+    // the only permit is still available
+    MediaInfo mediaInfo = pool.acquire("working.mkv");
+    assertThat(mediaInfo).isNotNull();
+    assertThat(pool.getLeased()).isEqualTo(1);
+    pool.release(mediaInfo);
+    assertThat(pool.getIdle()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * The class TestImages. Creates (gradient) test images in target/test for the image tests.
+ *
+ * @author Manuel Laggner
+ */
+class TestImages {
+
+  private TestImages() {
+    // hide the public constructor for utility classes
+  }
+
+  /**
+   * create a jpeg with a blue to orange gradient (or a transparent png for names starting with "logo"); existing files are reused
+   *
+   * @param name
+   *          the name of the image (poster, fanart, logo, ...)
+   * @param width
+   *          the width of the image
+   * @param height
+   *          the height of the image
+   * @param progressive
+   *          write a progressive jpeg
+   * @return the image file
+   */
+  static Path createImage(String name, int width, int height, boolean progressive) throws Exception {
+    // logos are transparent pngs
+    boolean png = name.startsWith("logo");
+    Path file = Paths.get("target", "test", "image-" + name + "-" + width + "x" + height + (png ? ".png" : ".jpg"));
+    if (Files.exists(file)) {
+      return file;
+    }
+    Files.createDirectories(file.getParent());
+
+    BufferedImage image = new BufferedImage(width, height, png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2 = image.createGraphics();
+    g2.setPaint(new GradientPaint(0, 0, png ? new Color(0, 0, 255, 0) : Color.BLUE, width, height, Color.ORANGE));
+    g2.fillRect(0, 0, width, height);
+    g2.dispose();
+    if (png) {
+      ImageIO.write(image, "png", file.toFile());
+      return file;
+    }
+
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    if (progressive) {
+      param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+    }
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(image, null, null), param);
+    }
+    finally {
+      writer.dispose();
+    }
+    return file;
+  }
+}
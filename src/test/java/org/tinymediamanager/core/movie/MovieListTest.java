@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.Settings;
+import org.tinymediamanager.core.TmmModuleManager;
+import org.tinymediamanager.core.movie.entities.MovieSet;
+
+/**
+ * Tests the parallel creation and lookup of movie sets
+ *
+ * @author Manuel Laggner
+ */
+public class MovieListTest extends BasicTest {
+  private static final int THREADS = 16;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    deleteSettingsFolder();
+    Settings.getInstance(getSettingsFolder());
+  }
+
+  @Before
+  public void setUpBeforeTest() throws Exception {
+    TmmModuleManager.getInstance().startUp();
+    MovieModuleManager.getInstance().startUp();
+  }
+
+  @After
+  public void tearDownAfterTest() throws Exception {
+    MovieModuleManager.getInstance().shutDown();
+    TmmModuleManager.getInstance().shutDown();
+    Files.delete(Paths.get(getSettingsFolder(), "movies.db"));
+  }
+
+  @Test
+  public void testCreateAndClaimMovieSet() throws Exception {
+    final MovieList movieList = MovieList.getInstance();
+    // a movie set without tmdbId (e.g. out of the NFO of a movie)
+    final MovieSet existing = movieList.getMovieSet("Star Wars Collection", 0);
+    final int movieSets = movieList.getMovieSetCount();
+
+    final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+    final AtomicInteger created = new AtomicInteger();
+    final AtomicInteger claimed = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<MovieSet>> results = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      // the same collection with different titles (like different scraper languages)
+      final String title = i % 2 == 0 ? "The Lord of the Rings Collection" : "Der Herr der Ringe Filmreihe";
+      results.add(executor.submit(new Callable<MovieSet>() {
+        @Override
+        public MovieSet call() throws Exception {
+          barrier.await();
+          // like MovieAssignMovieSetTask: create the movie set or take the existing one
+          MovieSet movieSet = movieList.createMovieSet(title, 119);
+          if (movieSet != null) {
+            created.incrementAndGet();
+          }
+          else {
+            movieSet = movieList.getMovieSet(title, 119);
+          }
+          if (movieList.assignTmdbId(existing, 10)) {
+            claimed.incrementAndGet();
+          }
+          return movieSet;
+        }
+      }));
+    }
+
+    MovieSet movieSet = results.get(0).get();
+    for (Future<MovieSet> result : results) {
+      assertThat(result.get()).isSameAs(movieSet);
+    }
+    executor.shutdown();
+
+    // exactly one worker created the movie set and one claimed the existing one
+    assertThat(created.get()).isEqualTo(1);
+    assertThat(claimed.get()).isEqualTo(1);
+    assertThat(movieSet.getTmdbId()).isEqualTo(119);
+    assertThat(existing.getTmdbId()).isEqualTo(10);
+    assertThat(movieList.getMovieSetCount()).isEqualTo(movieSets + 1);
+    assertThat(movieList.getMovieSet("Star Wars", 10)).isSameAs(existing);
+  }
+
+  @Test
+  public void testLookupWhileModified() throws Exception {
+    final MovieList movieList = MovieList.getInstance();
+    final MovieSet movieSet = movieList.getMovieSet("Alien Collection", 8091);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> results = new ArrayList<>();
+    // movie sets are added and removed while other threads search
+    results.add(executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        for (int i = 0; i < 200; i++) {
+          MovieSet temporary = new MovieSet("Temporary " + i);
+          movieList.addMovieSet(temporary);
+          movieList.removeMovieSet(temporary);
+        }
+        return null;
+      }
+    }));
+    for (int i = 1; i < THREADS; i++) {
+      results.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < 200; j++) {
+            // by title (the whole list is searched)
+            assertThat(movieList.getMovieSet("Alien Collection", 0)).isSameAs(movieSet);
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+    assertThat(movieList.getMovieSet("Alien Collection", 8091)).isSameAs(movieSet);
+  }
+}
@@ -15,13 +15,19 @@
  */
 package org.tinymediamanager.core.movie;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
 import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.MediaFileType;
 import org.tinymediamanager.core.Utils;
+import org.tinymediamanager.core.entities.MediaFile;
 import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.tvshow.entities.TvShow;
+import org.tinymediamanager.core.tvshow.entities.TvShowEpisode;
 import org.tinymediamanager.scraper.util.ParserUtils;
 import org.tinymediamanager.scraper.util.StrgUtils;
 
@@ -75,6 +81,49 @@ public class MovieTest extends BasicTest {
     System.out.println(str);
   }
 
+  @Test
+  public void testDirtyTracking() {
+    Movie movie = new Movie();
+    movie.setTitle("Aladdin");
+    MediaFile mf = new MediaFile();
+    mf.setType(MediaFileType.VIDEO);
+    mf.setFilename("Aladdin.mkv");
+    movie.addToMediaFiles(mf);
+    assertThat(movie.isPersisted()).isFalse();
+    assertThat(movie.isModifiedSincePersist()).isTrue();
+
+    movie.setPersisted(movie.getModificationStamp(), 0);
+    assertThat(movie.isModifiedSincePersist()).isFalse();
+
+    // property change
+    movie.setTitle("Aladdin 2");
+    assertThat(movie.isModifiedSincePersist()).isTrue();
+    movie.setPersisted(movie.getModificationStamp(), 0);
+
+    // change of a media file
+    movie.getMediaFiles().get(0).setVideoCodec("h265");
+    assertThat(movie.isModifiedSincePersist()).isTrue();
+    movie.setPersisted(movie.getModificationStamp(), 0);
+
+    // change of the media file list
+    movie.removeAllMediaFiles();
+    assertThat(movie.isModifiedSincePersist()).isTrue();
+
+    // a removed entity has to be written again
+    movie.setPersisted(movie.getModificationStamp(), 0);
+    movie.clearPersisted();
+    assertThat(movie.isModifiedSincePersist()).isTrue();
+
+    // forwarded events (firePropertyChange(PropertyChangeEvent))
+    TvShow tvShow = new TvShow();
+    TvShowEpisode episode = new TvShowEpisode();
+    episode.setTvShow(tvShow);
+    tvShow.addEpisode(episode);
+    tvShow.setPersisted(tvShow.getModificationStamp(), 0);
+    episode.addToTags("Pilot");
+    assertThat(tvShow.isModifiedSincePersist()).isTrue();
+  }
+
   private String replaceVariable(String s) {
     Pattern regex = Pattern.compile("\\$.{1}"); // $x
     Matcher mat = regex.matcher(s);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.movie;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.Settings;
+import org.tinymediamanager.core.TmmModuleManager;
+import org.tinymediamanager.core.Utils;
+import org.tinymediamanager.core.movie.entities.Movie;
+import org.tinymediamanager.core.movie.tasks.MovieUpdateDatasourceTask2;
+
+/**
+ * Tests the result of the parallel search of a data source (generated folder structure)
+ *
+ * @author Manuel Laggner
+ */
+public class MovieUpdateDatasourceWalkTest extends BasicTest {
+  private static Path datasource;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    deleteSettingsFolder();
+    Settings.getInstance(getSettingsFolder());
+    datasource = Paths.get(getSettingsFolder(), "walk").toAbsolutePath();
+  }
+
+  @Before
+  public void setUpBeforeTest() throws Exception {
+    TmmModuleManager.getInstance().startUp();
+    MovieModuleManager.getInstance().startUp();
+
+    Utils.deleteDirectoryRecursive(datasource);
+    Files.createDirectories(datasource);
+    MovieModuleManager.MOVIE_SETTINGS.addMovieDataSources(datasource.toString());
+  }
+
+  @After
+  public void tearDownAfterTest() throws Exception {
+    MovieModuleManager.getInstance().shutDown();
+    TmmModuleManager.getInstance().shutDown();
+    Utils.deleteDirectoryRecursive(datasource);
+    Files.delete(Paths.get(getSettingsFolder(), "movies.db"));
+  }
+
+  @Test
+  public void testWalk() throws Exception {
+    Set<Path> expected = new HashSet<>();
+    // movies in the root of the data source and in (nested) collection folders - searched in parallel
+    expected.add(createMovie(datasource, "Aladdin (1992)", "Aladdin.mkv"));
+    for (int i = 1; i <= 3; i++) {
+      Path collection = datasource.resolve("Collection " + i);
+      for (int j = 1; j <= 5; j++) {
+        expected.add(createMovie(collection, "Movie " + i + "-" + j + " (20" + i + j + ")", "movie.avi"));
+      }
+      expected.add(createMovie(collection.resolve("Sub"), "Deep " + i + " (1990)", "deep.mkv"));
+    }
+    // one stacked movie
+    Path stacked = createMovie(datasource, "Stacked (2000)", "Stacked.cd1.avi");
+    Files.createFile(stacked.resolve("Stacked.cd2.avi"));
+    expected.add(stacked);
+    // ignored folders and folders without videos
+    createMovie(datasource, "Ignored (2001)", "Ignored.mkv");
+    Files.createFile(datasource.resolve("Ignored (2001)").resolve(".tmmignore"));
+    Files.createDirectories(datasource.resolve("Empty").resolve("Sub"));
+
+    new MovieUpdateDatasourceTask2().run();
+    assertThat(getMoviePaths()).isEqualTo(expected);
+    for (Movie movie : MovieList.getInstance().getMovies()) {
+      assertThat(movie.isStacked()).isEqualTo(movie.getPathNIO().toAbsolutePath().equals(stacked));
+    }
+
+    // a new movie in an unchanged collection
+    expected.add(createMovie(datasource.resolve("Collection 2"), "New (2017)", "new.mkv"));
+    new MovieUpdateDatasourceTask2().run();
+    assertThat(getMoviePaths()).isEqualTo(expected);
+  }
+
+  private Path createMovie(Path parent, String folder, String file) throws Exception {
+    Path dir = Files.createDirectories(parent.resolve(folder));
+    Files.createFile(dir.resolve(file));
+    return dir;
+  }
+
+  private Set<Path> getMoviePaths() {
+    Set<Path> paths = new HashSet<>();
+    for (Movie movie : MovieList.getInstance().getMovies()) {
+      paths.add(movie.getPathNIO().toAbsolutePath());
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.threading;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.Globals;
+
+/**
+ * @author Manuel Laggner
+ */
+public class TmmIoLaneTest extends BasicTest {
+  private final Path path = Paths.get("target");
+  private int        ioThreads;
+
+  @Before
+  public void setUp() {
+    ioThreads = Globals.settings.getIoThreadsLocal();
+    Globals.settings.setIoThreadsLocal(2);
+  }
+
+  @After
+  public void tearDown() {
+    Globals.settings.setIoThreadsLocal(ioThreads);
+  }
+
+  @Test
+  public void testSharedBudget() {
+    Semaphore permits = TmmIoLane.getPermits(path);
+    assertThat(permits.availablePermits()).isEqualTo(2);
+    // every path of the same device gets the same budget
+    assertThat(TmmIoLane.getPermits(Paths.get("target", "test"))).isSameAs(permits);
+
+    // changed settings -> new budget
+    Globals.settings.setIoThreadsLocal(3);
+    Semaphore changed = TmmIoLane.getPermits(path);
+    assertThat(changed).isNotSameAs(permits);
+    assertThat(changed.availablePermits()).isEqualTo(3);
+  }
+
+  @Test
+  public void testCallWithPermit() throws Exception {
+    final Semaphore permits = TmmIoLane.getPermits(path);
+    int available = TmmIoLane.callWithPermit(path, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        // nested calls do not take a second permit
+        return TmmIoLane.callWithPermit(path, new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return permits.availablePermits();
+          }
+        });
+      }
+    });
+    assertThat(available).isEqualTo(1);
+    assertThat(permits.availablePermits()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRunWithoutPermit() throws Exception {
+    final Semaphore permits = TmmIoLane.getPermits(path);
+    final int[] available = new int[1];
+    TmmIoLane.callWithPermit(path, new Callable<Object>() {
+      @Override
+      public Object call() {
+        TmmIoLane.runWithoutPermit(new Runnable() {
+          @Override
+          public void run() {
+            available[0] = permits.availablePermits();
+          }
+        });
+        assertThat(permits.availablePermits()).isEqualTo(1);
+        return null;
+      }
+    });
+    assertThat(available[0]).isEqualTo(2);
+    assertThat(permits.availablePermits()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 - 2017 Manuel Laggner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tinymediamanager.core.threading;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+
+/**
+ * @author Manuel Laggner
+ */
+public class TmmPipelineStageTest extends BasicTest {
+
+  @Test
+  public void testBackpressure() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> processed = new CopyOnWriteArrayList<>();
+    final TmmPipelineStage<Integer> stage = createStage(release, processed, 2);
+
+    // one item is processed, two are waiting - the stage is full
+    for (int i = 1; i <= 3; i++) {
+      assertThat(stage.offer(i)).isTrue();
+    }
+    Thread producer = startProducer(stage, 4);
+    producer.join(300);
+    assertThat(producer.isAlive()).isTrue();
+    assertThat(stage.getPending()).isEqualTo(4);
+
+    // room again -> the producer continues
+    release.countDown();
+    producer.join(5000);
+    assertThat(producer.isAlive()).isFalse();
+    assertThat(stage.awaitDrained(5000)).isTrue();
+    assertThat(processed).containsExactly(1, 2, 3, 4);
+    assertThat(stage.getProcessed()).isEqualTo(4);
+    stage.shutdown();
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> processed = new CopyOnWriteArrayList<>();
+    final TmmPipelineStage<Integer> stage = createStage(release, processed, 2);
+
+    for (int i = 1; i <= 3; i++) {
+      stage.offer(i);
+    }
+    Thread producer = startProducer(stage, 4);
+    producer.join(300);
+    assertThat(producer.isAlive()).isTrue();
+
+    // the waiting items are discarded and the blocked producer can continue
+    stage.cancel();
+    producer.join(5000);
+    assertThat(producer.isAlive()).isFalse();
+    assertThat(stage.offer(5)).isFalse();
+    // awaiting a cancelled stage does not block
+    assertThat(stage.awaitDrained(5000)).isFalse();
+
+    release.countDown();
+    stage.shutdown();
+    awaitPending(stage);
+    // only the running item has been processed
+    assertThat(processed).containsExactly(1);
+  }
+
+  private TmmPipelineStage<Integer> createStage(final CountDownLatch release, final List<Integer> processed, int capacity) {
+    return new TmmPipelineStage<Integer>("test", 1, capacity) {
+      @Override
+      protected void process(Integer item) throws Exception {
+        release.await(10, TimeUnit.SECONDS);
+        processed.add(item);
+      }
+    };
+  }
+
+  private Thread startProducer(final TmmPipelineStage<Integer> stage, final int item) {
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        stage.offer(item);
+      }
+    });
+    producer.start();
+    return producer;
+  }
+
+  private void awaitPending(TmmPipelineStage<Integer> stage) throws InterruptedException {
+    long end = System.currentTimeMillis() + 5000;
+    while (stage.getPending() > 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertThat(stage.getPending()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,199 @@
+package org.tinymediamanager.thirdparty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tinymediamanager.BasicTest;
+import org.tinymediamanager.core.Utils;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
+
+public class ContainerProbeTest extends BasicTest {
+
+  @Test
+  public void probeMatroska() throws Exception {
+    Path root = Paths.get("target", "test", "containerProbe");
+    Utils.deleteDirectoryRecursive(root);
+    Files.createDirectories(root);
+
+    byte[] ebml = element(0x1A45DFA3, element(0x4282, "matroska".getBytes(StandardCharsets.US_ASCII)));
+    byte[] info = element(0x1549A966, element(0x2AD7B1, uint(1000000)), element(0x4489, ByteBuffer.allocate(8).putDouble(5400000d).array()));
+    byte[] video = element(0xAE, element(0xD7, uint(1)), element(0x73C5, uint(11)), element(0x83, uint(1)),
+        element(0x86, "V_VP8".getBytes(StandardCharsets.US_ASCII)), element(0xE0, element(0xB0, uint(1920)), element(0xBA, uint(800))));
+    byte[] audio = element(0xAE, element(0xD7, uint(2)), element(0x73C5, uint(22)), element(0x83, uint(2)),
+        element(0x86, "A_AC3".getBytes(StandardCharsets.US_ASCII)), element(0x22B59C, "ger".getBytes(StandardCharsets.US_ASCII)),
+        element(0xE1, element(0x9F, uint(6))));
+    byte[] subtitle = element(0xAE, element(0xD7, uint(3)), element(0x73C5, uint(33)), element(0x83, uint(17)),
+        element(0x86, "S_TEXT/UTF8".getBytes(StandardCharsets.US_ASCII)), element(0x55AA, uint(1)));
+    byte[] tracks = element(0x1654AE6B, video, audio, subtitle);
+    byte[] tags = element(0x1254C367, element(0x7373, element(0x63C0, element(0x63C5, uint(22))),
+        element(0x67C8, element(0x45A3, "BPS".getBytes(StandardCharsets.US_ASCII)), element(0x4487, "640000".getBytes(StandardCharsets.US_ASCII)))));
+    byte[] cluster = element(0x1F43B675, new byte[1024]);
+    Path file = Files.write(root.resolve("Aladdin.mkv"), concat(ebml, element(0x18538067, info, tracks, tags, cluster)));
+
+    Map<StreamKind, List<Map<String, String>>> snapshot = ContainerProbe.probe(file);
+    assertThat(snapshot).isNotNull();
+    assertThat(snapshot.get(StreamKind.General).get(0).get("Format")).isEqualTo("Matroska");
+    assertThat(snapshot.get(StreamKind.General).get(0).get("Duration")).isEqualTo("5400000.000");
+    assertThat(snapshot.get(StreamKind.General).get(0).get("AudioCount")).isEqualTo("1");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Format")).isEqualTo("VP8");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Width")).isEqualTo("1920");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Height")).isEqualTo("800");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("ScanType")).isEqualTo("Progressive");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Format")).isEqualTo("AC-3");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Channel(s)")).isEqualTo("6");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("BitRate")).isEqualTo("640000");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Language")).isEqualTo("ger");
+    assertThat(snapshot.get(StreamKind.Text).get(0).get("Format")).isEqualTo("UTF-8");
+    assertThat(snapshot.get(StreamKind.Text).get(0).get("Forced")).isEqualTo("Yes");
+
+    // DTS needs libmediainfo
+    byte[] dts = element(0xAE, element(0xD7, uint(2)), element(0x73C5, uint(22)), element(0x83, uint(2)),
+        element(0x86, "A_DTS".getBytes(StandardCharsets.US_ASCII)));
+    file = Files.write(root.resolve("Aladdin.dts.mkv"), concat(ebml, element(0x18538067, info, element(0x1654AE6B, video, dts), tags, cluster)));
+    assertThat(ContainerProbe.probe(file)).isNull();
+
+    // AAC: the channels come from the AudioSpecificConfig (LC, 48 kHz, 5.1) and not from the channel element
+    byte[] aac = element(0xAE, element(0xD7, uint(2)), element(0x73C5, uint(22)), element(0x83, uint(2)),
+        element(0x86, "A_AAC".getBytes(StandardCharsets.US_ASCII)), element(0x63A2, new byte[] { 0x11, (byte) 0xB0 }),
+        element(0xE1, element(0x9F, uint(2))));
+    file = Files.write(root.resolve("Aladdin.aac.mkv"),
+        concat(ebml, element(0x18538067, info, element(0x1654AE6B, video, aac), tags, cluster)));
+    snapshot = ContainerProbe.probe(file);
+    assertThat(snapshot).isNotNull();
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Format")).isEqualTo("AAC");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Channel(s)")).isEqualTo("6");
+
+    // E-AC-3 needs libmediainfo (dependent substreams/Atmos are only visible in the stream)
+    byte[] eac3 = element(0xAE, element(0xD7, uint(2)), element(0x73C5, uint(22)), element(0x83, uint(2)),
+        element(0x86, "A_EAC3".getBytes(StandardCharsets.US_ASCII)), element(0xE1, element(0x9F, uint(6))));
+    file = Files.write(root.resolve("Aladdin.eac3.mkv"),
+        concat(ebml, element(0x18538067, info, element(0x1654AE6B, video, eac3), tags, cluster)));
+    assertThat(ContainerProbe.probe(file)).isNull();
+
+    // no Matroska file at all
+    file = Files.write(root.resolve("broken.mkv"), new byte[100]);
+    assertThat(ContainerProbe.probe(file)).isNull();
+  }
+
+  @Test
+  public void probeMp4() throws Exception {
+    Path root = Paths.get("target", "test", "containerProbe");
+    Utils.deleteDirectoryRecursive(root);
+    Files.createDirectories(root);
+
+    byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), int32(0x200), "isomiso2mp41".getBytes(StandardCharsets.US_ASCII));
+    // 90 minutes (timescale 1000)
+    byte[] mvhd = box("mvhd", int32(0), int32(0), int32(0), int32(1000), int32(5400000), new byte[80]);
+
+    // HEVC 1920x800, 10 bit
+    byte[] hvcC = new byte[23];
+    hvcC[0] = 1;
+    hvcC[17] = 2;
+    byte[] hvc1 = box("hvc1", new byte[24], int16(1920), int16(800), new byte[50], box("hvcC", hvcC));
+    byte[] videoTrack = track(1, "vide", 0, hvc1, 0, 0);
+
+    // AAC LC 48 kHz 5.1 (the sample entry says 2 channels), 384 kbps, english
+    byte[] esds = box("esds", int32(0), new byte[] { 0x03, 25, 0, 2, 0, 0x04, 17, 0x40, 0x15 }, new byte[11], new byte[] { 0x05, 2, 0x11,
+        (byte) 0xB0 }, new byte[] { 0x06, 1, 2 });
+    byte[] mp4a = box("mp4a", new byte[16], int16(2), int16(16), new byte[8], esds);
+    byte[] audioTrack = track(2, "soun", 0x15C7, mp4a, 48000, 5400);
+
+    Path file = Files.write(root.resolve("Aladdin.mp4"),
+        concat(ftyp, box("moov", mvhd, videoTrack, audioTrack), box("mdat", new byte[1024])));
+    Map<StreamKind, List<Map<String, String>>> snapshot = ContainerProbe.probe(file);
+    assertThat(snapshot).isNotNull();
+    assertThat(snapshot.get(StreamKind.General).get(0).get("Format")).isEqualTo("MPEG-4");
+    assertThat(snapshot.get(StreamKind.General).get(0).get("Duration")).isEqualTo("5400000.000");
+    assertThat(snapshot.get(StreamKind.General).get(0).get("VideoCount")).isEqualTo("1");
+    assertThat(snapshot.get(StreamKind.General).get(0).get("AudioCount")).isEqualTo("1");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Format")).isEqualTo("HEVC");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Width")).isEqualTo("1920");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("Height")).isEqualTo("800");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("BitDepth")).isEqualTo("10");
+    assertThat(snapshot.get(StreamKind.Video).get(0).get("ScanType")).isEqualTo("Progressive");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Format")).isEqualTo("AAC");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Channel(s)")).isEqualTo("6");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("BitRate")).isEqualTo("384000");
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Language")).isEqualTo("eng");
+
+    // the moov atom at the end of the file
+    file = Files.write(root.resolve("Aladdin.moov.mp4"),
+        concat(ftyp, box("mdat", new byte[1024]), box("moov", mvhd, videoTrack, audioTrack)));
+    snapshot = ContainerProbe.probe(file);
+    assertThat(snapshot).isNotNull();
+    assertThat(snapshot.get(StreamKind.Audio).get(0).get("Channel(s)")).isEqualTo("6");
+
+    // E-AC-3 with a dependent substream (7.1) needs libmediainfo
+    byte[] dec3 = box("dec3", new byte[] { 0x02, 0x00, 0x20, 0x0F, 0x02, 0x00 });
+    byte[] ec3 = box("ec-3", new byte[16], int16(2), int16(16), new byte[8], dec3);
+    file = Files.write(root.resolve("Aladdin.eac3.mp4"), concat(ftyp, box("moov", mvhd, videoTrack, track(2, "soun", 0x15C7, ec3, 0, 0))));
+    assertThat(ContainerProbe.probe(file)).isNull();
+
+    // QuickTime movies need libmediainfo
+    byte[] qt = box("ftyp", "qt  ".getBytes(StandardCharsets.US_ASCII), int32(0x200), "qt  ".getBytes(StandardCharsets.US_ASCII));
+    file = Files.write(root.resolve("Aladdin.qt.mp4"), concat(qt, box("moov", mvhd, videoTrack)));
+    assertThat(ContainerProbe.probe(file)).isNull();
+  }
+
+  /**
+   * a trak atom with one sample entry; the bitrate is given by the sample size (bytes per second) and the sample count (seconds)
+   */
+  private static byte[] track(int id, String handler, int language, byte[] sampleEntry, int sampleSize, int sampleCount) throws Exception {
+    byte[] tkhd = box("tkhd", int32(0), int32(0), int32(0), int32(id), new byte[68]);
+    byte[] mdhd = box("mdhd", int32(0), int32(0), int32(0), int32(1), int32(5400), int16(language), int16(0));
+    byte[] hdlr = box("hdlr", int32(0), int32(0), handler.getBytes(StandardCharsets.US_ASCII), new byte[13]);
+    byte[] stsd = box("stsd", int32(0), int32(1), sampleEntry);
+    byte[] stsz = box("stsz", int32(0), int32(sampleSize), int32(sampleCount));
+    return box("trak", tkhd, box("mdia", mdhd, hdlr, box("minf", box("stbl", stsd, stsz))));
+  }
+
+  private static byte[] box(String type, byte[]... children) throws Exception {
+    byte[] content = concat(children);
+    return concat(int32(8 + content.length), type.getBytes(StandardCharsets.US_ASCII), content);
+  }
+
+  private static byte[] int32(int value) {
+    return ByteBuffer.allocate(4).putInt(value).array();
+  }
+
+  private static byte[] int16(int value) {
+    return ByteBuffer.allocate(2).putShort((short) value).array();
+  }
+
+  private static byte[] element(int id, byte[]... children) throws Exception {
+    byte[] content = concat(children);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] idBytes = ByteBuffer.allocate(4).putInt(id).array();
+    int skip = 0;
+    while (idBytes[skip] == 0) {
+      skip++;
+    }
+    out.write(idBytes, skip, 4 - skip);
+    // 8 byte size
+    out.write(0x01);
+    out.write(ByteBuffer.allocate(8).putLong(content.length).array(), 1, 7);
+    out.write(content);
+    return out.toByteArray();
+  }
+
+  private static byte[] uint(long value) {
+    return ByteBuffer.allocate(8).putLong(value).array();
+  }
+
+  private static byte[] concat(byte[]... parts) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part);
+    }
+    return out.toByteArray();
+  }
+}
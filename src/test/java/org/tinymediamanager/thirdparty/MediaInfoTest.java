@@ -1,12 +1,19 @@
 package org.tinymediamanager.thirdparty;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.tinymediamanager.BasicTest;
 import org.tinymediamanager.core.entities.MediaFile;
+import org.tinymediamanager.thirdparty.MediaInfo.StreamKind;
 
 public class MediaInfoTest extends BasicTest {
 
@@ -75,6 +82,115 @@ public class MediaInfoTest extends BasicTest {
     System.out.println("subs: " + mf.getSubtitlesAsString());
   }
 
+  /**
+   * parses a recorded output of the batched Inform call
+   */
+  @Test
+  public void testInformSnapshot() {
+    Map<StreamKind, List<String>> parameters = createParameters();
+    RecordedMediaInfo mi = new RecordedMediaInfo("General<:>Matroska<|>7200000<#>\r\n" + "Video<:>AVC<|>1920<|>1080<#>\r\n"
+        + "Audio<:>AC-3<|>6<|>eng<#>\r\n" + "Audio<:>DTS<|>6<|><#>\r\n");
+
+    Map<StreamKind, List<Map<String, String>>> snapshot = mi.snapshot(parameters);
+    assertThat(mi.template).startsWith("General;General<:>%Format%<|>%Duration%<#>");
+    assertThat(mi.template).contains("Audio;Audio<:>%Format%<|>%Channel(s)%<|>%Language%<#>");
+    assertThat(mi.getCalls).isEqualTo(0);
+
+    assertThat(snapshot.get(StreamKind.General)).hasSize(1);
+    assertThat(snapshot.get(StreamKind.General).get(0)).containsEntry("Format", "Matroska").containsEntry("Duration", "7200000");
+    assertThat(snapshot.get(StreamKind.Video).get(0)).containsEntry("Width", "1920").containsEntry("Height", "1080");
+    assertThat(snapshot.get(StreamKind.Audio)).hasSize(2);
+    assertThat(snapshot.get(StreamKind.Audio).get(0)).containsEntry("Format", "AC-3").containsEntry("Language", "eng");
+    // empty values are not contained
+    assertThat(snapshot.get(StreamKind.Audio).get(1)).containsEntry("Format", "DTS").doesNotContainKey("Language");
+    assertThat(snapshot).doesNotContainKey(StreamKind.Text);
+  }
+
+  /**
+   * falls back to one Get call per parameter if the Inform output cannot be parsed
+   */
+  @Test
+  public void testSnapshotFallback() {
+    Map<StreamKind, List<String>> parameters = createParameters();
+
+    // the wrong amount of values (e.g. a value containing the separator)
+    RecordedMediaInfo mi = new RecordedMediaInfo("General<:>Matroska<|>7200000<|>1<#>\r\n");
+    mi.streams.put(StreamKind.General, 1);
+    mi.streams.put(StreamKind.Audio, 2);
+    Map<StreamKind, List<Map<String, String>>> snapshot = mi.snapshot(parameters);
+    assertThat(mi.getCalls).isGreaterThan(0);
+    assertThat(snapshot.get(StreamKind.General).get(0)).containsEntry("Format", "General-0-Format").containsEntry("Duration",
+        "General-0-Duration");
+    assertThat(snapshot.get(StreamKind.Audio)).hasSize(2);
+    assertThat(snapshot.get(StreamKind.Audio).get(1)).containsEntry("Channel(s)", "Audio-1-Channel(s)");
+    assertThat(snapshot).doesNotContainKey(StreamKind.Video);
+
+    // no batched output at all (e.g. an old mediainfo version)
+    mi = new RecordedMediaInfo("");
+    mi.streams.put(StreamKind.Video, 1);
+    snapshot = mi.snapshot(parameters);
+    assertThat(snapshot.get(StreamKind.Video).get(0)).containsEntry("Width", "Video-0-Width");
+
+    // an unknown stream kind
+    mi = new RecordedMediaInfo("Chapter<:>1<#>\r\n");
+    mi.streams.put(StreamKind.General, 1);
+    snapshot = mi.snapshot(parameters);
+    assertThat(snapshot.get(StreamKind.General).get(0)).containsEntry("Format", "General-0-Format");
+  }
+
+  private Map<StreamKind, List<String>> createParameters() {
+    Map<StreamKind, List<String>> parameters = new EnumMap<>(StreamKind.class);
+    parameters.put(StreamKind.General, Arrays.asList("Format", "Duration"));
+    parameters.put(StreamKind.Video, Arrays.asList("Format", "Width", "Height"));
+    parameters.put(StreamKind.Audio, Arrays.asList("Format", "Channel(s)", "Language"));
+    parameters.put(StreamKind.Text, Arrays.asList("Format", "Language"));
+    return parameters;
+  }
+
+  /**
+   * a mediainfo with a recorded Inform output (and generated values for the single Get calls) - without the native library
+   */
+  private static class RecordedMediaInfo extends MediaInfo {
+    private final String                   output;
+    private final Map<StreamKind, Integer> streams  = new EnumMap<>(StreamKind.class);
+    private String                         template = "";
+    private int                            getCalls = 0;
+
+    RecordedMediaInfo(String output) {
+      this.output = output;
+    }
+
+    @Override
+    public Boolean isLoaded() {
+      return true;
+    }
+
+    @Override
+    public String option(String option, String value) {
+      if ("Inform".equals(option) && !value.isEmpty()) {
+        template = value;
+      }
+      return "";
+    }
+
+    @Override
+    public String inform() {
+      return output;
+    }
+
+    @Override
+    public int streamCount(StreamKind streamKind) {
+      Integer count = streams.get(streamKind);
+      return count == null ? 0 : count;
+    }
+
+    @Override
+    public String get(StreamKind streamKind, int streamNumber, String parameter) {
+      getCalls++;
+      return streamKind.name() + "-" + streamNumber + "-" + parameter;
+    }
+  }
+
   /**
    * mediainfo direct example
    */